@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar, taking the same arguments as JMH. Unless told otherwise,
+ * results are written as JSON to a file named after the version benchmarked so that results can be
+ * compared between releases.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class BenchmarkRunner {
+	// Version used when not running from a packaged jar
+	private static final String DEFAULT_VERSION = "dev";
+
+	/**
+	 * Do not allow this class to be instantiated.
+	 */
+	private BenchmarkRunner() {}
+
+	/**
+	 * Run the benchmarks selected by the arguments.
+	 *
+	 * @param args JMH command line arguments
+	 */
+	public static void main(String[] args) throws RunnerException {
+		final CommandLineOptions options;
+		try {
+			options = new CommandLineOptions(args);
+		} catch(CommandLineOptionException e) {
+			System.err.println("[BENCHMARK] : " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (options.shouldHelp()) {
+			try {
+				options.showHelp();
+			} catch(IOException e) {
+				System.err.println("[BENCHMARK] : Unable to show help");
+			}
+			return;
+		}
+		final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (!options.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!options.getResult().hasValue()) {
+			builder.result(String.format("jmh-%s.json", getVersion()));
+		}
+		final Runner runner = new Runner(builder.build());
+		if (options.shouldList()) {
+			runner.list();
+		} else {
+			runner.run();
+		}
+	}
+
+	/**
+	 * @return Version of benchmarks jar being run
+	 */
+	private static String getVersion() {
+		final String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+		return (version == null) ? DEFAULT_VERSION : version;
+	}
+
+}
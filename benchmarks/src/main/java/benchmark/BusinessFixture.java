@@ -0,0 +1,158 @@
+package benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import business.model.BusinessModel;
+import business.model.Customer;
+import business.model.CustomerLogin;
+import business.model.Dish;
+import business.model.Ingredient;
+import business.model.Order;
+import business.model.Postcode;
+import business.model.StockLevels;
+import business.model.Supplier;
+import general.model.QuantityMap;
+
+/**
+ * Business model populated with a given number of dishes, customers and historical orders for
+ * benchmarks to run against. Models are generated from a fixed seed so every run of a benchmark
+ * uses the same data. Dishes are stocked far beyond their restock levels so that orders are never
+ * rejected for lack of stock; ingredients are stocked so any dish can always be restocked.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class BusinessFixture {
+	// Generation
+	private static final long SEED = 1206;
+	private static final int SUPPLIERS = 10;
+	private static final int INGREDIENTS_PER_DISH = 4;
+	private static final int POSTCODES = 20;
+	// Stock levels
+	private static final double DISH_STOCK = 1e9;
+	private static final int DISH_RESTOCK_LEVEL = 10;
+	private static final double INGREDIENT_STOCK = 1e12;
+
+	private final BusinessModel model = new BusinessModel();
+	private final List<Dish> dishes = new ArrayList<>();
+	private final List<Customer> customers = new ArrayList<>();
+	private final Random random = new Random(SEED);
+	// Date of next order created
+	private LocalDateTime date = LocalDateTime.of(2017, 1, 1, 0, 0);
+
+	/**
+	 * Instantiate a fixture, populating a new business model.
+	 *
+	 * @param dishes Number of dishes
+	 * @param customers Number of customers
+	 * @param historicalOrders Number of delivered orders held by the model
+	 * @param dishesPerOrder Number of different dishes in each order
+	 */
+	public BusinessFixture(int dishes, int customers, int historicalOrders, int dishesPerOrder) {
+		final List<Ingredient> ingredients = new ArrayList<>();
+		for (int i = 0; i < SUPPLIERS; i++) {
+			final Supplier supplier = new Supplier("Supplier " + i, 1 + random.nextInt(20));
+			model.suppliers.add(supplier);
+			for (int j = 0; j < Math.max(1, dishes / SUPPLIERS); j++) {
+				final Ingredient ingredient = new Ingredient("Ingredient " + i + "-" + j,
+						Ingredient.Unit.items, supplier);
+				final StockLevels levels = new StockLevels(INGREDIENT_STOCK, 0);
+				model.stock.ingredients.add(ingredient, levels);
+				ingredients.add(ingredient);
+			}
+		}
+		for (int i = 0; i < dishes; i++) {
+			final QuantityMap<Ingredient> recipe = new QuantityMap<>();
+			for (int j = 0; j < INGREDIENTS_PER_DISH; j++) {
+				recipe.setQuantity(ingredients.get(random.nextInt(ingredients.size())),
+						1 + random.nextInt(3));
+			}
+			final Dish dish = new Dish("Dish " + i, "", 5.0 + random.nextInt(10), recipe);
+			model.stock.dishes.add(dish, new StockLevels(DISH_STOCK, DISH_RESTOCK_LEVEL));
+			this.dishes.add(dish);
+		}
+		final List<Postcode> postcodes = new ArrayList<>();
+		for (int i = 0; i < POSTCODES; i++) {
+			final Postcode postcode = new Postcode(String.format("SO%d 1AA", 14 + i),
+					1 + random.nextInt(8));
+			model.postcodes.add(postcode);
+			postcodes.add(postcode);
+		}
+		for (int i = 0; i < customers; i++) {
+			final CustomerLogin login = new CustomerLogin("customer" + i, "Password1");
+			final Customer customer = new Customer("Customer " + i, "Address " + i,
+					postcodes.get(random.nextInt(postcodes.size())), login);
+			model.customers.put(login, customer);
+			this.customers.add(customer);
+		}
+		for (int i = 0; i < historicalOrders; i++) {
+			final Order order = createOrder(customers(i), dishesPerOrder);
+			order.setStatus(Order.Status.DELIVERED);
+			model.orders.add(order);
+		}
+	}
+
+	/**
+	 * @param index Index of customer, wrapping around
+	 * @return Customer at index
+	 */
+	public Customer customers(int index) {
+		return customers.get(index % customers.size());
+	}
+
+	/**
+	 * @param index Index of dish, wrapping around
+	 * @return Dish at index
+	 */
+	public Dish dishes(int index) {
+		return dishes.get(index % dishes.size());
+	}
+
+	/**
+	 * @return Model populated by fixture
+	 */
+	public BusinessModel getModel() {
+		return model;
+	}
+
+	/**
+	 * @return All dishes of the model
+	 */
+	public List<Dish> getDishes() {
+		return Collections.unmodifiableList(dishes);
+	}
+
+	/**
+	 * Raise the restock level of a dish above its stock so it is considered for restocking, leaving
+	 * its stock available to orders.
+	 *
+	 * @param dish Dish to restock
+	 */
+	public void requireRestock(Dish dish) {
+		model.stock.dishes.get(dish).setRestockLevel(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create an order of random dishes, each order a second after the last so that no two orders
+	 * are equal.
+	 *
+	 * @param customer Customer making order
+	 * @param dishesPerOrder Number of different dishes in order
+	 * @return Order created with status of created
+	 */
+	public synchronized Order createOrder(Customer customer, int dishesPerOrder) {
+		final QuantityMap<Dish> ordered = new QuantityMap<>();
+		while (ordered.size() < Math.min(dishesPerOrder, dishes.size())) {
+			ordered.setQuantity(dishes.get(random.nextInt(dishes.size())), 1 + random.nextInt(2));
+		}
+		final Order order = new Order(customer, ordered);
+		date = date.plusSeconds(1);
+		order.setDate(date);
+		order.setStatus(Order.Status.CREATED);
+		return order;
+	}
+
+}
@@ -0,0 +1,118 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.BusinessMessageCodec;
+import business.model.ModelCanonicalizer;
+import general.model.Message;
+import general.model.MessageCodec;
+import general.model.ObjectMessage;
+
+/**
+ * Benchmark of decoding submitted orders (BusinessMessageCodec.decode) with and without resolving
+ * decoded objects to the instances held by the business model (ModelCanonicalizer). Orders are
+ * encoded as they would be by clients, each message holding its own copy of the customer and
+ * dishes. The heap held by every decoded order is printed when the trial is set up, as resolving
+ * objects is intended to reduce it.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanonicalizerBenchmark {
+	@Param({"false", "true"})
+	public boolean canonicalize;
+	@Param({"40", "1000"})
+	public int dishes;
+	@Param({"200"})
+	public int customers;
+	@Param({"10000"})
+	public int orders;
+	@Param({"4"})
+	public int dishesPerOrder;
+
+	private MessageCodec codec;
+	private final List<byte[]> submitted = new ArrayList<>();
+	private int next = 0;
+
+	/**
+	 * Populate a model, encode orders of its customers and measure the heap held once every order
+	 * has been decoded.
+	 *
+	 * @throws IOException Unable to encode or decode orders
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		final BusinessFixture fixture = new BusinessFixture(dishes, customers, 0, dishesPerOrder);
+		codec = canonicalize ? new BusinessMessageCodec(new ModelCanonicalizer(fixture.getModel()))
+				: new BusinessMessageCodec();
+		final MessageCodec encoder = new BusinessMessageCodec();
+		submitted.clear();
+		for (int i = 0; i < orders; i++) {
+			final ObjectMessage tx = new ObjectMessage(Message.Command.SUBMIT_ORDER);
+			tx.addObject("ORDER", fixture.createOrder(fixture.customers(i), dishesPerOrder));
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			encoder.encode(tx, baos);
+			submitted.add(baos.toByteArray());
+		}
+		final long before = getUsedHeap();
+		final List<Message> held = new ArrayList<>();
+		for (final byte[] encoded : submitted) {
+			held.add(codec.decode(new ByteArrayInputStream(encoded)));
+		}
+		final long used = getUsedHeap() - before;
+		System.out.println(String.format("[BENCHMARK] : %d decoded orders hold %d KB", held.size(),
+				used / 1024));
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Message decodeOrder() throws IOException {
+		next = (next + 1) % submitted.size();
+		return codec.decode(new ByteArrayInputStream(submitted.get(next)));
+	}
+
+	/**
+	 * Force garbage collection and measure the heap in use.
+	 *
+	 * @return Bytes of heap in use
+	 */
+	private static long getUsedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// Repeat until collection no longer frees memory
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			final long current = runtime.totalMemory() - runtime.freeMemory();
+			if (current >= used) {
+				break;
+			}
+			used = current;
+		}
+		return used;
+	}
+
+}
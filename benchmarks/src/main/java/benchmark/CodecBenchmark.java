@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.BusinessMessageCodec;
+import business.model.Dish;
+import business.model.Order;
+import business.model.Postcode;
+import general.model.JavaMessageCodec;
+import general.model.Message;
+import general.model.MessageCodec;
+import general.model.ObjectMessage;
+import general.model.QuantityMap;
+
+/**
+ * Benchmarks of encoding and decoding (MessageCodec.encode/decode) messages representative of
+ * those sent between business and clients, using Java serialisation, as used by single message
+ * connections, and the business codec. The number of bytes each codec writes for a message is
+ * printed when the trial is set up.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+	@Param({"java", "business"})
+	public String codec;
+	@Param({"GET_DISH_STOCK", "SUBMIT_LOGIN", "SUBMIT_ORDER", "UPDATE_DISH_STOCK",
+			"UPDATE_POSTCODES", "UPDATE_EXISTING_ORDERS"})
+	public String message;
+	@Param({"40"})
+	public int dishes;
+	@Param({"100"})
+	public int orders;
+	@Param({"4"})
+	public int dishesPerOrder;
+
+	private MessageCodec messageCodec;
+	private Message encodable;
+	private byte[] encoded;
+
+	/**
+	 * Create the message and encode it for decoding.
+	 *
+	 * @throws IOException Unable to encode message
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		messageCodec = "java".equals(codec) ? new JavaMessageCodec() : new BusinessMessageCodec();
+		encodable = createMessage(new BusinessFixture(dishes, 1, 0, dishesPerOrder));
+		encodable.setSender(new InetSocketAddress("127.0.0.1", 23534));
+		encoded = encode();
+		System.out.println(String.format("[BENCHMARK] : %s is %d bytes using %s codec", message,
+				encoded.length, codec));
+	}
+
+	@Benchmark
+	@Threads(1)
+	public byte[] encode() throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		messageCodec.encode(encodable, baos);
+		return baos.toByteArray();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Message decode() throws IOException {
+		return messageCodec.decode(new ByteArrayInputStream(encoded));
+	}
+
+	/**
+	 * Create the message being benchmarked from the objects of a model.
+	 *
+	 * @param fixture Fixture holding model
+	 * @return Created message
+	 */
+	private Message createMessage(BusinessFixture fixture) {
+		final ObjectMessage tx;
+		switch (message) {
+			case "GET_DISH_STOCK":
+				return new Message(Message.Command.GET_DISH_STOCK);
+			case "SUBMIT_LOGIN":
+				tx = new ObjectMessage(Message.Command.SUBMIT_LOGIN);
+				tx.addObject("CUSTOMER_LOGIN", fixture.customers(0).getLogin());
+				return tx;
+			case "SUBMIT_ORDER":
+				tx = new ObjectMessage(Message.Command.SUBMIT_ORDER);
+				tx.addObject("ORDER", fixture.createOrder(fixture.customers(0), dishesPerOrder));
+				return tx;
+			case "UPDATE_DISH_STOCK":
+				final QuantityMap<Dish> stock = new QuantityMap<>();
+				for (final Dish dish : fixture.getDishes()) {
+					stock.setQuantity(dish, stock.size() % 10);
+				}
+				tx = new ObjectMessage(Message.Command.UPDATE_DISH_STOCK);
+				tx.addObject("DISHES", stock);
+				return tx;
+			case "UPDATE_POSTCODES":
+				final Postcode[] postcodes = fixture.getModel().postcodes
+						.toArray(new Postcode[fixture.getModel().postcodes.size()]);
+				tx = new ObjectMessage(Message.Command.UPDATE_POSTCODES);
+				tx.addObject("POSTCODES", postcodes);
+				return tx;
+			case "UPDATE_EXISTING_ORDERS":
+				final Order[] existing = new Order[orders];
+				for (int i = 0; i < orders; i++) {
+					existing[i] = fixture.createOrder(fixture.customers(0), dishesPerOrder);
+				}
+				tx = new ObjectMessage(Message.Command.UPDATE_EXISTING_ORDERS);
+				tx.addObject("ORDERS", existing);
+				return tx;
+			default:
+				throw new IllegalArgumentException(
+						String.format("Unsupported message '%s'", message));
+		}
+	}
+
+}
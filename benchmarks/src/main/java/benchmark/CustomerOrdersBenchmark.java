@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.CustomerLogin;
+import business.model.Order;
+
+/**
+ * Benchmarks of finding the orders of a customer (BusinessModel.getOrdersFromCustomer), alone and
+ * whilst another thread adds and removes orders as the business would whilst taking and archiving
+ * orders.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerOrdersBenchmark {
+	@Param({"100", "10000"})
+	public int customers;
+	@Param({"10000", "100000"})
+	public int historicalOrders;
+	@Param({"100"})
+	public int dishes;
+	@Param({"3"})
+	public int dishesPerOrder;
+
+	private BusinessFixture fixture;
+	// Number of threads that have chosen their customers
+	private final AtomicInteger threads = new AtomicInteger();
+
+	/**
+	 * Populate a model, its orders spread evenly over customers.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new BusinessFixture(dishes, customers, historicalOrders, dishesPerOrder);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Set<Order> getOrdersFromCustomer(ThreadCustomers customers) {
+		return fixture.getModel().getOrdersFromCustomer(customers.next());
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Set<Order> getOrdersFromCustomerContended(ThreadCustomers customers) {
+		return fixture.getModel().getOrdersFromCustomer(customers.next());
+	}
+
+	@Benchmark
+	@Group("readWhileOrdering")
+	@GroupThreads(3)
+	public Set<Order> read(ThreadCustomers customers) {
+		return fixture.getModel().getOrdersFromCustomer(customers.next());
+	}
+
+	@Benchmark
+	@Group("readWhileOrdering")
+	@GroupThreads(1)
+	public boolean order(ThreadCustomers customers) {
+		final Order order = customers.nextOrder();
+		fixture.getModel().orders.add(order);
+		return fixture.getModel().orders.remove(order);
+	}
+
+	/**
+	 * Customers looked up by a single thread, in turn.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	@State(Scope.Thread)
+	public static class ThreadCustomers {
+		private CustomerOrdersBenchmark benchmark;
+		private int next;
+
+		/**
+		 * Start each thread at a different customer.
+		 *
+		 * @param benchmark Benchmark being run
+		 */
+		@Setup(Level.Trial)
+		public void setup(CustomerOrdersBenchmark benchmark) {
+			this.benchmark = benchmark;
+			this.next = benchmark.threads.getAndIncrement() * 31;
+		}
+
+		/**
+		 * @return Login of next customer
+		 */
+		private CustomerLogin next() {
+			return benchmark.fixture.customers(next++ & Integer.MAX_VALUE).getLogin();
+		}
+
+		/**
+		 * @return New order from next customer
+		 */
+		private Order nextOrder() {
+			final BusinessFixture fixture = benchmark.fixture;
+			return fixture.createOrder(fixture.customers(next++ & Integer.MAX_VALUE),
+					benchmark.dishesPerOrder);
+		}
+
+	}
+
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.Order;
+import general.utility.SerializationUtils;
+
+/**
+ * Benchmarks of serialising and deserialising (SerializationUtils.serialize/deserialize) a single
+ * order, as sent between clients and the business, and a whole business model, as stored by the
+ * business. Reported as the average time taken as a whole model can take seconds.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+	@Param({"100"})
+	public int dishes;
+	@Param({"1000"})
+	public int customers;
+	@Param({"1000", "100000"})
+	public int historicalOrders;
+	@Param({"3"})
+	public int dishesPerOrder;
+
+	private BusinessFixture fixture;
+	private Order order;
+	private byte[] serialisedOrder;
+	private byte[] serialisedModel;
+
+	/**
+	 * Populate a model and serialise it and one of its orders for deserialising.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new BusinessFixture(dishes, customers, historicalOrders, dishesPerOrder);
+		order = fixture.createOrder(fixture.customers(0), dishesPerOrder);
+		serialisedOrder = serialize(order);
+		serialisedModel = serialize(fixture.getModel());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public byte[] serializeOrder() {
+		return serialize(order);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Object deserializeOrder() {
+		return SerializationUtils.deserialize(new ByteArrayInputStream(serialisedOrder));
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public byte[] serializeOrderContended() {
+		return serialize(order);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public byte[] serializeModel() {
+		return serialize(fixture.getModel());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Object deserializeModel() {
+		return SerializationUtils.deserialize(new ByteArrayInputStream(serialisedModel));
+	}
+
+	/**
+	 * @param object Object to serialise
+	 * @return Bytes of serialised object
+	 */
+	private static byte[] serialize(Object object) {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SerializationUtils.serialize(object, baos);
+		return baos.toByteArray();
+	}
+
+}
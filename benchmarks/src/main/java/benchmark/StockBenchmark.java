@@ -0,0 +1,143 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.Dish;
+import business.model.Stock;
+import general.model.Quantity;
+import general.model.QuantityMap;
+
+/**
+ * Benchmarks of stock reservation (StockMap.reserveStock) and restocking checks
+ * (Stock.getDishToRestock), alone and whilst other threads use the same stock. With shared
+ * contention every thread uses the same dishes, with disjoint contention each thread uses its own
+ * dishes where there are enough. Every dish is below its restock level so restocking checks
+ * consider the ingredients of every dish.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockBenchmark {
+	@Param({"10", "1000"})
+	public int dishes;
+	@Param({"3"})
+	public int dishesPerOrder;
+	@Param({"shared", "disjoint"})
+	public String contention;
+
+	private BusinessFixture fixture;
+	// Number of threads that have chosen their dishes
+	private final AtomicInteger threads = new AtomicInteger();
+
+	/**
+	 * Populate a new model each iteration so reservations never exhaust stock.
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		fixture = new BusinessFixture(dishes, 1, 0, dishesPerOrder);
+		for (final Dish dish : fixture.getDishes()) {
+			fixture.requireRestock(dish);
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean reserveStock(ThreadDishes dishes) {
+		return getStock().dishes.reserveStock(dishes.order);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public boolean reserveStockContended(ThreadDishes dishes) {
+		return getStock().dishes.reserveStock(dishes.order);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Quantity<Dish> getDishToRestock(ThreadDishes dishes) {
+		return getStock().getDishToRestock(dishes.next());
+	}
+
+	@Benchmark
+	@Group("restockWhileReserving")
+	@GroupThreads(2)
+	public Quantity<Dish> restock(ThreadDishes dishes) {
+		return getStock().getDishToRestock(dishes.next());
+	}
+
+	@Benchmark
+	@Group("restockWhileReserving")
+	@GroupThreads(2)
+	public boolean reserve(ThreadDishes dishes) {
+		return getStock().dishes.reserveStock(dishes.order);
+	}
+
+	/**
+	 * @return Stock of model being benchmarked
+	 */
+	private Stock getStock() {
+		return fixture.getModel().stock;
+	}
+
+	/**
+	 * Dishes used by a single thread.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	@State(Scope.Thread)
+	public static class ThreadDishes {
+		private QuantityMap<Dish> order;
+		private Dish[] checked;
+		private int next = 0;
+
+		/**
+		 * Choose the dishes of the thread for this iteration.
+		 *
+		 * @param benchmark Benchmark being run
+		 */
+		@Setup(Level.Iteration)
+		public void setup(StockBenchmark benchmark) {
+			final int thread = benchmark.threads.getAndIncrement();
+			final boolean shared = "shared".equals(benchmark.contention);
+			order = new QuantityMap<>();
+			checked = new Dish[benchmark.dishesPerOrder];
+			for (int i = 0; i < benchmark.dishesPerOrder; i++) {
+				final int index = shared ? i : thread * benchmark.dishesPerOrder + i;
+				checked[i] = benchmark.fixture.dishes(index);
+				order.setQuantity(checked[i], 1);
+			}
+		}
+
+		/**
+		 * @return Next dish of the thread to check, in turn
+		 */
+		private Dish next() {
+			next = (next + 1) % checked.length;
+			return checked[next];
+		}
+
+	}
+
+}
@@ -0,0 +1,127 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.Dish;
+import business.model.StockLevels;
+import business.model.StockMap;
+import general.model.QuantityMap;
+
+/**
+ * Benchmarks of reserving and unreserving stock (StockMap.reserveStock/unreserveStock) with the
+ * per item locking of the stock map against locking the whole map for every change, as the stock
+ * map did previously. Each thread uses its own dishes, so no two threads change the same item; a
+ * listener does work comparable to journalling each change.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockContentionBenchmark {
+	// Most threads given their own dishes, further threads share dishes
+	private static final int MAX_THREADS = 64;
+
+	@Param({"item", "map"})
+	public String lock;
+	@Param({"3"})
+	public int dishesPerOrder;
+
+	private StockMap<Dish> dishes;
+	// Number of threads that have chosen their dishes
+	private final AtomicInteger threads = new AtomicInteger();
+
+	/**
+	 * Create a stock map holding the dishes of every thread.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		dishes = new StockMap<>();
+		dishes.addListener(new StockMap.StockListener<Dish>() {
+			@Override
+			public void stockChanged(Dish item, StockMap.Change change) {
+				final StockLevels levels = dishes.get(item);
+				String.format("%s %f %f", item.getName(), levels.getStock(),
+						levels.getReserved());
+			}
+		});
+		for (int i = 0; i < MAX_THREADS * dishesPerOrder; i++) {
+			dishes.add(new Dish("Dish " + i, "", 1.0, new QuantityMap<>()),
+					new StockLevels(1000, 0));
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean reserveAndUnreserve(ThreadOrder order) {
+		return change(order);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public boolean reserveAndUnreserveContended(ThreadOrder order) {
+		return change(order);
+	}
+
+	/**
+	 * Reserve and then unreserve the dishes of a thread, leaving stock as it was.
+	 *
+	 * @param order Dishes of thread
+	 * @return Whether stock was reserved and unreserved
+	 */
+	private boolean change(ThreadOrder order) {
+		if ("map".equals(lock)) {
+			synchronized (dishes) {
+				return dishes.reserveStock(order.dishes) && dishes.unreserveStock(order.dishes);
+			}
+		}
+		return dishes.reserveStock(order.dishes) && dishes.unreserveStock(order.dishes);
+	}
+
+	/**
+	 * Dishes used by a single thread.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	@State(Scope.Thread)
+	public static class ThreadOrder {
+		private QuantityMap<Dish> dishes;
+
+		/**
+		 * Choose the dishes of the thread.
+		 *
+		 * @param benchmark Benchmark being run
+		 */
+		@Setup(Level.Trial)
+		public void setup(StockContentionBenchmark benchmark) {
+			final int thread = benchmark.threads.getAndIncrement() % MAX_THREADS;
+			dishes = new QuantityMap<>();
+			int index = 0;
+			for (final Dish dish : benchmark.dishes.keySet()) {
+				if (index++ / benchmark.dishesPerOrder == thread) {
+					dishes.setQuantity(dish, 1);
+				}
+			}
+		}
+
+	}
+
+}
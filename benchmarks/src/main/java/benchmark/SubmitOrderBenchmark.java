@@ -0,0 +1,146 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import business.model.BusinessMessageHandler;
+import business.model.BusinessModel;
+import business.model.Order;
+import general.model.Message;
+import general.model.ObjectMessage;
+
+/**
+ * Benchmark of handling submitted orders (BusinessMessageHandler.handleSubmitOrder) as received
+ * from clients, validating each order, reserving its stock and adding it to the model. Replies
+ * are discarded rather than sent so only handling is measured. Every order is accepted; orders
+ * accumulate during an iteration so a new model is populated for each iteration.
+ *
+ * @author David Jones [dsj1n15]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubmitOrderBenchmark {
+	// Number of different orders each thread submits in turn
+	private static final int ORDERS_PER_THREAD = 64;
+
+	@Param({"10", "1000"})
+	public int dishes;
+	@Param({"100", "10000"})
+	public int customers;
+	@Param({"0", "100000"})
+	public int historicalOrders;
+	@Param({"3"})
+	public int dishesPerOrder;
+
+	private BusinessFixture fixture;
+	private ReplyDiscardingHandler handler;
+	// Number of threads that have created their orders
+	private final AtomicInteger threads = new AtomicInteger();
+
+	/**
+	 * Populate a new model each iteration.
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		fixture = new BusinessFixture(dishes, customers, historicalOrders, dishesPerOrder);
+		handler = new ReplyDiscardingHandler(fixture.getModel());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void submitOrder(ThreadOrders orders) {
+		handler.handle(orders.next());
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void submitOrderContended(ThreadOrders orders) {
+		handler.handle(orders.next());
+	}
+
+	/**
+	 * Orders submitted by a single thread, each from a different customer.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	@State(Scope.Thread)
+	public static class ThreadOrders {
+		private final Order[] orders = new Order[ORDERS_PER_THREAD];
+		private int next = 0;
+
+		/**
+		 * Create the orders of the thread for this iteration.
+		 *
+		 * @param benchmark Benchmark being run
+		 */
+		@Setup(Level.Iteration)
+		public void setup(SubmitOrderBenchmark benchmark) {
+			final int thread = benchmark.threads.getAndIncrement();
+			for (int i = 0; i < orders.length; i++) {
+				orders[i] = benchmark.fixture.createOrder(
+						benchmark.fixture.customers(thread * orders.length + i),
+						benchmark.dishesPerOrder);
+			}
+		}
+
+		/**
+		 * @return Message submitting a copy of the next order of the thread, in turn
+		 */
+		private Message next() {
+			next = (next + 1) % orders.length;
+			// Handling changes the order received so each message needs its own order
+			final ObjectMessage rx = new ObjectMessage(Message.Command.SUBMIT_ORDER);
+			rx.addObject("ORDER", new Order(orders[next]));
+			return rx;
+		}
+
+	}
+
+	/**
+	 * Extension of BusinessMessageHandler that handles messages when told rather than receiving
+	 * them, discarding any replies.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	static class ReplyDiscardingHandler extends BusinessMessageHandler {
+
+		/**
+		 * @param model Business model to interact with
+		 */
+		public ReplyDiscardingHandler(BusinessModel model) {
+			super(model);
+		}
+
+		/**
+		 * @param message Message to handle
+		 */
+		public void handle(Message message) {
+			handleMessage(message);
+		}
+
+		@Override
+		protected void reply(Message rx, Message tx) {
+			// Discard reply
+		}
+
+	}
+
+}
@@ -0,0 +1,272 @@
+package business.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import business.model.BusinessModel;
+import business.model.Clock;
+import business.model.Order;
+import business.model.OrderArchive;
+import business.model.OrderColumns;
+import general.gui.PagedListTableModel;
+import general.gui.ToolBar;
+import general.gui.ToolBarButton;
+import general.gui.View;
+import general.model.QuantityMap;
+import general.utility.Utilities;
+
+/**
+ * View of all archived orders, most recently archived first. The archive can hold far more orders
+ * than can be held at once so orders are read a page at a time as they are displayed. A summary of
+ * spending and popular dishes is read from the archive's columns, without reading any order.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class ArchivePanel extends JPanel implements View {
+	private static final long serialVersionUID = -3305948317264117617L;
+	// Period the most ordered dish is found within
+	private static final int POPULAR_DAYS = 7;
+	// Business model
+	private final BusinessModel model;
+	// Components
+	private final ToolBar tlbArchive;
+	private final ToolBarButton tbbRefresh;
+	private final JTable tblArchive;
+	private final ArchivedOrderTableModel model_tblArchive;
+	private final JLabel lblSummary;
+
+	/**
+	 * Create the panel.
+	 *
+	 * @param model Business model to use
+	 */
+	public ArchivePanel(BusinessModel model) {
+		this.model = model;
+
+		// Create tool bar
+		tlbArchive = new ToolBar(getBackground(), Color.BLACK, Color.WHITE);
+		tlbArchive.addSeparator();
+		final JLabel lblTitle = tlbArchive.addLabel("Archived Orders", SwingConstants.CENTER);
+		lblTitle.setFont(new Font("Lucida Grande", Font.BOLD, 13));
+		tlbArchive.addSeparator();
+		tbbRefresh = tlbArchive.addButton("Refresh",
+				Utilities.loadImage(new File("resources/imgRefresh.png")));
+		// Add bottom border to tool bar
+		tlbArchive.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.BLACK));
+
+		// Create table as content, not sorted as sorting would read every order
+		model_tblArchive = new ArchivedOrderTableModel();
+		tblArchive = new JTable(model_tblArchive);
+		tblArchive.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		tblArchive.setGridColor(Color.LIGHT_GRAY);
+		// Make scrollable
+		final JScrollPane scrArchive = new JScrollPane(tblArchive);
+		scrArchive.setBackground(this.getBackground());
+		scrArchive.setBorder(
+				BorderFactory.createCompoundBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5),
+						BorderFactory.createLineBorder(Color.BLACK)));
+
+		// Create summary below table
+		lblSummary = new JLabel(" ");
+		lblSummary.setBorder(BorderFactory.createEmptyBorder(0, 5, 5, 5));
+
+		// Format into single panel
+		final JPanel pnlArchive = new JPanel(new BorderLayout());
+		pnlArchive.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+		pnlArchive.add(tlbArchive, BorderLayout.NORTH);
+		pnlArchive.add(scrArchive, BorderLayout.CENTER);
+		pnlArchive.add(lblSummary, BorderLayout.SOUTH);
+		setLayout(new GridLayout(1, 1));
+		setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+		add(pnlArchive);
+
+		// Initialise event listeners
+		initEventListeners();
+	}
+
+	/**
+	 * Attach event listeners with relevant functionality to GUI components.
+	 */
+	private void initEventListeners() {
+		// [Refresh] - Listen for button presses
+		tbbRefresh.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+
+		// [Table Model] - Scale columns to the first page once it has been read
+		model_tblArchive.addTableModelListener(new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				if (e.getType() == TableModelEvent.UPDATE && e.getFirstRow() == 0
+						&& e.getLastRow() != Integer.MAX_VALUE) {
+					Utilities.scaleColumns(tblArchive, 0, e.getLastRow() + 1);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void initialise() {
+		refresh();
+		// Ensure initialising is on EDT
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				tblArchive.requestFocusInWindow();
+			}
+		});
+	}
+
+	@Override
+	public void refresh() {
+		// Ensure refresh is on EDT
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				// Orders are read again as they are displayed
+				model_tblArchive.refresh();
+			}
+		});
+		// Scan columns off the EDT as every archived order is visited
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final String summary = getSummary();
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						lblSummary.setText(summary);
+					}
+				});
+			}
+		}, "ArchiveSummary");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Summarise the archive using its columns: the amount spent by all customers and the dish
+	 * ordered most within the popular period.
+	 *
+	 * @return Summary of archive
+	 */
+	private String getSummary() {
+		final OrderArchive archive = model.getOrderArchive();
+		if (archive == null) {
+			return "Archive not started";
+		}
+		final OrderColumns columns = archive.getColumns();
+		// Total spending of every customer
+		final Map<String, Double> spending = columns.getCustomerSpending();
+		double spent = 0;
+		for (final Double amount : spending.values()) {
+			spent += amount;
+		}
+		// Find most ordered dish
+		final LocalDateTime now = Clock.get().now();
+		final QuantityMap<String> quantities =
+				columns.getDishQuantities(now.minusDays(POPULAR_DAYS), now);
+		String popular = null;
+		for (int i = quantities.nextIndex(-1); i >= 0; i = quantities.nextIndex(i)) {
+			if (popular == null || quantities.quantityAt(i) > quantities.getQuantity(popular)) {
+				popular = quantities.keyAt(i);
+			}
+		}
+		final String summary = String.format("%d customers spent £%.2f", spending.size(), spent);
+		if (popular == null) {
+			return summary;
+		}
+		return String.format("%s | Most ordered in last %d days: %s (%.0f)", summary,
+				POPULAR_DAYS, popular, quantities.getQuantity(popular));
+	}
+
+	/**
+	 * Source of pages of archived orders, holding no orders if the archive has not been started.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	class ArchivedOrderSource implements PagedListTableModel.PageSource<Order> {
+
+		@Override
+		public int getSize() {
+			final OrderArchive archive = model.getOrderArchive();
+			return (archive == null) ? 0 : archive.getOrderCount();
+		}
+
+		@Override
+		public List<Order> getPage(int offset, int limit) throws IOException {
+			final OrderArchive archive = model.getOrderArchive();
+			if (archive == null) {
+				throw new IOException("Archive not started");
+			}
+			return archive.getOrders(offset, limit);
+		}
+
+	}
+
+	/**
+	 * An extension of PagedListTableModel that displays archived orders.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	class ArchivedOrderTableModel extends PagedListTableModel<Order> {
+		private static final long serialVersionUID = 1624094180937426735L;
+		private final String[] COLUMN_TITLES = {"Date", "Customer", "Status", "Total Price (£)"};
+		private final Class<?>[] COLUMN_CLASSES =
+				{LocalDateTime.class, String.class, Order.Status.class, Double.class};
+
+		/**
+		 * Instantiate table model with default column titles and classes.
+		 */
+		public ArchivedOrderTableModel() {
+			super(new ArchivedOrderSource());
+			setColumnNames(COLUMN_TITLES);
+			setColumnClasses(COLUMN_CLASSES);
+		}
+
+		@Override
+		public Object getValueAt(int rowIndex, int columnIndex) {
+			final Order order = getObjectAt(rowIndex);
+			if (order == null) {
+				return null;
+			}
+			switch (columnIndex) {
+				case 0:
+					return order.getDate();
+				case 1:
+					return order.getCustomer().getLogin().getUsername();
+				case 2:
+					return order.getStatus();
+				case 3:
+					return order.getTotalPrice();
+				default:
+					return null;
+			}
+		}
+
+	}
+
+}
@@ -5,6 +5,7 @@ import java.awt.CardLayout;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashMap;
 
 import javax.swing.JFrame;
@@ -15,6 +16,7 @@ import javax.swing.SwingUtilities;
 import business.model.BusinessLocation;
 import business.model.BusinessModel;
 import business.model.DataPersistence;
+import business.model.Snapshotter;
 import general.gui.Header;
 import general.gui.NavigationBar;
 import general.gui.View;
@@ -31,9 +33,6 @@ import general.utility.Utilities;
  */
 public class BusinessApplication extends JFrame implements ViewHandler {
 	private static final long serialVersionUID = 329700147679546872L;
-	// Refresh rate of displayed data
-	private static final int REFRESH_RATE = 1000; // ms
-
 	// Location being served
 	private final BusinessLocation location;
 	// Data model being served
@@ -59,6 +58,10 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 
 		// Set model that GUI should serve
 		setModel();
+		// Replay changes made since the model was stored
+		model.startJournal(DataPersistence.getFile(location.getIdentifier() + "-WAL", "ssj"));
+		// Store model in the background whilst it runs
+		model.startSnapshots(DataPersistence.getDirectory(location.getIdentifier() + "-SS"));
 		// Start server in model
 		final boolean serverStarted = model.startComms(location.getAddress());
 		// Stop any influence of model and GUI construction if communications
@@ -73,9 +76,12 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 			throw new RuntimeException("Unable to host server");
 		}
 
+		// Move completed orders out of the model into the archive
+		model.startArchive(DataPersistence.getDirectory(location.getIdentifier() + "-OA"));
+
 		// Initialise GUI
+		// Views update themselves from changes published by the model
 		initGUI();
-		createViewRefresh();
 		// Handle model shutdown
 		addModelShutdownHandler();
 		// Resume model behaviour
@@ -88,11 +94,23 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 	}
 
 	/**
-	 * Check if a model exists using the persistence layer. If it does, attempt to load it. If there
-	 * is a problem throw an unchecked exception to indicate that there is a problem with the
-	 * existing model. If no model exists a new model can be created safely.
+	 * Check if a model exists using the persistence layer. If it does, attempt to load it,
+	 * preferring the latest snapshot over a model stored as a single object. If there is a problem
+	 * throw an unchecked exception to indicate that there is a problem with the existing model. If
+	 * no model exists a new model can be created safely.
 	 */
 	private void setModel() {
+		// Check for snapshot of model
+		try {
+			model = Snapshotter.load(DataPersistence.getDirectory(location.getIdentifier() + "-SS"));
+			if (model != null) {
+				System.out.println("[APPLICATION] : Using existing snapshot...");
+				return;
+			}
+		} catch (IOException e) {
+			System.err.println("[APPLICATION] : Unable to load snapshot: " + e.getMessage());
+			showLoadError();
+		}
 		// Check for model from persistence
 		Object stored;
 		try {
@@ -101,13 +119,7 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 				System.out.println("[APPLICATION] : Using existing model...");
 				model = (BusinessModel) stored;
 			} else {
-				// Throw exception to halt construction
-				JOptionPane.showMessageDialog(null,
-						"Error Loading Model: " + "The stored model may be corrupted.\r\n"
-								+ "The program will now exit without changing the stored file.\r\n"
-								+ "Please manually delete the stored model to construct a new model.",
-						"Persistence Error", JOptionPane.ERROR_MESSAGE);
-				throw new RuntimeException("Unable to load model");
+				showLoadError();
 			}
 		} catch (FileNotFoundException e) {
 			// No model exists so create a new model
@@ -116,6 +128,18 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 		}
 	}
 
+	/**
+	 * Show that the stored model could not be loaded and throw an exception to halt construction.
+	 */
+	private void showLoadError() {
+		JOptionPane.showMessageDialog(null,
+				"Error Loading Model: " + "The stored model may be corrupted.\r\n"
+						+ "The program will now exit without changing the stored files.\r\n"
+						+ "Please manually delete the stored model to construct a new model.",
+				"Persistence Error", JOptionPane.ERROR_MESSAGE);
+		throw new RuntimeException("Unable to load model");
+	}
+
 	/**
 	 * Ensure behaviour of model on shutdown is suspended safely and data changes persist.
 	 */
@@ -126,12 +150,11 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 				// Let model safely suspend its state. It is likely threads already interrupted
 				// by shutdown but explicit call forces wait so model is in final state before save.
 				model.suspend();
-				// Save model using data persistence class
-				try {
-					System.out.println("[APPLICATION] : Storing model...");
-					DataPersistence.store(location.getIdentifier() + "-DM", model);
+				// Store final snapshot, the journal holds any changes not stored
+				System.out.println("[APPLICATION] : Storing model...");
+				if (model.storeSnapshot()) {
 					System.out.println("[APPLICATION] : Model stored");
-				} catch (FileNotFoundException e) {
+				} else {
 					System.err.println("[APPLICATION] : Unable to store model");
 				}
 			}
@@ -171,6 +194,8 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 		addView(pnlCustomers, "Customers", navigationBar);
 		final JPanel pnlOrders = new OrdersPanel(model);
 		addView(pnlOrders, "Orders", navigationBar);
+		final JPanel pnlArchive = new ArchivePanel(model);
+		addView(pnlArchive, "Archive", navigationBar);
 		final JPanel pnlKitchenStaff = new KitchenStaffPanel(model);
 		addView(pnlKitchenStaff, "Kitchen Staff", navigationBar);
 		final JPanel pnlDrones = new DronesPanel(model);
@@ -187,28 +212,6 @@ public class BusinessApplication extends JFrame implements ViewHandler {
 		});
 	}
 
-	/**
-	 * Create a thread that calls refresh on the current view every time a set refresh rate expires.
-	 */
-	private void createViewRefresh() {
-		// Create view refresh
-		new Thread() {
-			@Override
-			public void run() {
-				while (true) {
-					// Wait for given refresh rate
-					try {
-						Thread.sleep(REFRESH_RATE);
-					} catch(InterruptedException e) {
-						break;
-					}
-					// Refresh current view, note that this call is not on the EDT
-					refreshView(getView());
-				}
-			}
-		}.start();
-	}
-
 	@Override
 	public boolean addView(Component component, String name, NavigationBar[] navigationBars) {
 		// Do not add if not a view or view of same name exists
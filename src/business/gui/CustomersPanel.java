@@ -19,6 +19,7 @@ import javax.swing.SwingUtilities;
 import business.model.BusinessModel;
 import business.model.Customer;
 import business.model.CustomerLogin;
+import business.model.ModelEventBus;
 import business.model.Postcode;
 import general.gui.ListTableModel;
 import general.gui.RecordPanel;
@@ -167,6 +168,15 @@ public class CustomersPanel extends RecordPanel<Customer> {
 
 		// Finalise
 		setEditingMode(RecordEditor.EditingMode.VIEW);
+
+		// Update rows of customers as they change
+		model.getEventBus().subscribe(ModelEventBus.CUSTOMER_CHANGED,
+				new ModelEventBus.Subscriber<Customer>() {
+					@Override
+					public void changed(Customer subject) {
+						recordChanged(subject);
+					}
+				});
 	}
 
 	@Override
@@ -205,6 +215,16 @@ public class CustomersPanel extends RecordPanel<Customer> {
 		});
 	}
 
+	@Override
+	protected Customer getCurrentRecord(Customer key) {
+		final Customer storedRecord;
+		synchronized (model.customers) {
+			storedRecord = model.customers.get(key.getLogin());
+		}
+		// Customers are only changed by replacement so can be copied without locking
+		return (storedRecord == null) ? null : (Customer) SerializationUtils.deepClone(storedRecord);
+	}
+
 	@Override
 	public void loadRecord(Customer record) {
 		final CustomerLogin login = record.getLogin();
@@ -262,6 +282,9 @@ public class CustomersPanel extends RecordPanel<Customer> {
 			synchronized (model.customers) {
 				model.customers.remove(record.getLogin());
 			}
+			if (model.getJournal() != null) {
+				model.getJournal().customerRemoved(record.getLogin());
+			}
 			return true;
 		}
 		return false;
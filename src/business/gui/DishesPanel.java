@@ -37,15 +37,15 @@ import javax.swing.border.TitledBorder;
 import business.model.BusinessModel;
 import business.model.Dish;
 import business.model.Ingredient;
+import business.model.ModelEventBus;
 import business.model.StockItem;
 import business.model.StockLevels;
-import business.model.StockMap;
+import business.model.VersionedList;
 import general.gui.ListTableModel;
 import general.gui.RecordPanel;
 import general.model.Quantity;
 import general.model.QuantityMap;
 import general.utility.ErrorBuilder;
-import general.utility.SerializationUtils;
 import general.utility.Utilities;
 
 /**
@@ -57,6 +57,8 @@ public class DishesPanel extends RecordPanel<StockItem<Dish>> {
 	private static final long serialVersionUID = -6211990855581822837L;
 	// Business model
 	private final BusinessModel model;
+	// Version of dishes shown in table, only accessed on EDT
+	private long shownVersion = -1;
 	// Record objects
 	private JTextField txtName;
 	private JTextArea txtDescription;
@@ -264,6 +266,15 @@ public class DishesPanel extends RecordPanel<StockItem<Dish>> {
 		// Finalise
 		setEditingMode(RecordEditor.EditingMode.VIEW);
 
+		// Update rows of dishes as they change
+		model.getEventBus().subscribe(ModelEventBus.DISH_STOCK_CHANGED,
+				new ModelEventBus.Subscriber<Dish>() {
+					@Override
+					public void changed(Dish subject) {
+						recordChanged(new StockItem<Dish>(subject, null));
+					}
+				});
+
 		// [Ingredient ComboBox] - Display current quantity on selection
 		cboIngredient.addActionListener(new ActionListener() {
 			@Override
@@ -356,23 +367,27 @@ public class DishesPanel extends RecordPanel<StockItem<Dish>> {
 	public void refresh() {
 		// Ensure refresh is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
-			@SuppressWarnings("unchecked")
 			@Override
 			public void run() {
-				// Create local copy so table not backed by map ensuring thread
-				// safety. This is done as an alternative to locking dishes
-				// whilst refreshing due to the reduced time the lock is required.
-				StockMap<Dish> dishes;
-				synchronized (model.stock.dishes) {
-					// Cast safe due to known functionality of deep clone
-					dishes = (StockMap<Dish>) SerializationUtils.deepClone(model.stock.dishes);
+				// Use copies so table not backed by model ensuring thread safety, copies are
+				// only made again once dishes have changed so the lock is rarely required
+				final VersionedList<StockItem<Dish>> dishes = model.getDishesView();
+				if (dishes.getVersion() == shownVersion) {
+					// Table already shows the current version
+					return;
 				}
-				// Refresh using local copy
-				refreshTable(dishes.getList());
+				shownVersion = dishes.getVersion();
+				// Refresh using copies
+				refreshTable(dishes);
 			}
 		});
 	}
 
+	@Override
+	protected StockItem<Dish> getCurrentRecord(StockItem<Dish> key) {
+		return model.stock.dishes.getCopy(key.getItem());
+	}
+
 	@Override
 	public void loadRecord(StockItem<Dish> record) {
 		if (record != null) {
@@ -502,6 +517,7 @@ public class DishesPanel extends RecordPanel<StockItem<Dish>> {
 						new StockItem<>(storedEntry.getKey(), storedEntry.getValue());
 				// Do updates
 				updateRecord(storedRecord);
+				model.stock.dishes.notifyChanged(storedRecord.getItem());
 				return true;
 			}
 		}
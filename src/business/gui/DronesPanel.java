@@ -7,8 +7,8 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.JButton;
@@ -25,11 +25,11 @@ import javax.swing.SwingUtilities;
 
 import business.model.BusinessModel;
 import business.model.Drone;
+import business.model.ModelEventBus;
 import business.model.Worker;
 import general.gui.ListTableModel;
 import general.gui.RecordPanel;
 import general.utility.ErrorBuilder;
-import general.utility.SerializationUtils;
 import general.utility.Utilities;
 
 /**
@@ -44,6 +44,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 	// Record objects
 	private final JTextField txtIdentifier;
 	private final JSpinner nudSpeed;
+	private final JSpinner nudCapacity;
 	private final JLabel lblAction;
 	private final JScrollPane scrAction;
 	private final JTextArea txtAction;
@@ -62,9 +63,9 @@ public class DronesPanel extends RecordPanel<Drone> {
 		// [Record Panel] - Set layout as grid bag
 		final GridBagLayout gbl_pnlRecord = new GridBagLayout();
 		gbl_pnlRecord.columnWidths = new int[] {0, 0};
-		gbl_pnlRecord.rowHeights = new int[] {0, 0, 0, 0, 0, 0};
+		gbl_pnlRecord.rowHeights = new int[] {0, 0, 0, 0, 0, 0, 0};
 		gbl_pnlRecord.columnWeights = new double[] {0.0, 1.0};
-		gbl_pnlRecord.rowWeights = new double[] {0.0, 0.0, 0.0, 0.0, 1.0};
+		gbl_pnlRecord.rowWeights = new double[] {0.0, 0.0, 0.0, 0.0, 0.0, 1.0};
 		pnlRecord.setLayout(gbl_pnlRecord);
 
 		// [Record Panel] <- 'Identifier Field' Label
@@ -102,13 +103,30 @@ public class DronesPanel extends RecordPanel<Drone> {
 		gbc_nudSpeed.gridy = 1;
 		pnlRecord.add(nudSpeed, gbc_nudSpeed);
 
+		// [Record Panel] <- 'Capacity Field' Label
+		final JLabel lblCapacity = new JLabel("Capacity (dishes):");
+		final GridBagConstraints gbc_lblCapacity = new GridBagConstraints();
+		gbc_lblCapacity.anchor = GridBagConstraints.EAST;
+		gbc_lblCapacity.insets = new Insets(0, 5, 5, 5);
+		gbc_lblCapacity.gridx = 0;
+		gbc_lblCapacity.gridy = 2;
+		pnlRecord.add(lblCapacity, gbc_lblCapacity);
+		// [Record Panel] <- 'Capacity Field' Spinner
+		nudCapacity = new JSpinner(new SpinnerNumberModel(Drone.DEFAULT_CAPACITY, 0, 1000, 1));
+		final GridBagConstraints gbc_nudCapacity = new GridBagConstraints();
+		gbc_nudCapacity.insets = new Insets(0, 0, 5, 5);
+		gbc_nudCapacity.fill = GridBagConstraints.HORIZONTAL;
+		gbc_nudCapacity.gridx = 1;
+		gbc_nudCapacity.gridy = 2;
+		pnlRecord.add(nudCapacity, gbc_nudCapacity);
+
 		// [Record Panel] <- 'Current Action' Label
 		lblAction = new JLabel("Action:");
 		final GridBagConstraints gbc_lblAction = new GridBagConstraints();
 		gbc_lblAction.anchor = GridBagConstraints.NORTHEAST;
 		gbc_lblAction.insets = new Insets(0, 5, 5, 5);
 		gbc_lblAction.gridx = 0;
-		gbc_lblAction.gridy = 2;
+		gbc_lblAction.gridy = 3;
 		pnlRecord.add(lblAction, gbc_lblAction);
 		// [Record Panel] <- 'Current Action' TextArea
 		txtAction = new JTextArea();
@@ -122,7 +140,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 		gbc_scrAction.insets = new Insets(0, 5, 5, 10);
 		gbc_scrAction.fill = GridBagConstraints.BOTH;
 		gbc_scrAction.gridx = 1;
-		gbc_scrAction.gridy = 2;
+		gbc_scrAction.gridy = 3;
 		pnlRecord.add(scrAction, gbc_scrAction);
 		scrAction.setPreferredSize(new Dimension(0, 50));
 
@@ -133,7 +151,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 		gbc_btnWorking.fill = GridBagConstraints.HORIZONTAL;
 		gbc_btnWorking.insets = new Insets(0, 5, 5, 5);
 		gbc_btnWorking.gridx = 0;
-		gbc_btnWorking.gridy = 3;
+		gbc_btnWorking.gridy = 4;
 		pnlRecord.add(btnWorking, gbc_btnWorking);
 
 		// Load relevant table model
@@ -145,6 +163,17 @@ public class DronesPanel extends RecordPanel<Drone> {
 		// Finalise
 		setEditingMode(RecordEditor.EditingMode.VIEW);
 
+		// Update rows of drones as they change
+		model.getEventBus().subscribe(ModelEventBus.WORKER_ACTION_CHANGED,
+				new ModelEventBus.Subscriber<Worker>() {
+					@Override
+					public void changed(Worker subject) {
+						if (subject instanceof Drone) {
+							recordChanged((Drone) subject);
+						}
+					}
+				});
+
 		// [Working Button] <- Toggle whether worker is working
 		btnWorking.addActionListener(new ActionListener() {
 			@Override
@@ -236,27 +265,36 @@ public class DronesPanel extends RecordPanel<Drone> {
 	public void refresh() {
 		// Ensure refresh is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
-			@SuppressWarnings("unchecked")
 			@Override
 			public void run() {
-				// Create local copy so table not backed by map ensuring thread
-				// safety. This is done as an alternative to locking kitchen staff
+				// Create local copy so table not backed by set ensuring thread
+				// safety. This is done as an alternative to locking drones
 				// whilst refreshing due to the reduced time the lock is required.
-				Collection<Drone> drones;
+				final List<Drone> drones = new ArrayList<>();
 				synchronized (model.drones) {
-					// Cast safe due to known functionality of deep clone
-					drones = (Collection<Drone>) SerializationUtils.deepClone(model.drones);
+					for (final Drone drone : model.drones) {
+						drones.add(new Drone(drone));
+					}
 				}
 				// Refresh using local copy
-				refreshTable(new ArrayList<>(drones));
+				refreshTable(drones);
 			}
 		});
 	}
 
+	@Override
+	protected Drone getCurrentRecord(Drone key) {
+		synchronized (model.drones) {
+			final Drone storedRecord = Utilities.getCollectionItem(model.drones, key, Drone.class);
+			return (storedRecord == null) ? null : new Drone(storedRecord);
+		}
+	}
+
 	@Override
 	public void loadRecord(Drone record) {
 		txtIdentifier.setText(record.getIdentifier());
 		nudSpeed.setValue(record.getSpeed());
+		nudCapacity.setValue(record.getCapacity());
 		txtAction.setText(record.getAction());
 		btnWorking.setVisible(true);
 		switch (record.getStatus()) {
@@ -281,6 +319,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 	public void clearRecord() {
 		txtIdentifier.setText(null);
 		nudSpeed.setValue(0.0);
+		nudCapacity.setValue(Drone.DEFAULT_CAPACITY);
 		txtAction.setText(null);
 		btnWorking.setVisible(false);
 	}
@@ -295,6 +334,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 	@Override
 	public void updateRecord(Drone record) {
 		record.setSpeed((double) nudSpeed.getValue());
+		record.setCapacity((int) nudCapacity.getValue());
 	}
 
 	@Override
@@ -310,6 +350,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 			if (!eb.isError()) {
 				// Store record in relevant data structure
 				model.drones.add(drone);
+				model.workerAdded(drone);
 				return true;
 			}
 		}
@@ -374,6 +415,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 		switch (editingMode) {
 			case NEW:
 				nudSpeed.setEnabled(true);
+				nudCapacity.setEnabled(true);
 				lblAction.setVisible(false);
 				scrAction.setVisible(false);
 				btnWorking.setVisible(false);
@@ -384,6 +426,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 				break;
 			case EDIT:
 				nudSpeed.setEnabled(true);
+				nudCapacity.setEnabled(true);
 				lblAction.setVisible(false);
 				scrAction.setVisible(false);
 				btnWorking.setVisible(false);
@@ -391,6 +434,7 @@ public class DronesPanel extends RecordPanel<Drone> {
 				break;
 			case VIEW:
 				nudSpeed.setEnabled(false);
+				nudCapacity.setEnabled(false);
 				lblAction.setVisible(true);
 				scrAction.setVisible(true);
 				break;
@@ -407,9 +451,9 @@ public class DronesPanel extends RecordPanel<Drone> {
 	class DroneTableModel extends ListTableModel<Drone> {
 		private static final long serialVersionUID = -528707502227057343L;
 		private final String[] COLUMN_TITLES =
-				{"Identifier", "Speed (km/h)", "Current Action", "Status"};
+				{"Identifier", "Speed (km/h)", "Capacity", "Current Action", "Status"};
 		private final Class<?>[] COLUMN_CLASSES =
-				{String.class, Double.class, String.class, Worker.Status.class};
+				{String.class, Double.class, Integer.class, String.class, Worker.Status.class};
 
 		/**
 		 * Instantiate table model with default column titles and classes.
@@ -431,8 +475,10 @@ public class DronesPanel extends RecordPanel<Drone> {
 				case 1:
 					return drone.getSpeed();
 				case 2:
-					return drone.getAction();
+					return drone.getCapacity();
 				case 3:
+					return drone.getAction();
+				case 4:
 					return drone.getStatus();
 				default:
 					return null;
@@ -18,14 +18,14 @@ import javax.swing.SwingUtilities;
 import business.model.BusinessModel;
 import business.model.Dish;
 import business.model.Ingredient;
+import business.model.ModelEventBus;
 import business.model.StockItem;
 import business.model.StockLevels;
-import business.model.StockMap;
 import business.model.Supplier;
+import business.model.VersionedList;
 import general.gui.ListTableModel;
 import general.gui.RecordPanel;
 import general.utility.ErrorBuilder;
-import general.utility.SerializationUtils;
 import general.utility.Utilities;
 
 /**
@@ -37,6 +37,8 @@ public class IngredientsPanel extends RecordPanel<StockItem<Ingredient>> {
 	private static final long serialVersionUID = 5163613751286161072L;
 	// Business model
 	private final BusinessModel model;
+	// Version of ingredients shown in table, only accessed on EDT
+	private long shownVersion = -1;
 	// Record objects
 	private final JTextField txtName;
 	private final JComboBox<Ingredient.Unit> cboUnit;
@@ -135,6 +137,15 @@ public class IngredientsPanel extends RecordPanel<StockItem<Ingredient>> {
 
 		// Finalise
 		setEditingMode(RecordEditor.EditingMode.VIEW);
+
+		// Update rows of ingredients as they change
+		model.getEventBus().subscribe(ModelEventBus.INGREDIENT_STOCK_CHANGED,
+				new ModelEventBus.Subscriber<Ingredient>() {
+					@Override
+					public void changed(Ingredient subject) {
+						recordChanged(new StockItem<Ingredient>(subject, null));
+					}
+				});
 	}
 
 	/**
@@ -179,24 +190,27 @@ public class IngredientsPanel extends RecordPanel<StockItem<Ingredient>> {
 	public void refresh() {
 		// Ensure refresh is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
-			@SuppressWarnings("unchecked")
 			@Override
 			public void run() {
-				// Create local copy so table not backed by map ensuring thread
-				// safety. This is done as an alternative to locking ingredients
-				// whilst refreshing due to the reduced time the lock is required.
-				StockMap<Ingredient> ingredients;
-				synchronized (model.stock.ingredients) {
-					// Cast safe due to known functionality of deep clone
-					ingredients = (StockMap<Ingredient>) SerializationUtils
-							.deepClone(model.stock.ingredients);
+				// Use copies so table not backed by model ensuring thread safety, copies are
+				// only made again once ingredients have changed so the lock is rarely required
+				final VersionedList<StockItem<Ingredient>> ingredients = model.getIngredientsView();
+				if (ingredients.getVersion() == shownVersion) {
+					// Table already shows the current version
+					return;
 				}
-				// Refresh using local copy
-				refreshTable(ingredients.getList());
+				shownVersion = ingredients.getVersion();
+				// Refresh using copies
+				refreshTable(ingredients);
 			}
 		});
 	}
 
+	@Override
+	protected StockItem<Ingredient> getCurrentRecord(StockItem<Ingredient> key) {
+		return model.stock.ingredients.getCopy(key.getItem());
+	}
+
 	@Override
 	public void loadRecord(StockItem<Ingredient> record) {
 		if (record != null) {
@@ -312,6 +326,7 @@ public class IngredientsPanel extends RecordPanel<StockItem<Ingredient>> {
 						new StockItem<>(storedEntry.getKey(), storedEntry.getValue());
 				// Do updates
 				updateRecord(storedRecord);
+				model.stock.ingredients.notifyChanged(storedRecord.getItem());
 				return true;
 			}
 		}
@@ -1,5 +1,6 @@
 package business.gui;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
@@ -7,24 +8,32 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTable;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.border.TitledBorder;
 
 import business.model.BusinessModel;
+import business.model.Dish;
 import business.model.KitchenStaffMember;
+import business.model.ModelEventBus;
+import business.model.PreparationQueue;
 import business.model.Worker;
 import general.gui.ListTableModel;
 import general.gui.RecordPanel;
 import general.utility.ErrorBuilder;
-import general.utility.SerializationUtils;
 import general.utility.Utilities;
 
 /**
@@ -42,6 +51,10 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 	private final JScrollPane scrAction;
 	private final JTextArea txtAction;
 	private final JButton btnWorking;
+	private final JPanel pnlQueue;
+	private final PreparationJobTableModel model_tblQueue;
+	// Whether the preparation queue is waiting to be refreshed
+	private final AtomicBoolean queueRefreshDue = new AtomicBoolean();
 
 	/**
 	 * Create the panel.
@@ -113,6 +126,46 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 		gbc_btnWorking.gridy = 2;
 		pnlRecord.add(btnWorking, gbc_btnWorking);
 
+		// [Record Panel] <- 'Preparation Queue' Panel
+		pnlQueue = new JPanel();
+		final GridBagConstraints gbc_pnlQueue = new GridBagConstraints();
+		gbc_pnlQueue.gridwidth = 2;
+		gbc_pnlQueue.insets = new Insets(0, 5, 5, 5);
+		gbc_pnlQueue.fill = GridBagConstraints.BOTH;
+		gbc_pnlQueue.gridx = 0;
+		gbc_pnlQueue.gridy = 3;
+		pnlRecord.add(pnlQueue, gbc_pnlQueue);
+		final GridBagLayout gbl_pnlQueue = new GridBagLayout();
+		gbl_pnlQueue.columnWidths = new int[] {0};
+		gbl_pnlQueue.rowHeights = new int[] {0, 0};
+		gbl_pnlQueue.columnWeights = new double[] {1.0};
+		gbl_pnlQueue.rowWeights = new double[] {0.0, Double.MIN_VALUE};
+		pnlQueue.setLayout(gbl_pnlQueue);
+		pnlQueue.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),
+				"Preparation Queue", TitledBorder.LEADING, TitledBorder.TOP));
+
+		// [Queue Panel] <- 'Jobs' Table
+		final JTable tblQueue = new JTable();
+		tblQueue.setEnabled(false);
+		tblQueue.setGridColor(Color.LIGHT_GRAY);
+		model_tblQueue = new PreparationJobTableModel();
+		tblQueue.setModel(model_tblQueue);
+		for (int i = 1; i < 5; i++) {
+			Utilities.setColumnStringFormat(tblQueue, i, "%.2f", SwingConstants.RIGHT);
+		}
+		// Make scrollable
+		final JScrollPane scrQueue = new JScrollPane(tblQueue);
+		scrQueue.setBackground(this.getBackground());
+		final GridBagConstraints gbc_scrQueue = new GridBagConstraints();
+		gbc_scrQueue.ipady = 100;
+		gbc_scrQueue.fill = GridBagConstraints.BOTH;
+		gbc_scrQueue.insets = new Insets(5, 5, 5, 5);
+		gbc_scrQueue.gridx = 0;
+		gbc_scrQueue.gridy = 0;
+		pnlQueue.add(scrQueue, gbc_scrQueue);
+		scrQueue.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
+		scrQueue.setPreferredSize(new Dimension(0, 0));
+
 		// Disable Creation/Editing
 		setEditEnabled(false);
 
@@ -124,6 +177,26 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 		// Finalise
 		setEditingMode(RecordEditor.EditingMode.VIEW);
 
+		// Update rows of kitchen staff as they change
+		model.getEventBus().subscribe(ModelEventBus.WORKER_ACTION_CHANGED,
+				new ModelEventBus.Subscriber<Worker>() {
+					@Override
+					public void changed(Worker subject) {
+						if (subject instanceof KitchenStaffMember) {
+							recordChanged((KitchenStaffMember) subject);
+							queueChanged();
+						}
+					}
+				});
+		// Dishes are queued for preparation as their stock changes
+		model.getEventBus().subscribe(ModelEventBus.DISH_STOCK_CHANGED,
+				new ModelEventBus.Subscriber<Dish>() {
+					@Override
+					public void changed(Dish subject) {
+						queueChanged();
+					}
+				});
+
 		// [Working Button] <- Toggle whether worker is working
 		btnWorking.addActionListener(new ActionListener() {
 			@Override
@@ -192,24 +265,51 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 	public void refresh() {
 		// Ensure refresh is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
-			@SuppressWarnings("unchecked")
 			@Override
 			public void run() {
-				// Create local copy so table not backed by map ensuring thread
+				// Create local copy so table not backed by set ensuring thread
 				// safety. This is done as an alternative to locking kitchen staff
 				// whilst refreshing due to the reduced time the lock is required.
-				Collection<KitchenStaffMember> kitchenStaff;
+				final List<KitchenStaffMember> kitchenStaff = new ArrayList<>();
 				synchronized (model.kitchenStaff) {
-					// Cast safe due to known functionality of deep clone
-					kitchenStaff = (Collection<KitchenStaffMember>) SerializationUtils
-							.deepClone(model.kitchenStaff);
+					for (final KitchenStaffMember kitchenStaffMember : model.kitchenStaff) {
+						kitchenStaff.add(new KitchenStaffMember(kitchenStaffMember));
+					}
 				}
 				// Refresh using local copy
-				refreshTable(new ArrayList<>(kitchenStaff));
+				refreshTable(kitchenStaff);
+				// Jobs do not change once queued so need not be copied
+				model_tblQueue.setList(model.stock.getScheduler().getJobs());
 			}
 		});
 	}
 
+	/**
+	 * Queue the preparation queue to be refreshed on the EDT. Can be called from any thread;
+	 * changes made in quick succession are refreshed together.
+	 */
+	private void queueChanged() {
+		if (queueRefreshDue.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					queueRefreshDue.set(false);
+					// Jobs do not change once queued so need not be copied
+					model_tblQueue.setList(model.stock.getScheduler().getJobs());
+				}
+			});
+		}
+	}
+
+	@Override
+	protected KitchenStaffMember getCurrentRecord(KitchenStaffMember key) {
+		synchronized (model.kitchenStaff) {
+			final KitchenStaffMember storedRecord = Utilities.getCollectionItem(model.kitchenStaff,
+					key, KitchenStaffMember.class);
+			return (storedRecord == null) ? null : new KitchenStaffMember(storedRecord);
+		}
+	}
+
 	@Override
 	public void loadRecord(KitchenStaffMember record) {
 		txtName.setText(record.getIdentifier());
@@ -265,6 +365,7 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 			if (!eb.isError()) {
 				// Store record in relevant data structure
 				model.kitchenStaff.add(kitchenStaffMember);
+				model.workerAdded(kitchenStaffMember);
 				return true;
 			}
 		}
@@ -312,6 +413,7 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 				txtName.setEnabled(true);
 				lblAction.setVisible(false);
 				scrAction.setVisible(false);
+				pnlQueue.setVisible(false);
 				txtName.requestFocusInWindow();
 				clearRecord();
 				break;
@@ -319,6 +421,7 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 				txtName.setEnabled(false);
 				lblAction.setVisible(true);
 				scrAction.setVisible(true);
+				pnlQueue.setVisible(true);
 				break;
 			default:
 				break;
@@ -362,4 +465,47 @@ public class KitchenStaffPanel extends RecordPanel<KitchenStaffMember> {
 		}
 	}
 
+	/**
+	 * An extension of ListTableModel that displays queued preparation jobs in rank order.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	class PreparationJobTableModel extends ListTableModel<PreparationQueue.Job> {
+		private static final long serialVersionUID = 3094766128251306537L;
+		private final String[] COLUMN_TITLES =
+				{"Dish", "Priority", "Deficit", "Reserved", "Demand"};
+		private final Class<?>[] COLUMN_CLASSES =
+				{String.class, Double.class, Double.class, Double.class, Double.class};
+
+		/**
+		 * Instantiate table model with default column titles and classes.
+		 */
+		public PreparationJobTableModel() {
+			setColumnNames(COLUMN_TITLES);
+			setColumnClasses(COLUMN_CLASSES);
+		}
+
+		@Override
+		public Object getValueAt(int rowIndex, int columnIndex) {
+			final PreparationQueue.Job job = getObjectAt(rowIndex);
+			if (job == null) {
+				return null;
+			}
+			switch (columnIndex) {
+				case 0:
+					return job.getDish().getName();
+				case 1:
+					return job.getPriority();
+				case 2:
+					return job.getDeficit();
+				case 3:
+					return job.getReserved();
+				case 4:
+					return job.getDemand();
+				default:
+					return null;
+			}
+		}
+	}
+
 }
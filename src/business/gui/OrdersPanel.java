@@ -9,8 +9,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
 
 import javax.swing.BorderFactory;
@@ -27,13 +25,14 @@ import javax.swing.border.TitledBorder;
 
 import business.model.BusinessModel;
 import business.model.Dish;
+import business.model.ModelEventBus;
 import business.model.Order;
+import business.model.VersionedList;
 import general.gui.ListTableModel;
 import general.gui.RecordPanel;
 import general.gui.ToolBarButton;
 import general.model.Quantity;
 import general.utility.ErrorBuilder;
-import general.utility.SerializationUtils;
 import general.utility.Utilities;
 
 /**
@@ -45,6 +44,8 @@ public class OrdersPanel extends RecordPanel<Order> {
 	private static final long serialVersionUID = 8046768538848728633L;
 	// Business model
 	private final BusinessModel model;
+	// Version of orders shown in table, only accessed on EDT
+	private long shownVersion = -1;
 	// Record objects
 	private final ToolBarButton tbbDeleteCompleted;
 	private final JTextField txtDate;
@@ -219,6 +220,15 @@ public class OrdersPanel extends RecordPanel<Order> {
 		// Finalise
 		setEditingMode(RecordEditor.EditingMode.VIEW);
 
+		// Update rows of orders as they change
+		model.getEventBus().subscribe(ModelEventBus.ORDER_STATUS_CHANGED,
+				new ModelEventBus.Subscriber<Order>() {
+					@Override
+					public void changed(Order subject) {
+						recordChanged(subject);
+					}
+				});
+
 		// [Delete Completed Button] - Remove all completed orders
 		tbbDeleteCompleted.addActionListener(new ActionListener() {
 			@Override
@@ -277,10 +287,7 @@ public class OrdersPanel extends RecordPanel<Order> {
 					// Update order status
 					storedRecord.setStatus(Order.Status.CANCELLED);
 					// Return reserved stock to actual stock
-					synchronized (model.stock.dishes) {
-						model.stock.dishes.unreserveStock(storedRecord.getDishes());
-						model.stock.dishes.addStock(storedRecord.getDishes());
-					}
+					model.stock.dishes.cancelReserved(storedRecord.getDishes());
 					return true;
 				} else {
 					eb.addError("Order is not at a stage it can be cancelled");
@@ -310,23 +317,27 @@ public class OrdersPanel extends RecordPanel<Order> {
 	public void refresh() {
 		// Ensure refresh is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
-			@SuppressWarnings("unchecked")
 			@Override
 			public void run() {
-				// Create local copy so table not backed by map ensuring thread
-				// safety. This is done as an alternative to locking orders
-				// whilst refreshing due to the reduced time the lock is required.
-				Collection<Order> orders;
-				synchronized (model.orders) {
-					// Cast safe due to known functionality of deep clone
-					orders = (Collection<Order>) SerializationUtils.deepClone(model.orders);
+				// Use copies so table not backed by model ensuring thread safety, copies are
+				// only made again once orders have changed so the lock is rarely required
+				final VersionedList<Order> orders = model.getOrdersView();
+				if (orders.getVersion() == shownVersion) {
+					// Table already shows the current version
+					return;
 				}
-				// Refresh using local copy
-				refreshTable(new ArrayList<>(orders));
+				shownVersion = orders.getVersion();
+				// Refresh using copies
+				refreshTable(orders);
 			}
 		});
 	}
 
+	@Override
+	protected Order getCurrentRecord(Order key) {
+		return model.orders.getCopy(key);
+	}
+
 	@Override
 	public void loadRecord(Order record) {
 		final String dateTime = record.getDate().format(Utilities.DATE_TIME_FORMAT);
@@ -197,6 +197,9 @@ public class PostcodesPanel extends RecordPanel<Postcode> {
 			if (!eb.isError()) {
 				// Store record in relevant data structure
 				model.postcodes.add(postcode);
+				if (model.getJournal() != null) {
+					model.getJournal().postcodePut(postcode);
+				}
 				return true;
 			}
 		}
@@ -222,6 +225,9 @@ public class PostcodesPanel extends RecordPanel<Postcode> {
 			if (!eb.isError()) {
 				// Do updates
 				updateRecord(storedRecord);
+				if (model.getJournal() != null) {
+					model.getJournal().postcodePut(storedRecord);
+				}
 				return true;
 			}
 		}
@@ -244,6 +250,9 @@ public class PostcodesPanel extends RecordPanel<Postcode> {
 			// Remove postcode from model
 			synchronized (model.postcodes) {
 				model.postcodes.remove(record);
+				if (model.getJournal() != null) {
+					model.getJournal().postcodeRemoved(record);
+				}
 			}
 			return true;
 		}
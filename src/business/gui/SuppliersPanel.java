@@ -238,6 +238,9 @@ public class SuppliersPanel extends RecordPanel<Supplier> {
 			if (!eb.isError()) {
 				// Store record in relevant data structure
 				model.suppliers.add(supplier);
+				if (model.getJournal() != null) {
+					model.getJournal().supplierPut(supplier);
+				}
 				return true;
 			}
 		}
@@ -263,6 +266,9 @@ public class SuppliersPanel extends RecordPanel<Supplier> {
 			if (!eb.isError()) {
 				// Do updates
 				updateRecord(storedRecord);
+				if (model.getJournal() != null) {
+					model.getJournal().supplierPut(storedRecord);
+				}
 				return true;
 			}
 		}
@@ -283,6 +289,9 @@ public class SuppliersPanel extends RecordPanel<Supplier> {
 			// Remove supplier from model
 			synchronized (model.suppliers) {
 				model.suppliers.remove(record);
+				if (model.getJournal() != null) {
+					model.getJournal().supplierRemoved(record);
+				}
 			}
 			// Handle affect on ingredients
 			synchronized (model.stock.dishes) {
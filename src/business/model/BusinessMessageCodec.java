@@ -0,0 +1,791 @@
+package business.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import general.model.Message;
+import general.model.MessageCodec;
+import general.model.ObjectMessage;
+import general.model.QuantityMap;
+import general.utility.ErrorBuilder;
+
+/**
+ * Compact binary codec for messages sent between a business and its clients. Messages, error
+ * builders and the model objects sent by the message handlers are written field by field, without
+ * the class descriptors Java serialisation writes. Dishes, ingredients, suppliers, postcodes and
+ * customers are written in full the first time they occur in a message and as an index into a
+ * table of previously written objects afterwards, so shared objects are only sent once. Attached
+ * objects of any other type (and messages of unknown subclasses) fall back to Java serialisation.
+ * A canonicalizer can be given to resolve decoded objects to existing instances as they are read.
+ *
+ * Encoding, version 2 (version 1 had no correlation identifier and can still be decoded):
+ * <pre>
+ * byte version, byte flags
+ * [flags &amp; SERIALIZED] java serialised message, nothing follows
+ * byte command
+ * [flags &amp; CORRELATION] long correlation identifier
+ * [flags &amp; ERROR_BUILDER] boolean error, varint count, string comments...
+ * [flags &amp; SENDER] string host, byte address length, address bytes, varint port
+ * [flags &amp; OBJECT_MESSAGE] varint count, (string identifier, value)...
+ * </pre>
+ * Each value starts with a tag byte. Strings are written as a varint of the UTF-8 length plus
+ * one followed by the bytes, zero representing null.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class BusinessMessageCodec implements MessageCodec {
+	public static final byte ID = 1;
+	private static final int VERSION = 2;
+
+	// Message flags
+	private static final int FLAG_SERIALIZED = 0x01;
+	private static final int FLAG_OBJECT_MESSAGE = 0x02;
+	private static final int FLAG_ERROR_BUILDER = 0x04;
+	private static final int FLAG_SENDER = 0x08;
+	private static final int FLAG_CORRELATION = 0x10;
+
+	// Value tags
+	private static final int TAG_NULL = 0;
+	private static final int TAG_STRING = 1;
+	private static final int TAG_INTEGER = 2;
+	private static final int TAG_LONG = 3;
+	private static final int TAG_DOUBLE = 4;
+	private static final int TAG_BOOLEAN = 5;
+	private static final int TAG_ARRAY = 6;
+	private static final int TAG_QUANTITY_MAP = 7;
+	private static final int TAG_DISH = 8;
+	private static final int TAG_INGREDIENT = 9;
+	private static final int TAG_SUPPLIER = 10;
+	private static final int TAG_POSTCODE = 11;
+	private static final int TAG_CUSTOMER = 12;
+	private static final int TAG_CUSTOMER_LOGIN = 13;
+	private static final int TAG_ORDER = 14;
+	private static final int TAG_REFERENCE = 15;
+	private static final int TAG_SERIALIZED = 16;
+
+	// Resolves decoded objects to existing instances, null if not resolved
+	private final Canonicalizer canonicalizer;
+
+	/**
+	 * Instantiate a codec that does not resolve decoded objects.
+	 */
+	public BusinessMessageCodec() {
+		this(null);
+	}
+
+	/**
+	 * Instantiate a codec that resolves decoded dishes, ingredients, suppliers, postcodes and
+	 * customers using a canonicalizer.
+	 *
+	 * @param canonicalizer Canonicalizer to resolve decoded objects with, null if not resolved
+	 */
+	public BusinessMessageCodec(Canonicalizer canonicalizer) {
+		this.canonicalizer = canonicalizer;
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public void encode(Message message, OutputStream os) throws IOException {
+		final DataOutputStream out = new DataOutputStream(os);
+		out.writeByte(VERSION);
+		// Only known message types are written field by field
+		final Class<?> type = message.getClass();
+		if (type != Message.class && type != ObjectMessage.class) {
+			out.writeByte(FLAG_SERIALIZED);
+			serialize(message, out);
+			out.flush();
+			return;
+		}
+		int flags = 0;
+		if (message instanceof ObjectMessage) {
+			flags |= FLAG_OBJECT_MESSAGE;
+		}
+		if (message.getErrorBuilder() != null) {
+			flags |= FLAG_ERROR_BUILDER;
+		}
+		if (message.getSender() != null) {
+			flags |= FLAG_SENDER;
+		}
+		if (message.getCorrelationId() != 0) {
+			flags |= FLAG_CORRELATION;
+		}
+		out.writeByte(flags);
+		out.writeByte(message.getCommand().ordinal());
+		if (message.getCorrelationId() != 0) {
+			out.writeLong(message.getCorrelationId());
+		}
+		if (message.getErrorBuilder() != null) {
+			writeErrorBuilder(out, message.getErrorBuilder());
+		}
+		if (message.getSender() != null) {
+			writeAddress(out, message.getSender());
+		}
+		if (message instanceof ObjectMessage) {
+			final Writer writer = new Writer(out);
+			final Map<String, Object> objects = ((ObjectMessage) message).getObjects();
+			writeVarInt(out, objects.size());
+			for (final Entry<String, Object> entry : objects.entrySet()) {
+				writeString(out, entry.getKey());
+				writer.writeValue(entry.getValue());
+			}
+		}
+		out.flush();
+	}
+
+	@Override
+	public Message decode(InputStream is) throws IOException {
+		final DataInputStream in = new DataInputStream(is);
+		final int version = in.readUnsignedByte();
+		if (version < 1 || version > VERSION) {
+			throw new IOException(String.format("Unsupported codec version %d", version));
+		}
+		final int flags = in.readUnsignedByte();
+		if ((flags & FLAG_SERIALIZED) != 0) {
+			final Object object = deserialize(in);
+			if (object instanceof Message) {
+				return (Message) object;
+			}
+			throw new IOException("Serialised object is not a message");
+		}
+		final Message.Command[] commands = Message.Command.values();
+		final int command = in.readUnsignedByte();
+		if (command >= commands.length) {
+			throw new IOException(String.format("Unknown command %d", command));
+		}
+		final long correlationId = ((flags & FLAG_CORRELATION) != 0) ? in.readLong() : 0;
+		final ErrorBuilder eb =
+				((flags & FLAG_ERROR_BUILDER) != 0) ? readErrorBuilder(in) : null;
+		final InetSocketAddress sender = ((flags & FLAG_SENDER) != 0) ? readAddress(in) : null;
+		final Message message;
+		if ((flags & FLAG_OBJECT_MESSAGE) != 0) {
+			final Reader reader = new Reader(in, canonicalizer);
+			final int count = readVarInt(in);
+			final Map<String, Object> objects = new HashMap<>();
+			for (int i = 0; i < count; i++) {
+				final String identifier = readString(in);
+				objects.put(identifier, reader.readValue());
+			}
+			message = new ObjectMessage(commands[command], eb, objects);
+		} else {
+			message = new Message(commands[command], eb);
+		}
+		message.setSender(sender);
+		message.setCorrelationId(correlationId);
+		return message;
+	}
+
+	/**
+	 * Per message state for writing values, holding the table of objects already written.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class Writer {
+		private final DataOutputStream out;
+		private final Map<Object, Integer> written = new IdentityHashMap<>();
+
+		/**
+		 * @param out Stream to write values to
+		 */
+		public Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Write a tagged value of any type.
+		 *
+		 * @param value Value to write
+		 * @throws IOException Unable to write value
+		 */
+		public void writeValue(Object value) throws IOException {
+			if (value == null) {
+				out.writeByte(TAG_NULL);
+				return;
+			}
+			// Use reference if object has already been written
+			final Integer reference = written.get(value);
+			if (reference != null) {
+				out.writeByte(TAG_REFERENCE);
+				writeVarInt(out, reference);
+				return;
+			}
+			final Class<?> type = value.getClass();
+			if (type == String.class) {
+				out.writeByte(TAG_STRING);
+				writeString(out, (String) value);
+			} else if (type == Integer.class) {
+				out.writeByte(TAG_INTEGER);
+				out.writeInt((Integer) value);
+			} else if (type == Long.class) {
+				out.writeByte(TAG_LONG);
+				out.writeLong((Long) value);
+			} else if (type == Double.class) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble((Double) value);
+			} else if (type == Boolean.class) {
+				out.writeByte(TAG_BOOLEAN);
+				out.writeBoolean((Boolean) value);
+			} else if (type == QuantityMap.class) {
+				out.writeByte(TAG_QUANTITY_MAP);
+				writeQuantityMap((QuantityMap<?>) value);
+			} else if (type == Dish.class) {
+				out.writeByte(TAG_DISH);
+				writeDish((Dish) value);
+			} else if (type == Ingredient.class) {
+				out.writeByte(TAG_INGREDIENT);
+				writeIngredient((Ingredient) value);
+			} else if (type == Supplier.class) {
+				out.writeByte(TAG_SUPPLIER);
+				writeSupplier((Supplier) value);
+			} else if (type == Postcode.class) {
+				out.writeByte(TAG_POSTCODE);
+				writePostcode((Postcode) value);
+			} else if (type == Customer.class) {
+				out.writeByte(TAG_CUSTOMER);
+				writeCustomer((Customer) value);
+			} else if (type == CustomerLogin.class) {
+				out.writeByte(TAG_CUSTOMER_LOGIN);
+				writeLogin((CustomerLogin) value);
+			} else if (type == Order.class) {
+				out.writeByte(TAG_ORDER);
+				writeOrder((Order) value);
+			} else if (type.isArray() && componentTag(type.getComponentType()) >= 0) {
+				out.writeByte(TAG_ARRAY);
+				writeArray((Object[]) value);
+			} else {
+				out.writeByte(TAG_SERIALIZED);
+				serialize(value, out);
+			}
+		}
+
+		/**
+		 * Add an object to the table of written objects so later occurrences are references.
+		 *
+		 * @param object Object being written
+		 */
+		private void remember(Object object) {
+			written.put(object, written.size());
+		}
+
+		private void writeArray(Object[] array) throws IOException {
+			out.writeByte(componentTag(array.getClass().getComponentType()));
+			writeVarInt(out, array.length);
+			for (final Object element : array) {
+				writeValue(element);
+			}
+		}
+
+		private void writeQuantityMap(QuantityMap<?> map) throws IOException {
+			if (map == null) {
+				writeVarInt(out, 0);
+				return;
+			}
+			writeVarInt(out, map.size() + 1);
+			for (int i = map.nextIndex(-1); i >= 0; i = map.nextIndex(i)) {
+				writeValue(map.keyAt(i));
+				// Null quantities are held and written as NaN, which is never a valid quantity
+				out.writeDouble(map.quantityAt(i));
+			}
+		}
+
+		private void writeDish(Dish dish) throws IOException {
+			remember(dish);
+			writeString(out, dish.getName());
+			writeString(out, dish.getDescription());
+			out.writeDouble(dish.getPrice());
+			writeQuantityMap(dish.getIngredients());
+		}
+
+		private void writeIngredient(Ingredient ingredient) throws IOException {
+			remember(ingredient);
+			writeString(out, ingredient.getName());
+			final Ingredient.Unit unit = ingredient.getUnit();
+			out.writeByte(unit == null ? 0 : unit.ordinal() + 1);
+			writeValue(ingredient.getSupplier());
+		}
+
+		private void writeSupplier(Supplier supplier) throws IOException {
+			remember(supplier);
+			writeString(out, supplier.getName());
+			out.writeDouble(supplier.getDistance());
+			out.writeBoolean(supplier.isBeingRestocked());
+		}
+
+		private void writePostcode(Postcode postcode) throws IOException {
+			remember(postcode);
+			writeString(out, postcode.getPostcode());
+			out.writeDouble(postcode.getDistance());
+		}
+
+		private void writeCustomer(Customer customer) throws IOException {
+			remember(customer);
+			writeString(out, customer.getName());
+			writeString(out, customer.getAddress());
+			writeValue(customer.getPostcode());
+			writeValue(customer.getLogin());
+		}
+
+		private void writeLogin(CustomerLogin login) throws IOException {
+			writeString(out, login.getUsername());
+			writeString(out, login.getPasswordHash());
+			writeString(out, login.getChecksum());
+		}
+
+		private void writeOrder(Order order) throws IOException {
+			writeValue(order.getCustomer());
+			writeQuantityMap(order.getDishes());
+			final LocalDateTime date = order.getDate();
+			out.writeBoolean(date != null);
+			if (date != null) {
+				out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+				out.writeInt(date.getNano());
+			}
+			final Order.Status status = order.getStatus();
+			out.writeByte(status == null ? 0 : status.ordinal() + 1);
+		}
+
+	}
+
+	/**
+	 * Per message state for reading values, holding the table of objects already read.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class Reader {
+		private final DataInputStream in;
+		private final Canonicalizer canonicalizer;
+		private final List<Object> read = new ArrayList<>();
+
+		/**
+		 * @param in Stream to read values from
+		 * @param canonicalizer Canonicalizer to resolve objects read with, may be null
+		 */
+		public Reader(DataInputStream in, Canonicalizer canonicalizer) {
+			this.in = in;
+			this.canonicalizer = canonicalizer;
+		}
+
+		/**
+		 * Read a tagged value of any type.
+		 *
+		 * @return Value read
+		 * @throws IOException Data is not a valid value
+		 */
+		public Object readValue() throws IOException {
+			final int tag = in.readUnsignedByte();
+			switch (tag) {
+				case TAG_NULL:
+					return null;
+				case TAG_STRING:
+					return readString(in);
+				case TAG_INTEGER:
+					return in.readInt();
+				case TAG_LONG:
+					return in.readLong();
+				case TAG_DOUBLE:
+					return in.readDouble();
+				case TAG_BOOLEAN:
+					return in.readBoolean();
+				case TAG_ARRAY:
+					return readArray();
+				case TAG_QUANTITY_MAP:
+					return readQuantityMap(Object.class);
+				case TAG_DISH:
+					return readDish();
+				case TAG_INGREDIENT:
+					return readIngredient();
+				case TAG_SUPPLIER:
+					return readSupplier();
+				case TAG_POSTCODE:
+					return readPostcode();
+				case TAG_CUSTOMER:
+					return readCustomer();
+				case TAG_CUSTOMER_LOGIN:
+					return readLogin();
+				case TAG_ORDER:
+					return readOrder();
+				case TAG_REFERENCE:
+					final int reference = readVarInt(in);
+					if (reference >= read.size()) {
+						throw new IOException("Invalid reference");
+					}
+					return read.get(reference);
+				case TAG_SERIALIZED:
+					return deserialize(in);
+				default:
+					throw new IOException(String.format("Unknown tag %d", tag));
+			}
+		}
+
+		/**
+		 * Read a value that is expected to be of a given type.
+		 *
+		 * @param type Expected type
+		 * @return Value read, may be null
+		 * @throws IOException Value is not of expected type
+		 */
+		private <T> T readValue(Class<T> type) throws IOException {
+			final Object value = readValue();
+			if (value == null || type.isInstance(value)) {
+				return type.cast(value);
+			}
+			throw new IOException(String.format("Expected: %s Got: %s", type, value.getClass()));
+		}
+
+		private Object readArray() throws IOException {
+			final Class<?> component = componentType(in.readUnsignedByte());
+			// Every element takes at least one byte
+			final int length = readLength(in, readVarInt(in));
+			final Object array = Array.newInstance(component, length);
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, readValue(component));
+			}
+			return array;
+		}
+
+		private <K> QuantityMap<K> readQuantityMap(Class<K> type) throws IOException {
+			final int size = readVarInt(in) - 1;
+			if (size < 0) {
+				return null;
+			}
+			final QuantityMap<K> map = new QuantityMap<>();
+			for (int i = 0; i < size; i++) {
+				final K key = readValue(type);
+				map.setQuantity(key, in.readDouble());
+			}
+			return map;
+		}
+
+		private Dish readDish() throws IOException {
+			final int index = reserve();
+			final String name = readString(in);
+			final String description = readString(in);
+			final double price = in.readDouble();
+			final QuantityMap<Ingredient> ingredients = readQuantityMap(Ingredient.class);
+			return store(index, new Dish(name, description, price, ingredients));
+		}
+
+		private Ingredient readIngredient() throws IOException {
+			final int index = reserve();
+			final String name = readString(in);
+			final int unit = in.readUnsignedByte();
+			final Ingredient.Unit[] units = Ingredient.Unit.values();
+			if (unit > units.length) {
+				throw new IOException(String.format("Unknown unit %d", unit));
+			}
+			final Supplier supplier = readValue(Supplier.class);
+			return store(index,
+					new Ingredient(name, unit == 0 ? null : units[unit - 1], supplier));
+		}
+
+		private Supplier readSupplier() throws IOException {
+			final int index = reserve();
+			final Supplier supplier = new Supplier(readString(in), in.readDouble());
+			supplier.setBeingRestocked(in.readBoolean());
+			return store(index, supplier);
+		}
+
+		private Postcode readPostcode() throws IOException {
+			final int index = reserve();
+			return store(index, new Postcode(readString(in), in.readDouble()));
+		}
+
+		private Customer readCustomer() throws IOException {
+			final int index = reserve();
+			final String name = readString(in);
+			final String address = readString(in);
+			final Postcode postcode = readValue(Postcode.class);
+			final CustomerLogin login = readValue(CustomerLogin.class);
+			return store(index, new Customer(name, address, postcode, login));
+		}
+
+		private CustomerLogin readLogin() throws IOException {
+			return CustomerLogin.restore(readString(in), readString(in), readString(in));
+		}
+
+		private Order readOrder() throws IOException {
+			final Customer customer = readValue(Customer.class);
+			final QuantityMap<Dish> dishes = readQuantityMap(Dish.class);
+			final Order order = new Order(customer, dishes);
+			if (in.readBoolean()) {
+				order.setDate(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(),
+						ZoneOffset.UTC));
+			} else {
+				order.setDate(null);
+			}
+			final int status = in.readUnsignedByte();
+			final Order.Status[] statuses = Order.Status.values();
+			if (status > statuses.length) {
+				throw new IOException(String.format("Unknown status %d", status));
+			}
+			order.setStatus(status == 0 ? null : statuses[status - 1]);
+			return order;
+		}
+
+		/**
+		 * Reserve the next table index for an object that is being read. Indexes are assigned in
+		 * the order objects start being written, so must be reserved before nested values are
+		 * read.
+		 *
+		 * @return Reserved index
+		 */
+		private int reserve() {
+			read.add(null);
+			return read.size() - 1;
+		}
+
+		/**
+		 * Store a read object at a reserved table index, resolving it to an existing instance if
+		 * possible so later references share the instance.
+		 *
+		 * @param index Reserved index
+		 * @param object Object read
+		 * @return Object read or the instance it resolved to
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> T store(int index, T object) {
+			final T stored = (canonicalizer == null) ? object
+					: (T) canonicalizer.canonicalize(object);
+			read.set(index, stored);
+			return stored;
+		}
+
+	}
+
+	/**
+	 * Get the tag used to identify the component type of an array.
+	 *
+	 * @param component Component type of array
+	 * @return Tag of component type, -1 if arrays of the type are not supported
+	 */
+	private static int componentTag(Class<?> component) {
+		if (component == Object.class) {
+			return TAG_NULL;
+		} else if (component == String.class) {
+			return TAG_STRING;
+		} else if (component == Dish.class) {
+			return TAG_DISH;
+		} else if (component == Postcode.class) {
+			return TAG_POSTCODE;
+		} else if (component == Customer.class) {
+			return TAG_CUSTOMER;
+		} else if (component == Order.class) {
+			return TAG_ORDER;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the component type of an array from its tag.
+	 *
+	 * @param tag Tag of component type
+	 * @return Component type
+	 * @throws IOException Tag is not a supported component type
+	 */
+	private static Class<?> componentType(int tag) throws IOException {
+		switch (tag) {
+			case TAG_NULL:
+				return Object.class;
+			case TAG_STRING:
+				return String.class;
+			case TAG_DISH:
+				return Dish.class;
+			case TAG_POSTCODE:
+				return Postcode.class;
+			case TAG_CUSTOMER:
+				return Customer.class;
+			case TAG_ORDER:
+				return Order.class;
+			default:
+				throw new IOException(String.format("Unknown array type %d", tag));
+		}
+	}
+
+	private static void writeErrorBuilder(DataOutputStream out, ErrorBuilder eb)
+			throws IOException {
+		out.writeBoolean(eb.isError());
+		final List<String> comments = eb.getComments();
+		writeVarInt(out, comments.size());
+		for (final String comment : comments) {
+			writeString(out, comment);
+		}
+	}
+
+	private static ErrorBuilder readErrorBuilder(DataInputStream in) throws IOException {
+		final ErrorBuilder eb = new ErrorBuilder();
+		final boolean error = in.readBoolean();
+		final int count = readVarInt(in);
+		for (int i = 0; i < count; i++) {
+			eb.addComment(readString(in), false);
+		}
+		if (error) {
+			eb.addError();
+		}
+		return eb;
+	}
+
+	/**
+	 * Write an address without causing a name lookup. The raw address is written so that a
+	 * decoded address is equal to the original.
+	 *
+	 * @param out Stream to write to
+	 * @param address Address to write
+	 * @throws IOException Unable to write address
+	 */
+	private static void writeAddress(DataOutputStream out, InetSocketAddress address)
+			throws IOException {
+		writeString(out, address.getHostString());
+		final InetAddress inet = address.getAddress();
+		if (inet == null) {
+			out.writeByte(0);
+		} else {
+			final byte[] bytes = inet.getAddress();
+			out.writeByte(bytes.length);
+			out.write(bytes);
+		}
+		writeVarInt(out, address.getPort());
+	}
+
+	private static InetSocketAddress readAddress(DataInputStream in) throws IOException {
+		final String host = readString(in);
+		final int length = in.readUnsignedByte();
+		if (length == 0) {
+			final int port = readVarInt(in);
+			return InetSocketAddress.createUnresolved(host, port);
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		final int port = readVarInt(in);
+		return new InetSocketAddress(InetAddress.getByAddress(host, bytes), port);
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final int length = readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[readLength(in, length)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write a non-negative integer using seven bits per byte, the high bit of each byte
+	 * indicating whether another byte follows.
+	 *
+	 * @param out Stream to write to
+	 * @param value Value to write
+	 * @throws IOException Unable to write value
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Check a length read from a frame before anything of that length is allocated, so a small
+	 * frame cannot claim a large amount of memory.
+	 *
+	 * @param in Stream holding the rest of the frame
+	 * @param length Length read, in bytes or elements of at least one byte
+	 * @return Length read
+	 * @throws IOException Length is negative or larger than the rest of the frame
+	 */
+	private static int readLength(DataInputStream in, int length) throws IOException {
+		if (length < 0 || length > in.available()) {
+			throw new IOException(String.format("Length %d exceeds frame", length));
+		}
+		return length;
+	}
+
+	/**
+	 * Write an object using Java serialisation, prefixed by its length.
+	 *
+	 * @param object Object to write
+	 * @param out Stream to write to
+	 * @throws IOException Unable to serialise object
+	 */
+	private static void serialize(Object object, DataOutputStream out) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(object);
+		oos.close();
+		writeVarInt(out, baos.size());
+		baos.writeTo(out);
+	}
+
+	private static Object deserialize(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[readLength(in, readVarInt(in))];
+		in.readFully(bytes);
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return ois.readObject();
+		} catch(ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Interface for resolving decoded objects to existing equal instances.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static interface Canonicalizer {
+
+		/**
+		 * Resolve a decoded object, after the objects it references have been resolved.
+		 *
+		 * @param object Decoded object
+		 * @return Existing instance to use in place of object, or object itself
+		 */
+		public abstract Object canonicalize(Object object);
+
+	}
+
+}
@@ -1,6 +1,8 @@
 package business.model;
 
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import general.model.Message;
@@ -16,6 +18,11 @@ import general.utility.ErrorBuilder;
  * @author David Jones [dsj1n15]
  */
 public class BusinessMessageHandler extends MessageHandler {
+	// Message dispatch configuration
+	private static final int WORKERS = 16;
+	private static final int QUEUE_CAPACITY = 1024;
+	// Maximum number of archived orders returned per request
+	private static final int MAX_PAGE = 100;
 	private final BusinessModel model;
 
 	/**
@@ -24,7 +31,7 @@ public class BusinessMessageHandler extends MessageHandler {
 	 * @param model Business model to interact with
 	 */
 	public BusinessMessageHandler(BusinessModel model) {
-		super(model.getComms());
+		super(model.getComms(), DispatchMode.BOUNDED_POOL, WORKERS, QUEUE_CAPACITY);
 		this.model = model;
 	}
 
@@ -52,6 +59,21 @@ public class BusinessMessageHandler extends MessageHandler {
 			case SUBMIT_ORDER:
 				handleSubmitOrder(rx);
 				break;
+			case SUBSCRIBE_DISH_STOCK:
+				handleSubscribeDishStock(rx);
+				break;
+			case UNSUBSCRIBE_DISH_STOCK:
+				handleUnsubscribeDishStock(rx);
+				break;
+			case SUBSCRIBE_ORDER_STATUS:
+				handleSubscribeOrderStatus(rx);
+				break;
+			case UNSUBSCRIBE_ORDER_STATUS:
+				handleUnsubscribeOrderStatus(rx);
+				break;
+			case GET_ARCHIVED_ORDERS:
+				handleGetArchivedOrders(rx);
+				break;
 			default:
 				throw new IllegalArgumentException(
 						String.format("Unsupported message type '%s'", rx.getCommand()));
@@ -77,10 +99,17 @@ public class BusinessMessageHandler extends MessageHandler {
 				if (!model.customers.containsKey(sentCustomer.getLogin())) {
 					// Add customer to allowed logins
 					model.customers.put(sentCustomer.getLogin(), sentCustomer);
+					journalCustomer(sentCustomer);
+					model.customerChanged(sentCustomer);
 				} else {
 					eb.addError("Username already exists");
 				}
 			}
+			// Undo the registration if it could not be stored
+			if (!eb.isError() && !awaitJournal()) {
+				restoreCustomer(sentCustomer, null);
+				eb.addError("Business was unable to store the change");
+			}
 		}
 
 		// Reply with registration response, eb contains error on failure
@@ -137,15 +166,23 @@ public class BusinessMessageHandler extends MessageHandler {
 		// Validate locally
 		final ErrorBuilder eb = modCustomer.validate();
 		if (!eb.isError()) {
+			Customer replaced = null;
 			// Check for existence of account
 			synchronized (model.customers) {
 				if (model.customers.containsKey(refCustomer.getLogin())) {
 					// Replace existing customer with new login
-					model.customers.put(modCustomer.getLogin(), modCustomer);
+					replaced = model.customers.put(modCustomer.getLogin(), modCustomer);
+					journalCustomer(modCustomer);
+					model.customerChanged(modCustomer);
 				} else {
 					eb.addError("Reference account does not exist");
 				}
 			}
+			// Undo the modification if it could not be stored
+			if (!eb.isError() && !awaitJournal()) {
+				restoreCustomer(modCustomer, replaced);
+				eb.addError("Business was unable to store the change");
+			}
 		}
 
 		// Reply with login response, CUSTOMER object null on failure and eb contains error
@@ -183,6 +220,58 @@ public class BusinessMessageHandler extends MessageHandler {
 		reply(rx, tx);
 	}
 
+	/**
+	 * Handle a dish subscription request. Reply with all dishes and available stock; changes in
+	 * available stock are pushed to the sender afterwards.
+	 *
+	 * @param rx Received request message
+	 */
+	private void handleSubscribeDishStock(Message rx) {
+		reply(rx, model.getDishStockPublisher().subscribe(rx.getSender()));
+	}
+
+	/**
+	 * Handle a request to stop pushing dish stock changes to the sender.
+	 *
+	 * @param rx Received request message
+	 */
+	private void handleUnsubscribeDishStock(Message rx) {
+		model.getDishStockPublisher().unsubscribe(rx.getSender());
+	}
+
+	/**
+	 * Handle an order status subscription request, expect a customer login and the epoch and
+	 * sequence number of the last status change received by the sender attached to the message.
+	 * Reply with the status changes missed by the sender; later status changes of the customer's
+	 * orders are pushed to the sender afterwards.
+	 *
+	 * @param rx Object message with customer login and last change attached
+	 */
+	private void handleSubscribeOrderStatus(Message rx) {
+		// Get expected objects from message
+		final ObjectMessage rxObj = expectObjectMessage(rx);
+		final CustomerLogin sentLogin = rxObj.getObject("CUSTOMER_LOGIN", CustomerLogin.class);
+		final Long epoch = rxObj.getObject("EPOCH", Long.class);
+		final Long sequence = rxObj.getObject("SEQUENCE", Long.class);
+
+		reply(rx, model.getOrderStatusStream().subscribe(sentLogin, rx.getSender(), epoch,
+				sequence));
+	}
+
+	/**
+	 * Handle a request to stop pushing order status changes to the sender, expect a customer login
+	 * attached to the message.
+	 *
+	 * @param rx Object message with customer login attached
+	 */
+	private void handleUnsubscribeOrderStatus(Message rx) {
+		// Get expected objects from message
+		final ObjectMessage rxObj = expectObjectMessage(rx);
+		final CustomerLogin sentLogin = rxObj.getObject("CUSTOMER_LOGIN", CustomerLogin.class);
+
+		model.getOrderStatusStream().unsubscribe(sentLogin, rx.getSender());
+	}
+
 	/**
 	 * Handle an order request, expect a customer login attached to the message to filter orders to
 	 * return. Reply with orders found.
@@ -202,6 +291,56 @@ public class BusinessMessageHandler extends MessageHandler {
 		reply(rx, tx);
 	}
 
+	/**
+	 * Handle an archived order request, expect a customer login to filter orders to return and the
+	 * offset and limit of the page to return attached to the message. Reply with the page of
+	 * orders, newest first, and the total number of archived orders from the customer. Reply with
+	 * an error and no orders if the page requested is invalid.
+	 *
+	 * @param rx Object message with customer login and page attached
+	 */
+	private void handleGetArchivedOrders(Message rx) {
+		// Get expected objects from message
+		final ObjectMessage rxObj = expectObjectMessage(rx);
+		final CustomerLogin sentLogin = rxObj.getObject("CUSTOMER_LOGIN", CustomerLogin.class);
+		final Integer offset = rxObj.getObject("OFFSET", Integer.class);
+		final Integer limit = rxObj.getObject("LIMIT", Integer.class);
+
+		// Validate page requested
+		final ErrorBuilder eb = new ErrorBuilder();
+		if (sentLogin == null) {
+			eb.addError("Customer login not given");
+		}
+		if (offset == null || offset < 0) {
+			eb.addError("Page offset must be zero or more");
+		}
+		if (limit == null || limit <= 0) {
+			eb.addError("Page limit must be positive");
+		}
+
+		// Read page from archive (if an error hasn't occurred)
+		List<Order> orders = new ArrayList<>();
+		int total = 0;
+		if (!eb.isError()) {
+			final OrderArchive archive = model.getOrderArchive();
+			if (archive == null) {
+				eb.addError("Order history not available");
+			} else {
+				try {
+					total = archive.getOrderCount(sentLogin);
+					orders = archive.getOrdersFromCustomer(sentLogin, offset,
+							Math.min(limit, MAX_PAGE));
+				} catch(IOException e) {
+					eb.addError("Unable to read order history");
+				}
+			}
+		}
+		final ObjectMessage tx = new ObjectMessage(Message.Command.UPDATE_ARCHIVED_ORDERS, eb);
+		tx.addObject("ORDERS", orders.toArray(new Order[orders.size()]));
+		tx.addObject("TOTAL", total);
+		reply(rx, tx);
+	}
+
 	/**
 	 * Handle a new order, expect an order object with dishes and a customer to be defined and
 	 * attached. Accept order if validation passes, customer postcode is still served by the
@@ -215,7 +354,7 @@ public class BusinessMessageHandler extends MessageHandler {
 		final Order order = rxObj.getObject("ORDER", Order.class);
 
 		// Update order time to use business time
-		order.setDate(LocalDateTime.now());
+		order.setDate(Clock.get().now());
 		order.setStatus(Order.Status.RECEIVED);
 
 		// Validate order locally
@@ -229,21 +368,111 @@ public class BusinessMessageHandler extends MessageHandler {
 		}
 
 		// Attempt to reserve stock (if an error hasn't occurred)
+		boolean added = false;
 		if (!eb.isError()) {
+			// Demand is recorded whether or not there is stock for the order
+			model.stock.getScheduler().recordDemand(order.getDishes());
 			if (model.stock.dishes.reserveStock(order.getDishes())) {
 				// Stock reserved, make order
 				order.setStatus(Order.Status.READY_FOR_DISPATCH);
 				synchronized (model.orders) {
 					model.orders.add(order);
 				}
+				added = true;
 			} else {
 				// Not enough stock
 				eb.addError("Not enough stock available to complete order");
 			}
 		}
 
+		// Undo the order if it could not be stored, unless it is already being delivered
+		if (added && !awaitJournal() && cancelOrder(order)) {
+			eb.addError("Business was unable to store the order");
+		}
+
 		// Reply with order response, eb contains error on failure
 		reply(rx, new Message(Message.Command.ORDER_RESPONSE, eb));
 	}
 
+	/**
+	 * Remove an order that could not be stored and release its reserved stock, if it has not
+	 * been dispatched. The removal is journaled after the order so replay also ends without it.
+	 *
+	 * @param order Order to remove
+	 * @return Whether the order was removed
+	 */
+	private boolean cancelOrder(Order order) {
+		synchronized (model.orders) {
+			// Drones take orders whilst the orders are locked
+			if (order.getStatus() != Order.Status.READY_FOR_DISPATCH
+					|| !model.orders.remove(order)) {
+				return false;
+			}
+			model.stock.dishes.unreserveStock(order.getDishes());
+		}
+		return true;
+	}
+
+	/**
+	 * Undo a customer being added or replaced that could not be stored, unless it has been
+	 * replaced again since. The undo is journaled after the change so replay also ends without it.
+	 *
+	 * @param customer Customer that was added
+	 * @param replaced Customer that was replaced, null if none
+	 */
+	private void restoreCustomer(Customer customer, Customer replaced) {
+		final CustomerLogin login = customer.getLogin();
+		synchronized (model.customers) {
+			if (model.customers.get(login) != customer) {
+				return;
+			}
+			if (replaced == null) {
+				model.customers.remove(login);
+				final Journal journal = model.getJournal();
+				if (journal != null) {
+					journal.customerRemoved(login);
+				}
+			} else {
+				model.customers.put(login, replaced);
+				journalCustomer(replaced);
+			}
+			model.customerChanged(customer);
+		}
+	}
+
+	/**
+	 * Record a customer being added or replaced in the journal, if there is one.
+	 *
+	 * @param customer Customer added
+	 */
+	private void journalCustomer(Customer customer) {
+		final Journal journal = model.getJournal();
+		if (journal != null) {
+			journal.customerPut(customer);
+		}
+	}
+
+	/**
+	 * Wait for changes recorded in the journal to be durable so they are not acknowledged before
+	 * they would survive a crash. Changes that could not be written should be undone before
+	 * replying with an error, as the journal keeps retrying them.
+	 *
+	 * @return Whether the changes were written, true if there is no journal
+	 */
+	private boolean awaitJournal() {
+		final Journal journal = model.getJournal();
+		if (journal != null) {
+			try {
+				journal.flush();
+			} catch(InterruptedException e) {
+				// Preserve interrupt for message handling to stop
+				Thread.currentThread().interrupt();
+			} catch(IOException e) {
+				System.err.println("[MSG HANDLER] : Changes not durable - " + e.getMessage());
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
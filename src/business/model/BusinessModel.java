@@ -1,6 +1,13 @@
 package business.model;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,21 +30,45 @@ import general.model.MessageHandler;
  */
 public class BusinessModel implements Serializable {
 	private static final long serialVersionUID = 2670571685446749898L;
-	// Speed modifier to use throughout business - used to speed up simulations
+	// Speed modifier used by the system clock - used to speed up the running business
 	public static final double SPEED_MODIFIER = 0.10;
 	
 	// Business data (Persistent)
 	public final Map<CustomerLogin, Customer> customers = new HashMap<>();
 	public final Stock stock = new Stock();
 	public final Set<Supplier> suppliers = new HashSet<>();
-	public final Set<Order> orders = new LinkedHashSet<>();
+	public final OrderStore orders = new OrderStore();
 	public final Set<KitchenStaffMember> kitchenStaff = new HashSet<>();
 	public final Set<Drone> drones = new HashSet<>();
 	public final Set<Postcode> postcodes = new HashSet<>();
 
+	// Sequence number of the last journal record included when the model was stored
+	private long journalSequence = 0;
+	// Persisted fields, orders kept as a set so models stored before orders were indexed load
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("customers", Map.class),
+			new ObjectStreamField("stock", Stock.class),
+			new ObjectStreamField("suppliers", Set.class),
+			new ObjectStreamField("orders", Set.class),
+			new ObjectStreamField("kitchenStaff", Set.class),
+			new ObjectStreamField("drones", Set.class),
+			new ObjectStreamField("postcodes", Set.class),
+			new ObjectStreamField("journalSequence", long.class)};
+
 	// Message handling
 	private transient Comms comms;
 	private transient Thread messageHandlerThread;
+	private transient DishStockPublisher dishStockPublisher;
+	private transient OrderStatusStream orderStatusStream;
+	// Order archiving
+	private transient OrderArchive orderArchive;
+	// Journal of changes since the model was stored
+	private transient Journal journal;
+	// Background storage of the model
+	private transient Snapshotter snapshotter;
+	// Changes told to interfaces
+	private transient volatile ModelEventBus eventBus;
+	private transient volatile Worker.ChangeListener workerListener;
 
 	/**
 	 * @return Current comms instance
@@ -46,6 +77,245 @@ public class BusinessModel implements Serializable {
 		return comms;
 	}
 
+	/**
+	 * @return Publisher of dish stock changes to subscribed clients, null if comms not started
+	 */
+	public DishStockPublisher getDishStockPublisher() {
+		return dishStockPublisher;
+	}
+
+	/**
+	 * @return Stream of order status changes to subscribed clients, null if comms not started
+	 */
+	public OrderStatusStream getOrderStatusStream() {
+		return orderStatusStream;
+	}
+
+	/**
+	 * Get the bus telling subscribers of changes to the model, creating it and listening to the
+	 * model on first use. Workers and customers added to the model should be reported using
+	 * workerAdded and customerChanged.
+	 *
+	 * @return Bus of changes to the model
+	 */
+	public synchronized ModelEventBus getEventBus() {
+		if (eventBus == null) {
+			final ModelEventBus bus = new ModelEventBus();
+			stock.dishes.addListener(new StockMap.StockListener<Dish>() {
+				@Override
+				public void stockChanged(Dish item, StockMap.Change change) {
+					bus.publish(ModelEventBus.DISH_STOCK_CHANGED, item);
+				}
+			});
+			stock.ingredients.addListener(new StockMap.StockListener<Ingredient>() {
+				@Override
+				public void stockChanged(Ingredient item, StockMap.Change change) {
+					bus.publish(ModelEventBus.INGREDIENT_STOCK_CHANGED, item);
+				}
+			});
+			// Status listeners are also told of added orders
+			orders.addStatusListener(new Order.StatusListener() {
+				@Override
+				public void statusChanged(Order order, Order.Status status) {
+					bus.publish(ModelEventBus.ORDER_STATUS_CHANGED, order);
+				}
+			});
+			orders.addContentListener(new OrderStore.ContentListener() {
+				@Override
+				public void orderAdded(Order order) {
+					// Published once status is set
+				}
+
+				@Override
+				public void orderRemoved(Order order) {
+					bus.publish(ModelEventBus.ORDER_STATUS_CHANGED, order);
+				}
+			});
+			workerListener = new Worker.ChangeListener() {
+				@Override
+				public void workerChanged(Worker worker) {
+					bus.publish(ModelEventBus.WORKER_ACTION_CHANGED, worker);
+				}
+			};
+			// Workers added from now are reported, so those held can be listened to without
+			// holding the model whilst adding
+			eventBus = bus;
+			synchronized (kitchenStaff) {
+				for (final Worker kitchenStaffMember : kitchenStaff) {
+					kitchenStaffMember.setChangeListener(workerListener);
+				}
+			}
+			synchronized (drones) {
+				for (final Worker drone : drones) {
+					drone.setChangeListener(workerListener);
+				}
+			}
+		}
+		return eventBus;
+	}
+
+	/**
+	 * Report a worker added to the model, so that changes to it are published.
+	 *
+	 * @param worker Worker that has been added
+	 */
+	public void workerAdded(Worker worker) {
+		final ModelEventBus eventBus = this.eventBus;
+		if (eventBus != null) {
+			worker.setChangeListener(workerListener);
+			eventBus.publish(ModelEventBus.WORKER_ACTION_CHANGED, worker);
+		}
+	}
+
+	/**
+	 * Report a customer added to, replaced in or removed from the model.
+	 *
+	 * @param customer Customer that has changed
+	 */
+	public void customerChanged(Customer customer) {
+		final ModelEventBus eventBus = this.eventBus;
+		if (eventBus != null) {
+			eventBus.publish(ModelEventBus.CUSTOMER_CHANGED, customer);
+		}
+	}
+
+	/**
+	 * @return Journal of changes since the model was stored, null if journal not started
+	 */
+	public Journal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * @return Sequence number of the last journal record included when the model was stored
+	 */
+	public long getJournalSequence() {
+		return journalSequence;
+	}
+
+	/**
+	 * Open the journal held in a file, replaying changes made since the model was stored, and
+	 * start recording changes. Must be called before anything else changes the model.
+	 *
+	 * @param file File holding journal
+	 * @return True if journal started, else false
+	 */
+	public boolean startJournal(File file) {
+		if (journal != null) {
+			throw new IllegalStateException("[MODEL] : Journal already started");
+		}
+		try {
+			System.out.println("[MODEL] : Journal starting...");
+			final Journal journal = new Journal(file);
+			journal.open(this);
+			journal.start();
+			this.journal = journal;
+			System.out.println("[MODEL] : Journal started");
+			return true;
+		} catch (IOException e) {
+			System.err.println("[MODEL] : Unable to open journal: " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * @param journalSequence Sequence number of the last journal record included in the model
+	 */
+	void setJournalSequence(long journalSequence) {
+		this.journalSequence = journalSequence;
+	}
+
+	/**
+	 * @return Snapshotter storing the model, null if snapshots not started
+	 */
+	public Snapshotter getSnapshotter() {
+		return snapshotter;
+	}
+
+	/**
+	 * Start storing the model periodically as snapshots held in a directory, whilst the model
+	 * continues running. Should be called once the journal has started.
+	 *
+	 * @param directory Directory holding snapshots
+	 * @return True if snapshots started, else false
+	 */
+	public boolean startSnapshots(File directory) {
+		if (snapshotter != null) {
+			throw new IllegalStateException("[MODEL] : Snapshots already started");
+		}
+		try {
+			System.out.println("[MODEL] : Snapshots starting...");
+			final Snapshotter snapshotter = new Snapshotter(this, directory);
+			snapshotter.start();
+			this.snapshotter = snapshotter;
+			System.out.println("[MODEL] : Snapshots started");
+			return true;
+		} catch (IOException e) {
+			System.err.println("[MODEL] : Unable to start snapshots: " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Store a final snapshot of the model and close the journal, removing records included in
+	 * the snapshot. The model should be suspended so no further changes are made.
+	 *
+	 * @return True if snapshot stored, else false
+	 */
+	public boolean storeSnapshot() {
+		if (snapshotter == null) {
+			return false;
+		}
+		boolean stored = false;
+		try {
+			snapshotter.snapshot();
+			stored = true;
+		} catch(IOException e) {
+			System.err.println("[MODEL] : Unable to store snapshot: " + e.getMessage());
+		}
+		if (journal != null) {
+			try {
+				journal.stop();
+			} catch(InterruptedException e) {
+				System.err.println("[MODEL] : Unable to wait for journal records");
+			}
+			journal = null;
+		}
+		return stored;
+	}
+
+	/**
+	 * @return Archive of completed orders, null if archive not started
+	 */
+	public OrderArchive getOrderArchive() {
+		return orderArchive;
+	}
+
+	/**
+	 * Open the archive of completed orders held in a directory and start moving completed orders
+	 * into it.
+	 *
+	 * @param directory Directory holding archive
+	 * @return True if archive started, else false
+	 */
+	public boolean startArchive(File directory) {
+		if (orderArchive != null) {
+			throw new IllegalStateException("[MODEL] : Archive already started");
+		}
+		try {
+			System.out.println("[MODEL] : Archive starting...");
+			final OrderArchive archive = new OrderArchive(directory);
+			archive.open();
+			archive.start(orders);
+			orderArchive = archive;
+			System.out.println("[MODEL] : Archive started");
+			return true;
+		} catch (IOException e) {
+			System.err.println("[MODEL] : Unable to open archive: " + e.getMessage());
+		}
+		return false;
+	}
+
 	/**
 	 * Create a new instance of comms if it isn't already instantiated. This will create an
 	 * accompanying message handler.
@@ -59,8 +329,17 @@ public class BusinessModel implements Serializable {
 		}
 		try {
 			System.out.println("[MODEL] : Comms starting...");
-			// Start comms
-			comms = new Comms(source);
+			// Start comms, keeping a long-lived connection per client that is multiplexed
+			// with all other clients by a single selector thread
+			comms = new Comms(source, null, true, Comms.ServerType.SELECTOR);
+			// Resolve received objects to the model's instances so they are not duplicated
+			comms.setCodec(new BusinessMessageCodec(new ModelCanonicalizer(this)));
+			// Push dish stock changes to subscribed clients
+			dishStockPublisher = new DishStockPublisher(stock.dishes, comms);
+			dishStockPublisher.start();
+			// Push order status changes to clients of the customers that own the orders
+			orderStatusStream = new OrderStatusStream(this, comms);
+			orderStatusStream.start();
 			// Create associated message handler
 			final MessageHandler messageHandler = new BusinessMessageHandler(this);
 			messageHandlerThread = new Thread(messageHandler);
@@ -86,6 +365,18 @@ public class BusinessModel implements Serializable {
 			messageHandlerThread.interrupt();
 			messageHandlerThread.join();
 			System.out.println("[MODEL] : Message handler thread finished");
+			// Stop pushing changes to clients
+			dishStockPublisher.stop();
+			orderStatusStream.stop();
+			// Stop periodic snapshots, a final snapshot is taken once suspended
+			if (snapshotter != null) {
+				snapshotter.stop();
+			}
+			// Stop archiving, orders not yet archived remain in the model
+			if (orderArchive != null) {
+				orderArchive.stop();
+				orderArchive.close();
+			}
 		} catch(InterruptedException e) {
 			System.err.println("[MODEL] : Unable to wait for message handler thread completion");
 		}
@@ -161,15 +452,39 @@ public class BusinessModel implements Serializable {
 	}
 
 	/**
-	 * Filter the models set of orders to get only those with a particular status.
+	 * Get copies of all orders that may be read without locking. Orders are only copied again
+	 * once they have changed, so the copies can be taken repeatedly at little cost and compared by
+	 * version to find whether orders have changed.
+	 *
+	 * @return Copies of orders at the current version of the order store
+	 */
+	public VersionedList<Order> getOrdersView() {
+		return orders.getView();
+	}
+
+	/**
+	 * @return Copies of dishes and their stock levels at the current version of dish stock
+	 */
+	public VersionedList<StockItem<Dish>> getDishesView() {
+		return stock.dishes.getView();
+	}
+
+	/**
+	 * @return Copies of ingredients and their stock levels at the current version of ingredient
+	 *         stock
+	 */
+	public VersionedList<StockItem<Ingredient>> getIngredientsView() {
+		return stock.ingredients.getView();
+	}
+
+	/**
+	 * Get the models orders with a particular status using the status index.
 	 * 
 	 * @param status Status to filter by
 	 * @return Filtered set of orders
 	 */
 	public Set<Order> getOrdersOfStatus(Order.Status status) {
-		synchronized (orders) {
-			return getOrdersOfStatus(status, orders);
-		}
+		return orders.getOrdersOfStatus(status);
 	}
 
 	/**
@@ -190,15 +505,13 @@ public class BusinessModel implements Serializable {
 	}
 
 	/**
-	 * Filter the models set of orders to get only those with a particular customer login.
+	 * Get the models orders with a particular customer login using the customer index.
 	 * 
 	 * @param login Customer login to filter by
 	 * @return Filtered set of orders
 	 */
 	public Set<Order> getOrdersFromCustomer(CustomerLogin login) {
-		synchronized (orders) {
-			return getOrdersFromCustomer(login, orders);
-		}
+		return orders.getOrdersFromCustomer(login);
 	}
 
 	/**
@@ -218,4 +531,71 @@ public class BusinessModel implements Serializable {
 		return fromCustomer;
 	}
 
+	/**
+	 * Write the persisted fields of the model.
+	 *
+	 * @param out Stream to write to
+	 * @throws IOException Unable to write model
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		final ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("customers", customers);
+		fields.put("stock", stock);
+		fields.put("suppliers", suppliers);
+		fields.put("orders", orders);
+		fields.put("kitchenStaff", kitchenStaff);
+		fields.put("drones", drones);
+		fields.put("postcodes", postcodes);
+		fields.put("journalSequence", journalSequence);
+		out.writeFields();
+	}
+
+	/**
+	 * Read the persisted fields of the model. Models stored before orders were indexed hold their
+	 * orders as a plain set, these are added to a new order store.
+	 *
+	 * @param in Stream to read from
+	 * @throws IOException Unable to read model
+	 * @throws ClassNotFoundException Class of a field could not be found
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final ObjectInputStream.GetField fields = in.readFields();
+		final Object stored = fields.get("orders", null);
+		final OrderStore orders;
+		if (stored instanceof OrderStore) {
+			orders = (OrderStore) stored;
+		} else if (stored instanceof Set) {
+			orders = new OrderStore();
+			orders.addAll((Set<Order>) stored);
+		} else {
+			throw new InvalidObjectException("Orders of model are not a set");
+		}
+		setField("customers", fields.get("customers", null));
+		setField("stock", fields.get("stock", null));
+		setField("suppliers", fields.get("suppliers", null));
+		setField("orders", orders);
+		setField("kitchenStaff", fields.get("kitchenStaff", null));
+		setField("drones", fields.get("drones", null));
+		setField("postcodes", fields.get("postcodes", null));
+		journalSequence = fields.get("journalSequence", 0L);
+	}
+
+	/**
+	 * Set a final field of the model whilst it is being read.
+	 *
+	 * @param name Name of field
+	 * @param value Value read for field
+	 * @throws InvalidObjectException Field could not be set to value
+	 */
+	private void setField(String name, Object value) throws InvalidObjectException {
+		try {
+			final Field field = BusinessModel.class.getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(this, value);
+		} catch(ReflectiveOperationException | IllegalArgumentException e) {
+			throw new InvalidObjectException(String.format("Unable to set %s of model", name));
+		}
+	}
+
 }
@@ -0,0 +1,92 @@
+package business.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+
+/**
+ * Source of business time used by workers and orders. All waiting done by workers goes through
+ * the clock so that the same worker behaviour can run against real time, or against virtual time
+ * in a simulation. Durations passed to the clock are in business time; a clock decides how long
+ * they take to pass.
+ *
+ * A single clock is used throughout the business, the system clock by default. The clock should
+ * only be replaced before any worker starts.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public abstract class Clock {
+	// Clock used throughout the business
+	private static volatile Clock clock = new SystemClock(BusinessModel.SPEED_MODIFIER);
+
+	/**
+	 * @return Clock used throughout the business
+	 */
+	public static Clock get() {
+		return clock;
+	}
+
+	/**
+	 * @param clock Clock to use throughout the business
+	 */
+	public static void set(Clock clock) {
+		if (clock == null) {
+			throw new IllegalArgumentException("Clock cannot be null");
+		}
+		Clock.clock = clock;
+	}
+
+	/**
+	 * @return Current business time (ms since epoch)
+	 */
+	public abstract long currentTimeMillis();
+
+	/**
+	 * @return Current business date/time
+	 */
+	public LocalDateTime now() {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(currentTimeMillis()),
+				ZoneId.systemDefault());
+	}
+
+	/**
+	 * Block the calling thread whilst a duration of business time passes.
+	 *
+	 * @param millis Duration (ms)
+	 * @throws InterruptedException Interrupted whilst waiting
+	 */
+	public abstract void sleep(long millis) throws InterruptedException;
+
+	/**
+	 * Block the calling thread until another thread signals the given monitor, as with
+	 * Object.wait. The caller must hold the monitor and should check its condition again once
+	 * woken.
+	 *
+	 * @param monitor Monitor to wait on
+	 * @throws InterruptedException Interrupted whilst waiting
+	 */
+	public abstract void await(Object monitor) throws InterruptedException;
+
+	/**
+	 * Wake every thread waiting on the given monitor, as with Object.notifyAll. The caller must
+	 * hold the monitor.
+	 *
+	 * @param monitor Monitor to signal
+	 */
+	public abstract void signalAll(Object monitor);
+
+	/**
+	 * Create a thread that waits using this clock. The thread is not started.
+	 *
+	 * @param runnable Runnable to run on thread
+	 * @return Created thread
+	 */
+	public abstract Thread newThread(Runnable runnable);
+
+	/**
+	 * @return Source of random durations, seeded by clocks whose runs should be repeatable
+	 */
+	public abstract Random getRandom();
+
+}
@@ -52,6 +52,29 @@ public class CustomerLogin implements Serializable, Validatable {
 		this.setPassword(password);
 	}
 
+	/**
+	 * Restore a login from stored fields without rehashing. Used when decoding a login that was
+	 * hashed elsewhere.
+	 *
+	 * @param username Unique identifier of login
+	 * @param passwordHash Existing hash of password
+	 * @param checksum Existing checksum of login
+	 * @return Restored login
+	 */
+	static CustomerLogin restore(String username, String passwordHash, String checksum) {
+		final CustomerLogin login = new CustomerLogin(username);
+		login.passwordHash = passwordHash;
+		login.checksum = checksum;
+		return login;
+	}
+
+	/**
+	 * @return Checksum of login, null if no password set
+	 */
+	String getChecksum() {
+		return checksum;
+	}
+
 	/**
 	 * @return Unique identifier attached to login
 	 */
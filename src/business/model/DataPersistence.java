@@ -5,6 +5,10 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import general.utility.SerializationUtils;
 
@@ -24,7 +28,9 @@ public class DataPersistence {
 	public DataPersistence() {}
 
 	/**
-	 * Store the given object using the file determined from the identifier.
+	 * Store the given object using the file determined from the identifier. The object is written
+	 * to a temporary file that is forced to disk and then replaces any existing file, so an
+	 * existing file is never left partially written.
 	 *
 	 * @param identifier Identifier to use for storage
 	 * @param object Object to store
@@ -32,15 +38,45 @@ public class DataPersistence {
 	 */
 	public static void store(String identifier, Object object) throws FileNotFoundException {
 		final File file = getFile(identifier);
+		final File temp = new File(file.getPath() + ".tmp");
 		// Make directories if required
 		file.getParentFile().mkdirs();
 		// Create output stream
-		final FileOutputStream fos = new FileOutputStream(file);
+		final FileOutputStream fos = new FileOutputStream(temp);
 		SerializationUtils.serialize(object, fos);
 		try {
 			fos.close();
+			// Contents must be on disk before the file they replace is lost
+			try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			forceDirectory(file.getParentFile());
 		} catch(IOException e) {
-			// close failed, ignore
+			throw new FileNotFoundException("Unable to replace " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Force the entries of a directory to disk, so files created in or moved into it survive a
+	 * crash. Some platforms cannot open directories, in which case nothing is done.
+	 *
+	 * @param directory Directory to force
+	 * @throws IOException Unable to force directory
+	 */
+	static void forceDirectory(File directory) throws IOException {
+		final FileChannel channel;
+		try {
+			channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+		} catch(IOException e) {
+			// Directories cannot be opened on Windows
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
 		}
 	}
 
@@ -64,6 +100,16 @@ public class DataPersistence {
 		return object;
 	}
 
+	/**
+	 * Determine the persistence directory for an identifier, for data stored across many files.
+	 *
+	 * @param identifier Identifier to get directory for
+	 * @return Directory that identifier should represent
+	 */
+	public static File getDirectory(String identifier) {
+		return new File(String.format("%s/%s", DIRECTORY, identifier));
+	}
+
 	/**
 	 * Determine the persistence path for an identifier.
 	 *
@@ -71,7 +117,19 @@ public class DataPersistence {
 	 * @return File that identifier should represent
 	 */
 	private static File getFile(String identifier) {
-		return new File(String.format("%s/%s.%s", DIRECTORY, identifier, FILE_EXTENSION));
+		return getFile(identifier, FILE_EXTENSION);
+	}
+
+	/**
+	 * Determine the persistence path for an identifier with a file extension, for data not stored
+	 * as a single object.
+	 *
+	 * @param identifier Identifier to get path (File) for
+	 * @param extension File extension to use
+	 * @return File that identifier should represent
+	 */
+	public static File getFile(String identifier, String extension) {
+		return new File(String.format("%s/%s.%s", DIRECTORY, identifier, extension));
 	}
 
 }
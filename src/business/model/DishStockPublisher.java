@@ -0,0 +1,223 @@
+package business.model;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import general.model.Comms;
+import general.model.Message;
+import general.model.ObjectMessage;
+import general.model.QuantityMap;
+
+/**
+ * Pushes changes in available dish stock to subscribed clients. Changes reported by the dish stock
+ * map are collected over a short window so that a burst of changes results in a single message
+ * per subscriber; only dishes whose available stock has changed are sent. Messages carry absolute
+ * stock values rather than differences along with an increasing sequence number, so clients can
+ * apply them in any order by ignoring values older than those they hold. Sequence numbers are only
+ * comparable within an epoch, which is different for every publisher. A subscriber that cannot be
+ * sent to is unsubscribed.
+ *
+ * Messages (DISH_STOCK_CHANGES) hold:
+ * EPOCH - Long identifier of the publisher that created the message
+ * SEQUENCE - Long sequence number of the message
+ * FULL - Boolean, whether DISHES holds every dish (dishes not present should be removed)
+ * DISHES - QuantityMap of changed dishes and their available stock
+ * REMOVED - Dish array of dishes no longer stocked
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class DishStockPublisher implements StockMap.StockListener<Dish>, Runnable {
+	// Time over which changes are collected before being pushed
+	private static final int COALESCE_WINDOW = 100; // ms
+
+	private final StockMap<Dish> dishes;
+	private final Comms comms;
+	// Identifier of this publisher's sequence numbers
+	private final long epoch = new Random().nextLong();
+	// Addresses of subscribed clients
+	private final Set<InetSocketAddress> subscribers = ConcurrentHashMap.newKeySet();
+	// Dishes changed since the last push, guarded by changeLock
+	private Map<Dish, StockMap.Change> changed = new HashMap<>();
+	// Lock taken by changes whilst the changed dish is locked, so never held whilst locking others
+	private final Object changeLock = new Object();
+	// Sequence number of the last message created, guarded by this
+	private long sequence = 0;
+	// Available stock last pushed for each dish, guarded by this
+	private final Map<Dish, Double> published = new HashMap<>();
+	private Thread thread;
+
+	/**
+	 * Instantiate a publisher of changes to a dish stock map.
+	 *
+	 * @param dishes Dish stock to publish changes of
+	 * @param comms Comms to push changes using
+	 */
+	public DishStockPublisher(StockMap<Dish> dishes, Comms comms) {
+		this.dishes = dishes;
+		this.comms = comms;
+	}
+
+	/**
+	 * Start listening to changes and pushing them to subscribers.
+	 */
+	public void start() {
+		dishes.addListener(this);
+		thread = new Thread(this, "DishStockPublisher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop pushing changes to subscribers, blocking until the publishing thread has finished.
+	 *
+	 * @throws InterruptedException Interrupted whilst waiting for publishing thread
+	 */
+	public void stop() throws InterruptedException {
+		dishes.removeListener(this);
+		if (thread != null) {
+			thread.interrupt();
+			thread.join();
+			thread = null;
+		}
+	}
+
+	/**
+	 * Subscribe a client to changes. The returned message holds every dish so the client can
+	 * start from a complete state; changes made afterwards are pushed.
+	 *
+	 * @param subscriber Address of client
+	 * @return Message holding all dishes and their available stock
+	 */
+	public ObjectMessage subscribe(InetSocketAddress subscriber) {
+		// Subscribe before getting stock so no later change is missed
+		subscribers.add(subscriber);
+		// Lock dishes so none are added or removed, levels changed whilst reading are pushed later
+		synchronized (dishes) {
+			synchronized (this) {
+				return createMessage(++sequence, true, dishes.getStockAvailable(), new Dish[0]);
+			}
+		}
+	}
+
+	/**
+	 * Stop pushing changes to a client.
+	 *
+	 * @param subscriber Address of client
+	 */
+	public void unsubscribe(InetSocketAddress subscriber) {
+		subscribers.remove(subscriber);
+	}
+
+	/**
+	 * @return Number of subscribed clients
+	 */
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	@Override
+	public void stockChanged(Dish item, StockMap.Change change) {
+		synchronized (changeLock) {
+			// Keep changes that must be pushed even if available stock is unchanged
+			final StockMap.Change existing = changed.get(item);
+			if (existing == null || change != StockMap.Change.LEVELS) {
+				changed.put(item, change);
+			}
+			changeLock.notify();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				// Wait for a change then allow further changes to collect
+				synchronized (changeLock) {
+					while (changed.isEmpty()) {
+						changeLock.wait();
+					}
+				}
+				Thread.sleep(COALESCE_WINDOW);
+			} catch(InterruptedException e) {
+				break;
+			}
+			publish();
+		}
+	}
+
+	/**
+	 * Push all collected changes to subscribers.
+	 */
+	private void publish() {
+		final ObjectMessage tx;
+		// Lock dishes so none are added or removed, levels changed whilst publishing are published
+		// again by the next push
+		synchronized (dishes) {
+			synchronized (this) {
+				final Map<Dish, StockMap.Change> changes;
+				synchronized (changeLock) {
+					changes = changed;
+					changed = new HashMap<>();
+				}
+				final QuantityMap<Dish> available = new QuantityMap<>();
+				final List<Dish> removed = new ArrayList<>();
+				for (final Entry<Dish, StockMap.Change> entry : changes.entrySet()) {
+					final Dish dish = entry.getKey();
+					final StockLevels levels = dishes.get(dish);
+					if (levels == null) {
+						published.remove(dish);
+						removed.add(dish);
+						continue;
+					}
+					final double stock = levels.getStockAvailable();
+					final Double previous = published.put(dish, stock);
+					// Level changes that do not affect available stock need not be pushed
+					if (entry.getValue() == StockMap.Change.LEVELS && previous != null
+							&& previous == stock) {
+						continue;
+					}
+					available.put(dish, stock);
+				}
+				if (available.isEmpty() && removed.isEmpty()) {
+					return;
+				}
+				tx = createMessage(++sequence, false, available,
+						removed.toArray(new Dish[removed.size()]));
+			}
+		}
+		for (final InetSocketAddress subscriber : subscribers) {
+			if (!comms.sendMessage(tx, subscriber)) {
+				System.err.println(String.format("[PUBLISHER] : Unsubscribing %s", subscriber));
+				subscribers.remove(subscriber);
+			}
+		}
+	}
+
+	/**
+	 * Create a message holding dish stock.
+	 *
+	 * @param sequence Sequence number of message
+	 * @param full Whether message holds every dish
+	 * @param available Dishes and their available stock
+	 * @param removed Dishes no longer stocked
+	 * @return Created message
+	 */
+	private ObjectMessage createMessage(long sequence, boolean full,
+			QuantityMap<Dish> available, Dish[] removed) {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.DISH_STOCK_CHANGES);
+		tx.addObject("EPOCH", epoch);
+		tx.addObject("SEQUENCE", sequence);
+		tx.addObject("FULL", full);
+		tx.addObject("DISHES", available);
+		tx.addObject("REMOVED", removed);
+		return tx;
+	}
+
+}
@@ -1,9 +1,11 @@
 package business.model;
 
-import java.util.Map.Entry;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Random;
-import java.util.Set;
 
 import general.model.QuantityMap;
 import general.utility.ErrorBuilder;
@@ -21,8 +23,12 @@ public class Drone extends Worker {
 	// Constants used for timing
 	private static final int HOUR_MS = 3600000;
 	private static final double RESTOCK_MODIFIER = 1.2;
+	// Dishes carried if capacity not set
+	public static final int DEFAULT_CAPACITY = 10;
 	// Drone speed
 	private double speed;
+	// Most dishes carried on a delivery trip
+	private int capacity = DEFAULT_CAPACITY;
 	// Model being served
 	private final BusinessModel model;
 
@@ -50,6 +56,18 @@ public class Drone extends Worker {
 		this.model = model;
 	}
 
+	/**
+	 * Instantiate a copy of a drone's details that can be read without locking.
+	 *
+	 * @param drone Drone to copy
+	 */
+	public Drone(Drone drone) {
+		super(drone);
+		this.speed = drone.speed;
+		this.capacity = drone.capacity;
+		this.model = drone.model;
+	}
+
 	/**
 	 * @return The current speed of the drone (km/h)
 	 */
@@ -64,6 +82,20 @@ public class Drone extends Worker {
 		this.speed = speed;
 	}
 
+	/**
+	 * @return The most dishes the drone carries on a delivery trip
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param capacity The most dishes the drone carries on a delivery trip
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
 	@Override
 	protected void doWork() throws InterruptedException {
 		// Prioritise order delivery and only handle a single
@@ -75,113 +107,115 @@ public class Drone extends Worker {
 	}
 
 	/**
-	 * Find a customer that has a delivery ready for dispatch. Collect all orders ready for dispatch
-	 * for the target customer and travel to the customer. Early exit of journey to customer leads
-	 * to order completion this is done as an abstraction of the drone finishing the task before
-	 * stopping.
+	 * Plan a trip delivering the order that has been ready for dispatch longest, along with the
+	 * orders of nearby customers that fit in the drone's capacity. Travel to each customer in turn,
+	 * delivering their orders on arrival. Early exit of the trip leads to completion of every order
+	 * on the trip, this is done as an abstraction of the drone finishing the task before stopping.
 	 *
 	 * @return Whether order delivery was required
 	 * @throws InterruptedException A re-thrown exception indicating that the worker should stop
 	 */
 	public boolean deliverOrder() throws InterruptedException {
-		Customer targetCustomer = null;
-		Set<Order> toDeliver;
+		final RoutePlanner.Route route;
 		synchronized (model.orders) {
-			// Find orders ready for dispatch
-			final Set<Order> reqDelivery = BusinessModel.getOrdersOfStatus(
-					Order.Status.READY_FOR_DISPATCH, model.orders);
-			if (reqDelivery.size() > 0) {
-				// Get target customer as first in order list
-				targetCustomer = reqDelivery.iterator().next().getCustomer();
-				toDeliver = BusinessModel.getOrdersFromCustomer(
-						targetCustomer.getLogin(), reqDelivery);
-				// Start order dispatch
-				for (final Order order : toDeliver) {
-					// Remove reserved stock from stock
-					synchronized (model.stock.dishes) {
-						model.stock.dishes.unreserveStock(order.getDishes());
-						model.stock.dishes.removeStock(order.getDishes());
-					}
-					order.setStatus(Order.Status.DISPATCHED);
-				}
-			} else {
+			final List<Order> ready = model.orders.getFirstOfStatus(
+					Order.Status.READY_FOR_DISPATCH, RoutePlanner.MAX_ORDERS);
+			route = RoutePlanner.plan(ready, capacity);
+			if (route == null) {
 				return false;
 			}
+			// Start order dispatch
+			for (final Order order : route.getOrders()) {
+				// Remove reserved stock from stock
+				model.stock.dishes.dispatchStock(order.getDishes());
+				order.setStatus(Order.Status.DISPATCHED);
+			}
 		}
-		// Wait (simulate drone journey to customer)
+		// Wait (simulate drone journey to each customer)
+		final List<RoutePlanner.Stop> stops = route.getStops();
+		int delivered = 0;
 		try {
-			actionUpdate(String.format("Delivering to '%s'", targetCustomer.getName()));
-			doJourney(targetCustomer.getPostcode().getDistance());
+			while (delivered < stops.size()) {
+				final RoutePlanner.Stop stop = stops.get(delivered);
+				actionUpdate(String.format("Delivering to '%s'", stop.getCustomer().getName()));
+				doJourney(route.getLegDistance(delivered));
+				for (final Order order : stop.getOrders()) {
+					order.setStatus(Order.Status.DELIVERED);
+				}
+				delivered++;
+			}
 		} catch(InterruptedException e) {
 			// Early interruption leads to preemptive delivery
-			for (final Order order : toDeliver) {
-				order.setStatus(Order.Status.DELIVERED);
+			for (int i = delivered; i < stops.size(); i++) {
+				for (final Order order : stops.get(i).getOrders()) {
+					order.setStatus(Order.Status.DELIVERED);
+				}
 			}
 			// Rethrow exception to propogate up worker task structure
 			throw e;
 		}
-		for (final Order order : toDeliver) {
-			order.setStatus(Order.Status.DELIVERED);
-		}
-		// Wait (simulate drone journey from customer to business)
+		// Wait (simulate drone journey from last customer to business)
 		actionUpdate("Returning to Business");
-		doJourney(targetCustomer.getPostcode().getDistance());
+		doJourney(route.getReturnDistance());
 		actionUpdate("Arrived at Business");
 		return true;
 	}
 
 	/**
-	 * Find an ingredient that requires restocking where the supplier is not already being
-	 * restocked. Travel to the ingredients supplier. On arrival determine all ingredients that need
-	 * restocking from that supplier and restock them. Early exit of journey to supplier cancels
-	 * restock. Early exit of journey back finishes restock as opposed to discarding; this is done
-	 * as an abstraction of the drone finishing the task before stopping.
+	 * Plan a trip collecting the ingredients that require restocking from one or more suppliers
+	 * not already being restocked, start their restock and travel to each supplier in turn before
+	 * returning. Early exit of the journey cancels the restock of suppliers not yet visited and
+	 * finishes the restock of those visited as opposed to discarding; this is done as an
+	 * abstraction of the drone finishing the task before stopping.
 	 *
 	 * @return Whether ingredient restock was required
 	 * @throws InterruptedException A re-thrown exception indicating that the worker should stop
 	 */
 	public boolean restockIngredients() throws InterruptedException {
-		Supplier targetSupplier;
-		// Find a supplier that requires restocking
+		final RestockPlanner.Trip trip;
+		final List<QuantityMap<Ingredient>> toRestock = new ArrayList<>();
+		// Plan a trip and start restock so that other drones do not plan the same restock
 		synchronized (model.stock.ingredients) {
-			targetSupplier = model.stock.getSupplierToRestock();
-			if (targetSupplier != null) {
-				targetSupplier.setBeingRestocked(true);
-				actionUpdate(String.format("Restocking from '%s'", targetSupplier.getName()));
-			} else {
+			trip = RestockPlanner.plan(model.stock.ingredients);
+			if (trip == null) {
 				return false;
 			}
+			for (final RestockPlanner.Pickup pickup : trip.getPickups()) {
+				pickup.getSupplier().setBeingRestocked(true);
+				final QuantityMap<Ingredient> amounts = getRestockAmount(pickup.getIngredients());
+				model.stock.ingredients.startRestock(amounts);
+				toRestock.add(amounts);
+			}
 		}
-		// Wait (simulate drone journey to supplier)
-		try {
-			doJourney(targetSupplier.getDistance());
-		} catch(InterruptedException e) {
-			// Early interruption leads to cancelling of restock
-			targetSupplier.setBeingRestocked(false);
-			// Rethrow exception to propogate up worker task structure
-			throw e;
-		}
-		// Find ingredients that require restock, start restock
-		QuantityMap<Ingredient> toRestock = null;
-		synchronized (model.stock.ingredients) {
-			QuantityMap<Ingredient> reqStock = model.stock.ingredients.getStockRequired();
-			reqStock = Stock.getIngredientsFromSupplier(targetSupplier, reqStock);
-			toRestock = getRestockAmount(reqStock);
-			model.stock.ingredients.startRestock(toRestock);
-			targetSupplier.setBeingRestocked(false);
-		}
-		// Wait (simulate drone journey from supplier to business)
+		// Wait (simulate drone journey to each supplier)
+		int visited = 0;
 		try {
+			for (; visited < trip.getPickups().size(); visited++) {
+				final Supplier supplier = trip.getPickups().get(visited).getSupplier();
+				actionUpdate(String.format("Restocking from '%s'", supplier.getName()));
+				doJourney(trip.getLegDistance(visited));
+				supplier.setBeingRestocked(false);
+			}
 			actionUpdate("Returning to Business");
-			doJourney(targetSupplier.getDistance());
+			doJourney(trip.getReturnDistance());
 		} catch(InterruptedException e) {
-			// Early interruption leads to preemptive restock finishing
-			model.stock.ingredients.finishRestock(toRestock);
+			// Early interruption leads to cancelling of restock from suppliers not visited and
+			// preemptive restock finishing of those visited
+			for (int i = 0; i < toRestock.size(); i++) {
+				if (i < visited) {
+					model.stock.ingredients.finishRestock(toRestock.get(i));
+				} else {
+					trip.getPickups().get(i).getSupplier().setBeingRestocked(false);
+					model.stock.ingredients.cancelRestock(toRestock.get(i));
+				}
+			}
 			// Rethrow exception to propogate up worker task structure
 			throw e;
 		}
 		// Finish restock
-		model.stock.ingredients.finishRestock(toRestock);
+		for (final QuantityMap<Ingredient> amounts : toRestock) {
+			model.stock.ingredients.finishRestock(amounts);
+		}
 		actionUpdate("Arrived at Business");
 		return true;
 	}
@@ -196,22 +230,21 @@ public class Drone extends Worker {
 	 */
 	private static QuantityMap<Ingredient> getRestockAmount(QuantityMap<Ingredient> ingredients) {
 		final QuantityMap<Ingredient> restockAmounts = new QuantityMap<>();
-		for (final Entry<Ingredient, Double> entry : ingredients.entrySet()) {
-			restockAmounts.put(entry.getKey(), Math.ceil(entry.getValue() * RESTOCK_MODIFIER));
+		for (int i = ingredients.nextIndex(-1); i >= 0; i = ingredients.nextIndex(i)) {
+			restockAmounts.setQuantity(ingredients.keyAt(i),
+					Math.ceil(ingredients.quantityAt(i) * RESTOCK_MODIFIER));
 		}
 		return restockAmounts;
 	}
 
 	/**
-	 * Sleep the thread for the time it takes the drone to cover the given distance. A constant
-	 * speed modifier is taken into account.
+	 * Wait for the business time it takes the drone to cover the given distance.
 	 *
 	 * @param distance Distance that must be travelled (km)
 	 * @throws InterruptedException A re-thrown exception indicating that the worker should stop
 	 */
 	private void doJourney(double distance) throws InterruptedException {
-		final int time = (int) Math.round(HOUR_MS * distance / speed * BusinessModel.SPEED_MODIFIER);
-		Thread.sleep(time);
+		Clock.get().sleep(Math.round(HOUR_MS * distance / speed));
 	}
 
 	/**
@@ -231,6 +264,20 @@ public class Drone extends Worker {
 		return String.valueOf(identifier);
 	}
 
+	/**
+	 * Read drone, giving drones persisted before capacity was introduced the default capacity.
+	 *
+	 * @param in Stream to read from
+	 * @throws IOException Unable to read drone
+	 * @throws ClassNotFoundException Class of a field could not be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (capacity == 0) {
+			capacity = DEFAULT_CAPACITY;
+		}
+	}
+
 	@Override
 	public ErrorBuilder validate() {
 		final ErrorBuilder eb = new ErrorBuilder();
@@ -240,6 +287,9 @@ public class Drone extends Worker {
 		if (speed <= 0) {
 			eb.addError("Speed must be positive");
 		}
+		if (capacity <= 0) {
+			eb.addError("Capacity must be positive");
+		}
 		if (model == null) {
 			eb.addError("Model is not set");
 		}
@@ -0,0 +1,913 @@
+package business.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import general.utility.SerializationUtils;
+
+/**
+ * Write-ahead journal of changes made to a business model between snapshots. Each change is
+ * appended as a numbered record; a single thread writes all records appended since its last write
+ * and forces them to disk together, so many changes share the cost of one sync. Callers that must
+ * not acknowledge a change before it is durable can flush the journal. Records that could not be
+ * written are kept and written again until they are durable, failing any flush in the meantime.
+ *
+ * Order, order status and stock changes are recorded by listening to the model; customer, supplier
+ * and postcode changes are recorded by calling the journal directly. Stock records hold the levels
+ * of an item after a change rather than the change itself, so replaying a record more than once
+ * has no further effect; the levels of every item changed by a single update are held in one
+ * record, so an update is never replayed in part. Other model data (staff and drones) is only
+ * persisted by snapshots.
+ *
+ * A snapshot of the model remembers the sequence number of the last record it includes; on
+ * opening, records after that number are replayed on top of the snapshot. Records up to the
+ * number can then be truncated from the journal. A record left incomplete by a crash fails its
+ * checksum and is discarded along with anything after it.
+ *
+ * Record format: [int length][int CRC32 of payload][payload]
+ * Payload format: [long sequence][byte type][type specific fields]
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class Journal implements OrderStore.ContentListener, Order.StatusListener, Runnable {
+	// Record types
+	private static final int CUSTOMER_PUT = 1;
+	private static final int CUSTOMER_REMOVED = 2;
+	private static final int ORDER_ADDED = 3;
+	private static final int ORDER_STATUS = 4;
+	private static final int ORDER_REMOVED = 5;
+	private static final int STOCK_ITEM = 6;
+	private static final int STOCK_LEVELS = 7;
+	private static final int STOCK_REMOVED = 8;
+	private static final int STOCK_UPDATE = 9;
+	private static final int SUPPLIER_PUT = 10;
+	private static final int SUPPLIER_REMOVED = 11;
+	private static final int POSTCODE_PUT = 12;
+	private static final int POSTCODE_REMOVED = 13;
+	// Stock maps
+	private static final int KIND_DISH = 0;
+	private static final int KIND_INGREDIENT = 1;
+	// Length of record fields ahead of the payload
+	private static final int HEADER_LENGTH = 2 * Integer.BYTES;
+	// Time to wait before writing records again after a failed write
+	private static final int RETRY_INTERVAL = 1000; // ms
+
+	private final File file;
+	private BusinessModel model;
+	// Channel of journal file and the length of the records it holds, guarded by writeLock
+	private FileChannel channel;
+	private long length;
+	private final Object writeLock = new Object();
+	// Records appended but not yet written, guarded by this
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private long lastSequence = 0;
+	private long durableSequence = 0;
+	private boolean closed = false;
+	// Failure of the last write, null if it succeeded; whether the writing thread has finished
+	private IOException failure;
+	private boolean finished = false;
+	// Fields of the record being built, guarded by this
+	private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+	// Order just added, whose status need not be recorded separately, guarded by this
+	private Order addedOrder;
+	private StockJournaller<Dish> dishJournaller;
+	private StockJournaller<Ingredient> ingredientJournaller;
+	private Thread thread;
+
+	/**
+	 * Instantiate a journal using a file. The journal must be opened before use.
+	 *
+	 * @param file File to hold journal in
+	 */
+	public Journal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Open the journal, replaying every record after the journal sequence of the model onto the
+	 * model. Must be called before anything else changes the model.
+	 *
+	 * @param model Model to replay records onto and record changes of
+	 * @return Number of records replayed
+	 * @throws IOException Unable to read or create journal
+	 */
+	public int open(BusinessModel model) throws IOException {
+		this.model = model;
+		file.getParentFile().mkdirs();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		lastSequence = model.getJournalSequence();
+		int replayed = 0;
+		final long size = channel.size();
+		long position = 0;
+		while (position < size) {
+			final byte[] payload = readRecord(channel, position, size);
+			if (payload == null) {
+				System.err.println("[JOURNAL] : Discarding incomplete record");
+				channel.truncate(position);
+				break;
+			}
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			final long sequence = in.readLong();
+			if (sequence > lastSequence) {
+				replay(in);
+				lastSequence = sequence;
+				replayed++;
+			}
+			position += HEADER_LENGTH + payload.length;
+		}
+		length = position;
+		durableSequence = lastSequence;
+		System.out.println(String.format("[JOURNAL] : Replayed %d records", replayed));
+		return replayed;
+	}
+
+	/**
+	 * Start recording changes made to the model and writing records.
+	 */
+	public void start() {
+		model.orders.addContentListener(this);
+		model.orders.addStatusListener(this);
+		dishJournaller = new StockJournaller<>(KIND_DISH);
+		model.stock.dishes.addListener(dishJournaller);
+		ingredientJournaller = new StockJournaller<>(KIND_INGREDIENT);
+		model.stock.ingredients.addListener(ingredientJournaller);
+		thread = new Thread(this, "Journal");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop recording changes, blocking until all appended records are written, and close the
+	 * journal.
+	 *
+	 * @throws InterruptedException Interrupted whilst waiting for records to be written
+	 */
+	public void stop() throws InterruptedException {
+		model.orders.removeContentListener(this);
+		model.orders.removeStatusListener(this);
+		model.stock.dishes.removeListener(dishJournaller);
+		model.stock.ingredients.removeListener(ingredientJournaller);
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		if (thread != null) {
+			// Writing thread is not interrupted as this would close the channel
+			thread.join();
+			thread = null;
+		}
+		synchronized (writeLock) {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// close failed, ignore
+			}
+		}
+	}
+
+	/**
+	 * @return Sequence number of the last record appended
+	 */
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Block until every record appended before this call has been forced to disk.
+	 *
+	 * @throws InterruptedException Interrupted whilst waiting
+	 * @throws IOException Records could not be written, they are written again later
+	 */
+	public synchronized void flush() throws InterruptedException, IOException {
+		final long target = lastSequence;
+		while (durableSequence < target) {
+			if (failure != null) {
+				throw new IOException("Unable to write records: " + failure, failure);
+			}
+			if (finished) {
+				throw new IOException("Journal stopped before records were written");
+			}
+			wait();
+		}
+	}
+
+	/**
+	 * Remove all records up to and including a sequence number, which should be included in a
+	 * stored snapshot of the model. Records after the sequence number are kept.
+	 *
+	 * @param sequence Sequence number of the last record to remove
+	 * @throws InterruptedException Interrupted whilst waiting for records to be written
+	 * @throws IOException Unable to rewrite journal
+	 */
+	public void truncate(long sequence) throws InterruptedException, IOException {
+		flush();
+		synchronized (writeLock) {
+			final long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				final byte[] payload = readRecord(channel, position, size);
+				if (payload == null || ByteBuffer.wrap(payload).getLong() > sequence) {
+					break;
+				}
+				position += HEADER_LENGTH + payload.length;
+			}
+			if (position == 0) {
+				// Nothing to remove
+				return;
+			}
+			if (position >= size) {
+				// Nothing to keep
+				channel.truncate(0);
+				channel.force(true);
+				length = 0;
+				return;
+			}
+			// Copy records to keep into a new journal that replaces the existing journal
+			final File temp = new File(file.getPath() + ".tmp");
+			try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				long copied = 0;
+				while (copied < size - position) {
+					copied += channel.transferTo(position + copied, size - position - copied, out);
+				}
+				out.force(true);
+			}
+			channel.close();
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			length = channel.size();
+		}
+	}
+
+	/**
+	 * Record a customer being added or replaced.
+	 *
+	 * @param customer Customer added
+	 */
+	public void customerPut(Customer customer) {
+		appendObject(CUSTOMER_PUT, customer);
+	}
+
+	/**
+	 * Record a customer being removed.
+	 *
+	 * @param login Login of customer removed
+	 */
+	public void customerRemoved(CustomerLogin login) {
+		appendObject(CUSTOMER_REMOVED, login);
+	}
+
+	/**
+	 * Record a supplier being added or edited.
+	 *
+	 * @param supplier Supplier as it now is
+	 */
+	public void supplierPut(Supplier supplier) {
+		appendObject(SUPPLIER_PUT, supplier);
+	}
+
+	/**
+	 * Record a supplier being removed, which also removes it from the ingredients that use it.
+	 *
+	 * @param supplier Supplier removed
+	 */
+	public void supplierRemoved(Supplier supplier) {
+		appendObject(SUPPLIER_REMOVED, supplier);
+	}
+
+	/**
+	 * Record a postcode being added or edited.
+	 *
+	 * @param postcode Postcode as it now is
+	 */
+	public void postcodePut(Postcode postcode) {
+		appendObject(POSTCODE_PUT, postcode);
+	}
+
+	/**
+	 * Record a postcode being removed.
+	 *
+	 * @param postcode Postcode removed
+	 */
+	public void postcodeRemoved(Postcode postcode) {
+		appendObject(POSTCODE_REMOVED, postcode);
+	}
+
+	/**
+	 * Append a record holding a single serialised object.
+	 *
+	 * @param type Type of record
+	 * @param object Object to hold
+	 */
+	private void appendObject(int type, Object object) {
+		final byte[] bytes = serialize(object);
+		synchronized (this) {
+			try {
+				writeBytes(startRecord(type), bytes);
+				endRecord();
+			} catch(IOException e) {
+				// Writing to memory cannot fail
+			}
+		}
+	}
+
+	@Override
+	public void orderAdded(Order order) {
+		final byte[] object = serialize(order);
+		synchronized (this) {
+			try {
+				writeBytes(startRecord(ORDER_ADDED), object);
+				endRecord();
+			} catch(IOException e) {
+				// Writing to memory cannot fail
+			}
+			// Status is held in the added order
+			addedOrder = order;
+		}
+	}
+
+	@Override
+	public synchronized void statusChanged(Order order, Order.Status status) {
+		if (order == addedOrder) {
+			addedOrder = null;
+			return;
+		}
+		try {
+			final DataOutputStream out = startRecord(ORDER_STATUS);
+			writeOrderKey(out, order);
+			out.writeByte(status == null ? 0 : status.ordinal() + 1);
+			endRecord();
+		} catch(IOException e) {
+			// Writing to memory cannot fail
+		}
+	}
+
+	@Override
+	public synchronized void orderRemoved(Order order) {
+		try {
+			writeOrderKey(startRecord(ORDER_REMOVED), order);
+			endRecord();
+		} catch(IOException e) {
+			// Writing to memory cannot fail
+		}
+	}
+
+	@Override
+	public void run() {
+		// Records not yet durable, kept until written
+		byte[] batch = new byte[0];
+		long batchSequence = durableSequence;
+		while (true) {
+			synchronized (this) {
+				while (pending.size() == 0 && batch.length == 0) {
+					if (closed) {
+						finished = true;
+						notifyAll();
+						return;
+					}
+					try {
+						wait();
+					} catch(InterruptedException e) {
+						// Only stopped by closing so no record is lost
+					}
+				}
+				if (pending.size() > 0) {
+					batch = concat(batch, pending.toByteArray());
+					pending.reset();
+					batchSequence = lastSequence;
+				}
+			}
+			// Write and sync every record appended since the last write together
+			IOException error = null;
+			synchronized (writeLock) {
+				try {
+					// Records are written over any left incomplete by a failed write
+					if (channel.size() > length) {
+						channel.truncate(length);
+					}
+					final ByteBuffer buffer = ByteBuffer.wrap(batch);
+					long position = length;
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+					channel.force(false);
+					length = position;
+				} catch(IOException e) {
+					error = e;
+				}
+			}
+			synchronized (this) {
+				failure = error;
+				if (error == null) {
+					batch = new byte[0];
+					durableSequence = batchSequence;
+				} else {
+					System.err.println("[JOURNAL] : Unable to write records, retrying: " + error);
+				}
+				notifyAll();
+				if (error != null) {
+					if (closed) {
+						System.err.println("[JOURNAL] : Records lost on close");
+						finished = true;
+						return;
+					}
+					try {
+						wait(RETRY_INTERVAL);
+					} catch(InterruptedException e) {
+						// Only stopped by closing so no record is lost
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param first First bytes
+	 * @param second Bytes to follow first bytes
+	 * @return Bytes of both in order
+	 */
+	private static byte[] concat(byte[] first, byte[] second) {
+		if (first.length == 0) {
+			return second;
+		}
+		final byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, bytes, first.length, second.length);
+		return bytes;
+	}
+
+	/**
+	 * Apply a record to the model.
+	 *
+	 * @param in Stream positioned at the type of the record
+	 * @throws IOException Record is corrupt
+	 */
+	private void replay(DataInputStream in) throws IOException {
+		final int type = in.readByte();
+		switch (type) {
+			case CUSTOMER_PUT: {
+				final Customer customer = (Customer) readObject(in);
+				synchronized (model.customers) {
+					model.customers.put(customer.getLogin(), customer);
+				}
+				break;
+			}
+			case CUSTOMER_REMOVED: {
+				final CustomerLogin login = (CustomerLogin) readObject(in);
+				synchronized (model.customers) {
+					model.customers.remove(login);
+				}
+				break;
+			}
+			case ORDER_ADDED:
+				model.orders.add((Order) readObject(in));
+				break;
+			case ORDER_STATUS: {
+				final Order order = readOrderKey(in);
+				final int status = in.readByte();
+				if (order != null) {
+					order.setStatus(status == 0 ? null : Order.Status.values()[status - 1]);
+				}
+				break;
+			}
+			case ORDER_REMOVED: {
+				final Order order = readOrderKey(in);
+				if (order != null) {
+					model.orders.remove(order);
+				}
+				break;
+			}
+			case STOCK_ITEM:
+				replayStockItem(getStockMap(in.readByte()), readObject(in), readObject(in));
+				break;
+			case STOCK_LEVELS: {
+				final StockMap<?> map = getStockMap(in.readByte());
+				synchronized (map) {
+					replayLevels(map, in);
+				}
+				break;
+			}
+			case STOCK_UPDATE: {
+				final StockMap<?> map = getStockMap(in.readByte());
+				final int items = in.readInt();
+				synchronized (map) {
+					for (int i = 0; i < items; i++) {
+						replayLevels(map, in);
+					}
+				}
+				break;
+			}
+			case STOCK_REMOVED: {
+				final StockMap<?> map = getStockMap(in.readByte());
+				final String name = in.readUTF();
+				synchronized (map) {
+					map.remove(findItem(map, name));
+				}
+				break;
+			}
+			case SUPPLIER_PUT: {
+				final Supplier supplier = (Supplier) readObject(in);
+				synchronized (model.suppliers) {
+					// Update in place so ingredients keep using the same supplier
+					final Supplier existing = findEqual(model.suppliers, supplier);
+					if (existing == null) {
+						model.suppliers.add(supplier);
+					} else {
+						existing.setDistance(supplier.getDistance());
+					}
+				}
+				break;
+			}
+			case SUPPLIER_REMOVED: {
+				final Supplier supplier = (Supplier) readObject(in);
+				synchronized (model.suppliers) {
+					model.suppliers.remove(supplier);
+				}
+				synchronized (model.stock.ingredients) {
+					for (final Ingredient ingredient : model.stock.ingredients.keySet()) {
+						if (supplier.equals(ingredient.getSupplier())) {
+							ingredient.setSupplier(null);
+						}
+					}
+				}
+				break;
+			}
+			case POSTCODE_PUT: {
+				final Postcode postcode = (Postcode) readObject(in);
+				synchronized (model.postcodes) {
+					final Postcode existing = findEqual(model.postcodes, postcode);
+					if (existing == null) {
+						model.postcodes.add(postcode);
+					} else {
+						existing.setDistance(postcode.getDistance());
+					}
+				}
+				break;
+			}
+			case POSTCODE_REMOVED: {
+				final Postcode postcode = (Postcode) readObject(in);
+				synchronized (model.postcodes) {
+					model.postcodes.remove(postcode);
+				}
+				break;
+			}
+			default:
+				throw new IOException(String.format("Unknown journal record type '%d'", type));
+		}
+	}
+
+	/**
+	 * Restore the stock levels of an item in a stock map. Must be called whilst the map is locked.
+	 *
+	 * @param map Map holding item
+	 * @param in Stream positioned at the name of the item
+	 * @throws IOException Record is corrupt
+	 */
+	private static void replayLevels(StockMap<?> map, DataInputStream in) throws IOException {
+		final Object item = findItem(map, in.readUTF());
+		final double stock = in.readDouble();
+		final double restocking = in.readDouble();
+		final double reserved = in.readDouble();
+		final int restockLevel = in.readInt();
+		final boolean stockable = in.readBoolean();
+		if (item != null) {
+			map.get(item).restore(stock, restocking, reserved, restockLevel, stockable);
+		}
+	}
+
+	/**
+	 * Replace an item and its stock levels in a stock map.
+	 *
+	 * @param map Map to replace item in
+	 * @param item Item to replace
+	 * @param levels Stock levels of item
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K> void replayStockItem(StockMap<K> map, Object item, Object levels) {
+		synchronized (map) {
+			// Remove first so the latest item object is kept as the key
+			map.remove(item);
+			map.put((K) item, (StockLevels) levels);
+		}
+	}
+
+	/**
+	 * @param kind Kind of stock map
+	 * @return Stock map of model with kind
+	 * @throws IOException Unknown kind
+	 */
+	private StockMap<?> getStockMap(int kind) throws IOException {
+		switch (kind) {
+			case KIND_DISH:
+				return model.stock.dishes;
+			case KIND_INGREDIENT:
+				return model.stock.ingredients;
+			default:
+				throw new IOException(String.format("Unknown stock kind '%d'", kind));
+		}
+	}
+
+	/**
+	 * Find the element of a set equal to an object. Must be called whilst the set is locked.
+	 *
+	 * @param set Set to search
+	 * @param object Object to find
+	 * @return Element found, null if none
+	 */
+	private static <T> T findEqual(Set<T> set, T object) {
+		for (final T element : set) {
+			if (element.equals(object)) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find the item in a stock map with a name. Must be called whilst the map is locked.
+	 *
+	 * @param map Map to search
+	 * @param name Name of item
+	 * @return Item found, null if none
+	 */
+	private static Object findItem(StockMap<?> map, String name) {
+		for (final Object item : map.keySet()) {
+			if (name.equals(getName(item))) {
+				return item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param item Stock item
+	 * @return Name of item, which defines item equality
+	 */
+	private static String getName(Object item) {
+		if (item instanceof Dish) {
+			return ((Dish) item).getName();
+		}
+		if (item instanceof Ingredient) {
+			return ((Ingredient) item).getName();
+		}
+		return String.valueOf(item);
+	}
+
+	/**
+	 * Start a new record in the pending records. Must be called whilst locked.
+	 *
+	 * @param type Type of record
+	 * @return Stream to write the fields of the record to
+	 * @throws IOException Unable to write record
+	 */
+	private DataOutputStream startRecord(int type) throws IOException {
+		record.reset();
+		final DataOutputStream out = new DataOutputStream(record);
+		out.writeLong(++lastSequence);
+		out.writeByte(type);
+		return out;
+	}
+
+	/**
+	 * Add the record being built to the pending records and wake the writing thread. Must be called
+	 * whilst locked.
+	 *
+	 * @throws IOException Unable to write record
+	 */
+	private void endRecord() throws IOException {
+		final byte[] payload = record.toByteArray();
+		final CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		final DataOutputStream out = new DataOutputStream(pending);
+		out.writeInt(payload.length);
+		out.writeInt((int) crc.getValue());
+		out.write(payload);
+		notifyAll();
+	}
+
+	/**
+	 * Write the fields that identify an order: customer username and date.
+	 *
+	 * @param out Stream to write to
+	 * @param order Order to identify
+	 * @throws IOException Unable to write fields
+	 */
+	private static void writeOrderKey(DataOutputStream out, Order order) throws IOException {
+		out.writeUTF(order.getCustomer().getLogin().getUsername());
+		out.writeLong(order.getDate().toEpochSecond(ZoneOffset.UTC));
+		out.writeInt(order.getDate().getNano());
+	}
+
+	/**
+	 * Read the fields that identify an order and find the order in the model.
+	 *
+	 * @param in Stream to read from
+	 * @return Order found, null if not held
+	 * @throws IOException Record is corrupt
+	 */
+	private Order readOrderKey(DataInputStream in) throws IOException {
+		final CustomerLogin login = CustomerLogin.restore(in.readUTF(), null, null);
+		final LocalDateTime date =
+				LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+		return model.orders.get(login, date);
+	}
+
+	/**
+	 * Write a length prefixed byte array field.
+	 *
+	 * @param out Stream to write to
+	 * @param bytes Bytes to write
+	 * @throws IOException Unable to write field
+	 */
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @param object Object to serialise
+	 * @return Serialised object
+	 */
+	private static byte[] serialize(Object object) {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SerializationUtils.serialize(object, baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Read a length prefixed serialised object field.
+	 *
+	 * @param in Stream to read from
+	 * @return Object read
+	 * @throws IOException Record is corrupt
+	 */
+	private static Object readObject(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		final Object object = SerializationUtils.deserialize(new ByteArrayInputStream(bytes));
+		if (object == null) {
+			throw new IOException("Journal record holds corrupt object");
+		}
+		return object;
+	}
+
+	/**
+	 * Read the payload of a record, verifying its checksum.
+	 *
+	 * @param channel Channel to read from
+	 * @param position Position of record
+	 * @param size Size of channel
+	 * @return Payload of record, null if the record is incomplete or corrupt
+	 * @throws IOException Unable to read channel
+	 */
+	private static byte[] readRecord(FileChannel channel, long position, long size)
+			throws IOException {
+		try {
+			if (position + HEADER_LENGTH > size) {
+				return null;
+			}
+			final ByteBuffer header = readFully(channel, position, HEADER_LENGTH);
+			final int length = header.getInt();
+			final int checksum = header.getInt();
+			if (length < 0 || position + HEADER_LENGTH + length > size) {
+				return null;
+			}
+			final byte[] payload = readFully(channel, position + HEADER_LENGTH, length).array();
+			final CRC32 crc = new CRC32();
+			crc.update(payload, 0, payload.length);
+			return ((int) crc.getValue() == checksum) ? payload : null;
+		} catch(EOFException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Read an exact number of bytes from a channel.
+	 *
+	 * @param channel Channel to read from
+	 * @param position Position to read from
+	 * @param length Number of bytes to read
+	 * @return Buffer holding bytes, positioned at the start
+	 * @throws IOException Unable to read, EOFException if the channel ends first
+	 */
+	private static ByteBuffer readFully(FileChannel channel, long position, int length)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Records changes made to a stock map.
+	 *
+	 * @author David Jones [dsj1n15]
+	 *
+	 * @param <K> The type of keys maintained by the map
+	 */
+	private class StockJournaller<K> implements StockMap.StockListener<K> {
+		private final int kind;
+
+		/**
+		 * @param kind Kind of stock map listened to
+		 */
+		public StockJournaller(int kind) {
+			this.kind = kind;
+		}
+
+		@Override
+		public void stockChanged(K item, StockMap.Change change) {
+			final StockMap<?> map = (kind == KIND_DISH) ? model.stock.dishes
+					: model.stock.ingredients;
+			final StockLevels levels = map.get(item);
+			// Added or edited items are recorded whole
+			final boolean whole = (change == StockMap.Change.ADDED
+					|| change == StockMap.Change.EDITED) && levels != null;
+			final byte[] itemBytes = whole ? serialize(item) : null;
+			final byte[] levelsBytes = whole ? serialize(levels) : null;
+			synchronized (Journal.this) {
+				try {
+					if (levels == null) {
+						final DataOutputStream out = startRecord(STOCK_REMOVED);
+						out.writeByte(kind);
+						out.writeUTF(getName(item));
+					} else if (whole) {
+						final DataOutputStream out = startRecord(STOCK_ITEM);
+						out.writeByte(kind);
+						writeBytes(out, itemBytes);
+						writeBytes(out, levelsBytes);
+					} else {
+						final DataOutputStream out = startRecord(STOCK_LEVELS);
+						out.writeByte(kind);
+						writeLevels(out, item, levels);
+					}
+					endRecord();
+				} catch(IOException e) {
+					// Writing to memory cannot fail
+				}
+			}
+		}
+
+		@Override
+		public void levelsChanged(List<K> items) {
+			final StockMap<?> map = (kind == KIND_DISH) ? model.stock.dishes
+					: model.stock.ingredients;
+			synchronized (Journal.this) {
+				try {
+					final DataOutputStream out = startRecord(STOCK_UPDATE);
+					out.writeByte(kind);
+					out.writeInt(items.size());
+					for (final K item : items) {
+						writeLevels(out, item, map.get(item));
+					}
+					endRecord();
+				} catch(IOException e) {
+					// Writing to memory cannot fail
+				}
+			}
+		}
+
+		/**
+		 * Write the name of an item and its stock levels.
+		 *
+		 * @param out Stream to write to
+		 * @param item Item changed
+		 * @param levels Stock levels of item
+		 * @throws IOException Unable to write fields
+		 */
+		private void writeLevels(DataOutputStream out, K item, StockLevels levels)
+				throws IOException {
+			out.writeUTF(getName(item));
+			out.writeDouble(levels.getStock());
+			out.writeDouble(levels.getRestocking());
+			out.writeDouble(levels.getReserved());
+			out.writeInt(levels.getRestockLevel());
+			out.writeBoolean(levels.isStockable());
+		}
+
+	}
+
+}
@@ -0,0 +1,210 @@
+package business.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import general.model.QuantityMap;
+
+/**
+ * Scheduler of work for kitchen staff driven by changes to stock. A dish is queued when it falls
+ * below its restock level and, when the stock of an ingredient changes, every dish below its
+ * restock level that uses the ingredient is queued. Staff block until work is queued rather than
+ * repeatedly searching all stock for a dish to prepare. Queued dishes are ranked by a
+ * PreparationQueue so staff take the most valuable job first; orders should be recorded so that
+ * demand is taken into account.
+ *
+ * Queued dishes may no longer need preparing, or may not have enough ingredients, by the time
+ * they are taken; staff should check before preparing and drop the dish otherwise, it will be
+ * queued again by the next change that could make it preparable.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class KitchenScheduler {
+	private final Stock stock;
+	// Dishes that may need preparing, ranked by priority
+	private final PreparationQueue queue = new PreparationQueue();
+	// Ingredients changed since the dishes using them were last queued
+	private Set<Ingredient> changed = new HashSet<>();
+	// Whether every dish should be checked, as when first scheduling
+	private boolean checkAll = true;
+
+	/**
+	 * Instantiate a scheduler, listening to changes to the given stock.
+	 *
+	 * @param stock Stock to schedule preparation of dishes for
+	 */
+	public KitchenScheduler(Stock stock) {
+		this.stock = stock;
+		stock.dishes.addListener(new StockMap.StockListener<Dish>() {
+			@Override
+			public void stockChanged(Dish dish, StockMap.Change change) {
+				dishChanged(dish, change);
+			}
+		});
+		stock.ingredients.addListener(new StockMap.StockListener<Ingredient>() {
+			@Override
+			public void stockChanged(Ingredient ingredient, StockMap.Change change) {
+				ingredientChanged(ingredient, change);
+			}
+		});
+	}
+
+	/**
+	 * Queue or re-rank a dish if it is below its restock level, else remove it from the queue.
+	 * Called whilst the dish is locked, so only the levels of the dish may be read.
+	 *
+	 * @param dish Dish that has changed
+	 * @param change Type of change
+	 */
+	private void dishChanged(Dish dish, StockMap.Change change) {
+		if (change == StockMap.Change.REMOVED) {
+			synchronized (this) {
+				queue.forget(dish);
+			}
+			return;
+		}
+		final StockLevels levels = stock.dishes.get(dish);
+		if (levels != null && levels.isStockRequired()) {
+			final PreparationQueue.Job job = new PreparationQueue.Job(dish, levels);
+			synchronized (this) {
+				if (queue.offer(job)) {
+					Clock.get().signalAll(this);
+				}
+			}
+		} else {
+			synchronized (this) {
+				queue.remove(dish);
+			}
+		}
+	}
+
+	/**
+	 * Record that the stock of an ingredient has changed so that dishes using it are queued when
+	 * work is next taken. Dishes are not found here as the dish stock cannot be locked whilst the
+	 * ingredient is locked.
+	 *
+	 * @param ingredient Ingredient that has changed
+	 * @param change Type of change
+	 */
+	private synchronized void ingredientChanged(Ingredient ingredient, StockMap.Change change) {
+		if (change != StockMap.Change.REMOVED && changed.add(ingredient)) {
+			Clock.get().signalAll(this);
+		}
+	}
+
+	/**
+	 * Block until there is work that may be taken or the worker is no longer working.
+	 *
+	 * @param worker Worker waiting for work
+	 * @throws InterruptedException Interrupted whilst waiting
+	 */
+	public synchronized void awaitWork(Worker worker) throws InterruptedException {
+		while (queue.isEmpty() && changed.isEmpty() && !checkAll
+				&& worker.getStatus() == Worker.Status.WORKING) {
+			Clock.get().await(this);
+		}
+	}
+
+	/**
+	 * Wake all waiting workers so they can check whether they should still be working.
+	 */
+	public synchronized void wake() {
+		Clock.get().signalAll(this);
+	}
+
+	/**
+	 * Record an order so that the demand for its dishes is taken into account when ranking.
+	 *
+	 * @param dishes Dishes ordered and their quantities
+	 */
+	public synchronized void recordDemand(QuantityMap<Dish> dishes) {
+		for (int i = dishes.nextIndex(-1); i >= 0; i = dishes.nextIndex(i)) {
+			queue.recordDemand(dishes.keyAt(i), dishes.quantityAt(i));
+		}
+	}
+
+	/**
+	 * @return Queued jobs, highest ranked first
+	 */
+	public synchronized List<PreparationQueue.Job> getJobs() {
+		return queue.getJobs();
+	}
+
+	/**
+	 * Take the highest ranked dish that may need preparing, first queueing the dishes that use any
+	 * ingredients that have changed.
+	 *
+	 * @return Dish that may need preparing, null if none is queued
+	 */
+	public Dish poll() {
+		final Set<Ingredient> ingredients;
+		final boolean all;
+		synchronized (this) {
+			ingredients = changed;
+			all = checkAll;
+			changed = new HashSet<>();
+			checkAll = false;
+		}
+		if (all || !ingredients.isEmpty()) {
+			queue(findDishes(ingredients, all));
+		}
+		synchronized (this) {
+			final PreparationQueue.Job job = queue.poll();
+			return job == null ? null : job.getDish();
+		}
+	}
+
+	/**
+	 * Find the dishes below their restock level that use any of the given ingredients.
+	 *
+	 * @param ingredients Ingredients that have changed
+	 * @param all Whether to find every dish below its restock level
+	 * @return Jobs for the dishes found
+	 */
+	private List<PreparationQueue.Job> findDishes(Set<Ingredient> ingredients, boolean all) {
+		final List<PreparationQueue.Job> jobs = new ArrayList<>();
+		synchronized (stock.dishes) {
+			for (final Entry<Dish, StockLevels> entry : stock.dishes.entrySet()) {
+				if (entry.getValue().isStockRequired()
+						&& (all || isUsingAny(entry.getKey(), ingredients))) {
+					jobs.add(new PreparationQueue.Job(entry.getKey(), entry.getValue()));
+				}
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * @param dish Dish to check
+	 * @param ingredients Ingredients to look for
+	 * @return Whether the dish's recipe uses any of the ingredients
+	 */
+	private static boolean isUsingAny(Dish dish, Set<Ingredient> ingredients) {
+		final QuantityMap<Ingredient> recipe = dish.getIngredients();
+		for (int i = recipe.nextIndex(-1); i >= 0; i = recipe.nextIndex(i)) {
+			if (ingredients.contains(recipe.keyAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add jobs to the queue, waking workers if any dish was not already queued.
+	 *
+	 * @param jobs Jobs to queue
+	 */
+	private synchronized void queue(List<PreparationQueue.Job> jobs) {
+		boolean added = false;
+		for (final PreparationQueue.Job job : jobs) {
+			added |= queue.offer(job);
+		}
+		if (added) {
+			Clock.get().signalAll(this);
+		}
+	}
+
+}
@@ -1,7 +1,6 @@
 package business.model;
 
 import java.util.Objects;
-import java.util.Random;
 
 import general.model.Quantity;
 import general.utility.ErrorBuilder;
@@ -33,29 +32,58 @@ public class KitchenStaffMember extends Worker {
 		this.stock = stock;
 	}
 
+	/**
+	 * Instantiate a copy of a kitchen staff member's details that can be read without locking.
+	 *
+	 * @param kitchenStaffMember Kitchen staff member to copy
+	 */
+	public KitchenStaffMember(KitchenStaffMember kitchenStaffMember) {
+		super(kitchenStaffMember);
+		this.stock = kitchenStaffMember.stock;
+	}
+
 	@Override
 	protected void doWork() throws InterruptedException {
 		// Possible work includes finding dish for preparation
 		findDishAndPrepare();
 	}
 
+	@Override
+	protected void waitForWork() throws InterruptedException {
+		// Block until the scheduler has queued a dish rather than searching stock again
+		stock.getScheduler().awaitWork(this);
+	}
+
+	@Override
+	public void stopWorking() {
+		super.stopWorking();
+		// Wake worker if waiting for work so it can stop
+		stock.getScheduler().wake();
+	}
+
 	/**
-	 * Find a dish that requires restocking and has enough ingredients available to restock. Process
-	 * a single restock. Early exit of dish preparation finishes restock as opposed to discarding;
-	 * this is done as an abstraction of someone finishing their task before stopping their work.
+	 * Take a dish queued by the scheduler and, if it still requires restocking and has enough
+	 * ingredients available to restock, process a single restock. Early exit of dish preparation
+	 * finishes restock as opposed to discarding; this is done as an abstraction of someone
+	 * finishing their task before stopping their work.
 	 *
 	 * @return Whether a dish was found to prepare
 	 * @throws InterruptedException A re-thrown exception indicating that the worker should stop
 	 */
 	private boolean findDishAndPrepare() throws InterruptedException {
+		final Dish dish = stock.getScheduler().poll();
+		if (dish == null) {
+			return false;
+		}
 		Quantity<Dish> toRestock;
 		// Lock both ingredients and stock so no changes can be made between check
 		// and start of preparation (remove chance of restocking the same dish twice
 		// or no longer being able to prepare dish)
 		synchronized (stock.ingredients) {
 			synchronized (stock.dishes) {
-				toRestock = stock.getDishToRestock();
+				toRestock = stock.getDishToRestock(dish);
 				if (toRestock == null) {
+					// Dish is queued again when a change could make it preparable
 					return false;
 				}
 				startDishPreparation(toRestock);
@@ -105,18 +133,16 @@ public class KitchenStaffMember extends Worker {
 	}
 
 	/**
-	 * Sleep the thread for a random amount of time between two bounds.
+	 * Wait a random amount of business time between two bounds.
 	 *
 	 * @param lowerBound Lowest amount of time to wait (ms)
 	 * @param upperBound Highest amount of time to wait (ms)
 	 * @throws InterruptedException A re-thrown exception indicating that the worker should stop
 	 */
 	private static void randomWait(int lowerBound, int upperBound) throws InterruptedException {
-		int time = (new Random()).nextInt(lowerBound + upperBound) + lowerBound;
-		// Apply speed modifier
-		time = (int) Math.round(BusinessModel.SPEED_MODIFIER * time);
-		// Sleep thread for time
-		Thread.sleep(time);
+		final int time = Clock.get().getRandom().nextInt(lowerBound + upperBound) + lowerBound;
+		// Wait for time, the clock applies any speed modifier
+		Clock.get().sleep(time);
 	}
 
 	@Override
@@ -0,0 +1,214 @@
+package business.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Canonicalizer that resolves decoded objects to the instances held by a business model, so that
+ * objects received in messages or loaded from storage share the model's instances rather than
+ * each holding a copy of the same menu, customer and postcode. Objects are found using their
+ * equality (dish name, ingredient name, supplier name, postcode and customer username) but are
+ * only resolved if every other field also matches; an object that differs from the model, such as
+ * a customer being modified or a dish ordered at an old price, keeps its decoded copy.
+ *
+ * Objects are resolved as they are decoded, after the objects they reference, so a decoded dish
+ * is compared against an ingredient that has already been resolved.
+ *
+ * Held instances are found using an index of each collection rather than searching it. Indexes
+ * of stock are kept current by listening to the stock maps; suppliers and postcodes are not
+ * observable so their indexes are rebuilt when the size of the set changes or an object is not
+ * found.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class ModelCanonicalizer implements BusinessMessageCodec.Canonicalizer {
+	private final BusinessModel model;
+	// Instances held by the model
+	private final Index<Dish> dishes;
+	private final Index<Ingredient> ingredients;
+	private final Index<Supplier> suppliers = new Index<>();
+	private final Index<Postcode> postcodes = new Index<>();
+
+	/**
+	 * Instantiate a canonicalizer resolving to the instances of a model.
+	 *
+	 * @param model Model holding instances
+	 */
+	public ModelCanonicalizer(BusinessModel model) {
+		this.model = model;
+		this.dishes = watch(model.stock.dishes);
+		this.ingredients = watch(model.stock.ingredients);
+	}
+
+	@Override
+	public Object canonicalize(Object object) {
+		if (object instanceof Dish) {
+			final Dish dish = (Dish) object;
+			final Dish held = dishes.get(dish);
+			return (held != null && isSame(held, dish)) ? held : dish;
+		} else if (object instanceof Ingredient) {
+			final Ingredient ingredient = (Ingredient) object;
+			final Ingredient held = ingredients.get(ingredient);
+			return (held != null && isSame(held, ingredient)) ? held : ingredient;
+		} else if (object instanceof Supplier) {
+			final Supplier supplier = (Supplier) object;
+			final Supplier held = find(suppliers, model.suppliers, supplier);
+			return (held != null && held.getDistance() == supplier.getDistance()) ? held
+					: supplier;
+		} else if (object instanceof Postcode) {
+			final Postcode postcode = (Postcode) object;
+			final Postcode held = find(postcodes, model.postcodes, postcode);
+			return (held != null && held.getDistance() == postcode.getDistance()) ? held
+					: postcode;
+		} else if (object instanceof Customer) {
+			final Customer customer = (Customer) object;
+			final Customer held;
+			synchronized (model.customers) {
+				held = model.customers.get(customer.getLogin());
+			}
+			return (held != null && isSame(held, customer)) ? held : customer;
+		}
+		return object;
+	}
+
+	/**
+	 * Index the items of a stock map, keeping the index current as items are added and removed.
+	 *
+	 * @param map Stock map to index
+	 * @return Index of items held
+	 */
+	private static <K> Index<K> watch(StockMap<K> map) {
+		final Index<K> index = new Index<>();
+		synchronized (map) {
+			index.rebuild(map.keySet());
+			map.addListener(new StockMap.StockListener<K>() {
+				@Override
+				public void stockChanged(K item, StockMap.Change change) {
+					if (change == StockMap.Change.ADDED) {
+						index.add(item);
+					} else if (change == StockMap.Change.REMOVED) {
+						index.remove(item);
+					}
+				}
+
+				@Override
+				public void levelsChanged(List<K> items) {
+					// Levels do not change the items held
+				}
+			});
+		}
+		return index;
+	}
+
+	/**
+	 * Find the instance held in a set that is equal to an object, rebuilding the set's index if
+	 * the set has changed size or the object is not found.
+	 *
+	 * @param index Index of set
+	 * @param set Set to search
+	 * @param object Object to find
+	 * @return Held instance, null if none is equal
+	 */
+	private static <T> T find(Index<T> index, Set<T> set, T object) {
+		synchronized (set) {
+			T held = index.get(object);
+			if (held == null || index.size() != set.size()) {
+				index.rebuild(set);
+				held = index.get(object);
+			}
+			return held;
+		}
+	}
+
+	/**
+	 * @param held Dish held by model
+	 * @param dish Decoded dish
+	 * @return Whether every field of the dishes matches
+	 */
+	private static boolean isSame(Dish held, Dish dish) {
+		return held.getPrice() == dish.getPrice()
+				&& Objects.equals(held.getDescription(), dish.getDescription())
+				&& Objects.equals(held.getIngredients(), dish.getIngredients());
+	}
+
+	/**
+	 * @param held Ingredient held by model
+	 * @param ingredient Decoded ingredient
+	 * @return Whether every field of the ingredients matches
+	 */
+	private static boolean isSame(Ingredient held, Ingredient ingredient) {
+		return held.getUnit() == ingredient.getUnit()
+				&& held.getSupplier() == ingredient.getSupplier();
+	}
+
+	/**
+	 * @param held Customer held by model
+	 * @param customer Decoded customer
+	 * @return Whether every field of the customers matches
+	 */
+	private static boolean isSame(Customer held, Customer customer) {
+		return Objects.equals(held.getName(), customer.getName())
+				&& Objects.equals(held.getAddress(), customer.getAddress())
+				&& held.getPostcode() == customer.getPostcode()
+				&& Objects.equals(held.getLogin().getPasswordHash(),
+						customer.getLogin().getPasswordHash());
+	}
+
+	/**
+	 * Instances held in a collection of the model, keyed by their equality.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class Index<T> {
+		private final Map<T, T> instances = new HashMap<>();
+
+		/**
+		 * @param object Object to find
+		 * @return Held instance equal to object, null if none
+		 */
+		public synchronized T get(T object) {
+			return instances.get(object);
+		}
+
+		/**
+		 * Add an instance, keeping any equal instance already held as a map keeps its first key.
+		 *
+		 * @param instance Instance added
+		 */
+		public synchronized void add(T instance) {
+			instances.putIfAbsent(instance, instance);
+		}
+
+		/**
+		 * @param object Object equal to the instance removed
+		 */
+		public synchronized void remove(T object) {
+			instances.remove(object);
+		}
+
+		/**
+		 * @return Number of instances held
+		 */
+		public synchronized int size() {
+			return instances.size();
+		}
+
+		/**
+		 * Replace every instance with those of a collection.
+		 *
+		 * @param collection Collection holding instances
+		 */
+		public synchronized void rebuild(Collection<T> collection) {
+			instances.clear();
+			for (final T instance : collection) {
+				instances.put(instance, instance);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,122 @@
+package business.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bus telling subscribers of changes made to a business model, so that interfaces can update only
+ * what has changed rather than reloading all records periodically. Each topic carries the object
+ * that has changed; subscribers look up the current state of the object themselves, so a single
+ * lookup can serve several changes published in quick succession.
+ *
+ * Changes are published on the thread that made them, often whilst the changed collection is
+ * locked, so subscribers should only record the change and must not lock the model.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class ModelEventBus {
+	// Topics published by the model
+	public static final Topic<Dish> DISH_STOCK_CHANGED = new Topic<>("Dish stock changed");
+	public static final Topic<Ingredient> INGREDIENT_STOCK_CHANGED =
+			new Topic<>("Ingredient stock changed");
+	public static final Topic<Order> ORDER_STATUS_CHANGED = new Topic<>("Order status changed");
+	public static final Topic<Worker> WORKER_ACTION_CHANGED = new Topic<>("Worker action changed");
+	public static final Topic<Customer> CUSTOMER_CHANGED = new Topic<>("Customer changed");
+
+	// Subscribers of each topic
+	private final Map<Topic<?>, List<Subscriber<?>>> subscribers = new HashMap<>();
+
+	/**
+	 * Register a subscriber to be told of changes published to a topic.
+	 *
+	 * @param topic Topic to subscribe to
+	 * @param subscriber Subscriber to add
+	 */
+	public synchronized <T> void subscribe(Topic<T> topic, Subscriber<? super T> subscriber) {
+		List<Subscriber<?>> list = subscribers.get(topic);
+		if (list == null) {
+			list = new CopyOnWriteArrayList<>();
+			subscribers.put(topic, list);
+		}
+		list.add(subscriber);
+	}
+
+	/**
+	 * Stop a subscriber being told of changes published to a topic.
+	 *
+	 * @param topic Topic to unsubscribe from
+	 * @param subscriber Subscriber to remove
+	 */
+	public synchronized <T> void unsubscribe(Topic<T> topic, Subscriber<? super T> subscriber) {
+		final List<Subscriber<?>> list = subscribers.get(topic);
+		if (list != null) {
+			list.remove(subscriber);
+		}
+	}
+
+	/**
+	 * Tell all subscribers of a topic that an object has changed.
+	 *
+	 * @param topic Topic to publish to
+	 * @param subject Object that has changed
+	 */
+	public <T> void publish(Topic<T> topic, T subject) {
+		final List<Subscriber<?>> list;
+		synchronized (this) {
+			list = subscribers.get(topic);
+		}
+		if (list != null) {
+			for (final Subscriber<?> subscriber : list) {
+				// Subscribers are only added to topics they accept
+				@SuppressWarnings("unchecked")
+				final Subscriber<? super T> typed = (Subscriber<? super T>) subscriber;
+				typed.changed(subject);
+			}
+		}
+	}
+
+	/**
+	 * A type of change carrying the type of object that has changed.
+	 *
+	 * @author David Jones [dsj1n15]
+	 *
+	 * @param <T> The type of object that has changed
+	 */
+	public static final class Topic<T> {
+		private final String name;
+
+		/**
+		 * @param name Name of topic
+		 */
+		private Topic(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	/**
+	 * Interface for classes that should be told of changes published to a topic.
+	 *
+	 * @author David Jones [dsj1n15]
+	 *
+	 * @param <T> The type of object that has changed
+	 */
+	public static interface Subscriber<T> {
+
+		/**
+		 * Called on the thread that made the change, possibly whilst the model is locked.
+		 *
+		 * @param subject Object that has changed
+		 */
+		public abstract void changed(T subject);
+
+	}
+
+}
@@ -2,7 +2,6 @@ package business.model;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
-import java.util.Map.Entry;
 import java.util.Objects;
 
 import general.model.QuantityMap;
@@ -22,6 +21,8 @@ public class Order implements Serializable, Validatable {
 	private final QuantityMap<Dish> dishes;
 	private LocalDateTime date;
 	private Status status;
+	// Listener to status changes, not persisted or sent
+	private transient volatile StatusListener statusListener;
 
 	/**
 	 * Instantiate a new order from a customer with given dishes.
@@ -32,10 +33,23 @@ public class Order implements Serializable, Validatable {
 	public Order(Customer customer, QuantityMap<Dish> dishes) {
 		this.customer = customer;
 		this.dishes = dishes;
-		this.date = LocalDateTime.now();
+		this.date = Clock.get().now();
 		this.status = Status.CREATED;
 	}
 
+	/**
+	 * Instantiate a copy of an order with its current date and status. The customer and dishes
+	 * are shared with the original order.
+	 *
+	 * @param order Order to copy
+	 */
+	public Order(Order order) {
+		this.customer = order.customer;
+		this.dishes = order.dishes;
+		this.date = order.date;
+		this.status = order.status;
+	}
+
 	/**
 	 * @return Customer who made the order
 	 */
@@ -67,8 +81,8 @@ public class Order implements Serializable, Validatable {
 	 */
 	public static double getTotalPrice(QuantityMap<Dish> dishes) {
 		double price = 0;
-		for (final Entry<Dish, Double> dish : dishes.entrySet()) {
-			price += dish.getKey().getPrice() * dish.getValue();
+		for (int i = dishes.nextIndex(-1); i >= 0; i = dishes.nextIndex(i)) {
+			price += dishes.keyAt(i).getPrice() * dishes.quantityAt(i);
 		}
 		return price;
 	}
@@ -102,6 +116,17 @@ public class Order implements Serializable, Validatable {
 	 */
 	public void setStatus(Status status) {
 		this.status = status;
+		final StatusListener statusListener = this.statusListener;
+		if (statusListener != null) {
+			statusListener.statusChanged(this, status);
+		}
+	}
+
+	/**
+	 * @param statusListener Listener to tell of status changes, null for none
+	 */
+	public void setStatusListener(StatusListener statusListener) {
+		this.statusListener = statusListener;
 	}
 
 
@@ -158,6 +183,23 @@ public class Order implements Serializable, Validatable {
 		return result;
 	}
 
+	/**
+	 * Interface for classes that should be told of order status changes.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static interface StatusListener {
+
+		/**
+		 * Called after the status of an order has been set.
+		 *
+		 * @param order Order that has changed
+		 * @param status New status of order
+		 */
+		public abstract void statusChanged(Order order, Status status);
+
+	}
+
 	/**
 	 * Enumeration of statuses for an order.
 	 *
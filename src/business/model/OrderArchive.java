@@ -0,0 +1,573 @@
+package business.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import general.utility.SerializationUtils;
+
+/**
+ * Append-only store of completed orders, moved out of the live order store so that it only holds
+ * orders still being processed. Orders are written to segment files in a directory; a segment is
+ * never modified once a newer segment exists. Each record holds the customer username and date of
+ * the order ahead of the serialised order so that the index of orders by customer can be rebuilt
+ * on opening without deserialising any order. A record left incomplete by a crash is discarded on
+ * opening.
+ *
+ * Once started, orders of a store that have been complete for the archive delay are periodically
+ * appended and then removed from the store. Customer history is read a page at a time, newest
+ * orders first. Archived orders are also appended to columns that can be scanned without
+ * deserialising any order; the columns are rebuilt on opening if they do not hold every order.
+ *
+ * Record format: [int payload length][short username length][username (UTF-8)]
+ * [long date seconds][int date nanos][payload]
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class OrderArchive implements Order.StatusListener, Runnable {
+	private static final String FILE_PREFIX = "segment-";
+	private static final String FILE_EXTENSION = "ssoa";
+	// Size after which a new segment is started
+	private static final long SEGMENT_SIZE = 4 * 1024 * 1024; // bytes
+	// Time between checks for orders to archive
+	private static final int ARCHIVE_INTERVAL = 10000; // ms
+	// Time an order must have been complete before it is archived
+	private static final int ARCHIVE_DELAY = 60000; // ms
+	// Number of orders read at a time when rebuilding columns
+	private static final int REBUILD_BATCH_SIZE = 1000;
+	// Length of record fields ahead of the username
+	private static final int HEADER_LENGTH = Integer.BYTES + Short.BYTES;
+
+	private final File directory;
+	private final OrderColumns columns;
+	// Open segments by number, guarded by this
+	private final Map<Integer, FileChannel> segments = new HashMap<>();
+	private int currentSegment = 0;
+	// Locations of archived orders by customer username then date, guarded by this
+	private final Map<String, NavigableMap<LocalDateTime, Long>> index = new HashMap<>();
+	// Locations of all archived orders in the order they were archived, guarded by this
+	private final List<Long> locations = new ArrayList<>();
+	// Orders in the live store mapped to when they were completed, guarded by itself
+	private final Map<Order, Long> completed = new LinkedHashMap<>();
+	private OrderStore store;
+	private Thread thread;
+
+	/**
+	 * Instantiate an archive using a directory of segments. The archive must be opened before use.
+	 *
+	 * @param directory Directory to hold segments in
+	 */
+	public OrderArchive(File directory) {
+		this.directory = directory;
+		this.columns = new OrderColumns(new File(directory, "columns"));
+	}
+
+	/**
+	 * Open all existing segments and rebuild the index, discarding any incomplete record at the
+	 * end of a segment.
+	 *
+	 * @throws IOException Unable to read or create segments
+	 */
+	public synchronized void open() throws IOException {
+		directory.mkdirs();
+		final File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().startsWith(FILE_PREFIX)
+						&& file.getName().endsWith("." + FILE_EXTENSION);
+			}
+		});
+		Arrays.sort(files);
+		for (final File file : files) {
+			final String name = file.getName();
+			final int number = Integer.parseInt(
+					name.substring(FILE_PREFIX.length(), name.length() - FILE_EXTENSION.length() - 1));
+			final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			segments.put(number, channel);
+			indexSegment(number, channel);
+			currentSegment = Math.max(currentSegment, number);
+		}
+		Collections.sort(locations);
+		if (currentSegment == 0) {
+			startSegment();
+		}
+		columns.open();
+		if (columns.getOrderCount() != getOrderCount()) {
+			rebuildColumns();
+		}
+		System.out.println(String.format("[ARCHIVE] : Opened %d segments holding %d orders",
+				segments.size(), getOrderCount()));
+	}
+
+	/**
+	 * Rebuild the columns from every archived order. Must be called whilst locked.
+	 *
+	 * @throws IOException Unable to read orders or write columns
+	 */
+	private void rebuildColumns() throws IOException {
+		System.out.println("[ARCHIVE] : Rebuilding columns...");
+		columns.clear();
+		final List<Order> orders = new ArrayList<>();
+		for (final Long location : locations) {
+			orders.add(read(location));
+			if (orders.size() == REBUILD_BATCH_SIZE) {
+				columns.append(orders);
+				orders.clear();
+			}
+		}
+		columns.append(orders);
+	}
+
+	/**
+	 * Close all segments.
+	 */
+	public synchronized void close() {
+		for (final FileChannel channel : segments.values()) {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// close failed, ignore
+			}
+		}
+		segments.clear();
+		columns.close();
+	}
+
+	/**
+	 * @return Columns holding every archived order, for scanning
+	 */
+	public OrderColumns getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Start archiving orders of a store once they have been complete for the archive delay. Orders
+	 * already complete are treated as having just been completed.
+	 *
+	 * @param store Store to archive orders of
+	 */
+	public void start(OrderStore store) {
+		this.store = store;
+		synchronized (store) {
+			synchronized (completed) {
+				final long now = System.currentTimeMillis();
+				for (final Order order : store) {
+					if (order.isComplete()) {
+						completed.put(order, now);
+					}
+				}
+			}
+			store.addStatusListener(this);
+		}
+		thread = new Thread(this, "OrderArchive");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop archiving orders, blocking until the archiving thread has finished.
+	 *
+	 * @throws InterruptedException Interrupted whilst waiting for archiving thread
+	 */
+	public void stop() throws InterruptedException {
+		if (store != null) {
+			store.removeStatusListener(this);
+		}
+		if (thread != null) {
+			thread.interrupt();
+			thread.join();
+			thread = null;
+		}
+	}
+
+	@Override
+	public void statusChanged(Order order, Order.Status status) {
+		synchronized (completed) {
+			if (Order.Status.isComplete(status)) {
+				completed.put(order, System.currentTimeMillis());
+			} else {
+				completed.remove(order);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				Thread.sleep(ARCHIVE_INTERVAL);
+			} catch(InterruptedException e) {
+				break;
+			}
+			try {
+				archiveCompleted();
+			} catch(IOException e) {
+				System.err.println("[ARCHIVE] : Unable to archive orders: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Archive orders that have been complete for the archive delay then remove them from the store.
+	 * Orders are only removed once written so none are lost if archiving fails.
+	 *
+	 * @throws IOException Unable to write orders
+	 */
+	private void archiveCompleted() throws IOException {
+		final List<Order> due = new ArrayList<>();
+		final long cutoff = System.currentTimeMillis() - ARCHIVE_DELAY;
+		synchronized (completed) {
+			// Orders are held in the order they were completed
+			final Iterator<Entry<Order, Long>> itr = completed.entrySet().iterator();
+			while (itr.hasNext()) {
+				final Entry<Order, Long> entry = itr.next();
+				if (entry.getValue() > cutoff) {
+					break;
+				}
+				due.add(entry.getKey());
+				itr.remove();
+			}
+		}
+		if (due.isEmpty()) {
+			return;
+		}
+		// Only archive orders still held and complete
+		synchronized (store) {
+			final Iterator<Order> itr = due.iterator();
+			while (itr.hasNext()) {
+				final Order order = itr.next();
+				if (!store.contains(order) || !order.isComplete()) {
+					itr.remove();
+				}
+			}
+		}
+		try {
+			append(due);
+		} catch(IOException e) {
+			// Retry on the next check
+			synchronized (completed) {
+				for (final Order order : due) {
+					completed.put(order, cutoff);
+				}
+			}
+			throw e;
+		}
+		synchronized (store) {
+			for (final Order order : due) {
+				store.remove(order);
+			}
+		}
+		System.out.println(String.format("[ARCHIVE] : Archived %d orders", due.size()));
+	}
+
+	/**
+	 * Append orders to the archive, forcing them to disk before returning. Orders already archived
+	 * are skipped.
+	 *
+	 * @param orders Orders to append
+	 * @throws IOException Unable to write orders
+	 */
+	public synchronized void append(Collection<Order> orders) throws IOException {
+		final FileChannel channel = getCurrentSegment();
+		final long start = channel.size();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(baos);
+		final Map<Order, Long> locations = new LinkedHashMap<>();
+		for (final Order order : orders) {
+			final String username = order.getCustomer().getLogin().getUsername();
+			if (getLocation(username, order.getDate()) != null) {
+				continue;
+			}
+			final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			SerializationUtils.serialize(order, payload);
+			if (payload.size() == 0) {
+				throw new IOException("Unable to serialise order");
+			}
+			locations.put(order, getLocation(currentSegment, start + out.size()));
+			out.writeInt(payload.size());
+			final byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+			out.writeShort(usernameBytes.length);
+			out.write(usernameBytes);
+			out.writeLong(order.getDate().toEpochSecond(ZoneOffset.UTC));
+			out.writeInt(order.getDate().getNano());
+			payload.writeTo(out);
+		}
+		if (locations.isEmpty()) {
+			return;
+		}
+		out.flush();
+		final ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+		long position = start;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		channel.force(false);
+		// Index only once written
+		for (final Entry<Order, Long> entry : locations.entrySet()) {
+			final Order order = entry.getKey();
+			putLocation(order.getCustomer().getLogin().getUsername(), order.getDate(),
+					entry.getValue());
+		}
+		try {
+			columns.append(locations.keySet());
+		} catch(IOException e) {
+			// Orders are archived, columns are rebuilt on opening
+			System.err.println("[ARCHIVE] : Unable to append orders to columns: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return Number of archived orders
+	 */
+	public synchronized int getOrderCount() {
+		return locations.size();
+	}
+
+	/**
+	 * @param login Customer login to count orders of
+	 * @return Number of archived orders from customer
+	 */
+	public synchronized int getOrderCount(CustomerLogin login) {
+		final NavigableMap<LocalDateTime, Long> orders = index.get(login.getUsername());
+		return (orders == null) ? 0 : orders.size();
+	}
+
+	/**
+	 * Read a page of a customer's archived orders, newest first.
+	 *
+	 * @param login Customer login to get orders of
+	 * @param offset Number of newer orders to skip
+	 * @param limit Maximum number of orders to read
+	 * @return Orders read, fewer than the limit if no more exist
+	 * @throws IOException Unable to read orders
+	 */
+	public List<Order> getOrdersFromCustomer(CustomerLogin login, int offset, int limit)
+			throws IOException {
+		final List<Long> locations = new ArrayList<>();
+		synchronized (this) {
+			final NavigableMap<LocalDateTime, Long> orders = index.get(login.getUsername());
+			if (orders != null) {
+				int skipped = 0;
+				for (final Long location : orders.descendingMap().values()) {
+					if (locations.size() >= limit) {
+						break;
+					}
+					if (skipped++ >= offset) {
+						locations.add(location);
+					}
+				}
+			}
+		}
+		final List<Order> orders = new ArrayList<>();
+		for (final Long location : locations) {
+			orders.add(read(location));
+		}
+		return orders;
+	}
+
+	/**
+	 * Read a page of all archived orders, most recently archived first.
+	 *
+	 * @param offset Number of more recently archived orders to skip
+	 * @param limit Maximum number of orders to read
+	 * @return Orders read, fewer than the limit if no more exist
+	 * @throws IOException Unable to read orders
+	 */
+	public List<Order> getOrders(int offset, int limit) throws IOException {
+		final List<Long> page = new ArrayList<>();
+		synchronized (this) {
+			for (int i = locations.size() - 1 - offset; i >= 0 && page.size() < limit; i--) {
+				page.add(locations.get(i));
+			}
+		}
+		final List<Order> orders = new ArrayList<>();
+		for (final Long location : page) {
+			orders.add(read(location));
+		}
+		return orders;
+	}
+
+	/**
+	 * Read the order at a location.
+	 *
+	 * @param location Location of record
+	 * @return Order read
+	 * @throws IOException Unable to read order
+	 */
+	private Order read(long location) throws IOException {
+		final FileChannel channel;
+		synchronized (this) {
+			channel = segments.get((int) (location >>> 32));
+		}
+		if (channel == null) {
+			throw new IOException("Archive segment not open");
+		}
+		long position = location & 0xFFFFFFFFL;
+		final ByteBuffer header = readFully(channel, position, HEADER_LENGTH);
+		final int payloadLength = header.getInt();
+		final int usernameLength = header.getShort() & 0xFFFF;
+		position += HEADER_LENGTH + usernameLength + Long.BYTES + Integer.BYTES;
+		final ByteBuffer payload = readFully(channel, position, payloadLength);
+		final Object order = SerializationUtils.deserialize(
+				new ByteArrayInputStream(payload.array(), 0, payloadLength));
+		if (!(order instanceof Order)) {
+			throw new IOException("Archived order is corrupt");
+		}
+		return (Order) order;
+	}
+
+	/**
+	 * Add all records of a segment to the index, truncating the segment after the last complete
+	 * record. Must be called whilst locked.
+	 *
+	 * @param number Number of segment
+	 * @param channel Channel of segment
+	 * @throws IOException Unable to read segment
+	 */
+	private void indexSegment(int number, FileChannel channel) throws IOException {
+		final long size = channel.size();
+		long position = 0;
+		try {
+			while (position < size) {
+				final ByteBuffer header = readFully(channel, position, HEADER_LENGTH);
+				final int payloadLength = header.getInt();
+				final int usernameLength = header.getShort() & 0xFFFF;
+				final ByteBuffer fields = readFully(channel, position + HEADER_LENGTH,
+						usernameLength + Long.BYTES + Integer.BYTES);
+				final String username =
+						new String(fields.array(), 0, usernameLength, StandardCharsets.UTF_8);
+				fields.position(usernameLength);
+				final LocalDateTime date = LocalDateTime.ofEpochSecond(fields.getLong(),
+						fields.getInt(), ZoneOffset.UTC);
+				final long next = position + HEADER_LENGTH + fields.capacity() + payloadLength;
+				if (payloadLength < 0 || next > size) {
+					throw new EOFException();
+				}
+				putLocation(username, date, getLocation(number, position));
+				position = next;
+			}
+		} catch(EOFException e) {
+			System.err.println(String.format(
+					"[ARCHIVE] : Discarding incomplete record in segment %d", number));
+			channel.truncate(position);
+		}
+	}
+
+	/**
+	 * Get the segment to append to, starting a new segment if it is full. Must be called whilst
+	 * locked.
+	 *
+	 * @return Channel of current segment
+	 * @throws IOException Unable to create new segment
+	 */
+	private FileChannel getCurrentSegment() throws IOException {
+		FileChannel channel = segments.get(currentSegment);
+		if (channel.size() >= SEGMENT_SIZE) {
+			channel = startSegment();
+		}
+		return channel;
+	}
+
+	/**
+	 * Create and open the next segment. Must be called whilst locked.
+	 *
+	 * @return Channel of new segment
+	 * @throws IOException Unable to create segment
+	 */
+	private FileChannel startSegment() throws IOException {
+		currentSegment++;
+		final File file = new File(directory,
+				String.format("%s%06d.%s", FILE_PREFIX, currentSegment, FILE_EXTENSION));
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segments.put(currentSegment, channel);
+		return channel;
+	}
+
+	/**
+	 * Get the location of an archived order. Must be called whilst locked.
+	 *
+	 * @param username Username of customer
+	 * @param date Date of order
+	 * @return Location of order, null if not archived
+	 */
+	private Long getLocation(String username, LocalDateTime date) {
+		final NavigableMap<LocalDateTime, Long> orders = index.get(username);
+		return (orders == null) ? null : orders.get(date);
+	}
+
+	/**
+	 * Add the location of an archived order to the index. Must be called whilst locked.
+	 *
+	 * @param username Username of customer
+	 * @param date Date of order
+	 * @param location Location of order
+	 */
+	private void putLocation(String username, LocalDateTime date, long location) {
+		NavigableMap<LocalDateTime, Long> orders = index.get(username);
+		if (orders == null) {
+			orders = new TreeMap<>();
+			index.put(username, orders);
+		}
+		final Long previous = orders.put(date, location);
+		if (previous != null) {
+			locations.remove(previous);
+		}
+		locations.add(location);
+	}
+
+	/**
+	 * @param segment Number of segment
+	 * @param position Position of record in segment
+	 * @return Location combining segment and position
+	 */
+	private static long getLocation(int segment, long position) {
+		return ((long) segment << 32) | position;
+	}
+
+	/**
+	 * Read an exact number of bytes from a channel.
+	 *
+	 * @param channel Channel to read from
+	 * @param position Position to read from
+	 * @param length Number of bytes to read
+	 * @return Buffer holding bytes, positioned at the start
+	 * @throws IOException Unable to read, EOFException if the channel ends first
+	 */
+	private static ByteBuffer readFully(FileChannel channel, long position, int length)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+}
@@ -0,0 +1,587 @@
+package business.model;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import general.model.QuantityMap;
+
+/**
+ * Columnar store of orders, held in memory-mapped files so that orders can be scanned for reports
+ * and history without deserialising any order. Each order is a row of primitive columns (date,
+ * customer, status and the end of its items); each dish ordered is a row of item columns (dish,
+ * quantity and price when ordered). Customers and dishes are interned, the columns holding the
+ * identifier of each name in a dictionary file.
+ *
+ * Columns are mapped with spare capacity so may be longer than the rows they hold; the number of
+ * rows is held in a meta file that is only updated once every column has been forced to disk, so
+ * rows left incomplete by a crash are ignored and overwritten.
+ *
+ * Dictionary format: ([short name length][name (UTF-8)])*
+ * Meta format: [int magic][int orders][int items]
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class OrderColumns {
+	private static final int META_MAGIC = 0x53534F43;
+	private static final String FILE_EXTENSION = "ssoc";
+	private static final String DICTIONARY_EXTENSION = "ssod";
+	// Capacity of columns when first mapped
+	private static final int INITIAL_CAPACITY = 64 * 1024; // bytes
+	private static final Order.Status[] STATUSES = Order.Status.values();
+
+	private final File directory;
+	private FileChannel metaChannel;
+	private MappedByteBuffer meta;
+	// Order columns
+	private final Column dates;
+	private final Column customers;
+	private final Column statuses;
+	private final Column itemEnds;
+	// Item columns
+	private final Column itemDishes;
+	private final Column itemQuantities;
+	private final Column itemPrices;
+	private final Column[] columns;
+	private final Dictionary customerNames;
+	private final Dictionary dishNames;
+	private int orderCount = 0;
+	private int itemCount = 0;
+
+	/**
+	 * Instantiate a columnar store using a directory. The store must be opened before use.
+	 *
+	 * @param directory Directory to hold columns in
+	 */
+	public OrderColumns(File directory) {
+		this.directory = directory;
+		dates = new Column("date", Long.BYTES);
+		customers = new Column("customer", Integer.BYTES);
+		statuses = new Column("status", Byte.BYTES);
+		itemEnds = new Column("items", Integer.BYTES);
+		itemDishes = new Column("item-dish", Integer.BYTES);
+		itemQuantities = new Column("item-quantity", Double.BYTES);
+		itemPrices = new Column("item-price", Double.BYTES);
+		columns = new Column[] {dates, customers, statuses, itemEnds, itemDishes, itemQuantities,
+				itemPrices};
+		customerNames = new Dictionary("customers");
+		dishNames = new Dictionary("dishes");
+	}
+
+	/**
+	 * Open the columns and dictionaries, creating them if they do not exist.
+	 *
+	 * @throws IOException Unable to open columns
+	 */
+	public synchronized void open() throws IOException {
+		directory.mkdirs();
+		metaChannel = FileChannel.open(new File(directory, "meta." + FILE_EXTENSION).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 3 * Integer.BYTES);
+		if (meta.getInt(0) == META_MAGIC) {
+			orderCount = meta.getInt(Integer.BYTES);
+			itemCount = meta.getInt(2 * Integer.BYTES);
+		} else {
+			orderCount = 0;
+			itemCount = 0;
+		}
+		for (final Column column : columns) {
+			column.open();
+		}
+		customerNames.open();
+		dishNames.open();
+	}
+
+	/**
+	 * Close the columns and dictionaries.
+	 */
+	public synchronized void close() {
+		for (final Column column : columns) {
+			column.close();
+		}
+		customerNames.close();
+		dishNames.close();
+		try {
+			metaChannel.close();
+		} catch(IOException e) {
+			// close failed, ignore
+		}
+		meta = null;
+	}
+
+	/**
+	 * Remove every order, so the store can be rebuilt.
+	 *
+	 * @throws IOException Unable to write meta file
+	 */
+	public synchronized void clear() throws IOException {
+		orderCount = 0;
+		itemCount = 0;
+		writeMeta();
+	}
+
+	/**
+	 * Append orders, forcing them to disk before returning.
+	 *
+	 * @param orders Orders to append
+	 * @throws IOException Unable to write orders
+	 */
+	public synchronized void append(Collection<Order> orders) throws IOException {
+		int row = orderCount;
+		int item = itemCount;
+		for (final Order order : orders) {
+			ensureOrderCapacity(row + 1);
+			ensureItemCapacity(item + order.getDishes().size());
+			final QuantityMap<Dish> dishes = order.getDishes();
+			for (int i = dishes.nextIndex(-1); i >= 0; i = dishes.nextIndex(i)) {
+				itemDishes.buffer.putInt(item * Integer.BYTES,
+						dishNames.intern(dishes.keyAt(i).getName()));
+				itemQuantities.buffer.putDouble(item * Double.BYTES, dishes.quantityAt(i));
+				itemPrices.buffer.putDouble(item * Double.BYTES, dishes.keyAt(i).getPrice());
+				item++;
+			}
+			dates.buffer.putLong(row * Long.BYTES,
+					order.getDate().toInstant(ZoneOffset.UTC).toEpochMilli());
+			customers.buffer.putInt(row * Integer.BYTES,
+					customerNames.intern(order.getCustomer().getLogin().getUsername()));
+			statuses.buffer.put(row, (byte) order.getStatus().ordinal());
+			itemEnds.buffer.putInt(row * Integer.BYTES, item);
+			row++;
+		}
+		if (row == orderCount) {
+			return;
+		}
+		// Rows only exist once every column is on disk
+		for (final Column column : columns) {
+			column.buffer.force();
+		}
+		customerNames.force();
+		dishNames.force();
+		orderCount = row;
+		itemCount = item;
+		writeMeta();
+	}
+
+	/**
+	 * @return Number of orders held
+	 */
+	public synchronized int getOrderCount() {
+		return orderCount;
+	}
+
+	/**
+	 * Visit every order held, oldest first. The store is locked whilst scanning so the visitor
+	 * must not append orders.
+	 *
+	 * @param visitor Visitor to pass each order to
+	 */
+	public synchronized void scan(RowVisitor visitor) {
+		final Row row = new Row();
+		for (row.index = 0; row.index < orderCount; row.index++) {
+			visitor.visit(row);
+		}
+	}
+
+	/**
+	 * Visit every order held from a customer, oldest first. The store is locked whilst scanning
+	 * so the visitor must not append orders.
+	 *
+	 * @param login Login of customer
+	 * @param visitor Visitor to pass each order to
+	 */
+	public synchronized void scan(CustomerLogin login, RowVisitor visitor) {
+		final Integer id = customerNames.ids.get(login.getUsername());
+		if (id == null) {
+			return;
+		}
+		final Row row = new Row();
+		for (row.index = 0; row.index < orderCount; row.index++) {
+			if (customers.buffer.getInt(row.index * Integer.BYTES) == id) {
+				visitor.visit(row);
+			}
+		}
+	}
+
+	/**
+	 * Total the quantity of each dish ordered in orders made within a period.
+	 *
+	 * @param from Start of period (inclusive)
+	 * @param to End of period (exclusive)
+	 * @return Quantity ordered by dish name
+	 */
+	public QuantityMap<String> getDishQuantities(LocalDateTime from, LocalDateTime to) {
+		final long start = from.toInstant(ZoneOffset.UTC).toEpochMilli();
+		final long end = to.toInstant(ZoneOffset.UTC).toEpochMilli();
+		final QuantityMap<String> quantities = new QuantityMap<>();
+		scan(new RowVisitor() {
+			@Override
+			public void visit(Row row) {
+				final long date = row.getDateMillis();
+				if (date < start || date >= end) {
+					return;
+				}
+				for (int i = 0; i < row.getItemCount(); i++) {
+					quantities.relativeChange(row.getDish(i), row.getQuantity(i));
+				}
+			}
+		});
+		return quantities;
+	}
+
+	/**
+	 * Total the amount spent by each customer.
+	 *
+	 * @return Amount spent by customer username
+	 */
+	public Map<String, Double> getCustomerSpending() {
+		final Map<String, Double> spending = new HashMap<>();
+		scan(new RowVisitor() {
+			@Override
+			public void visit(Row row) {
+				if (row.getStatus() == Order.Status.CANCELLED) {
+					return;
+				}
+				final String customer = row.getCustomer();
+				final Double spent = spending.get(customer);
+				spending.put(customer, (spent == null ? 0 : spent) + row.getTotalPrice());
+			}
+		});
+		return spending;
+	}
+
+	/**
+	 * Ensure order columns can hold a number of rows. Must be called whilst locked.
+	 *
+	 * @param rows Number of rows
+	 * @throws IOException Unable to extend columns
+	 */
+	private void ensureOrderCapacity(int rows) throws IOException {
+		dates.ensureCapacity(rows);
+		customers.ensureCapacity(rows);
+		statuses.ensureCapacity(rows);
+		itemEnds.ensureCapacity(rows);
+	}
+
+	/**
+	 * Ensure item columns can hold a number of rows. Must be called whilst locked.
+	 *
+	 * @param rows Number of rows
+	 * @throws IOException Unable to extend columns
+	 */
+	private void ensureItemCapacity(int rows) throws IOException {
+		itemDishes.ensureCapacity(rows);
+		itemQuantities.ensureCapacity(rows);
+		itemPrices.ensureCapacity(rows);
+	}
+
+	/**
+	 * Write the number of rows to the meta file and force it to disk. Must be called whilst
+	 * locked.
+	 */
+	private void writeMeta() {
+		meta.putInt(Integer.BYTES, orderCount);
+		meta.putInt(2 * Integer.BYTES, itemCount);
+		meta.putInt(0, META_MAGIC);
+		meta.force();
+	}
+
+	/**
+	 * Interface for visiting the orders of a scan.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static interface RowVisitor {
+
+		/**
+		 * Visit an order. The row is reused for the next order so must not be kept.
+		 *
+		 * @param row Row of order
+		 */
+		public abstract void visit(Row row);
+
+	}
+
+	/**
+	 * View of a single order in the columns, reading each field from the columns when requested.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public class Row {
+		private int index;
+
+		/**
+		 * @return Username of the customer who made the order
+		 */
+		public String getCustomer() {
+			return customerNames.names.get(customers.buffer.getInt(index * Integer.BYTES));
+		}
+
+		/**
+		 * @return Date of the order in milliseconds since the epoch (UTC)
+		 */
+		public long getDateMillis() {
+			return dates.buffer.getLong(index * Long.BYTES);
+		}
+
+		/**
+		 * @return Date of the order
+		 */
+		public LocalDateTime getDate() {
+			return LocalDateTime.ofInstant(Instant.ofEpochMilli(getDateMillis()), ZoneOffset.UTC);
+		}
+
+		/**
+		 * @return Status of the order
+		 */
+		public Order.Status getStatus() {
+			return STATUSES[statuses.buffer.get(index)];
+		}
+
+		/**
+		 * @return Number of different dishes in the order
+		 */
+		public int getItemCount() {
+			return getItemEnd() - getItemStart();
+		}
+
+		/**
+		 * @param item Index of item in order
+		 * @return Name of the dish
+		 */
+		public String getDish(int item) {
+			return dishNames.names.get(
+					itemDishes.buffer.getInt((getItemStart() + item) * Integer.BYTES));
+		}
+
+		/**
+		 * @param item Index of item in order
+		 * @return Quantity of the dish ordered
+		 */
+		public double getQuantity(int item) {
+			return itemQuantities.buffer.getDouble((getItemStart() + item) * Double.BYTES);
+		}
+
+		/**
+		 * @param item Index of item in order
+		 * @return Price of the dish when ordered
+		 */
+		public double getPrice(int item) {
+			return itemPrices.buffer.getDouble((getItemStart() + item) * Double.BYTES);
+		}
+
+		/**
+		 * @return Price of all dishes in the order
+		 */
+		public double getTotalPrice() {
+			double price = 0;
+			for (int i = getItemStart(); i < getItemEnd(); i++) {
+				price += itemPrices.buffer.getDouble(i * Double.BYTES)
+						* itemQuantities.buffer.getDouble(i * Double.BYTES);
+			}
+			return price;
+		}
+
+		private int getItemStart() {
+			return (index == 0) ? 0 : itemEnds.buffer.getInt((index - 1) * Integer.BYTES);
+		}
+
+		private int getItemEnd() {
+			return itemEnds.buffer.getInt(index * Integer.BYTES);
+		}
+
+	}
+
+	/**
+	 * A single column of fixed width values, mapped from a file with spare capacity.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private class Column {
+		private final String name;
+		private final int width;
+		private FileChannel channel;
+		private MappedByteBuffer buffer;
+
+		public Column(String name, int width) {
+			this.name = name;
+			this.width = width;
+		}
+
+		/**
+		 * Open and map the column file, creating it if it does not exist.
+		 *
+		 * @throws IOException Unable to open column
+		 */
+		public void open() throws IOException {
+			channel = FileChannel.open(new File(directory, name + "." + FILE_EXTENSION).toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			map(Math.max(channel.size(), INITIAL_CAPACITY));
+		}
+
+		/**
+		 * Close the column file.
+		 */
+		public void close() {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// close failed, ignore
+			}
+			buffer = null;
+		}
+
+		/**
+		 * Ensure the column can hold a number of values, at least doubling the mapped capacity if
+		 * it cannot.
+		 *
+		 * @param count Number of values
+		 * @throws IOException Unable to extend column
+		 */
+		public void ensureCapacity(int count) throws IOException {
+			final long required = (long) count * width;
+			if (required > buffer.capacity()) {
+				map(Math.max(required, 2L * buffer.capacity()));
+			}
+		}
+
+		/**
+		 * Map the column file, extending it if it is shorter than the capacity.
+		 *
+		 * @param capacity Capacity to map in bytes
+		 * @throws IOException Unable to map column
+		 */
+		private void map(long capacity) throws IOException {
+			if (capacity > Integer.MAX_VALUE) {
+				throw new IOException(String.format("Column %s is full", name));
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+
+	}
+
+	/**
+	 * Append-only file of names, each identified by its position in the file.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private class Dictionary {
+		private final String name;
+		private final List<String> names = new ArrayList<>();
+		private final Map<String, Integer> ids = new HashMap<>();
+		private FileChannel channel;
+		private boolean changed = false;
+
+		public Dictionary(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Open the dictionary file and read every name, discarding any incomplete name at the
+		 * end of the file.
+		 *
+		 * @throws IOException Unable to read dictionary
+		 */
+		public void open() throws IOException {
+			names.clear();
+			ids.clear();
+			channel = FileChannel.open(
+					new File(directory, name + "." + DICTIONARY_EXTENSION).toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			final long size = channel.size();
+			long position = 0;
+			try {
+				while (position < size) {
+					final int length = readFully(position, Short.BYTES).getShort() & 0xFFFF;
+					final ByteBuffer bytes = readFully(position + Short.BYTES, length);
+					add(new String(bytes.array(), StandardCharsets.UTF_8));
+					position += Short.BYTES + length;
+				}
+			} catch(EOFException e) {
+				System.err.println(String.format(
+						"[COLUMNS] : Discarding incomplete name in %s dictionary", name));
+				channel.truncate(position);
+			}
+		}
+
+		/**
+		 * Close the dictionary file.
+		 */
+		public void close() {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// close failed, ignore
+			}
+		}
+
+		/**
+		 * Get the identifier of a name, appending the name if it is not held.
+		 *
+		 * @param value Name to get identifier of
+		 * @return Identifier of name
+		 * @throws IOException Unable to append name
+		 */
+		public int intern(String value) throws IOException {
+			final Integer id = ids.get(value);
+			if (id != null) {
+				return id;
+			}
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer buffer = ByteBuffer.allocate(Short.BYTES + bytes.length);
+			buffer.putShort((short) bytes.length);
+			buffer.put(bytes);
+			buffer.flip();
+			long position = channel.size();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			changed = true;
+			return add(value);
+		}
+
+		/**
+		 * Force names appended since the last call to disk.
+		 *
+		 * @throws IOException Unable to force names
+		 */
+		public void force() throws IOException {
+			if (changed) {
+				channel.force(false);
+				changed = false;
+			}
+		}
+
+		private int add(String value) {
+			final int id = names.size();
+			names.add(value);
+			ids.put(value, id);
+			return id;
+		}
+
+		private ByteBuffer readFully(long position, int length) throws IOException {
+			final ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new EOFException();
+				}
+			}
+			buffer.flip();
+			return buffer;
+		}
+
+	}
+
+}
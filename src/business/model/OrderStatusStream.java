@@ -0,0 +1,372 @@
+package business.model;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import general.model.Comms;
+import general.model.Message;
+import general.model.ObjectMessage;
+
+/**
+ * Streams order status changes to the clients of the customers that own the orders. Each customer
+ * has a log of recent changes numbered by a sequence number; changes are pushed to subscribed
+ * clients as they happen. A client subscribing again gives the epoch and the last sequence number
+ * it received; if the log still holds every change after that number only those changes are sent,
+ * otherwise all orders of the customer are resent with their current status. Sequence numbers are
+ * only comparable within an epoch, which is different for every stream.
+ *
+ * Logs only hold the date of each changed order, which with the customer identifies the order, so
+ * removed orders are not kept alive by the stream. A log without subscribers that has not changed
+ * within the resume window is dropped; its customer's clients are then resent all orders.
+ *
+ * Messages (ORDER_STATUS_CHANGES) hold:
+ * EPOCH - Long identifier of the stream that created the message
+ * FULL - Boolean, whether ORDERS holds every order of the customer
+ * FIRST - Long sequence number of the first change (changes are numbered consecutively)
+ * SEQUENCE - Long sequence number of the last change, or of the log when FULL
+ * ORDERS - Order array of changed orders
+ * STATUSES - Status array holding the status each order changed to
+ *
+ * Added orders and status changes are reported by the order store whilst it is locked, so the
+ * stream is only locked after the orders of the model.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class OrderStatusStream implements Order.StatusListener {
+	// Number of changes remembered per customer for resuming
+	private static final int LOG_CAPACITY = 256;
+	// Time to wait for queued pushes when stopping
+	private static final int STOP_TIMEOUT = 1000; // ms
+	// Time a log without subscribers is kept after its last change
+	private static final long RESUME_WINDOW = 10 * 60 * 1000; // ms
+	// Minimum time between checks for logs to drop
+	private static final long EVICT_INTERVAL = 60 * 1000; // ms
+
+	private final BusinessModel model;
+	private final Comms comms;
+	// Identifier of this stream's sequence numbers
+	private final long epoch = new Random().nextLong();
+	// Change logs of customers, guarded by this
+	private final Map<CustomerLogin, CustomerLog> logs = new HashMap<>();
+	// Highest sequence number given out by any log, guarded by this
+	private long highestSequence = 0;
+	// Time logs were last checked for dropping, guarded by this
+	private long lastEviction = System.currentTimeMillis();
+	// Single thread that sends pushes in the order they are created
+	private final ExecutorService sender;
+
+	/**
+	 * Instantiate a stream of the order status changes made in a model.
+	 *
+	 * @param model Model holding orders
+	 * @param comms Comms to push changes using
+	 */
+	public OrderStatusStream(BusinessModel model, Comms comms) {
+		this.model = model;
+		this.comms = comms;
+		this.sender = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable, "OrderStatusStream");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Start streaming status changes of the model's orders, including orders added later.
+	 */
+	public void start() {
+		model.orders.addStatusListener(this);
+	}
+
+	/**
+	 * Stop streaming status changes, waiting briefly for queued pushes to be sent.
+	 *
+	 * @throws InterruptedException Interrupted whilst waiting for pushes
+	 */
+	public void stop() throws InterruptedException {
+		model.orders.removeStatusListener(this);
+		sender.shutdown();
+		sender.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void statusChanged(Order order, Order.Status status) {
+		final CustomerLog log = getLog(order.getCustomer().getLogin());
+		final long sequence = log.append(order.getDate(), status);
+		highestSequence = Math.max(highestSequence, sequence);
+		evictIdleLogs();
+		if (log.subscribers.isEmpty()) {
+			return;
+		}
+		final ObjectMessage tx = createMessage(false, sequence, sequence,
+				new Order[] {order}, new Order.Status[] {status});
+		push(tx, new ArrayList<>(log.subscribers), log);
+	}
+
+	/**
+	 * Subscribe a client to the status changes of a customer's orders. If the given epoch is the
+	 * epoch of this stream and the log holds every change after the given sequence number, the
+	 * returned message only holds those changes, otherwise it holds every order of the customer.
+	 *
+	 * @param login Login of customer
+	 * @param subscriber Address of client
+	 * @param lastEpoch Epoch of the last change received by the client
+	 * @param lastSequence Sequence number of the last change received by the client
+	 * @return Message holding the changes the client has missed
+	 */
+	public ObjectMessage subscribe(CustomerLogin login, InetSocketAddress subscriber,
+			long lastEpoch, long lastSequence) {
+		// Lock in the same order as changes are reported
+		synchronized (model.orders) {
+			synchronized (this) {
+				final CustomerLog log = getLog(login);
+				log.subscribers.add(subscriber);
+				final Set<Order> orders = model.getOrdersFromCustomer(login);
+				if (lastEpoch == epoch && log.canResumeFrom(lastSequence)) {
+					final ObjectMessage tx = createResumeMessage(log, orders, lastSequence);
+					if (tx != null) {
+						return tx;
+					}
+				}
+				// Resend every order with its current status
+				final Order[] orderArray = orders.toArray(new Order[orders.size()]);
+				final Order.Status[] statuses = new Order.Status[orderArray.length];
+				for (int i = 0; i < orderArray.length; i++) {
+					statuses[i] = orderArray[i].getStatus();
+				}
+				return createMessage(true, log.sequence + 1, log.sequence, orderArray, statuses);
+			}
+		}
+	}
+
+	/**
+	 * Stop pushing a customer's status changes to a client.
+	 *
+	 * @param login Login of customer
+	 * @param subscriber Address of client
+	 */
+	public synchronized void unsubscribe(CustomerLogin login, InetSocketAddress subscriber) {
+		final CustomerLog log = logs.get(login);
+		if (log != null) {
+			log.unsubscribe(subscriber);
+		}
+		evictIdleLogs();
+	}
+
+	/**
+	 * Create a message holding the changes of a log after the last received. Must be called whilst
+	 * locked.
+	 *
+	 * @param log Log of customer
+	 * @param orders Current orders of customer
+	 * @param lastSequence Sequence number of the last change received by the client
+	 * @return Message holding the changes, null if a changed order has since been removed
+	 */
+	private ObjectMessage createResumeMessage(CustomerLog log, Set<Order> orders,
+			long lastSequence) {
+		final Map<LocalDateTime, Order> byDate = new HashMap<>();
+		for (final Order order : orders) {
+			byDate.put(order.getDate(), order);
+		}
+		final List<Order> changed = new ArrayList<>();
+		final List<Order.Status> statuses = new ArrayList<>();
+		for (final Change change : log.changes) {
+			if (change.sequence > lastSequence) {
+				final Order order = byDate.get(change.date);
+				if (order == null) {
+					// Removals are only reported by resending every order
+					return null;
+				}
+				changed.add(order);
+				statuses.add(change.status);
+			}
+		}
+		return createMessage(false, lastSequence + 1, log.sequence,
+				changed.toArray(new Order[changed.size()]),
+				statuses.toArray(new Order.Status[statuses.size()]));
+	}
+
+	/**
+	 * Get the log of a customer, creating it if it does not exist. Must be called whilst locked.
+	 *
+	 * @param login Login of customer
+	 * @return Log of customer
+	 */
+	private CustomerLog getLog(CustomerLogin login) {
+		CustomerLog log = logs.get(login);
+		if (log == null) {
+			// Start after every number given out so a dropped log cannot be resumed from
+			log = new CustomerLog(++highestSequence);
+			logs.put(login, log);
+		}
+		return log;
+	}
+
+	/**
+	 * Drop logs without subscribers that have not changed within the resume window, at most once
+	 * every eviction interval. Must be called whilst locked.
+	 */
+	private void evictIdleLogs() {
+		final long now = System.currentTimeMillis();
+		if (now - lastEviction < EVICT_INTERVAL) {
+			return;
+		}
+		lastEviction = now;
+		final Iterator<CustomerLog> itr = logs.values().iterator();
+		while (itr.hasNext()) {
+			final CustomerLog log = itr.next();
+			if (log.subscribers.isEmpty() && now - log.lastActive > RESUME_WINDOW) {
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * Queue a message to be pushed to subscribers. Must be called whilst locked so pushes are sent
+	 * in the order they are created.
+	 *
+	 * @param tx Message to push
+	 * @param subscribers Addresses to push to
+	 * @param log Log that subscribers that cannot be sent to are removed from
+	 */
+	private void push(ObjectMessage tx, List<InetSocketAddress> subscribers, CustomerLog log) {
+		if (sender.isShutdown()) {
+			return;
+		}
+		sender.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (final InetSocketAddress subscriber : subscribers) {
+					if (!comms.sendMessage(tx, subscriber)) {
+						System.err.println(
+								String.format("[STREAM] : Unsubscribing %s", subscriber));
+						synchronized (OrderStatusStream.this) {
+							log.unsubscribe(subscriber);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Create a message holding status changes.
+	 *
+	 * @param full Whether the message holds every order of a customer
+	 * @param first Sequence number of first change
+	 * @param sequence Sequence number of last change
+	 * @param orders Changed orders
+	 * @param statuses Status each order changed to
+	 * @return Created message
+	 */
+	private ObjectMessage createMessage(boolean full, long first, long sequence, Order[] orders,
+			Order.Status[] statuses) {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.ORDER_STATUS_CHANGES);
+		tx.addObject("EPOCH", epoch);
+		tx.addObject("FULL", full);
+		tx.addObject("FIRST", first);
+		tx.addObject("SEQUENCE", sequence);
+		tx.addObject("ORDERS", orders);
+		tx.addObject("STATUSES", statuses);
+		return tx;
+	}
+
+	/**
+	 * Recent changes to the orders of a single customer and the clients subscribed to them.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class CustomerLog {
+		private final Deque<Change> changes = new ArrayDeque<>();
+		private final Set<InetSocketAddress> subscribers = new HashSet<>();
+		private long sequence;
+		// Time of the last change or unsubscription
+		private long lastActive = System.currentTimeMillis();
+
+		/**
+		 * Instantiate an empty log.
+		 *
+		 * @param sequence Sequence number of the log, the first change is numbered after it
+		 */
+		public CustomerLog(long sequence) {
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Add a change to the log, forgetting the oldest change if the log is full.
+		 *
+		 * @param date Date of changed order
+		 * @param status Status order changed to
+		 * @return Sequence number of change
+		 */
+		public long append(LocalDateTime date, Order.Status status) {
+			changes.addLast(new Change(++sequence, date, status));
+			if (changes.size() > LOG_CAPACITY) {
+				changes.removeFirst();
+			}
+			lastActive = System.currentTimeMillis();
+			return sequence;
+		}
+
+		/**
+		 * Remove a subscriber, keeping the log for the resume window.
+		 *
+		 * @param subscriber Address of client
+		 */
+		public void unsubscribe(InetSocketAddress subscriber) {
+			if (subscribers.remove(subscriber)) {
+				lastActive = System.currentTimeMillis();
+			}
+		}
+
+		/**
+		 * @param lastSequence Sequence number of the last change received
+		 * @return Whether every change after the given sequence number is held
+		 */
+		public boolean canResumeFrom(long lastSequence) {
+			if (lastSequence > sequence || lastSequence < 0) {
+				return false;
+			}
+			final Iterator<Change> itr = changes.iterator();
+			final long oldest = itr.hasNext() ? itr.next().sequence : sequence + 1;
+			return lastSequence >= oldest - 1;
+		}
+
+	}
+
+	/**
+	 * A single status change, identifying the order by its date within the customer's log.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class Change {
+		private final long sequence;
+		private final LocalDateTime date;
+		private final Order.Status status;
+
+		public Change(long sequence, LocalDateTime date, Order.Status status) {
+			this.sequence = sequence;
+			this.date = date;
+			this.status = status;
+		}
+
+	}
+
+}
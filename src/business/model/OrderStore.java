@@ -0,0 +1,527 @@
+package business.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class OrderStore that holds orders in the order they were added, indexed by status and by
+ * customer login. Methods in this class are thread safe using the store as a locking object;
+ * iteration should lock to the store manually to synchronise.
+ *
+ * The store listens to the status of every order it holds so indexes are kept up to date however
+ * the status is set. Orders of a status are held in the order they changed to that status, so the
+ * oldest order ready for dispatch can be found in constant time.
+ *
+ * Listeners can be registered to be told when an order is added or its status changes, and
+ * separately when orders are added or removed. Listeners are called whilst the store is locked so
+ * should only record the change. A versioned list of copies of all orders can be taken, which is
+ * only copied again once the store has changed.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class OrderStore extends AbstractSet<Order> implements Serializable, Order.StatusListener {
+	private static final long serialVersionUID = -4518924032452311823L;
+	// All orders mapped to the values they are indexed by
+	private transient Map<Order, IndexKey> orders;
+	// Orders of each status, in the order they changed to the status
+	private transient Map<Order.Status, Set<Order>> byStatus;
+	// Orders of each customer, in the order they were added
+	private transient Map<CustomerLogin, Set<Order>> byCustomer;
+	// Orders of each customer for each status, in the order they changed to the status
+	private transient Map<Order.Status, Map<CustomerLogin, Set<Order>>> byStatusAndCustomer;
+	// Listeners to added orders and status changes, not persisted
+	private transient volatile List<Order.StatusListener> listeners;
+	// Listeners to added and removed orders, not persisted
+	private transient volatile List<ContentListener> contentListeners;
+	// Increased on every change, with a list of copies of orders at the latest version taken
+	private transient long version;
+	private transient VersionedList<Order> view;
+
+	/**
+	 * Instantiate an empty order store.
+	 */
+	public OrderStore() {
+		initialise();
+	}
+
+	/**
+	 * Create empty indexes.
+	 */
+	private void initialise() {
+		orders = new LinkedHashMap<>();
+		byStatus = new EnumMap<>(Order.Status.class);
+		byCustomer = new HashMap<>();
+		byStatusAndCustomer = new EnumMap<>(Order.Status.class);
+	}
+
+	@Override
+	public synchronized boolean add(Order order) {
+		if (orders.containsKey(order)) {
+			return false;
+		}
+		final IndexKey key = new IndexKey(order.getStatus(), order.getCustomer().getLogin());
+		orders.put(order, key);
+		index(order, key);
+		version++;
+		order.setStatusListener(this);
+		fireOrderAdded(order);
+		fireStatusChanged(order, order.getStatus());
+		return true;
+	}
+
+	@Override
+	public synchronized boolean remove(Object obj) {
+		final IndexKey key = orders.remove(obj);
+		if (key == null) {
+			return false;
+		}
+		final Order order = (Order) obj;
+		order.setStatusListener(null);
+		unindex(order, key);
+		version++;
+		fireOrderRemoved(order);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean contains(Object obj) {
+		return orders.containsKey(obj);
+	}
+
+	@Override
+	public synchronized int size() {
+		return orders.size();
+	}
+
+	@Override
+	public synchronized void clear() {
+		final Set<Order> removed = orders.keySet();
+		initialise();
+		version++;
+		for (final Order order : removed) {
+			order.setStatusListener(null);
+			fireOrderRemoved(order);
+		}
+	}
+
+	@Override
+	public Iterator<Order> iterator() {
+		final Iterator<Map.Entry<Order, IndexKey>> itr = orders.entrySet().iterator();
+		return new Iterator<Order>() {
+			private Map.Entry<Order, IndexKey> current;
+
+			@Override
+			public boolean hasNext() {
+				return itr.hasNext();
+			}
+
+			@Override
+			public Order next() {
+				current = itr.next();
+				return current.getKey();
+			}
+
+			@Override
+			public void remove() {
+				synchronized (OrderStore.this) {
+					itr.remove();
+					current.getKey().setStatusListener(null);
+					unindex(current.getKey(), current.getValue());
+					version++;
+					fireOrderRemoved(current.getKey());
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return Version of store, increased on every change
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Get copies of all orders as they are at the current version of the store. Orders are only
+	 * copied if the store has changed since copies were last taken.
+	 *
+	 * @return Copies of orders, in the order they were added
+	 */
+	public synchronized VersionedList<Order> getView() {
+		if (view == null || view.getVersion() != version) {
+			final List<Order> copies = new ArrayList<>(orders.size());
+			for (final Order order : orders.keySet()) {
+				copies.add(new Order(order));
+			}
+			view = new VersionedList<>(version, copies);
+		}
+		return view;
+	}
+
+	/**
+	 * Get a copy of a single order as it is currently held, for updating a view of one order that
+	 * has changed without copying all orders.
+	 *
+	 * @param order Order to copy
+	 * @return Copy of order, null if the store does not hold the order
+	 */
+	public synchronized Order getCopy(Order order) {
+		final Order held = get(order.getCustomer().getLogin(), order.getDate());
+		return (held == null) ? null : new Order(held);
+	}
+
+	/**
+	 * Get the order that has had a particular status for longest.
+	 *
+	 * @param status Status to find
+	 * @return Order with status, null if there is none
+	 */
+	public synchronized Order getFirstOfStatus(Order.Status status) {
+		final Set<Order> withStatus = byStatus.get(status);
+		return (withStatus == null) ? null : withStatus.iterator().next();
+	}
+
+	/**
+	 * Get the orders that have had a particular status for longest, without copying every order
+	 * with the status.
+	 *
+	 * @param status Status to find
+	 * @param limit Most orders to get
+	 * @return Copy of up to the limit of orders with status, in the order they changed to the
+	 *         status
+	 */
+	public synchronized List<Order> getFirstOfStatus(Order.Status status, int limit) {
+		final List<Order> first = new ArrayList<>();
+		final Set<Order> withStatus = byStatus.get(status);
+		if (withStatus != null) {
+			final Iterator<Order> itr = withStatus.iterator();
+			while (first.size() < limit && itr.hasNext()) {
+				first.add(itr.next());
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Get all orders with a particular status.
+	 *
+	 * @param status Status to filter by
+	 * @return Copy of orders with status, in the order they changed to the status
+	 */
+	public synchronized Set<Order> getOrdersOfStatus(Order.Status status) {
+		return copy(byStatus.get(status));
+	}
+
+	/**
+	 * Get all orders from a particular customer.
+	 *
+	 * @param login Customer login to filter by
+	 * @return Copy of orders from customer, in the order they were added
+	 */
+	public synchronized Set<Order> getOrdersFromCustomer(CustomerLogin login) {
+		return copy(byCustomer.get(login));
+	}
+
+	/**
+	 * Get all orders from a particular customer with a particular status.
+	 *
+	 * @param status Status to filter by
+	 * @param login Customer login to filter by
+	 * @return Copy of matching orders, in the order they changed to the status
+	 */
+	public synchronized Set<Order> getOrders(Order.Status status, CustomerLogin login) {
+		final Map<CustomerLogin, Set<Order>> withStatus = byStatusAndCustomer.get(status);
+		return copy((withStatus == null) ? null : withStatus.get(login));
+	}
+
+	/**
+	 * Find an order from its customer login and date, which together define order equality.
+	 *
+	 * @param login Customer login of order
+	 * @param date Date of order
+	 * @return Order found, null if not held
+	 */
+	public synchronized Order get(CustomerLogin login, LocalDateTime date) {
+		final Set<Order> fromCustomer = byCustomer.get(login);
+		if (fromCustomer != null) {
+			for (final Order order : fromCustomer) {
+				if (order.getDate().equals(date)) {
+					return order;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized void statusChanged(Order order, Order.Status status) {
+		final IndexKey key = orders.get(order);
+		if (key == null) {
+			return;
+		}
+		if (key.status != status) {
+			// Move order to the end of the new status's indexes
+			unindex(order, key);
+			key.status = status;
+			index(order, key);
+		}
+		version++;
+		fireStatusChanged(order, status);
+	}
+
+	/**
+	 * Register a listener to be told of added orders and status changes. An added order is reported
+	 * as a change to its current status.
+	 *
+	 * @param listener Listener to add
+	 */
+	public synchronized void addStatusListener(Order.StatusListener listener) {
+		if (listeners == null) {
+			listeners = new CopyOnWriteArrayList<>();
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stop a listener being told of added orders and status changes.
+	 *
+	 * @param listener Listener to remove
+	 */
+	public synchronized void removeStatusListener(Order.StatusListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Register a listener to be told of added and removed orders.
+	 *
+	 * @param listener Listener to add
+	 */
+	public synchronized void addContentListener(ContentListener listener) {
+		if (contentListeners == null) {
+			contentListeners = new CopyOnWriteArrayList<>();
+		}
+		contentListeners.add(listener);
+	}
+
+	/**
+	 * Stop a listener being told of added and removed orders.
+	 *
+	 * @param listener Listener to remove
+	 */
+	public synchronized void removeContentListener(ContentListener listener) {
+		if (contentListeners != null) {
+			contentListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Tell all content listeners of an added order.
+	 *
+	 * @param order Order added
+	 */
+	private void fireOrderAdded(Order order) {
+		final List<ContentListener> contentListeners = this.contentListeners;
+		if (contentListeners != null) {
+			for (final ContentListener listener : contentListeners) {
+				listener.orderAdded(order);
+			}
+		}
+	}
+
+	/**
+	 * Tell all content listeners of a removed order.
+	 *
+	 * @param order Order removed
+	 */
+	private void fireOrderRemoved(Order order) {
+		final List<ContentListener> contentListeners = this.contentListeners;
+		if (contentListeners != null) {
+			for (final ContentListener listener : contentListeners) {
+				listener.orderRemoved(order);
+			}
+		}
+	}
+
+	/**
+	 * Tell all listeners of a status change.
+	 *
+	 * @param order Order that has changed
+	 * @param status New status of order
+	 */
+	private void fireStatusChanged(Order order, Order.Status status) {
+		final List<Order.StatusListener> listeners = this.listeners;
+		if (listeners != null) {
+			for (final Order.StatusListener listener : listeners) {
+				listener.statusChanged(order, status);
+			}
+		}
+	}
+
+	/**
+	 * Add an order to the indexes of its key. Must be called whilst locked.
+	 *
+	 * @param order Order to index
+	 * @param key Values to index order by
+	 */
+	private void index(Order order, IndexKey key) {
+		getSet(byCustomer, key.login).add(order);
+		if (key.status != null) {
+			getSet(byStatus, key.status).add(order);
+			Map<CustomerLogin, Set<Order>> withStatus = byStatusAndCustomer.get(key.status);
+			if (withStatus == null) {
+				withStatus = new HashMap<>();
+				byStatusAndCustomer.put(key.status, withStatus);
+			}
+			getSet(withStatus, key.login).add(order);
+		}
+	}
+
+	/**
+	 * Remove an order from the indexes of its key, removing indexes left empty. Must be called
+	 * whilst locked.
+	 *
+	 * @param order Order to remove
+	 * @param key Values order is indexed by
+	 */
+	private void unindex(Order order, IndexKey key) {
+		removeFromSet(byCustomer, key.login, order);
+		if (key.status != null) {
+			removeFromSet(byStatus, key.status, order);
+			final Map<CustomerLogin, Set<Order>> withStatus = byStatusAndCustomer.get(key.status);
+			if (withStatus != null) {
+				removeFromSet(withStatus, key.login, order);
+				if (withStatus.isEmpty()) {
+					byStatusAndCustomer.remove(key.status);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the set of an index, creating it if it does not exist.
+	 *
+	 * @param index Index to get set from
+	 * @param value Value of set
+	 * @return Set for value
+	 */
+	private static <V> Set<Order> getSet(Map<V, Set<Order>> index, V value) {
+		Set<Order> set = index.get(value);
+		if (set == null) {
+			set = new LinkedHashSet<>();
+			index.put(value, set);
+		}
+		return set;
+	}
+
+	/**
+	 * Remove an order from the set of an index, removing the set if left empty.
+	 *
+	 * @param index Index to remove from
+	 * @param value Value of set
+	 * @param order Order to remove
+	 */
+	private static <V> void removeFromSet(Map<V, Set<Order>> index, V value, Order order) {
+		final Set<Order> set = index.get(value);
+		if (set != null) {
+			set.remove(order);
+			if (set.isEmpty()) {
+				index.remove(value);
+			}
+		}
+	}
+
+	/**
+	 * @param set Set to copy, may be null
+	 * @return Copy of set, empty if set is null
+	 */
+	private static Set<Order> copy(Set<Order> set) {
+		return (set == null) ? new LinkedHashSet<>() : new LinkedHashSet<>(set);
+	}
+
+	/**
+	 * Write orders in the order they were added; indexes are rebuilt when read.
+	 *
+	 * @param out Stream to write to
+	 * @throws IOException Unable to write orders
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(orders.size());
+		for (final Order order : orders.keySet()) {
+			out.writeObject(order);
+		}
+	}
+
+	/**
+	 * Read orders and rebuild indexes.
+	 *
+	 * @param in Stream to read from
+	 * @throws IOException Unable to read orders
+	 * @throws ClassNotFoundException Class of an order not found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initialise();
+		final int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			add((Order) in.readObject());
+		}
+	}
+
+	/**
+	 * Interface for classes that should be told of orders added to or removed from a store.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static interface ContentListener {
+
+		/**
+		 * Called whilst the store is locked after an order has been added, before its status is
+		 * reported to status listeners.
+		 *
+		 * @param order Order added
+		 */
+		public abstract void orderAdded(Order order);
+
+		/**
+		 * Called whilst the store is locked after an order has been removed.
+		 *
+		 * @param order Order removed
+		 */
+		public abstract void orderRemoved(Order order);
+
+	}
+
+	/**
+	 * Values an order is indexed by.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class IndexKey {
+		private Order.Status status;
+		private final CustomerLogin login;
+
+		public IndexKey(Order.Status status, CustomerLogin login) {
+			this.status = status;
+			this.login = login;
+		}
+
+	}
+
+}
@@ -0,0 +1,255 @@
+package business.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Queue of dishes awaiting preparation, ranked so the most valuable job is taken first. The
+ * priority of a dish is the sum of its deficit below its restock level, the stock of it reserved
+ * by orders and its recent demand, relative to its restock level:
+ *
+ * <pre>
+ * (deficit + RESERVED_WEIGHT * reserved + DEMAND_WEIGHT * demand) / restock level
+ * </pre>
+ *
+ * Demand is the quantity of the dish ordered, decaying by half every DEMAND_HALF_LIFE. A dish is
+ * ranked when it is offered and re-ranked when it is offered again or ordered, each taking
+ * O(log n) time; ranks do not otherwise change as demand decays.
+ *
+ * Queue is not thread safe and should be guarded by its owner.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class PreparationQueue {
+	// Ranking weights
+	private static final double RESERVED_WEIGHT = 0.5;
+	private static final double DEMAND_WEIGHT = 1.0;
+	private static final long DEMAND_HALF_LIFE = 600000; // ms
+	// Highest priority first, then oldest first
+	private static final Comparator<Job> RANKING = new Comparator<Job>() {
+		@Override
+		public int compare(Job a, Job b) {
+			final int priority = Double.compare(b.priority, a.priority);
+			return priority != 0 ? priority : Long.compare(a.sequence, b.sequence);
+		}
+	};
+
+	private final TreeSet<Job> ranked = new TreeSet<>(RANKING);
+	private final Map<Dish, Job> jobs = new HashMap<>();
+	private final Map<Dish, Demand> demands = new HashMap<>();
+	private long sequence = 0;
+
+	/**
+	 * Add a job to the queue, replacing and re-ranking any queued job for the same dish.
+	 *
+	 * @param job Job to add
+	 * @return Whether the dish was not already queued
+	 */
+	public boolean offer(Job job) {
+		final Job existing = jobs.remove(job.dish);
+		if (existing != null) {
+			ranked.remove(existing);
+		}
+		final Demand demand = demands.get(job.dish);
+		insert(new Job(job, demand == null ? 0 : demand.get(Clock.get().currentTimeMillis()),
+				existing == null ? sequence++ : existing.sequence));
+		return existing == null;
+	}
+
+	/**
+	 * @param dish Dish to remove job for
+	 * @return Whether a job was queued for the dish
+	 */
+	public boolean remove(Dish dish) {
+		final Job existing = jobs.remove(dish);
+		if (existing != null) {
+			ranked.remove(existing);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Take the highest ranked job.
+	 *
+	 * @return Highest ranked job, null if queue is empty
+	 */
+	public Job poll() {
+		final Job job = ranked.pollFirst();
+		if (job != null) {
+			jobs.remove(job.dish);
+		}
+		return job;
+	}
+
+	/**
+	 * Record an order for a dish, re-ranking the dish if it is queued.
+	 *
+	 * @param dish Dish ordered
+	 * @param quantity Quantity ordered
+	 */
+	public void recordDemand(Dish dish, double quantity) {
+		final long time = Clock.get().currentTimeMillis();
+		Demand demand = demands.get(dish);
+		if (demand == null) {
+			demand = new Demand();
+			demands.put(dish, demand);
+		}
+		demand.add(quantity, time);
+		final Job existing = jobs.get(dish);
+		if (existing != null) {
+			ranked.remove(existing);
+			insert(new Job(existing, demand.get(time), existing.sequence));
+		}
+	}
+
+	/**
+	 * Forget the demand for a dish no longer held.
+	 *
+	 * @param dish Dish to forget
+	 */
+	public void forget(Dish dish) {
+		remove(dish);
+		demands.remove(dish);
+	}
+
+	/**
+	 * @return Whether there are no jobs queued
+	 */
+	public boolean isEmpty() {
+		return ranked.isEmpty();
+	}
+
+	/**
+	 * @return Queued jobs, highest ranked first
+	 */
+	public List<Job> getJobs() {
+		return new ArrayList<>(ranked);
+	}
+
+	/**
+	 * @param job Ranked job to queue
+	 */
+	private void insert(Job job) {
+		jobs.put(job.dish, job);
+		ranked.add(job);
+	}
+
+	/**
+	 * Quantity of a dish ordered, decaying exponentially with time.
+	 */
+	private static class Demand {
+		private double quantity = 0;
+		private long time = 0;
+
+		/**
+		 * @param time Current time (ms)
+		 * @return Decayed quantity at time
+		 */
+		public double get(long time) {
+			return quantity * Math.pow(0.5, (double) (time - this.time) / DEMAND_HALF_LIFE);
+		}
+
+		/**
+		 * @param quantity Quantity ordered
+		 * @param time Current time (ms)
+		 */
+		public void add(double quantity, long time) {
+			this.quantity = get(time) + quantity;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * A dish awaiting preparation and the values it was ranked by. Jobs do not change once
+	 * created so may be read without locking the queue.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static class Job {
+		private final Dish dish;
+		private final double deficit;
+		private final double reserved;
+		private final int restockLevel;
+		private final double demand;
+		private final double priority;
+		private final long sequence;
+
+		/**
+		 * Instantiate an unranked job from the current levels of a dish.
+		 *
+		 * @param dish Dish to prepare
+		 * @param levels Levels of dish
+		 */
+		public Job(Dish dish, StockLevels levels) {
+			this.dish = dish;
+			synchronized (levels) {
+				this.deficit = levels.getStockRequired();
+				this.reserved = levels.getReserved();
+				this.restockLevel = levels.getRestockLevel();
+			}
+			this.demand = 0;
+			this.priority = 0;
+			this.sequence = 0;
+		}
+
+		/**
+		 * Instantiate a ranked copy of a job.
+		 *
+		 * @param job Job to copy levels from
+		 * @param demand Current demand for dish
+		 * @param sequence Order in which dish was first queued
+		 */
+		private Job(Job job, double demand, long sequence) {
+			this.dish = job.dish;
+			this.deficit = job.deficit;
+			this.reserved = job.reserved;
+			this.restockLevel = job.restockLevel;
+			this.demand = demand;
+			this.priority = (deficit + RESERVED_WEIGHT * reserved + DEMAND_WEIGHT * demand)
+					/ Math.max(restockLevel, 1);
+			this.sequence = sequence;
+		}
+
+		/**
+		 * @return Dish to prepare
+		 */
+		public Dish getDish() {
+			return dish;
+		}
+
+		/**
+		 * @return Stock required to reach restock level when ranked
+		 */
+		public double getDeficit() {
+			return deficit;
+		}
+
+		/**
+		 * @return Stock reserved by orders when ranked
+		 */
+		public double getReserved() {
+			return reserved;
+		}
+
+		/**
+		 * @return Decayed quantity ordered when ranked
+		 */
+		public double getDemand() {
+			return demand;
+		}
+
+		/**
+		 * @return Priority of job, higher is taken first
+		 */
+		public double getPriority() {
+			return priority;
+		}
+
+	}
+
+}
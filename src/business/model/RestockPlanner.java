@@ -0,0 +1,182 @@
+package business.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import general.model.QuantityMap;
+
+/**
+ * Planner of drone restock trips that collect from several suppliers on a single trip. Every
+ * ingredient below its restock level is considered, less any stock already being restocked, and
+ * grouped by supplier. A trip collects from the suppliers nearest the business, visiting them in
+ * order of distance, and goes as far as restores the most stock per kilometre travelled.
+ *
+ * Suppliers only hold their distance from the business, so suppliers are treated as lying along a
+ * single route from the business: a trip travels out to its furthest supplier, collecting from
+ * nearer suppliers on the way, and returns. Stock restored is measured as the fraction of each
+ * ingredient's restock level that is required, so ingredients measured in different units can be
+ * compared.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class RestockPlanner {
+	// Most suppliers visited on a trip
+	private static final int MAX_STOPS = 8;
+	// Least distance a trip is treated as travelling, avoiding division by zero
+	private static final double MIN_DISTANCE = 0.001; // km
+	// Nearest supplier first
+	private static final Comparator<Pickup> BY_DISTANCE = new Comparator<Pickup>() {
+		@Override
+		public int compare(Pickup a, Pickup b) {
+			final int distance = Double.compare(a.supplier.getDistance(), b.supplier.getDistance());
+			return distance != 0 ? distance : a.supplier.compareTo(b.supplier);
+		}
+	};
+
+	/**
+	 * Do not allow this class to be instantiated.
+	 */
+	private RestockPlanner() {}
+
+	/**
+	 * Plan a restock trip. Ingredients should be locked by the caller until the trip has been
+	 * started so that concurrent planners do not plan the same restock.
+	 *
+	 * @param ingredients Ingredient stock to plan restock for
+	 * @return Planned trip, null if no supplier not already being restocked has an ingredient
+	 *         that requires restocking
+	 */
+	public static Trip plan(StockMap<Ingredient> ingredients) {
+		// Group required stock by supplier
+		final QuantityMap<Ingredient> required = ingredients.getStockRequired();
+		final Map<Supplier, Pickup> suppliers = new LinkedHashMap<>();
+		for (int i = required.nextIndex(-1); i >= 0; i = required.nextIndex(i)) {
+			final Ingredient ingredient = required.keyAt(i);
+			final Supplier supplier = ingredient.getSupplier();
+			if (supplier == null || supplier.isBeingRestocked()) {
+				continue;
+			}
+			Pickup pickup = suppliers.get(supplier);
+			if (pickup == null) {
+				pickup = new Pickup(supplier);
+				suppliers.put(supplier, pickup);
+			}
+			final double quantity = required.quantityAt(i);
+			final StockLevels levels = ingredients.get(ingredient);
+			pickup.ingredients.setQuantity(ingredient, quantity);
+			pickup.value += quantity / Math.max(levels == null ? 0 : levels.getRestockLevel(), 1);
+		}
+		if (suppliers.isEmpty()) {
+			return null;
+		}
+		final List<Pickup> pickups = new ArrayList<>(suppliers.values());
+		Collections.sort(pickups, BY_DISTANCE);
+		// Go as far as restores most stock per distance travelled, furthest when equal
+		int stops = 0;
+		double bestRate = -1;
+		double value = 0;
+		for (int i = 0; i < Math.min(pickups.size(), MAX_STOPS); i++) {
+			value += pickups.get(i).value;
+			final double rate = value / Math.max(getDistance(pickups.get(i)), MIN_DISTANCE);
+			if (rate >= bestRate) {
+				bestRate = rate;
+				stops = i + 1;
+			}
+		}
+		return new Trip(new ArrayList<>(pickups.subList(0, stops)));
+	}
+
+	/**
+	 * @param pickup Pickup to get distance of, null for the business
+	 * @return Distance of pickup from business (km)
+	 */
+	private static double getDistance(Pickup pickup) {
+		return pickup == null ? 0 : pickup.supplier.getDistance();
+	}
+
+	/**
+	 * A supplier visited on a trip and the stock of its ingredients required.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static class Pickup {
+		private final Supplier supplier;
+		private final QuantityMap<Ingredient> ingredients = new QuantityMap<>();
+		// Fraction of restock levels required
+		private double value = 0;
+
+		/**
+		 * @param supplier Supplier to visit
+		 */
+		private Pickup(Supplier supplier) {
+			this.supplier = supplier;
+		}
+
+		/**
+		 * @return Supplier to visit
+		 */
+		public Supplier getSupplier() {
+			return supplier;
+		}
+
+		/**
+		 * @return Ingredients of supplier and the stock of each required
+		 */
+		public QuantityMap<Ingredient> getIngredients() {
+			return ingredients;
+		}
+
+	}
+
+	/**
+	 * A planned trip from the business, visiting suppliers in order before returning.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static class Trip {
+		private final List<Pickup> pickups;
+
+		/**
+		 * @param pickups Pickups in the order they are visited
+		 */
+		private Trip(List<Pickup> pickups) {
+			this.pickups = pickups;
+		}
+
+		/**
+		 * @return Pickups in the order they are visited
+		 */
+		public List<Pickup> getPickups() {
+			return pickups;
+		}
+
+		/**
+		 * @param index Index of pickup
+		 * @return Distance travelled to pickup from previous pickup, or from business (km)
+		 */
+		public double getLegDistance(int index) {
+			return getDistance(pickups.get(index))
+					- getDistance((index > 0) ? pickups.get(index - 1) : null);
+		}
+
+		/**
+		 * @return Distance travelled from last pickup to business (km)
+		 */
+		public double getReturnDistance() {
+			return getDistance(pickups.get(pickups.size() - 1));
+		}
+
+		/**
+		 * @return Total distance of trip (km)
+		 */
+		public double getTotalDistance() {
+			return 2 * getReturnDistance();
+		}
+
+	}
+
+}
@@ -0,0 +1,350 @@
+package business.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import general.model.QuantityMap;
+
+/**
+ * Planner of drone delivery trips that batches the orders of several customers into a single
+ * trip. A trip always serves the customer whose order has been ready for dispatch longest; other
+ * customers are added while the drone has capacity for their orders and visiting them on the trip
+ * is shorter than a separate trip. Stops are ordered by a nearest neighbour tour improved by 2-opt.
+ *
+ * Postcodes only hold their distance from the business, so the distance between two postcodes is
+ * estimated: postcodes in the same district (sharing an outward code) are treated as lying on the
+ * same bearing from the business, other postcodes as only being reachable through the business.
+ * Only customers in the same district as a stop can therefore shorten a trip.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class RoutePlanner {
+	// Most customers visited on a trip and considered for a trip, bounding planning time
+	private static final int MAX_STOPS = 8;
+	private static final int MAX_CANDIDATES = 64;
+	// Most orders considered for a trip, allowing several orders from each candidate customer
+	public static final int MAX_ORDERS = 4 * MAX_CANDIDATES;
+	// Length of the inward code ending every postcode
+	private static final int INWARD_CODE_LENGTH = 3;
+
+	/**
+	 * Do not allow this class to be instantiated.
+	 */
+	private RoutePlanner() {}
+
+	/**
+	 * Plan a delivery trip.
+	 *
+	 * @param ready Orders ready for dispatch, in the order they became ready; only the first
+	 *        MAX_ORDERS need be given
+	 * @param capacity Most dishes that can be carried; the first order is always carried
+	 * @return Planned trip, null if there are no orders
+	 */
+	public static Route plan(Collection<Order> ready, double capacity) {
+		// Group orders by customer, keeping the order customers became ready
+		final Map<CustomerLogin, Stop> customers = new LinkedHashMap<>();
+		for (final Order order : ready) {
+			final CustomerLogin login = order.getCustomer().getLogin();
+			Stop stop = customers.get(login);
+			if (stop == null) {
+				if (customers.size() == MAX_CANDIDATES) {
+					continue;
+				}
+				stop = new Stop(order.getCustomer());
+				customers.put(login, stop);
+			}
+			stop.orders.add(order);
+		}
+		if (customers.isEmpty()) {
+			return null;
+		}
+		// Always serve the customer waiting longest, carrying at least one order
+		final Iterator<Stop> itr = customers.values().iterator();
+		final Stop first = itr.next();
+		itr.remove();
+		double load = first.load(capacity, true);
+		final List<Stop> stops = new ArrayList<>();
+		stops.add(first);
+		// Add the customer saving most distance until none saves distance or fits
+		while (stops.size() < MAX_STOPS) {
+			Stop best = null;
+			double bestSaving = 0;
+			for (final Stop candidate : customers.values()) {
+				final double saving = 2 * getDistance(null, candidate)
+						- getInsertionCost(stops, candidate);
+				if (saving > bestSaving && candidate.getLoad(capacity - load) > 0) {
+					best = candidate;
+					bestSaving = saving;
+				}
+			}
+			if (best == null) {
+				break;
+			}
+			customers.remove(best.customer.getLogin());
+			load += best.load(capacity - load, false);
+			stops.add(best);
+		}
+		return new Route(improve(getNearestNeighbourTour(stops)));
+	}
+
+	/**
+	 * Estimate the distance between two stops.
+	 *
+	 * @param a First stop, null for the business
+	 * @param b Second stop, null for the business
+	 * @return Estimated distance (km)
+	 */
+	private static double getDistance(Stop a, Stop b) {
+		if (a == null) {
+			return b == null ? 0 : b.postcode.getDistance();
+		}
+		if (b == null) {
+			return a.postcode.getDistance();
+		}
+		if (a.postcode.equals(b.postcode)) {
+			return 0;
+		}
+		if (a.district.equals(b.district)) {
+			return Math.abs(a.postcode.getDistance() - b.postcode.getDistance());
+		}
+		return a.postcode.getDistance() + b.postcode.getDistance();
+	}
+
+	/**
+	 * @param postcode Postcode to get district of
+	 * @return Outward code of postcode
+	 */
+	private static String getDistrict(Postcode postcode) {
+		final String code = postcode.getPostcode();
+		return code.substring(0, Math.max(code.length() - INWARD_CODE_LENGTH, 0)).trim();
+	}
+
+	/**
+	 * Find the least extra distance to visit a stop on a trip visiting stops in order.
+	 *
+	 * @param stops Stops of trip
+	 * @param stop Stop to visit
+	 * @return Least extra distance (km)
+	 */
+	private static double getInsertionCost(List<Stop> stops, Stop stop) {
+		double least = Double.MAX_VALUE;
+		Stop previous = null;
+		for (int i = 0; i <= stops.size(); i++) {
+			final Stop next = (i < stops.size()) ? stops.get(i) : null;
+			least = Math.min(least, getDistance(previous, stop) + getDistance(stop, next)
+					- getDistance(previous, next));
+			previous = next;
+		}
+		return least;
+	}
+
+	/**
+	 * Order stops by repeatedly visiting the nearest stop not yet visited.
+	 *
+	 * @param stops Stops to order
+	 * @return Ordered stops
+	 */
+	private static List<Stop> getNearestNeighbourTour(List<Stop> stops) {
+		final List<Stop> remaining = new ArrayList<>(stops);
+		final List<Stop> tour = new ArrayList<>(stops.size());
+		Stop current = null;
+		while (!remaining.isEmpty()) {
+			int nearest = 0;
+			for (int i = 1; i < remaining.size(); i++) {
+				if (getDistance(current, remaining.get(i)) < getDistance(current,
+						remaining.get(nearest))) {
+					nearest = i;
+				}
+			}
+			current = remaining.remove(nearest);
+			tour.add(current);
+		}
+		return tour;
+	}
+
+	/**
+	 * Shorten a tour starting and ending at the business by reversing sections of it while any
+	 * reversal shortens it (2-opt).
+	 *
+	 * @param tour Tour to improve
+	 * @return Improved tour
+	 */
+	private static List<Stop> improve(List<Stop> tour) {
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int i = 0; i < tour.size() - 1; i++) {
+				for (int j = i + 1; j < tour.size(); j++) {
+					// Reverse stops i to j, changing the legs into i and out of j
+					final Stop before = (i > 0) ? tour.get(i - 1) : null;
+					final Stop after = (j < tour.size() - 1) ? tour.get(j + 1) : null;
+					final Stop start = tour.get(i);
+					final Stop end = tour.get(j);
+					final double change = getDistance(before, end) + getDistance(start, after)
+							- getDistance(before, start) - getDistance(end, after);
+					if (change < -1e-9) {
+						Collections.reverse(tour.subList(i, j + 1));
+						improved = true;
+					}
+				}
+			}
+		}
+		return tour;
+	}
+
+	/**
+	 * A customer visited on a trip and the orders delivered to them.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static class Stop {
+		private final Customer customer;
+		private final Postcode postcode;
+		private final String district;
+		private final List<Order> orders = new ArrayList<>();
+
+		/**
+		 * @param customer Customer to visit
+		 */
+		private Stop(Customer customer) {
+			this.customer = customer;
+			this.postcode = customer.getPostcode();
+			this.district = getDistrict(postcode);
+		}
+
+		/**
+		 * @param capacity Capacity available (dishes)
+		 * @return Dishes of the orders that fit in the capacity, taken in order
+		 */
+		private double getLoad(double capacity) {
+			double load = 0;
+			for (final Order order : orders) {
+				final double size = getSize(order);
+				if (load + size > capacity) {
+					break;
+				}
+				load += size;
+			}
+			return load;
+		}
+
+		/**
+		 * Keep only the orders that fit in the capacity, taken in order.
+		 *
+		 * @param capacity Capacity available (dishes)
+		 * @param first Whether to keep the first order regardless of capacity
+		 * @return Dishes of the orders kept
+		 */
+		private double load(double capacity, boolean first) {
+			double load = 0;
+			boolean full = false;
+			final Iterator<Order> itr = orders.iterator();
+			while (itr.hasNext()) {
+				final double size = getSize(itr.next());
+				full |= (load + size > capacity && !(first && load == 0));
+				if (full) {
+					itr.remove();
+				} else {
+					load += size;
+				}
+			}
+			return load;
+		}
+
+		/**
+		 * @param order Order to measure
+		 * @return Number of dishes in order
+		 */
+		private static double getSize(Order order) {
+			final QuantityMap<Dish> dishes = order.getDishes();
+			double size = 0;
+			for (int i = dishes.nextIndex(-1); i >= 0; i = dishes.nextIndex(i)) {
+				size += dishes.quantityAt(i);
+			}
+			return size;
+		}
+
+		/**
+		 * @return Customer to visit
+		 */
+		public Customer getCustomer() {
+			return customer;
+		}
+
+		/**
+		 * @return Orders to deliver to customer
+		 */
+		public List<Order> getOrders() {
+			return orders;
+		}
+
+	}
+
+	/**
+	 * A planned trip from the business, visiting stops in order before returning.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static class Route {
+		private final List<Stop> stops;
+
+		/**
+		 * @param stops Stops in the order they are visited
+		 */
+		private Route(List<Stop> stops) {
+			this.stops = stops;
+		}
+
+		/**
+		 * @return Stops in the order they are visited
+		 */
+		public List<Stop> getStops() {
+			return stops;
+		}
+
+		/**
+		 * @param index Index of stop
+		 * @return Distance travelled to stop from previous stop, or from business (km)
+		 */
+		public double getLegDistance(int index) {
+			return RoutePlanner.getDistance((index > 0) ? stops.get(index - 1) : null,
+					stops.get(index));
+		}
+
+		/**
+		 * @return Distance travelled from last stop to business (km)
+		 */
+		public double getReturnDistance() {
+			return RoutePlanner.getDistance(stops.get(stops.size() - 1), null);
+		}
+
+		/**
+		 * @return Total distance of trip (km)
+		 */
+		public double getTotalDistance() {
+			double distance = getReturnDistance();
+			for (int i = 0; i < stops.size(); i++) {
+				distance += getLegDistance(i);
+			}
+			return distance;
+		}
+
+		/**
+		 * @return All orders delivered on trip
+		 */
+		public List<Order> getOrders() {
+			final List<Order> orders = new ArrayList<>();
+			for (final Stop stop : stops) {
+				orders.addAll(stop.orders);
+			}
+			return orders;
+		}
+
+	}
+
+}
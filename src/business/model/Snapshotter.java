@@ -0,0 +1,581 @@
+package business.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Stores a business model as a set of sections, each in its own file, on a background thread
+ * without stopping workers or message handling. Each section is serialised whilst its collection
+ * is locked, so sections are individually consistent; changes made between sections are covered
+ * by the journal, whose sequence number is taken before any section is serialised. Only sections
+ * that have changed since the last snapshot are written: orders and stock are tracked by
+ * listening to them, other sections are compared by checksum.
+ *
+ * Section files are never overwritten; a snapshot writes new files then atomically replaces the
+ * manifest naming the files of every section, so a crash at any point leaves the previous
+ * snapshot intact. Journal records included in a snapshot are then truncated.
+ *
+ * References between sections to the model and its stock are written as tokens and resolved when
+ * loading. Other objects referenced across sections, such as the suppliers of ingredients and the
+ * dishes and customers of orders, are resolved to the instances already loaded where they match.
+ *
+ * Manifest format: [int magic][long generation][long journal sequence][int section count]
+ * ([UTF section][UTF file name][long CRC32])*
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class Snapshotter implements OrderStore.ContentListener, Order.StatusListener, Runnable {
+	private static final int MANIFEST_MAGIC = 0x5353534D;
+	private static final String MANIFEST = "manifest";
+	private static final String FILE_EXTENSION = "ssds";
+	// Time between snapshots
+	private static final int SNAPSHOT_INTERVAL = 60000; // ms
+
+	private final BusinessModel model;
+	private final File directory;
+	// Files and checksums of the last snapshot, guarded by this
+	private final Map<Section, SectionFile> written = new EnumMap<>(Section.class);
+	private long generation = 0;
+	private long journalSequence = -1;
+	// Tracked sections changed since they were last written, guarded by itself
+	private final Set<Section> dirty = EnumSet.allOf(Section.class);
+	private final StockMap.StockListener<Dish> dishListener;
+	private final StockMap.StockListener<Ingredient> ingredientListener;
+	private Thread thread;
+
+	/**
+	 * Instantiate a snapshotter for a model using a directory, continuing from any snapshot
+	 * already in the directory.
+	 *
+	 * @param model Model to store
+	 * @param directory Directory to hold snapshots in
+	 * @throws IOException Unable to read existing manifest
+	 */
+	public Snapshotter(BusinessModel model, File directory) throws IOException {
+		this.model = model;
+		this.directory = directory;
+		final Manifest manifest = readManifest(directory);
+		if (manifest != null) {
+			// Continue numbering files so files of the existing snapshot are not overwritten
+			written.putAll(manifest.files);
+			generation = manifest.generation;
+			journalSequence = manifest.sequence;
+		}
+		dishListener = new StockMap.StockListener<Dish>() {
+			@Override
+			public void stockChanged(Dish item, StockMap.Change change) {
+				markDirty(Section.STOCK);
+			}
+		};
+		ingredientListener = new StockMap.StockListener<Ingredient>() {
+			@Override
+			public void stockChanged(Ingredient item, StockMap.Change change) {
+				markDirty(Section.STOCK);
+			}
+		};
+	}
+
+	/**
+	 * Start tracking changes and taking snapshots periodically.
+	 */
+	public void start() {
+		model.orders.addContentListener(this);
+		model.orders.addStatusListener(this);
+		model.stock.dishes.addListener(dishListener);
+		model.stock.ingredients.addListener(ingredientListener);
+		thread = new Thread(this, "Snapshotter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop taking snapshots periodically, blocking until any snapshot being taken has finished.
+	 * Changes are still tracked so a final snapshot can be taken.
+	 *
+	 * @throws InterruptedException Interrupted whilst waiting for snapshot thread
+	 */
+	public void stop() throws InterruptedException {
+		if (thread != null) {
+			thread.interrupt();
+			thread.join();
+			thread = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				Thread.sleep(SNAPSHOT_INTERVAL);
+			} catch(InterruptedException e) {
+				break;
+			}
+			try {
+				snapshot();
+			} catch(IOException e) {
+				System.err.println("[SNAPSHOT] : Unable to take snapshot: " + e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public void orderAdded(Order order) {
+		markDirty(Section.ORDERS);
+	}
+
+	@Override
+	public void orderRemoved(Order order) {
+		markDirty(Section.ORDERS);
+	}
+
+	@Override
+	public void statusChanged(Order order, Order.Status status) {
+		markDirty(Section.ORDERS);
+	}
+
+	/**
+	 * @param section Section that has changed
+	 */
+	private void markDirty(Section section) {
+		synchronized (dirty) {
+			dirty.add(section);
+		}
+	}
+
+	/**
+	 * Take a snapshot, writing every section that has changed since the last snapshot. Journal
+	 * records included in the snapshot are truncated.
+	 *
+	 * @return Whether anything was written
+	 * @throws IOException Unable to write snapshot
+	 */
+	public synchronized boolean snapshot() throws IOException {
+		// Every journal record up to this point is included in the sections serialised after it
+		final Journal journal = model.getJournal();
+		final long sequence = (journal == null) ? model.getJournalSequence()
+				: journal.getLastSequence();
+		final Manifest manifest = new Manifest(generation + 1, sequence);
+		manifest.files.putAll(written);
+		final Set<Section> changed = EnumSet.noneOf(Section.class);
+		try {
+			for (final Section section : Section.values()) {
+				if (section.isTracked() && written.containsKey(section)) {
+					synchronized (dirty) {
+						// Changes made whilst serialising mark the section again
+						if (!dirty.remove(section)) {
+							continue;
+						}
+					}
+				}
+				changed.add(section);
+				final byte[] bytes = serialize(section);
+				final long checksum = getChecksum(bytes);
+				final SectionFile existing = written.get(section);
+				if (existing != null && existing.checksum == checksum) {
+					continue;
+				}
+				final SectionFile file = new SectionFile(String.format("%s-%d.%s",
+						section.name().toLowerCase(), manifest.generation, FILE_EXTENSION),
+						checksum);
+				write(new File(directory, file.name), bytes);
+				manifest.files.put(section, file);
+			}
+			if (manifest.files.equals(written) && sequence == journalSequence) {
+				return false;
+			}
+			// Replace manifest, only then are new files part of the snapshot
+			writeManifest(manifest);
+		} catch(IOException e) {
+			// Sections must be written by the next snapshot
+			for (final Section section : changed) {
+				markDirty(section);
+			}
+			throw e;
+		}
+		for (final Entry<Section, SectionFile> entry : written.entrySet()) {
+			if (manifest.files.get(entry.getKey()) != entry.getValue()) {
+				new File(directory, entry.getValue().name).delete();
+			}
+		}
+		System.out.println(String.format("[SNAPSHOT] : Wrote generation %d", manifest.generation));
+		written.clear();
+		written.putAll(manifest.files);
+		generation = manifest.generation;
+		journalSequence = sequence;
+		if (journal != null) {
+			// Records left in the journal are replayed onto the snapshot, which is harmless
+			try {
+				journal.truncate(sequence);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch(IOException e) {
+				System.err.println("[SNAPSHOT] : Unable to truncate journal: " + e.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Serialise a section of the model whilst it is locked.
+	 *
+	 * @param section Section to serialise
+	 * @return Serialised section
+	 * @throws IOException Unable to serialise section
+	 */
+	private byte[] serialize(Section section) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new SectionOutputStream(baos, section);
+		switch (section) {
+			case POSTCODES:
+				synchronized (model.postcodes) {
+					out.writeObject(model.postcodes);
+				}
+				break;
+			case SUPPLIERS:
+				synchronized (model.suppliers) {
+					out.writeObject(model.suppliers);
+				}
+				break;
+			case STOCK:
+				synchronized (model.stock.ingredients) {
+					synchronized (model.stock.dishes) {
+						out.writeObject(model.stock);
+					}
+				}
+				break;
+			case CUSTOMERS:
+				synchronized (model.customers) {
+					out.writeObject(model.customers);
+				}
+				break;
+			case ORDERS:
+				// Order store locks itself whilst being written
+				out.writeObject(model.orders);
+				break;
+			case KITCHEN_STAFF:
+				synchronized (model.kitchenStaff) {
+					out.writeObject(model.kitchenStaff);
+				}
+				break;
+			case DRONES:
+				synchronized (model.drones) {
+					out.writeObject(model.drones);
+				}
+				break;
+		}
+		out.close();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Write a manifest, atomically replacing any existing manifest. The directory is forced after
+	 * the replacement so the journal is not truncated before the new snapshot would survive a
+	 * crash.
+	 *
+	 * @param manifest Manifest to write
+	 * @throws IOException Unable to write manifest
+	 */
+	private void writeManifest(Manifest manifest) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(baos);
+		out.writeInt(MANIFEST_MAGIC);
+		out.writeLong(manifest.generation);
+		out.writeLong(manifest.sequence);
+		out.writeInt(manifest.files.size());
+		for (final Entry<Section, SectionFile> entry : manifest.files.entrySet()) {
+			out.writeUTF(entry.getKey().name());
+			out.writeUTF(entry.getValue().name);
+			out.writeLong(entry.getValue().checksum);
+		}
+		out.close();
+		final File temp = new File(directory, MANIFEST + ".tmp");
+		write(temp, baos.toByteArray());
+		Files.move(temp.toPath(), new File(directory, MANIFEST).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		DataPersistence.forceDirectory(directory);
+	}
+
+	/**
+	 * Write bytes to a new file, forcing them to disk.
+	 *
+	 * @param file File to write
+	 * @param bytes Bytes to write
+	 * @throws IOException Unable to write file
+	 */
+	private static void write(File file, byte[] bytes) throws IOException {
+		file.getParentFile().mkdirs();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Read the manifest in a directory.
+	 *
+	 * @param directory Directory holding snapshot
+	 * @return Manifest read, null if no manifest exists
+	 * @throws IOException Unable to read manifest
+	 */
+	private static Manifest readManifest(File directory) throws IOException {
+		final File file = new File(directory, MANIFEST);
+		if (!file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != MANIFEST_MAGIC) {
+				throw new IOException("Snapshot manifest is corrupt");
+			}
+			final Manifest manifest = new Manifest(in.readLong(), in.readLong());
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				final Section section = Section.valueOf(in.readUTF());
+				manifest.files.put(section, new SectionFile(in.readUTF(), in.readLong()));
+			}
+			return manifest;
+		}
+	}
+
+	/**
+	 * Load the model stored by the latest snapshot in a directory.
+	 *
+	 * @param directory Directory holding snapshot
+	 * @return Loaded model, null if the directory holds no snapshot
+	 * @throws IOException Snapshot is incomplete or corrupt
+	 */
+	public static BusinessModel load(File directory) throws IOException {
+		final Manifest manifest = readManifest(directory);
+		if (manifest == null) {
+			return null;
+		}
+		final BusinessModel model = new BusinessModel();
+		final ModelCanonicalizer canonicalizer = new ModelCanonicalizer(model);
+		// Sections are loaded in order so referenced sections are loaded first
+		for (final Section section : Section.values()) {
+			final SectionFile file = manifest.files.get(section);
+			if (file == null) {
+				throw new IOException(String.format("Snapshot has no %s section", section));
+			}
+			final byte[] bytes = Files.readAllBytes(new File(directory, file.name).toPath());
+			if (getChecksum(bytes) != file.checksum) {
+				throw new IOException(String.format("Snapshot %s section is corrupt", section));
+			}
+			final Object object;
+			try (ObjectInputStream in = new SectionInputStream(new ByteArrayInputStream(bytes),
+					model, canonicalizer)) {
+				object = in.readObject();
+			} catch(ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+			load(model, section, object);
+		}
+		model.setJournalSequence(manifest.sequence);
+		return model;
+	}
+
+	/**
+	 * Add the contents of a loaded section to a model.
+	 *
+	 * @param model Model to add to
+	 * @param section Section loaded
+	 * @param object Root object of section
+	 */
+	@SuppressWarnings("unchecked")
+	private static void load(BusinessModel model, Section section, Object object) {
+		switch (section) {
+			case POSTCODES:
+				model.postcodes.addAll((Set<Postcode>) object);
+				break;
+			case SUPPLIERS:
+				model.suppliers.addAll((Set<Supplier>) object);
+				break;
+			case STOCK:
+				final Stock stock = (Stock) object;
+				model.stock.ingredients.putAll(stock.ingredients);
+				model.stock.dishes.putAll(stock.dishes);
+				break;
+			case CUSTOMERS:
+				model.customers.putAll((Map<CustomerLogin, Customer>) object);
+				break;
+			case ORDERS:
+				model.orders.addAll((Set<Order>) object);
+				break;
+			case KITCHEN_STAFF:
+				model.kitchenStaff.addAll((Set<KitchenStaffMember>) object);
+				suspendLoadedWorkers(model.kitchenStaff);
+				break;
+			case DRONES:
+				model.drones.addAll((Set<Drone>) object);
+				suspendLoadedWorkers(model.drones);
+				break;
+		}
+	}
+
+	/**
+	 * Mark workers that were working when stored as suspended so they are resumed with the model.
+	 *
+	 * @param workers Loaded workers
+	 */
+	private static void suspendLoadedWorkers(Set<? extends Worker> workers) {
+		for (final Worker worker : workers) {
+			if (worker.getStatus() == Worker.Status.WORKING) {
+				worker.setStatus(Worker.Status.SUSPENDED);
+			} else if (worker.getStatus() == Worker.Status.STOPPING) {
+				worker.setStatus(Worker.Status.STOPPED);
+			}
+		}
+	}
+
+	/**
+	 * @param bytes Bytes to get checksum of
+	 * @return CRC32 of bytes
+	 */
+	private static long getChecksum(byte[] bytes) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Enumeration of model sections, in the order they are loaded.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static enum Section {
+		POSTCODES, SUPPLIERS, STOCK, CUSTOMERS, ORDERS, KITCHEN_STAFF, DRONES;
+
+		/**
+		 * @return Whether changes to section are tracked by listening, rather than by checksum
+		 */
+		public boolean isTracked() {
+			return this == STOCK || this == ORDERS;
+		}
+
+	}
+
+	/**
+	 * Tokens written in place of objects owned by the model rather than a section.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static enum Token implements Serializable {
+		MODEL, STOCK;
+	}
+
+	/**
+	 * File holding a section and the checksum of its contents.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class SectionFile {
+		private final String name;
+		private final long checksum;
+
+		public SectionFile(String name, long checksum) {
+			this.name = name;
+			this.checksum = checksum;
+		}
+
+	}
+
+	/**
+	 * Files of every section in a snapshot and the journal records included.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class Manifest {
+		private final long generation;
+		private final long sequence;
+		private final Map<Section, SectionFile> files = new EnumMap<>(Section.class);
+
+		public Manifest(long generation, long sequence) {
+			this.generation = generation;
+			this.sequence = sequence;
+		}
+
+	}
+
+	/**
+	 * Stream that writes references to the model, and to its stock outside the stock section, as
+	 * tokens.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private class SectionOutputStream extends ObjectOutputStream {
+		private final Section section;
+
+		public SectionOutputStream(OutputStream out, Section section) throws IOException {
+			super(out);
+			this.section = section;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj == model) {
+				return Token.MODEL;
+			}
+			if (obj == model.stock && section != Section.STOCK) {
+				return Token.STOCK;
+			}
+			return obj;
+		}
+
+	}
+
+	/**
+	 * Stream that resolves tokens to a model and other objects to those already loaded.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class SectionInputStream extends ObjectInputStream {
+		private final BusinessModel model;
+		private final ModelCanonicalizer canonicalizer;
+
+		public SectionInputStream(InputStream in, BusinessModel model,
+				ModelCanonicalizer canonicalizer) throws IOException {
+			super(in);
+			this.model = model;
+			this.canonicalizer = canonicalizer;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj == Token.MODEL) {
+				return model;
+			}
+			if (obj == Token.STOCK) {
+				return model.stock;
+			}
+			return canonicalizer.canonicalize(obj);
+		}
+
+	}
+
+}
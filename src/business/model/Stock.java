@@ -16,6 +16,8 @@ public class Stock implements Serializable {
 	// Stocks
 	public final StockMap<Ingredient> ingredients;
 	public final StockMap<Dish> dishes;
+	// Scheduler listening to stocks
+	private transient KitchenScheduler scheduler;
 
 	/**
 	 * Instantiate a new stock with new ingredient and dish stocks.
@@ -26,19 +28,20 @@ public class Stock implements Serializable {
 	}
 
 	/**
-	 * Find a dish below its restocking level with enough stock available.
+	 * Check whether a dish is below its restocking level with enough ingredients available.
 	 *
-	 * @return Dish to restock if found, else null
+	 * @param dish Dish to check
+	 * @return Dish to restock if it can be, else null
 	 */
-	public Quantity<Dish> getDishToRestock() {
+	public Quantity<Dish> getDishToRestock(Dish dish) {
 		// Lock both ingredients and stock to ensure a dish still requires restock
 		// after further checks.
 		synchronized (ingredients) {
 			synchronized (dishes) {
-				for (final Dish dish : dishes.getStockRequired().keySet()) {
-					if (ingredients.isEnoughAvailableStock(dish.getIngredients())) {
-						return new Quantity<>(dish, 1);
-					}
+				final StockLevels levels = dishes.get(dish);
+				if (levels != null && levels.isStockRequired()
+						&& ingredients.isEnoughAvailableStock(dish.getIngredients())) {
+					return new Quantity<>(dish, 1);
 				}
 			}
 		}
@@ -46,21 +49,13 @@ public class Stock implements Serializable {
 	}
 
 	/**
-	 * Find a supplier that has an ingredient that requires restocking.
-	 *
-	 * @return Supplier that requires restocking.
+	 * @return Scheduler of dish preparation for this stock, created on first use
 	 */
-	public Supplier getSupplierToRestock() {
-		synchronized (ingredients) {
-			final QuantityMap<Ingredient> reqRestock = ingredients.getStockRequired();
-			for (final Ingredient ingredient : reqRestock.keySet()) {
-				final Supplier supplier = ingredient.getSupplier();
-				if (supplier != null && !supplier.isBeingRestocked()) {
-					return supplier;
-				}
-			}
+	public synchronized KitchenScheduler getScheduler() {
+		if (scheduler == null) {
+			scheduler = new KitchenScheduler(this);
 		}
-		return null;
+		return scheduler;
 	}
 
 	/**
@@ -74,10 +69,10 @@ public class Stock implements Serializable {
 	public static QuantityMap<Ingredient> getIngredientsFromSupplier(Supplier targetSupplier,
 			QuantityMap<Ingredient> ingredients) {
 		final QuantityMap<Ingredient> fromSupplier = new QuantityMap<>();
-		for (final Ingredient ingredient : ingredients.keySet()) {
-			final Supplier supplier = ingredient.getSupplier();
+		for (int i = ingredients.nextIndex(-1); i >= 0; i = ingredients.nextIndex(i)) {
+			final Supplier supplier = ingredients.keyAt(i).getSupplier();
 			if (supplier != null && supplier.equals(targetSupplier)) {
-				fromSupplier.put(ingredient, ingredients.get(ingredient));
+				fromSupplier.setQuantity(ingredients.keyAt(i), ingredients.quantityAt(i));
 			}
 		}
 		return fromSupplier;
@@ -1,12 +1,15 @@
 package business.model;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
  * StockLevels class, holds information on available stock and restock level.
  *
  * This classes methods are thread safe for a single instance but rely on a containing structure to
- * manage synchronisation between multiple instances.
+ * manage synchronisation between multiple instances. Levels are locked whilst being serialised so
+ * they are written consistently.
  *
  * @author David Jones [dsj1n15]
  */
@@ -51,6 +54,39 @@ public class StockLevels implements Serializable {
 		setStockable(true);
 	}
 
+	/**
+	 * Instantiate a copy of levels.
+	 *
+	 * @param levels Levels to copy
+	 */
+	public StockLevels(StockLevels levels) {
+		synchronized (levels) {
+			this.stock = levels.stock;
+			this.restocking = levels.restocking;
+			this.reserved = levels.reserved;
+			this.restockLevel = levels.restockLevel;
+			this.stockable = levels.stockable;
+		}
+	}
+
+	/**
+	 * Restore all levels and properties, as recorded by a journal.
+	 *
+	 * @param stock Stock level
+	 * @param restocking Restocking level
+	 * @param reserved Reserved level
+	 * @param restockLevel Restock level
+	 * @param stockable Whether item is stockable
+	 */
+	synchronized void restore(double stock, double restocking, double reserved, int restockLevel,
+			boolean stockable) {
+		this.stock = stock;
+		this.restocking = restocking;
+		this.reserved = reserved;
+		this.restockLevel = restockLevel;
+		this.stockable = stockable;
+	}
+
 	/**
 	 * @return The current stock level, both reserved and unreserved
 	 */
@@ -116,6 +152,16 @@ public class StockLevels implements Serializable {
 		setRestocking(restocking + amount);
 	}
 
+	/**
+	 * Remove the given amount of stock from the amount of stock being restocked without adding it
+	 * to normal stock.
+	 *
+	 * @param amount Amount to remove
+	 */
+	public synchronized void cancelRestock(double amount) {
+		setRestocking(restocking - amount);
+	}
+
 	/**
 	 * Transfer the given amount of stock from the amount of stock being restocked to normal stock.
 	 *
@@ -235,4 +281,14 @@ public class StockLevels implements Serializable {
 		return (getStockAvailable() >= required);
 	}
 
+	/**
+	 * Write levels whilst locked so they are consistent with each other.
+	 *
+	 * @param out Stream to write to
+	 * @throws IOException Unable to write levels
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+	}
+
 }
@@ -1,26 +1,64 @@
 package business.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import general.model.Quantity;
 import general.model.QuantityMap;
 
 /**
  * Class StockMap that extends HashMap to allow key mappings with specific functionality. New
- * methods in this class are thread safe using the map as a locking object, any standard HashMap
- * functions should lock to the map manually to synchronise.
+ * methods in this class are thread safe; any standard HashMap functions should lock to the map
+ * manually to synchronise.
+ *
+ * Changes to stock levels only lock the levels of the items they change, so changes to different
+ * items proceed in parallel. A change to several items locks all of their levels, in a global
+ * order so that changes cannot deadlock, and checks every item before changing any so the change
+ * is atomic. Adding and removing items locks the map and excludes all changes to levels; locking
+ * the map therefore keeps the items held unchanged, but not their levels.
  *
  * Keys are generic, whereas stock levels are defined and hard-coded as StockLevels.
  *
+ * Listeners can be registered to be told which items have changed; items changed by a single
+ * update are reported together. Listeners are called whilst the changed items are locked so should
+ * only record the change, and must not lock the map.
+ * Changes made to stock levels or items without using this class should be reported using
+ * notifyChanged. The map's version is increased on every change reported, and a versioned list of
+ * copies of all items can be taken that is only copied again once the map has changed.
+ *
  * @param <K> The type of keys maintained by this map
  *
  * @author David Jones [dsj1n15]
  */
 public class StockMap<K> extends HashMap<K, StockLevels> {
 	private static final long serialVersionUID = -7217174370857494772L;
+	// Lock taken whilst levels of several items have the same identity hash code
+	private static final Object TIE_LOCK = new Object();
+	// Orders levels by identity so multiple levels are always locked in the same order
+	private static final Comparator<Target<?>> LOCK_ORDER = new Comparator<Target<?>>() {
+		@Override
+		public int compare(Target<?> a, Target<?> b) {
+			return Integer.compare(System.identityHashCode(a.levels),
+					System.identityHashCode(b.levels));
+		}
+	};
+
+	// Shared by changes to levels, exclusive to adding and removing items; not persisted
+	private transient ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+	// Listeners to changes in stock, not persisted
+	private transient volatile List<StockListener<K>> listeners;
+	// Increased on every change, with a list of copies of items at the latest version taken
+	private transient AtomicLong version = new AtomicLong();
+	private transient VersionedList<StockItem<K>> view;
 
 	/**
 	 * Add a new item to the stock handler with appropriate stock levels. Failure should occur if
@@ -34,7 +72,7 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 		if (containsKey(key)) {
 			throw new IllegalArgumentException("Key already exists in stock map");
 		}
-		return super.put(key, levels);
+		return put(key, levels);
 	}
 
 	/**
@@ -53,13 +91,18 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 * @param items Items and the respective stocking values to add to stock handler
 	 * @param available True if stock should be available immediately, else false
 	 */
-	public synchronized void addStock(QuantityMap<K> items) {
-		for (final K item : items.keySet()) {
-			final StockLevels levels = get(item);
-			if (levels != null) {
-				levels.addStock(items.get(item));
+	public void addStock(QuantityMap<K> items) {
+		update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return true;
 			}
-		}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.addStock(quantity);
+			}
+		});
 	}
 
 	/**
@@ -77,14 +120,18 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 *
 	 * @param items Items and the respective stocking values to remove from stock handler
 	 */
-	public synchronized boolean removeStock(QuantityMap<K> reqItems) {
-		if (!isEnoughAvailableStock(reqItems)) {
-			return false;
-		}
-		for (final K item : reqItems.keySet()) {
-			get(item).removeStock(reqItems.get(item));
-		}
-		return true;
+	public boolean removeStock(QuantityMap<K> reqItems) {
+		return update(reqItems, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels != null && levels.isEnoughStock(quantity);
+			}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.removeStock(quantity);
+			}
+		});
 	}
 
 	/**
@@ -102,14 +149,18 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 * @param items Items and their respective amount of stock to reserve
 	 * @return True if stock could be reserved, else false
 	 */
-	public synchronized boolean reserveStock(QuantityMap<K> items) {
-		if (!isEnoughAvailableStock(items)) {
-			return false;
-		}
-		for (final K item : items.keySet()) {
-			get(item).reserveStock(items.get(item));
-		}
-		return true;
+	public boolean reserveStock(QuantityMap<K> items) {
+		return update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels != null && levels.isEnoughStock(quantity);
+			}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.reserveStock(quantity);
+			}
+		});
 	}
 
 	/**
@@ -128,17 +179,18 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 * @param items Items and their respective amount of stock to unreserve
 	 * @return True if stock could be reserved, else false
 	 */
-	public synchronized boolean unreserveStock(QuantityMap<K> items) {
-		for (final K item : items.keySet()) {
-			final StockLevels levels = get(item);
-			if (levels == null || levels.getReserved() < items.get(item)) {
-				return false;
+	public boolean unreserveStock(QuantityMap<K> items) {
+		return update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels != null && levels.getReserved() >= quantity;
 			}
-		}
-		for (final K item : items.keySet()) {
-			get(item).unreserveStock(items.get(item));
-		}
-		return true;
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.unreserveStock(quantity);
+			}
+		});
 	}
 
 	/**
@@ -151,18 +203,67 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 		return unreserveStock(item.toMap());
 	}
 
+	/**
+	 * Unreserve given item stocks and remove them from stock, as a single update so the stock is
+	 * never seen unreserved but still held.
+	 *
+	 * @param items Items and their respective amount of reserved stock to remove
+	 * @return True if stock could be removed, else false and no stock is changed
+	 */
+	public boolean dispatchStock(QuantityMap<K> items) {
+		return update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels != null && levels.getReserved() >= quantity;
+			}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.unreserveStock(quantity);
+				levels.removeStock(quantity);
+			}
+		});
+	}
+
+	/**
+	 * Unreserve given item stocks and return them to stock, as a single update so the stock is
+	 * never seen unreserved but not yet returned.
+	 *
+	 * @param items Items and their respective amount of reserved stock to return
+	 * @return True if stock could be returned, else false and no stock is changed
+	 */
+	public boolean cancelReserved(QuantityMap<K> items) {
+		return update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels != null && levels.getReserved() >= quantity;
+			}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.unreserveStock(quantity);
+				levels.addStock(quantity);
+			}
+		});
+	}
+
 	/**
 	 * Add given item stocks to their respective restocking levels.
 	 *
 	 * @param items Items and their respective amount of stock to start restocking
 	 */
-	public synchronized void startRestock(QuantityMap<K> items) {
-		for (final K item : items.keySet()) {
-			final StockLevels levels = get(item);
-			if (levels != null) {
-				levels.startRestock(items.get(item));
+	public void startRestock(QuantityMap<K> items) {
+		update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return true;
 			}
-		}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.startRestock(quantity);
+			}
+		});
 	}
 
 	/**
@@ -174,28 +275,45 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 		startRestock(item.toMap());
 	}
 
+	/**
+	 * Remove given item stocks from their respective restocking levels, as when a restock is
+	 * abandoned.
+	 *
+	 * @param items Items and their respective amount of stock to stop restocking
+	 * @return True if restocking could be removed, else false
+	 */
+	public boolean cancelRestock(QuantityMap<K> items) {
+		return update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels == null || levels.getRestocking() >= quantity;
+			}
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.cancelRestock(quantity);
+			}
+		});
+	}
+
 	/**
 	 * Transfer given item stocks from restocking stock to available stock.
 	 *
 	 * @param items Items and their respective amount of stock to transfer
 	 * @return True if stock could be transferred, else false
 	 */
-	public synchronized boolean finishRestock(QuantityMap<K> items) {
-		for (final K item : items.keySet()) {
-			final StockLevels levels = get(item);
-			if (levels != null) {
-				if (levels.getRestocking() < items.get(item)) {
-					return false;
-				}
+	public boolean finishRestock(QuantityMap<K> items) {
+		return update(items, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels == null || levels.getRestocking() >= quantity;
 			}
-		}
-		for (final K item : items.keySet()) {
-			final StockLevels levels = get(item);
-			if (levels != null) {
-				levels.finishRestock(items.get(item));
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				levels.finishRestock(quantity);
 			}
-		}
-		return true;
+		});
 	}
 
 	/**
@@ -214,7 +332,7 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 * @param item Item to set stockable for
 	 * @param stockable True if should be stockable, else false
 	 */
-	public synchronized void setStockable(Collection<K> items, boolean stockable) {
+	public void setStockable(Collection<K> items, boolean stockable) {
 		for (final K item : items) {
 			setStockable(item, stockable);
 		}
@@ -226,10 +344,18 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 * @param item Item to set stockable for
 	 * @param stockable True if should be stockable, else false
 	 */
-	public synchronized void setStockable(K item, boolean stockable) {
-		final StockLevels levels = get(item);
-		if (levels != null) {
-			levels.setStockable(stockable);
+	public void setStockable(K item, boolean stockable) {
+		structureLock.readLock().lock();
+		try {
+			final StockLevels levels = get(item);
+			if (levels != null) {
+				synchronized (levels) {
+					levels.setStockable(stockable);
+					fireChanged(item, Change.LEVELS);
+				}
+			}
+		} finally {
+			structureLock.readLock().unlock();
 		}
 	}
 
@@ -240,14 +366,18 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	 * @param reqItems Items and the respective stock values required
 	 * @return True if enough of each item, else false
 	 */
-	public synchronized boolean isEnoughAvailableStock(QuantityMap<K> reqItems) {
-		for (final K item : reqItems.keySet()) {
-			final StockLevels levels = get(item);
-			if (levels == null || !levels.isEnoughStock(reqItems.get(item))) {
-				return false;
+	public boolean isEnoughAvailableStock(QuantityMap<K> reqItems) {
+		return update(reqItems, new LevelsUpdate() {
+			@Override
+			public boolean canUpdate(StockLevels levels, double quantity) {
+				return levels != null && levels.isEnoughStock(quantity);
 			}
-		}
-		return true;
+
+			@Override
+			public void update(StockLevels levels, double quantity) {
+				// Only checked
+			}
+		}, false);
 	}
 
 	/**
@@ -270,7 +400,7 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 		final QuantityMap<K> quantities = new QuantityMap<>();
 		for (final K item : keySet()) {
 			if (get(item).isStockRequired()) {
-				quantities.put(item, get(item).getStockRequired());
+				quantities.setQuantity(item, get(item).getStockRequired());
 			}
 		}
 		return quantities;
@@ -284,7 +414,7 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 	public QuantityMap<K> getStockAvailable() {
 		final QuantityMap<K> quantities = new QuantityMap<>();
 		for (final K item : keySet()) {
-			quantities.put(item, get(item).getStockAvailable());
+			quantities.setQuantity(item, get(item).getStockAvailable());
 		}
 		return quantities;
 	}
@@ -300,4 +430,350 @@ public class StockMap<K> extends HashMap<K, StockLevels> {
 		return list;
 	}
 
+	/**
+	 * @return Version of map, increased on every change reported
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Get copies of all items and their stock levels as they are at the current version of the
+	 * map. Items are only copied if the map has changed since copies were last taken. Levels of
+	 * each item are copied consistently, but levels of different items may be copied either side
+	 * of a change.
+	 *
+	 * @return Copies of stock items (unpredictable order)
+	 */
+	public synchronized VersionedList<StockItem<K>> getView() {
+		final long current = version.get();
+		if (view == null || view.getVersion() != current) {
+			final List<StockItem<K>> copies = new ArrayList<>(size());
+			for (final Entry<K, StockLevels> entry : entrySet()) {
+				copies.add(new StockItem<>(entry.getKey(), new StockLevels(entry.getValue())));
+			}
+			// Changes made whilst copying increase the version so are copied by the next call
+			view = new VersionedList<>(current, copies);
+		}
+		return view;
+	}
+
+	/**
+	 * Get a copy of a single item and its stock levels, for updating a view of one item that has
+	 * changed without copying all items.
+	 *
+	 * @param item Item to copy
+	 * @return Copy of item and its levels, null if the map does not hold the item
+	 */
+	public synchronized StockItem<K> getCopy(K item) {
+		final StockLevels levels = get(item);
+		return (levels == null) ? null : new StockItem<>(item, new StockLevels(levels));
+	}
+
+	@Override
+	public synchronized StockLevels put(K key, StockLevels levels) {
+		structureLock.writeLock().lock();
+		try {
+			final StockLevels previous = super.put(key, levels);
+			fireChanged(key, Change.ADDED);
+			return previous;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public synchronized void putAll(Map<? extends K, ? extends StockLevels> map) {
+		// Add each item using put so listeners are told of every item
+		for (final Entry<? extends K, ? extends StockLevels> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public synchronized StockLevels remove(Object key) {
+		structureLock.writeLock().lock();
+		try {
+			final boolean existed = containsKey(key);
+			final StockLevels previous = super.remove(key);
+			if (existed) {
+				// Only keys of the map type can exist in the map
+				@SuppressWarnings("unchecked")
+				final K item = (K) key;
+				fireChanged(item, Change.REMOVED);
+			}
+			return previous;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		structureLock.writeLock().lock();
+		try {
+			final List<K> items = new ArrayList<>(keySet());
+			super.clear();
+			for (final K item : items) {
+				fireChanged(item, Change.REMOVED);
+			}
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Apply an update to the levels of items, reporting the change of every item updated.
+	 *
+	 * @param items Items and the quantity to update each by
+	 * @param update Update to apply
+	 * @return True if every item could be updated, else false and no item is updated
+	 */
+	private boolean update(QuantityMap<K> items, LevelsUpdate update) {
+		return update(items, update, true);
+	}
+
+	/**
+	 * Apply an update to the levels of items. The levels of every item are locked in a global
+	 * order, then every item is checked before any is updated.
+	 *
+	 * @param items Items and the quantity to update each by
+	 * @param update Update to apply
+	 * @param report Whether to report the change of every item updated
+	 * @return True if every item could be updated, else false and no item is updated
+	 */
+	private boolean update(QuantityMap<K> items, LevelsUpdate update, boolean report) {
+		structureLock.readLock().lock();
+		try {
+			final List<Target<K>> targets = new ArrayList<>(items.size());
+			for (int i = items.nextIndex(-1); i >= 0; i = items.nextIndex(i)) {
+				final StockLevels levels = get(items.keyAt(i));
+				if (levels == null) {
+					// Items not held cannot be locked or changed, only checked
+					if (!update.canUpdate(null, items.quantityAt(i))) {
+						return false;
+					}
+				} else {
+					targets.add(new Target<>(items.keyAt(i), levels, items.quantityAt(i)));
+				}
+			}
+			targets.sort(LOCK_ORDER);
+			for (int i = 1; i < targets.size(); i++) {
+				if (LOCK_ORDER.compare(targets.get(i - 1), targets.get(i)) == 0) {
+					// Order of levels with the same hash code is undefined, so exclude others
+					synchronized (TIE_LOCK) {
+						return update(targets, 0, update, report);
+					}
+				}
+			}
+			return update(targets, 0, update, report);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Lock the levels of targets from an index onwards, then check and update every target.
+	 *
+	 * @param targets Targets in lock order
+	 * @param index Index of next target to lock
+	 * @param update Update to apply
+	 * @param report Whether to report the change of every item updated
+	 * @return True if every item could be updated, else false and no item is updated
+	 */
+	private boolean update(List<Target<K>> targets, int index, LevelsUpdate update,
+			boolean report) {
+		if (index < targets.size()) {
+			synchronized (targets.get(index).levels) {
+				return update(targets, index + 1, update, report);
+			}
+		}
+		for (final Target<K> target : targets) {
+			if (!update.canUpdate(target.levels, target.quantity)) {
+				return false;
+			}
+		}
+		for (final Target<K> target : targets) {
+			update.update(target.levels, target.quantity);
+		}
+		if (report && targets.size() == 1) {
+			fireChanged(targets.get(0).item, Change.LEVELS);
+		} else if (report && targets.size() > 1) {
+			final List<K> items = new ArrayList<>(targets.size());
+			for (final Target<K> target : targets) {
+				items.add(target.item);
+			}
+			fireLevelsChanged(items);
+		}
+		return true;
+	}
+
+	/**
+	 * Create the lock of a deserialised map.
+	 *
+	 * @param in Stream to read from
+	 * @throws IOException Unable to read map
+	 * @throws ClassNotFoundException Class of a serialised object cannot be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		structureLock = new ReentrantReadWriteLock();
+		version = new AtomicLong();
+	}
+
+	/**
+	 * Report a change made to an item or its stock levels without using this map.
+	 *
+	 * @param item Item that has changed
+	 */
+	public synchronized void notifyChanged(K item) {
+		if (containsKey(item)) {
+			fireChanged(item, Change.EDITED);
+		}
+	}
+
+	/**
+	 * Register a listener to be told of changes to stock.
+	 *
+	 * @param listener Listener to add
+	 */
+	public synchronized void addListener(StockListener<K> listener) {
+		if (listeners == null) {
+			listeners = new CopyOnWriteArrayList<>();
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stop a listener being told of changes to stock.
+	 *
+	 * @param listener Listener to remove
+	 */
+	public synchronized void removeListener(StockListener<K> listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Tell all listeners of a change to an item.
+	 *
+	 * @param item Item that has changed
+	 * @param change Type of change
+	 */
+	private void fireChanged(K item, Change change) {
+		version.incrementAndGet();
+		final List<StockListener<K>> listeners = this.listeners;
+		if (listeners != null) {
+			for (final StockListener<K> listener : listeners) {
+				listener.stockChanged(item, change);
+			}
+		}
+	}
+
+	/**
+	 * Tell all listeners of a change to the levels of several items in a single update.
+	 *
+	 * @param items Items that have changed
+	 */
+	private void fireLevelsChanged(List<K> items) {
+		version.incrementAndGet();
+		final List<StockListener<K>> listeners = this.listeners;
+		if (listeners != null) {
+			for (final StockListener<K> listener : listeners) {
+				listener.levelsChanged(items);
+			}
+		}
+	}
+
+	/**
+	 * An update to the levels of a single item.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static interface LevelsUpdate {
+
+		/**
+		 * @param levels Levels of item, null if item is not held
+		 * @param quantity Quantity to update by
+		 * @return Whether the update can be applied
+		 */
+		public abstract boolean canUpdate(StockLevels levels, double quantity);
+
+		/**
+		 * @param levels Levels of item to update
+		 * @param quantity Quantity to update by
+		 */
+		public abstract void update(StockLevels levels, double quantity);
+
+	}
+
+	/**
+	 * An item, its levels and the quantity to update them by.
+	 *
+	 * @author David Jones [dsj1n15]
+	 *
+	 * @param <K> The type of item
+	 */
+	private static class Target<K> {
+		private final K item;
+		private final StockLevels levels;
+		private final double quantity;
+
+		public Target(K item, StockLevels levels, double quantity) {
+			this.item = item;
+			this.levels = levels;
+			this.quantity = quantity;
+		}
+
+	}
+
+	/**
+	 * Interface for classes that should be told of changes to stock.
+	 *
+	 * @author David Jones [dsj1n15]
+	 *
+	 * @param <K> The type of keys maintained by the map being listened to
+	 */
+	public static interface StockListener<K> {
+
+		/**
+		 * Called whilst the item is locked after it has changed. Items are added and removed
+		 * whilst the map is locked.
+		 *
+		 * @param item Item that has changed
+		 * @param change Type of change
+		 */
+		public abstract void stockChanged(K item, Change change);
+
+		/**
+		 * Called whilst every item is locked after the levels of several items have changed in a
+		 * single update. By default each item is reported as a separate change.
+		 *
+		 * @param items Items that have changed
+		 */
+		public default void levelsChanged(List<K> items) {
+			for (final K item : items) {
+				stockChanged(item, Change.LEVELS);
+			}
+		}
+
+	}
+
+	/**
+	 * Enumeration of the types of change made to an item in a stock map.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static enum Change {
+		// Item added to map
+		ADDED,
+		// Item removed from map
+		REMOVED,
+		// Stock levels of item changed through map
+		LEVELS,
+		// Item or levels changed without using map
+		EDITED;
+	}
+
 }
@@ -0,0 +1,63 @@
+package business.model;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Clock following the system clock. Durations of business time pass faster or slower than real
+ * time by a speed modifier, used to speed up the running business.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class SystemClock extends Clock {
+	private final double speedModifier;
+	private final Random random = new Random();
+
+	/**
+	 * Instantiate a system clock.
+	 *
+	 * @param speedModifier Real time taken per unit of business time
+	 */
+	public SystemClock(double speedModifier) {
+		if (speedModifier <= 0) {
+			throw new IllegalArgumentException("Speed modifier must be positive");
+		}
+		this.speedModifier = speedModifier;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public LocalDateTime now() {
+		return LocalDateTime.now();
+	}
+
+	@Override
+	public void sleep(long millis) throws InterruptedException {
+		Thread.sleep(Math.round(speedModifier * millis));
+	}
+
+	@Override
+	public void await(Object monitor) throws InterruptedException {
+		monitor.wait();
+	}
+
+	@Override
+	public void signalAll(Object monitor) {
+		monitor.notifyAll();
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		return new Thread(runnable);
+	}
+
+	@Override
+	public Random getRandom() {
+		return random;
+	}
+
+}
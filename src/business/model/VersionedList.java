@@ -0,0 +1,49 @@
+package business.model;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable list of copies of the items held by a collection at one version of the collection.
+ * Collections increase their version on every change, so a holder of a list can tell whether the
+ * collection has changed since the list was taken by comparing versions. Items are copies so may
+ * be read without locking, but changes to them are not made to the collection.
+ *
+ * @param <T> The type of items in the list
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class VersionedList<T> extends AbstractList<T> {
+	private final long version;
+	private final List<T> items;
+
+	/**
+	 * Instantiate a versioned list.
+	 *
+	 * @param version Version of collection items were copied at
+	 * @param items Copies of items, no longer changed by the caller
+	 */
+	public VersionedList(long version, List<T> items) {
+		this.version = version;
+		this.items = Collections.unmodifiableList(items);
+	}
+
+	/**
+	 * @return Version of collection items were copied at
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public T get(int index) {
+		return items.get(index);
+	}
+
+	@Override
+	public int size() {
+		return items.size();
+	}
+
+}
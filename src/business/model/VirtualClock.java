@@ -0,0 +1,317 @@
+package business.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Discrete event clock that runs threads against virtual time. Threads created by the clock take
+ * turns to run, one at a time; a thread sleeping schedules an event to wake it at a future
+ * virtual time and hands its turn to the thread with the earliest event, moving time straight to
+ * that event. Time therefore passes as fast as threads can do their work, and runs are repeatable
+ * as events are taken in order of time then of scheduling and durations are drawn from a seeded
+ * source of randomness.
+ *
+ * Threads using the clock must only wait through the clock, never on locks held by another
+ * thread using the clock whilst it sleeps, and should only be interrupted to stop them; an
+ * interrupt takes effect when the thread is next given a turn. Once stopped, the clock no longer
+ * schedules threads and any thread waiting through it is interrupted.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class VirtualClock extends Clock {
+	private final Object lock = new Object();
+	private final Random random;
+	// Threads created by clock that have not finished
+	private final Set<Thread> threads = new HashSet<>();
+	// Events of threads waiting for their turn
+	private final PriorityQueue<Event> events = new PriorityQueue<>();
+	// Threads waiting on each monitor for a signal
+	private final Map<Object, List<Thread>> waiting = new IdentityHashMap<>();
+	// Thread whose turn it is, null if none
+	private volatile Thread running = null;
+	private volatile long time;
+	private volatile boolean stopped = false;
+	private long sequence = 0;
+
+	/**
+	 * Instantiate a virtual clock.
+	 *
+	 * @param start Business time to start at (ms since epoch)
+	 * @param seed Seed of source of random durations
+	 */
+	public VirtualClock(long start, long seed) {
+		this.time = start;
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return time;
+	}
+
+	@Override
+	public void sleep(long millis) throws InterruptedException {
+		final Thread self = Thread.currentThread();
+		final Event next;
+		synchronized (lock) {
+			checkTurn(self);
+			schedule(self, time + Math.max(millis, 0), null);
+			next = takeNext();
+		}
+		wake(next);
+		awaitTurn(self, null);
+	}
+
+	@Override
+	public void await(Object monitor) throws InterruptedException {
+		final Thread self = Thread.currentThread();
+		final Event next;
+		synchronized (lock) {
+			checkTurn(self);
+			List<Thread> waiters = waiting.get(monitor);
+			if (waiters == null) {
+				waiters = new ArrayList<>();
+				waiting.put(monitor, waiters);
+			}
+			waiters.add(self);
+			next = takeNext();
+		}
+		wake(next);
+		awaitTurn(self, monitor);
+	}
+
+	@Override
+	public void signalAll(Object monitor) {
+		synchronized (lock) {
+			if (stopped) {
+				monitor.notifyAll();
+				return;
+			}
+			// Waiting threads are given a turn at the current time
+			final List<Thread> waiters = waiting.remove(monitor);
+			if (waiters != null) {
+				for (final Thread waiter : waiters) {
+					schedule(waiter, time, monitor);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Thread newThread(final Runnable runnable) {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final Thread self = Thread.currentThread();
+				try {
+					awaitTurn(self, null);
+					runnable.run();
+				} catch(InterruptedException e) {
+					// Clock stopped before thread was given a turn
+				} finally {
+					finish(self);
+				}
+			}
+		});
+		Event next = null;
+		synchronized (lock) {
+			threads.add(thread);
+			if (!stopped) {
+				// Thread is given its first turn at the current time
+				schedule(thread, time, null);
+				if (running == null) {
+					next = takeNext();
+				}
+			}
+		}
+		wake(next);
+		return thread;
+	}
+
+	@Override
+	public Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * Stop scheduling threads, interrupting any thread waiting through the clock. Threads then run
+	 * freely to finish.
+	 */
+	public void stop() {
+		final List<Thread> toWake;
+		final List<Object> monitors = new ArrayList<>();
+		synchronized (lock) {
+			stopped = true;
+			running = null;
+			toWake = new ArrayList<>(threads);
+			monitors.addAll(waiting.keySet());
+			for (final Event event : events) {
+				if (event.monitor != null) {
+					monitors.add(event.monitor);
+				}
+			}
+			events.clear();
+			waiting.clear();
+		}
+		for (final Thread thread : toWake) {
+			LockSupport.unpark(thread);
+		}
+		for (final Object monitor : monitors) {
+			synchronized (monitor) {
+				monitor.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return Whether the clock has been stopped
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Check that the calling thread may wait through the clock.
+	 *
+	 * @param self Calling thread
+	 * @throws InterruptedException Clock has been stopped
+	 */
+	private void checkTurn(Thread self) throws InterruptedException {
+		if (stopped) {
+			throw new InterruptedException();
+		}
+		if (running != self) {
+			throw new IllegalStateException("Only a thread whose turn it is may wait on clock");
+		}
+	}
+
+	/**
+	 * Schedule an event giving a thread a turn, must be called holding lock.
+	 *
+	 * @param thread Thread to give turn
+	 * @param time Time of turn (ms since epoch)
+	 * @param monitor Monitor thread is waiting on, null if sleeping
+	 */
+	private void schedule(Thread thread, long time, Object monitor) {
+		events.add(new Event(time, sequence++, thread, monitor));
+	}
+
+	/**
+	 * Take the earliest event, moving time to it and giving its thread the turn. Must be called
+	 * holding lock.
+	 *
+	 * @return Earliest event, null if there is none
+	 */
+	private Event takeNext() {
+		final Event next = events.poll();
+		if (next == null) {
+			running = null;
+		} else {
+			time = next.time;
+			running = next.thread;
+		}
+		return next;
+	}
+
+	/**
+	 * Wake the thread of an event given the turn. Must not be called holding lock.
+	 *
+	 * @param event Event given turn, null for none
+	 */
+	private void wake(Event event) {
+		if (event == null || event.thread == Thread.currentThread()) {
+			return;
+		}
+		if (event.monitor == null) {
+			LockSupport.unpark(event.thread);
+		} else {
+			synchronized (event.monitor) {
+				event.monitor.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Block the calling thread until it is given the turn.
+	 *
+	 * @param self Calling thread
+	 * @param monitor Monitor thread is waiting on, null if sleeping
+	 * @throws InterruptedException Clock stopped, or thread interrupted whilst waiting
+	 */
+	private void awaitTurn(Thread self, Object monitor) throws InterruptedException {
+		boolean interrupted = false;
+		while (running != self) {
+			if (stopped) {
+				throw new InterruptedException();
+			}
+			if (monitor == null) {
+				LockSupport.park(this);
+				interrupted |= Thread.interrupted();
+			} else {
+				try {
+					monitor.wait();
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		// Interrupts take effect once thread has the turn so runs remain repeatable
+		if (interrupted || Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Remove a finished thread, handing on its turn.
+	 *
+	 * @param self Finished thread
+	 */
+	private void finish(Thread self) {
+		Event next = null;
+		synchronized (lock) {
+			threads.remove(self);
+			if (running == self) {
+				next = takeNext();
+			}
+		}
+		wake(next);
+	}
+
+	/**
+	 * A turn given to a thread at a time.
+	 */
+	private static class Event implements Comparable<Event> {
+		private final long time;
+		private final long sequence;
+		private final Thread thread;
+		private final Object monitor;
+
+		/**
+		 * @param time Time of turn (ms since epoch)
+		 * @param sequence Order in which event was scheduled
+		 * @param thread Thread to give turn
+		 * @param monitor Monitor thread is waiting on, null if sleeping
+		 */
+		public Event(long time, long sequence, Thread thread, Object monitor) {
+			this.time = time;
+			this.sequence = sequence;
+			this.thread = thread;
+			this.monitor = monitor;
+		}
+
+		@Override
+		public int compareTo(Event other) {
+			final int time = Long.compare(this.time, other.time);
+			return time != 0 ? time : Long.compare(this.sequence, other.sequence);
+		}
+
+	}
+
+}
@@ -13,13 +13,16 @@ import general.utility.Validatable;
  */
 public abstract class Worker implements Runnable, Serializable, Validatable {
 	private static final long serialVersionUID = -3658189976773236703L;
-	private static final int WAIT_TIME = 1000;
+	// Time waited between checks for work (business time)
+	private static final int WAIT_TIME = 10000; // ms
 
 	protected final String identifier;
 	private Status status;
 	private String action;
 	// Run fails if thread instantiated is not owned by worker
 	private transient Thread thread;
+	// Listener to action and status changes, not persisted
+	private transient volatile ChangeListener changeListener;
 
 	/**
 	 * Instantiate a worker, stopped by default.
@@ -32,6 +35,20 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 		this.action = "-";
 	}
 
+	/**
+	 * Instantiate a copy of a worker's details that can be read without locking. The copy has the
+	 * worker's status but does no work itself.
+	 *
+	 * @param worker Worker to copy
+	 */
+	protected Worker(Worker worker) {
+		synchronized (worker) {
+			this.identifier = worker.identifier;
+			this.status = worker.status;
+			this.action = worker.action;
+		}
+	}
+
 	@Override
 	public void run() {
 		// Verify running on the correct thread
@@ -41,12 +58,15 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 		// Handle run behaviour
 		setStatus(Status.WORKING);
 		while (getStatus() == Status.WORKING) {
-			action = "IDLE";
+			if (!"IDLE".equals(action)) {
+				action = "IDLE";
+				fireChanged();
+			}
 			try {
 				// Do work as defined by subclass
 				doWork();
 				// Wait before moving to next task
-				Thread.sleep(WAIT_TIME);
+				waitForWork();
 			} catch(InterruptedException e) {
 				// Worker interrupted whilst working so set status to suspend
 				setStatus(Status.SUSPENDED);
@@ -57,6 +77,7 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 		// Handle status change if stopping
 		if (getStatus().equals(Status.STOPPING)) {
 			action = "-";
+			// Change reported with status
 			setStatus(Status.STOPPED);
 		}
 		// Thread terminating
@@ -86,6 +107,7 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 	protected void actionUpdate(String action) {
 		this.action = action;
 		System.out.println(String.format("[%s] : %s", identifier, action));
+		fireChanged();
 	}
 
 	/**
@@ -100,6 +122,24 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 	 */
 	protected synchronized void setStatus(Status status) {
 		this.status = status;
+		fireChanged();
+	}
+
+	/**
+	 * @param changeListener Listener to tell of action and status changes, null for none
+	 */
+	public void setChangeListener(ChangeListener changeListener) {
+		this.changeListener = changeListener;
+	}
+
+	/**
+	 * Tell the listener, if any, that the worker's action or status has changed.
+	 */
+	private void fireChanged() {
+		final ChangeListener changeListener = this.changeListener;
+		if (changeListener != null) {
+			changeListener.workerChanged(this);
+		}
 	}
 
 	/**
@@ -115,7 +155,7 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 	 */
 	public synchronized void startWorking() {
 		if (isStartable()) {
-			thread = new Thread(this);
+			thread = Clock.get().newThread(this);
 			thread.start();
 		} else {
 			throw new IllegalStateException("Worker already working");
@@ -159,6 +199,33 @@ public abstract class Worker implements Runnable, Serializable, Validatable {
 	 */
 	protected abstract void doWork() throws InterruptedException;
 
+	/**
+	 * Method run as part of the workers thread between each call of doWork(). By default waits a
+	 * fixed time before checking for work again; workers told of new work should override this to
+	 * block until work is available, returning early if the worker should stop working.
+	 *
+	 * @throws InterruptedException An exception indicating that the worker should stop
+	 */
+	protected void waitForWork() throws InterruptedException {
+		Clock.get().sleep(WAIT_TIME);
+	}
+
+	/**
+	 * Interface for classes that should be told of worker action and status changes.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static interface ChangeListener {
+
+		/**
+		 * Called after the action or status of a worker has been set.
+		 *
+		 * @param worker Worker that has changed
+		 */
+		public abstract void workerChanged(Worker worker);
+
+	}
+
 	/**
 	 * Enumeration of statuses for workers.
 	 *
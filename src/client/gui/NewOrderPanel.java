@@ -14,6 +14,9 @@ import java.io.File;
 import java.text.DecimalFormat;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -350,25 +353,37 @@ public class NewOrderPanel extends JPanel implements View {
 	public void initialise() {
 		orderItems = new QuantityMap<>();
 		refreshOrder();
-		refresh();
+		// Subscribe again in case the server has restarted since the last subscription
+		subscribeDishes();
+		refreshDishes();
 	}
 
 	@Override
 	public void refresh() {
+		if (!application.model.isSubscribedToDishes()) {
+			subscribeDishes();
+		}
 		refreshDishes();
 	}
 
 	/**
-	 * Refresh available dishes using the server
+	 * Subscribe to dish stock, waiting for the server to reply with all dishes.
 	 */
-	private void refreshDishes() {
-		// Refresh dishes using server
-		QuantityMap<Dish> dishes;
-		if (application.model.refreshDishes()) {
-			// Wait for message handler to handle response
-			application.model.dishes.waitForNew(ClientApplication.REQUEST_TIMEOUT);
+	private void subscribeDishes() {
+		try {
+			application.model.subscribeDishes().get(ClientApplication.REQUEST_TIMEOUT,
+					TimeUnit.MILLISECONDS);
+		} catch(InterruptedException | ExecutionException | TimeoutException e) {
+			System.err.println("[NEW ORDER] : Unable to subscribe to dish stock");
 		}
-		dishes = application.model.dishes.readObject();
+	}
+
+	/**
+	 * Refresh available dishes using those held by the model; changes are pushed by the server
+	 * whilst subscribed so no request is made.
+	 */
+	private void refreshDishes() {
+		final QuantityMap<Dish> dishes = application.model.dishes.readObject();
 
 		// Ensure refresh is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
@@ -380,7 +395,9 @@ public class NewOrderPanel extends JPanel implements View {
 			}
 		});
 		// Verify that current order is still valid
-		verifyCurrentOrder(dishes.keySet());
+		if (dishes != null) {
+			verifyCurrentOrder(dishes.keySet());
+		}
 	}
 
 	/**
@@ -8,6 +8,9 @@ import java.awt.Insets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
@@ -179,7 +182,9 @@ public class ViewOrdersPanel extends RecordPanel<Order> {
 
 	@Override
 	public void initialise() {
-		refresh();
+		// Subscribe again in case the server has restarted since the last subscription
+		subscribeOrders();
+		refreshOrders();
 		// Ensure initialising is on EDT
 		SwingUtilities.invokeLater(new Runnable() {
 			@Override
@@ -192,15 +197,29 @@ public class ViewOrdersPanel extends RecordPanel<Order> {
 
 	@Override
 	public void refresh() {
-		// Refresh orders using server
-		Order[] orderArray = null;
-		if (model.refreshOrders()) {
-			// Wait for message handler to handle response
-			if (model.orders.waitForNew(ClientApplication.REQUEST_TIMEOUT)) {
-				// Get response
-				orderArray = model.orders.readObject();
-			}
+		if (!model.isSubscribedToOrders()) {
+			subscribeOrders();
+		}
+		refreshOrders();
+	}
+
+	/**
+	 * Subscribe to order status changes, waiting for the server to reply with missed changes.
+	 */
+	private void subscribeOrders() {
+		try {
+			model.subscribeOrders().get(ClientApplication.REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch(InterruptedException | ExecutionException | TimeoutException e) {
+			System.err.println("[VIEW ORDERS] : Unable to subscribe to order status");
 		}
+	}
+
+	/**
+	 * Refresh orders using those held by the model; status changes are pushed by the server whilst
+	 * subscribed so no request is made.
+	 */
+	private void refreshOrders() {
+		Order[] orderArray = model.orders.readObject();
 		if (orderArray == null) {
 			orderArray = new Order[0];
 		}
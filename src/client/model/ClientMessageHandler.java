@@ -29,28 +29,42 @@ public class ClientMessageHandler extends MessageHandler {
 
 	@Override
 	public void handleMessage(Message rx) {
-		switch (rx.getCommand()) {
-			case REGISTER_RESPONSE:
-				handleRegistration(rx);
-				break;
-			case LOGIN_RESPONSE:
-				handleLogin(rx);
-				break;
-			case UPDATE_POSTCODES:
-				handlePostcodeUpdate(rx);
-				break;
-			case UPDATE_DISH_STOCK:
-				handleDishesUpdate(rx);
-				break;
-			case UPDATE_EXISTING_ORDERS:
-				handleExistingOrdersUpdate(rx);
-				break;
-			case ORDER_RESPONSE:
-				handleNewOrder(rx);
-				break;
-			default:
-				throw new IllegalArgumentException(
-						String.format("Unsupported message type '%s'", rx.getCommand()));
+		try {
+			switch (rx.getCommand()) {
+				case REGISTER_RESPONSE:
+					handleRegistration(rx);
+					break;
+				case LOGIN_RESPONSE:
+					handleLogin(rx);
+					break;
+				case UPDATE_POSTCODES:
+					handlePostcodeUpdate(rx);
+					break;
+				case UPDATE_DISH_STOCK:
+					handleDishesUpdate(rx);
+					break;
+				case UPDATE_EXISTING_ORDERS:
+					handleExistingOrdersUpdate(rx);
+					break;
+				case ORDER_RESPONSE:
+					handleNewOrder(rx);
+					break;
+				case DISH_STOCK_CHANGES:
+					handleDishStockChanges(rx);
+					break;
+				case ORDER_STATUS_CHANGES:
+					handleOrderStatusChanges(rx);
+					break;
+				case UPDATE_ARCHIVED_ORDERS:
+					// Only sent as a reply to an asynchronous request
+					break;
+				default:
+					throw new IllegalArgumentException(
+							String.format("Unsupported message type '%s'", rx.getCommand()));
+			}
+		} finally {
+			// Complete any asynchronous request this is a reply to, after the model is updated
+			model.requests.complete(rx);
 		}
 	}
 
@@ -130,4 +144,43 @@ public class ClientMessageHandler extends MessageHandler {
 		model.orderResponse.write(rx.getErrorBuilder());
 	}
 
+	/**
+	 * Handle dish stock pushed by the business. Expect a message with a sequence number, changed
+	 * dishes and removed dishes attached. Merge changes into the model.
+	 *
+	 * @param rx Object message with dish stock changes attached
+	 */
+	private void handleDishStockChanges(Message rx) {
+		// Get expected objects from message
+		final ObjectMessage rxObj = expectObjectMessage(rx);
+		final long epoch = rxObj.getObject("EPOCH", Long.class);
+		final long sequence = rxObj.getObject("SEQUENCE", Long.class);
+		final boolean full = rxObj.getObject("FULL", Boolean.class);
+		final QuantityMap<Dish> changed =
+				QuantityMap.fromObject(rxObj.getObject("DISHES"), Dish.class);
+		final Dish[] removed = rxObj.getObject("REMOVED", Dish[].class);
+		// Merge changes into model
+		model.mergeDishStock(epoch, sequence, full, changed, removed);
+	}
+
+	/**
+	 * Handle order status changes pushed by the business. Expect a message with the sequence
+	 * numbers of the changes, changed orders and their statuses attached. Merge changes into the
+	 * model.
+	 *
+	 * @param rx Object message with order status changes attached
+	 */
+	private void handleOrderStatusChanges(Message rx) {
+		// Get expected objects from message
+		final ObjectMessage rxObj = expectObjectMessage(rx);
+		final long epoch = rxObj.getObject("EPOCH", Long.class);
+		final boolean full = rxObj.getObject("FULL", Boolean.class);
+		final long first = rxObj.getObject("FIRST", Long.class);
+		final long sequence = rxObj.getObject("SEQUENCE", Long.class);
+		final Order[] changed = rxObj.getObject("ORDERS", Order[].class);
+		final Order.Status[] statuses = rxObj.getObject("STATUSES", Order.Status[].class);
+		// Merge changes into model
+		model.mergeOrderStatus(epoch, full, first, sequence, changed, statuses);
+	}
+
 }
@@ -1,8 +1,21 @@
 package client.model;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import business.model.BusinessLocation;
+import business.model.BusinessMessageCodec;
 import business.model.Customer;
 import business.model.CustomerLogin;
 import business.model.Dish;
@@ -13,6 +26,8 @@ import general.model.Message;
 import general.model.MessageHandler;
 import general.model.ObjectMessage;
 import general.model.QuantityMap;
+import general.model.RequestTracker;
+import general.utility.ErrorBuilder;
 import general.utility.UpdateAlert;
 import general.utility.UpdateAlertObject;
 import general.utility.Utilities;
@@ -22,12 +37,17 @@ import general.utility.Utilities;
  * is designed to be completely independent of any interface. The model expects to handle 
  * connections to the business and therefore includes a communication layer.
  * 
+ * Requests can also be made asynchronously; these return a future that is completed by the reply
+ * with the same correlation identifier, so many requests can be outstanding at once.
+ * 
  * @author David Jones [dsj1n15]
  */
 public class ClientModel {
 	private static final String HOSTNAME = Utilities.getHostname();
 	private static final int PORT = 0; // auto-set
 	public static final InetSocketAddress ADDRESS = new InetSocketAddress(HOSTNAME, PORT);
+	// Time to wait for a reply to an asynchronous request
+	public static final int REQUEST_TIMEOUT = 5000; // ms
 
 	// Server Status Flags
 	public final UpdateAlert registerResponse = new UpdateAlert();
@@ -37,14 +57,31 @@ public class ClientModel {
 	public final UpdateAlertObject<Postcode[]> postcodes = new UpdateAlertObject<>();
 	public final UpdateAlertObject<QuantityMap<Dish>> dishes = new UpdateAlertObject<>();
 	public final UpdateAlertObject<Order[]> orders = new UpdateAlertObject<>();
+	// Dish stock subscription, pushed changes are merged into dishes
+	private volatile boolean dishesSubscribed = false;
+	private final QuantityMap<Dish> subscribedDishes = new QuantityMap<>();
+	private final Map<Dish, Long> dishVersions = new HashMap<>();
+	private long dishEpoch = 0;
+	// Order status subscription, pushed changes are merged into orders
+	private volatile boolean ordersSubscribed = false;
+	private final Map<Order, Order> subscribedOrders = new LinkedHashMap<>();
+	private final Map<Order, Long> orderVersions = new HashMap<>();
+	// Ranges of changes received after a missing change, first sequence to last sequence
+	private final TreeMap<Long, Long> orderChangesAhead = new TreeMap<>();
+	private CustomerLogin orderLogin = null;
+	private long orderEpoch = 0;
+	private long orderSequence = 0;
 
 	// Message handling
 	public final Comms comms;
+	public final RequestTracker requests;
 
 	public ClientModel(BusinessLocation location) {
 		// Initialise communications
 		System.out.println("[MODEL] : Comms starting...");
-		comms = new Comms(ClientModel.ADDRESS, location.getAddress());
+		comms = new Comms(ClientModel.ADDRESS, location.getAddress(), true);
+		comms.setCodec(new BusinessMessageCodec());
+		requests = new RequestTracker(comms);
 		final MessageHandler messageHandler = new ClientMessageHandler(this);
 		new Thread(messageHandler).start();
 		System.out.println("[MODEL] : Comms started");
@@ -96,6 +133,9 @@ public class ClientModel {
 		// Reset statuses
 		orderResponse.clear();
 		registerResponse.clear();
+		// Stop dish stock and order status changes being pushed
+		unsubscribeDishes();
+		unsubscribeOrders();
 		// Clear storage
 		loggedInCustomer.clear();
 		postcodes.clear();
@@ -148,4 +188,407 @@ public class ClientModel {
 		return comms.sendMessage(tx);
 	}
 
+	/**
+	 * Subscribe to dish stock. The reply holds all dishes, after which changes in available stock
+	 * are pushed by the business and merged into dishes without further requests. Subscribing
+	 * again is allowed and replaces all dishes held.
+	 *
+	 * @return Future completed with the comments of the reply
+	 */
+	public CompletableFuture<ErrorBuilder> subscribeDishes() {
+		dishesSubscribed = true;
+		final CompletableFuture<ErrorBuilder> future =
+				request(new Message(Message.Command.SUBSCRIBE_DISH_STOCK));
+		future.whenComplete(new BiConsumer<ErrorBuilder, Throwable>() {
+			@Override
+			public void accept(ErrorBuilder eb, Throwable e) {
+				if (e != null) {
+					// Allow subscription to be attempted again
+					dishesSubscribed = false;
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Stop dish stock changes being pushed by the business.
+	 *
+	 * @return Whether message successfully sent
+	 */
+	public boolean unsubscribeDishes() {
+		if (!dishesSubscribed) {
+			return true;
+		}
+		dishesSubscribed = false;
+		synchronized (dishVersions) {
+			subscribedDishes.clear();
+			dishVersions.clear();
+		}
+		return comms.sendMessage(new Message(Message.Command.UNSUBSCRIBE_DISH_STOCK));
+	}
+
+	/**
+	 * @return Whether dish stock changes are being pushed by the business
+	 */
+	public boolean isSubscribedToDishes() {
+		return dishesSubscribed;
+	}
+
+	/**
+	 * Merge dish stock pushed by the business into the dishes held. Each dish remembers the
+	 * sequence number of the message it was last changed by so that messages handled out of order
+	 * cannot replace newer stock with older stock. A new epoch means the business has restarted so
+	 * all held dishes are discarded.
+	 *
+	 * @param epoch Identifier of the sequence numbers used by the business
+	 * @param sequence Sequence number of message
+	 * @param full Whether all dishes are given, dishes not given should be removed
+	 * @param changed Dishes and their available stock
+	 * @param removed Dishes no longer stocked
+	 */
+	void mergeDishStock(long epoch, long sequence, boolean full, QuantityMap<Dish> changed,
+			Dish[] removed) {
+		if (!dishesSubscribed) {
+			return;
+		}
+		synchronized (dishVersions) {
+			if (epoch != dishEpoch) {
+				dishEpoch = epoch;
+				subscribedDishes.clear();
+				dishVersions.clear();
+			}
+			for (final Dish dish : changed.keySet()) {
+				if (isNewerDishStock(dish, sequence)) {
+					// Remove first so the latest dish object is kept as the key
+					subscribedDishes.remove(dish);
+					subscribedDishes.put(dish, changed.get(dish));
+				}
+			}
+			for (final Dish dish : removed) {
+				if (isNewerDishStock(dish, sequence)) {
+					subscribedDishes.remove(dish);
+				}
+			}
+			if (full) {
+				for (final Dish dish : new ArrayList<>(subscribedDishes.keySet())) {
+					if (!changed.containsKey(dish) && isNewerDishStock(dish, sequence)) {
+						subscribedDishes.remove(dish);
+					}
+				}
+			}
+			// Store a copy so readers are not affected by later merges
+			final QuantityMap<Dish> copy = new QuantityMap<>();
+			copy.putAll(subscribedDishes);
+			dishes.write(copy);
+		}
+	}
+
+	/**
+	 * Check whether a message is newer than the last change to a dish, remembering the message
+	 * sequence number if it is.
+	 *
+	 * @param dish Dish being changed
+	 * @param sequence Sequence number of message
+	 * @return Whether the message is newer
+	 */
+	private boolean isNewerDishStock(Dish dish, long sequence) {
+		final Long version = dishVersions.get(dish);
+		if (version != null && version >= sequence) {
+			return false;
+		}
+		dishVersions.put(dish, sequence);
+		return true;
+	}
+
+	/**
+	 * Subscribe to the status changes of the logged in customer's orders. The business is told the
+	 * last change received so that, if it still holds the changes made since, only those are
+	 * replied with; otherwise the reply holds every order of the customer. Changes made afterwards
+	 * are pushed by the business and merged into orders without further requests.
+	 *
+	 * @return Future completed with the comments of the reply
+	 */
+	public CompletableFuture<ErrorBuilder> subscribeOrders() {
+		final CustomerLogin login = loggedInCustomer.readObject().getLogin();
+		final ObjectMessage tx = new ObjectMessage(Message.Command.SUBSCRIBE_ORDER_STATUS);
+		tx.addObject("CUSTOMER_LOGIN", login);
+		synchronized (orderVersions) {
+			if (!login.equals(orderLogin)) {
+				// Changes held are of another customer so cannot be resumed from
+				resetOrderStatus(0);
+				orderLogin = login;
+			}
+			tx.addObject("EPOCH", orderEpoch);
+			tx.addObject("SEQUENCE", orderSequence);
+		}
+		ordersSubscribed = true;
+		final CompletableFuture<ErrorBuilder> future = request(tx);
+		future.whenComplete(new BiConsumer<ErrorBuilder, Throwable>() {
+			@Override
+			public void accept(ErrorBuilder eb, Throwable e) {
+				if (e != null) {
+					// Allow subscription to be attempted again
+					ordersSubscribed = false;
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Stop order status changes being pushed by the business. Changes already received are kept
+	 * so that subscribing again for the same customer only requires the missed changes.
+	 *
+	 * @return Whether message successfully sent
+	 */
+	public boolean unsubscribeOrders() {
+		if (!ordersSubscribed) {
+			return true;
+		}
+		ordersSubscribed = false;
+		final ObjectMessage tx = new ObjectMessage(Message.Command.UNSUBSCRIBE_ORDER_STATUS);
+		synchronized (orderVersions) {
+			tx.addObject("CUSTOMER_LOGIN", orderLogin);
+		}
+		return comms.sendMessage(tx);
+	}
+
+	/**
+	 * @return Whether order status changes are being pushed by the business
+	 */
+	public boolean isSubscribedToOrders() {
+		return ordersSubscribed;
+	}
+
+	/**
+	 * Merge order status changes pushed by the business into the orders held. Changes are numbered
+	 * consecutively; the last change up to which every change has been received is remembered for
+	 * resuming. Each order remembers the sequence number of its last change so that messages
+	 * handled out of order cannot replace a newer status with an older one. A new epoch means the
+	 * business has restarted so all held orders are discarded.
+	 *
+	 * @param epoch Identifier of the sequence numbers used by the business
+	 * @param full Whether all orders of the customer are given, orders not given are removed
+	 * @param first Sequence number of the first change
+	 * @param sequence Sequence number of the last change
+	 * @param changed Changed orders
+	 * @param statuses Status each order changed to
+	 */
+	void mergeOrderStatus(long epoch, boolean full, long first, long sequence, Order[] changed,
+			Order.Status[] statuses) {
+		if (!ordersSubscribed) {
+			return;
+		}
+		synchronized (orderVersions) {
+			if (epoch != orderEpoch) {
+				resetOrderStatus(epoch);
+			}
+			for (int i = 0; i < changed.length; i++) {
+				// A full message reflects every change up to its sequence number
+				final long version = full ? sequence : first + i;
+				final Long existing = orderVersions.get(changed[i]);
+				if (existing == null || existing < version) {
+					final Order order = changed[i];
+					order.setStatus(statuses[i]);
+					orderVersions.put(order, version);
+					subscribedOrders.put(order, order);
+				}
+			}
+			if (full) {
+				// Orders not given have been removed by the business
+				final Set<Order> given = new HashSet<>(Arrays.asList(changed));
+				for (final Order order : new ArrayList<>(subscribedOrders.keySet())) {
+					if (!given.contains(order) && orderVersions.get(order) < sequence) {
+						subscribedOrders.remove(order);
+						orderVersions.remove(order);
+					}
+				}
+			}
+			// Record the range of changes received
+			if (full || first <= orderSequence + 1) {
+				orderSequence = Math.max(orderSequence, sequence);
+			} else {
+				orderChangesAhead.put(first, sequence);
+			}
+			while (!orderChangesAhead.isEmpty()
+					&& orderChangesAhead.firstKey() <= orderSequence + 1) {
+				final Entry<Long, Long> range = orderChangesAhead.pollFirstEntry();
+				orderSequence = Math.max(orderSequence, range.getValue());
+			}
+			// Store a copy so readers are not affected by later merges
+			orders.write(subscribedOrders.values().toArray(new Order[subscribedOrders.size()]));
+		}
+	}
+
+	/**
+	 * Discard all order status changes held. Must be called whilst order versions are locked.
+	 *
+	 * @param epoch Epoch of changes that will be held
+	 */
+	private void resetOrderStatus(long epoch) {
+		orderEpoch = epoch;
+		orderSequence = 0;
+		orderChangesAhead.clear();
+		subscribedOrders.clear();
+		orderVersions.clear();
+	}
+
+	/**
+	 * Send a login request to the business without waiting for the reply. The logged in customer
+	 * is updated when the reply is received, as with a normal login request.
+	 *
+	 * @param login Login object to use for request
+	 * @return Future completed with the logged in customer, null object on failure
+	 */
+	public CompletableFuture<Response<Customer>> loginAsync(CustomerLogin login) {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.SUBMIT_LOGIN);
+		tx.addObject("CUSTOMER_LOGIN", login);
+		return request(tx, "CUSTOMER", Customer.class);
+	}
+
+	/**
+	 * Send a registration request to the business without waiting for the reply.
+	 *
+	 * @param customer Customer object to use for registration request
+	 * @return Future completed with the comments of the registration response
+	 */
+	public CompletableFuture<ErrorBuilder> registerAsync(Customer customer) {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.REGISTER_NEW_CUSTOMER);
+		tx.addObject("CUSTOMER", customer);
+		return request(tx);
+	}
+
+	/**
+	 * Send a customer modification request to the business without waiting for the reply.
+	 *
+	 * @param modified Customer object with modification requests
+	 * @return Future completed with the modified customer
+	 */
+	public CompletableFuture<Response<Customer>> modifyCustomerAsync(Customer modified) {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.MODIFY_CUSTOMER);
+		tx.addObject("EXISTING_CUSTOMER", loggedInCustomer.readObject());
+		tx.addObject("MODIFIED_CUSTOMER", modified);
+		return request(tx, "CUSTOMER", Customer.class);
+	}
+
+	/**
+	 * Request the postcodes served by the business without waiting for the reply.
+	 *
+	 * @return Future completed with the postcodes served
+	 */
+	public CompletableFuture<Response<Postcode[]>> getPostcodesAsync() {
+		return request(new Message(Message.Command.GET_POSTCODES), "POSTCODES",
+				Postcode[].class);
+	}
+
+	/**
+	 * Request dishes and their available stock without waiting for the reply.
+	 *
+	 * @return Future completed with the dishes and available stock
+	 */
+	public CompletableFuture<Response<QuantityMap<Dish>>> getDishesAsync() {
+		final Message tx = new Message(Message.Command.GET_DISH_STOCK);
+		return requests.send(tx, REQUEST_TIMEOUT)
+				.thenApply(new Function<Message, Response<QuantityMap<Dish>>>() {
+					@Override
+					public Response<QuantityMap<Dish>> apply(Message rx) {
+						final Object dishes = expectObject(rx, "DISHES", Object.class);
+						return new Response<>(QuantityMap.fromObject(dishes, Dish.class),
+								rx.getErrorBuilder());
+					}
+				});
+	}
+
+	/**
+	 * Request the existing orders of the logged in customer without waiting for the reply.
+	 *
+	 * @return Future completed with the customer's orders
+	 */
+	public CompletableFuture<Response<Order[]>> getOrdersAsync() {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.GET_EXISTING_ORDERS);
+		tx.addObject("CUSTOMER_LOGIN", loggedInCustomer.readObject().getLogin());
+		return request(tx, "ORDERS", Order[].class);
+	}
+
+	/**
+	 * Request a page of the logged in customer's archived orders, newest first, without waiting for
+	 * the reply. Completed orders are moved to the archive some time after completion so are no
+	 * longer held in orders.
+	 *
+	 * @param offset Number of newer orders to skip
+	 * @param limit Maximum number of orders to return
+	 * @return Future completed with the page of orders, fewer than the limit if no more exist
+	 */
+	public CompletableFuture<Response<Order[]>> getArchivedOrdersAsync(int offset, int limit) {
+		final ObjectMessage tx = new ObjectMessage(Message.Command.GET_ARCHIVED_ORDERS);
+		tx.addObject("CUSTOMER_LOGIN", loggedInCustomer.readObject().getLogin());
+		tx.addObject("OFFSET", offset);
+		tx.addObject("LIMIT", limit);
+		return request(tx, "ORDERS", Order[].class);
+	}
+
+	/**
+	 * Send a new order to the business without waiting for the reply. Order comes from the
+	 * currently logged in customer.
+	 *
+	 * @param dishes Dishes and respective quantities to order
+	 * @return Future completed with the comments of the order response
+	 */
+	public CompletableFuture<ErrorBuilder> sendOrderAsync(QuantityMap<Dish> dishes) {
+		final Order order = new Order(loggedInCustomer.readObject(), dishes);
+		final ObjectMessage tx = new ObjectMessage(Message.Command.SUBMIT_ORDER);
+		tx.addObject("ORDER", order);
+		return request(tx);
+	}
+
+	/**
+	 * Send a tracked request whose reply only carries comments.
+	 *
+	 * @param tx Request to send
+	 * @return Future completed with the comments of the reply
+	 */
+	private CompletableFuture<ErrorBuilder> request(Message tx) {
+		return requests.send(tx, REQUEST_TIMEOUT).thenApply(new Function<Message, ErrorBuilder>() {
+			@Override
+			public ErrorBuilder apply(Message rx) {
+				return (rx.getErrorBuilder() == null) ? new ErrorBuilder() : rx.getErrorBuilder();
+			}
+		});
+	}
+
+	/**
+	 * Send a tracked request whose reply carries a single object.
+	 *
+	 * @param tx Request to send
+	 * @param identifier Identifier of object in reply
+	 * @param type Expected type of object in reply
+	 * @return Future completed with the object and comments of the reply
+	 */
+	private <T> CompletableFuture<Response<T>> request(Message tx, String identifier,
+			Class<T> type) {
+		return requests.send(tx, REQUEST_TIMEOUT).thenApply(new Function<Message, Response<T>>() {
+			@Override
+			public Response<T> apply(Message rx) {
+				return new Response<>(expectObject(rx, identifier, type), rx.getErrorBuilder());
+			}
+		});
+	}
+
+	/**
+	 * Get an expected object from a reply.
+	 *
+	 * @param rx Reply, expected to be an object message
+	 * @param identifier Identifier of object
+	 * @param type Expected type of object
+	 * @return Object from reply
+	 * @throws ClassCastException Reply is not an object message or object not of expected type
+	 */
+	private static <T> T expectObject(Message rx, String identifier, Class<T> type) {
+		if (!(rx instanceof ObjectMessage)) {
+			throw new ClassCastException("Expected object message");
+		}
+		return ((ObjectMessage) rx).getObject(identifier, type);
+	}
+
 }
@@ -0,0 +1,560 @@
+package client.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import business.model.BusinessLocation;
+import business.model.BusinessMessageCodec;
+import business.model.Customer;
+import business.model.CustomerLogin;
+import business.model.Dish;
+import business.model.Order;
+import business.model.Postcode;
+import general.model.Comms;
+import general.model.Message;
+import general.model.MessageHandler;
+import general.model.ObjectMessage;
+import general.model.QuantityMap;
+import general.model.RequestTracker;
+
+/**
+ * Headless driver of load against a running business, simulating many customers using the same
+ * messages as the client application. Each customer registers, logs in, then repeatedly refreshes
+ * dishes, submits an order and polls the status of its orders, waiting a random think time between
+ * requests. Customers are shared between a small number of connections, each with its own comms
+ * and request tracker, so thousands of customers need neither thousands of sockets nor threads.
+ *
+ * The outcome and latency of every request are recorded by command. A request is rejected if the
+ * business replies with an error and failed if no reply is received within the request timeout.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class LoadDriver {
+	// Customer behaviour
+	private static final String PASSWORD = "Password1";
+	private static final int MAX_DISHES_PER_ORDER = 3;
+	private static final int POLLS_PER_ORDER = 3;
+	// Longest think time as a multiple of the mean think time
+	private static final int MAX_THINK_FACTOR = 10;
+	// Reply handling for each connection
+	private static final int REPLY_WORKERS = 2;
+	private static final int REPLY_QUEUE_CAPACITY = 4096;
+	// Threads scheduling customer requests
+	private static final int SCHEDULER_THREADS = 2;
+
+	private final BusinessLocation location;
+	private final int customers;
+	private final int connections;
+	private final int thinkTime; // ms
+	private final long seed;
+	// Included in usernames so each run registers new customers
+	private final String runId = Long.toString(System.currentTimeMillis(), 36);
+	// Statistics of each command sent, complete once created
+	private final Map<Message.Command, CommandStatistics> statistics;
+	// Requests sent without a reply or failure yet
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final List<Link> links = new ArrayList<>();
+	private ScheduledExecutorService scheduler;
+	private volatile boolean running = false;
+	private long elapsed = 0; // ms
+
+	/**
+	 * Instantiate a driver of load against a business.
+	 *
+	 * @param location Location of business
+	 * @param customers Number of customers to simulate
+	 * @param connections Number of connections to share customers between
+	 * @param thinkTime Mean time a customer waits between requests (ms)
+	 * @param seed Seed of customer behaviour
+	 */
+	public LoadDriver(BusinessLocation location, int customers, int connections, int thinkTime,
+			long seed) {
+		if (customers <= 0 || connections <= 0) {
+			throw new IllegalArgumentException("At least one customer and connection required");
+		}
+		this.location = location;
+		this.customers = customers;
+		this.connections = Math.min(connections, customers);
+		this.thinkTime = thinkTime;
+		this.seed = seed;
+		final Map<Message.Command, CommandStatistics> statistics =
+				new EnumMap<>(Message.Command.class);
+		for (final Message.Command command : new Message.Command[] {
+				Message.Command.GET_POSTCODES, Message.Command.REGISTER_NEW_CUSTOMER,
+				Message.Command.SUBMIT_LOGIN, Message.Command.GET_DISH_STOCK,
+				Message.Command.SUBMIT_ORDER, Message.Command.GET_EXISTING_ORDERS}) {
+			statistics.put(command, new CommandStatistics());
+		}
+		this.statistics = Collections.unmodifiableMap(statistics);
+	}
+
+	/**
+	 * Drive load against the business, blocking until done. Customers start evenly spread over the
+	 * ramp up then run until the duration has passed since the first started; requests still
+	 * outstanding at the end are waited for.
+	 *
+	 * @param rampUp Time over which customers start (ms)
+	 * @param duration Time to drive load for, including ramp up (ms)
+	 * @return True if load driven, false if the business served no postcodes
+	 * @throws InterruptedException Interrupted whilst driving load
+	 */
+	public boolean run(int rampUp, int duration) throws InterruptedException {
+		if (scheduler != null) {
+			throw new IllegalStateException("Load already driven");
+		}
+		scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable, "LoadDriver-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int i = 0; i < connections; i++) {
+			links.add(new Link());
+		}
+		try {
+			// Customers register with postcodes served by the business
+			final Postcode[] postcodes = getPostcodes();
+			if (postcodes == null || postcodes.length == 0) {
+				return false;
+			}
+			running = true;
+			final long started = System.currentTimeMillis();
+			final Random random = new Random(seed);
+			for (int i = 0; i < customers; i++) {
+				final VirtualCustomer customer = new VirtualCustomer(i, links.get(i % connections),
+						postcodes[random.nextInt(postcodes.length)], new Random(random.nextLong()));
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						customer.register();
+					}
+				}, (long) i * rampUp / customers, TimeUnit.MILLISECONDS);
+			}
+			Thread.sleep(duration);
+			running = false;
+			// Wait for replies, requests time out if they are never received
+			final long deadline = System.currentTimeMillis() + ClientModel.REQUEST_TIMEOUT * 2;
+			while (outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			elapsed = System.currentTimeMillis() - started;
+			return true;
+		} finally {
+			running = false;
+			scheduler.shutdownNow();
+			for (final Link link : links) {
+				link.stop();
+			}
+		}
+	}
+
+	/**
+	 * @return Statistics of each command sent, by command
+	 */
+	public Map<Message.Command, CommandStatistics> getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return Time load was driven for, including waiting for outstanding requests (ms)
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * Request the postcodes served by the business, waiting for the reply.
+	 *
+	 * @return Postcodes served, null if not received
+	 * @throws InterruptedException Interrupted whilst waiting for reply
+	 */
+	private Postcode[] getPostcodes() throws InterruptedException {
+		final CompletableFuture<Postcode[]> postcodes = new CompletableFuture<>();
+		send(links.get(0), new Message(Message.Command.GET_POSTCODES), new Reply() {
+			@Override
+			public void received(Message rx) {
+				postcodes.complete((rx == null) ? null
+						: ((ObjectMessage) rx).getObject("POSTCODES", Postcode[].class));
+			}
+		});
+		try {
+			return postcodes.get();
+		} catch(ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Send a request, recording its outcome and latency once replied to or failed.
+	 *
+	 * @param link Connection to send request with
+	 * @param tx Request to send
+	 * @param reply Told of the reply once received, null reply if rejected or failed
+	 */
+	private void send(Link link, Message tx, final Reply reply) {
+		final CommandStatistics commandStatistics = statistics.get(tx.getCommand());
+		outstanding.incrementAndGet();
+		final long sent = System.nanoTime();
+		link.requests.send(tx, ClientModel.REQUEST_TIMEOUT)
+				.whenComplete(new BiConsumer<Message, Throwable>() {
+					@Override
+					public void accept(Message rx, Throwable e) {
+						final long latency = System.nanoTime() - sent;
+						outstanding.decrementAndGet();
+						if (e != null) {
+							commandStatistics.failed();
+							reply.received(null);
+						} else if (rx.getErrorBuilder() != null && rx.getErrorBuilder().isError()) {
+							commandStatistics.replied(latency, true);
+							reply.received(null);
+						} else {
+							commandStatistics.replied(latency, false);
+							reply.received(rx);
+						}
+					}
+				});
+	}
+
+	/**
+	 * A single customer, moving through its requests as each reply is received.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private class VirtualCustomer {
+		private final Link link;
+		private final Random random;
+		private final Customer customer;
+		// Customer as known by the business, once logged in
+		private Customer loggedIn = null;
+		// Polls of order status left for last order
+		private int polls = 0;
+
+		/**
+		 * Instantiate a customer, registering with a unique username for each run.
+		 *
+		 * @param index Index of customer
+		 * @param link Connection customer sends requests with
+		 * @param postcode Postcode of customer
+		 * @param random Source of randomness for customer behaviour
+		 */
+		public VirtualCustomer(int index, Link link, Postcode postcode, Random random) {
+			this.link = link;
+			this.random = random;
+			final String username = String.format("load-%s-%d", runId, index);
+			this.customer = new Customer("Load Customer " + index, "Address " + index, postcode,
+					new CustomerLogin(username, PASSWORD));
+		}
+
+		/**
+		 * Register customer, logging in whether or not registration succeeds.
+		 */
+		private void register() {
+			final ObjectMessage tx = new ObjectMessage(Message.Command.REGISTER_NEW_CUSTOMER);
+			tx.addObject("CUSTOMER", customer);
+			send(link, tx, new Reply() {
+				@Override
+				public void received(Message rx) {
+					next(new Runnable() {
+						@Override
+						public void run() {
+							login();
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Log in customer, trying again if login fails.
+		 */
+		private void login() {
+			final ObjectMessage tx = new ObjectMessage(Message.Command.SUBMIT_LOGIN);
+			tx.addObject("CUSTOMER_LOGIN", customer.getLogin());
+			send(link, tx, new Reply() {
+				@Override
+				public void received(Message rx) {
+					if (rx != null) {
+						loggedIn = ((ObjectMessage) rx).getObject("CUSTOMER", Customer.class);
+					}
+					next(new Runnable() {
+						@Override
+						public void run() {
+							if (loggedIn == null) {
+								login();
+							} else {
+								refreshDishes();
+							}
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Refresh dishes and their available stock, then order from them.
+		 */
+		private void refreshDishes() {
+			send(link, new Message(Message.Command.GET_DISH_STOCK), new Reply() {
+				@Override
+				public void received(Message rx) {
+					final QuantityMap<Dish> dishes = (rx == null) ? null : QuantityMap.fromObject(
+							((ObjectMessage) rx).getObject("DISHES"), Dish.class);
+					next(new Runnable() {
+						@Override
+						public void run() {
+							submitOrder(dishes);
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Submit an order of random dishes with available stock, then poll the status of orders if
+		 * accepted. Dishes are refreshed again if there are none to order.
+		 *
+		 * @param dishes Dishes and their available stock, null if not known
+		 */
+		private void submitOrder(QuantityMap<Dish> dishes) {
+			final QuantityMap<Dish> ordered = chooseDishes(dishes);
+			if (ordered.isEmpty()) {
+				refreshDishes();
+				return;
+			}
+			final ObjectMessage tx = new ObjectMessage(Message.Command.SUBMIT_ORDER);
+			tx.addObject("ORDER", new Order(loggedIn, ordered));
+			send(link, tx, new Reply() {
+				@Override
+				public void received(Message rx) {
+					polls = (rx == null) ? 0 : POLLS_PER_ORDER;
+					next(new Runnable() {
+						@Override
+						public void run() {
+							pollOrders();
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Poll the status of the customer's orders until no polls are left, then refresh dishes.
+		 */
+		private void pollOrders() {
+			if (polls <= 0) {
+				refreshDishes();
+				return;
+			}
+			polls--;
+			final ObjectMessage tx = new ObjectMessage(Message.Command.GET_EXISTING_ORDERS);
+			tx.addObject("CUSTOMER_LOGIN", loggedIn.getLogin());
+			send(link, tx, new Reply() {
+				@Override
+				public void received(Message rx) {
+					next(new Runnable() {
+						@Override
+						public void run() {
+							pollOrders();
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * @param dishes Dishes and their available stock, null if not known
+		 * @return Between one and the maximum number of different dishes with stock available,
+		 *         empty if none have stock available
+		 */
+		private QuantityMap<Dish> chooseDishes(QuantityMap<Dish> dishes) {
+			final QuantityMap<Dish> ordered = new QuantityMap<>();
+			if (dishes == null) {
+				return ordered;
+			}
+			final List<Dish> available = new ArrayList<>();
+			for (int i = dishes.nextIndex(-1); i >= 0; i = dishes.nextIndex(i)) {
+				if (dishes.quantityAt(i) >= 1) {
+					available.add(dishes.keyAt(i));
+				}
+			}
+			Collections.shuffle(available, random);
+			final int count = Math.min(available.size(), 1 + random.nextInt(MAX_DISHES_PER_ORDER));
+			for (int i = 0; i < count; i++) {
+				ordered.setQuantity(available.get(i), 1);
+			}
+			return ordered;
+		}
+
+		/**
+		 * Make the next request after a random think time, unless load is no longer being driven.
+		 *
+		 * @param request Next request
+		 */
+		private void next(Runnable request) {
+			if (!running) {
+				return;
+			}
+			// Exponentially distributed think time, limited so no customer stalls
+			final double think = -thinkTime * Math.log(1 - random.nextDouble());
+			final long delay = (long) Math.min(think, (double) thinkTime * MAX_THINK_FACTOR);
+			scheduler.schedule(request, delay, TimeUnit.MILLISECONDS);
+		}
+
+	}
+
+	/**
+	 * A connection to the business shared by many customers, completing their requests as replies
+	 * are received.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private class Link {
+		private final Comms comms;
+		private final RequestTracker requests;
+		private final Thread thread;
+
+		/**
+		 * Connect to the business, hosting a server for replies.
+		 */
+		public Link() {
+			comms = new Comms(ClientModel.ADDRESS, location.getAddress(), true);
+			comms.setCodec(new BusinessMessageCodec());
+			requests = new RequestTracker(comms);
+			thread = new Thread(new MessageHandler(comms, MessageHandler.DispatchMode.BOUNDED_POOL,
+					REPLY_WORKERS, REPLY_QUEUE_CAPACITY) {
+				@Override
+				protected void handleMessage(Message message) {
+					// Messages other than replies are not expected
+					requests.complete(message);
+				}
+			}, "LoadDriver-Link");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Stop handling replies, cancelling any requests still outstanding.
+		 */
+		public void stop() {
+			thread.interrupt();
+			requests.cancelAll();
+		}
+
+	}
+
+	/**
+	 * Interface told of the reply to a request.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static interface Reply {
+
+		/**
+		 * @param rx Reply received, null if rejected or failed
+		 */
+		public abstract void received(Message rx);
+
+	}
+
+	/**
+	 * Outcomes and latencies of the requests sent with a single command.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static class CommandStatistics {
+		private int succeeded = 0;
+		private int rejected = 0;
+		private int failed = 0;
+		// Latencies of replied requests (ns)
+		private long[] latencies = new long[1024];
+		private int replies = 0;
+
+		/**
+		 * Record a reply to a request.
+		 *
+		 * @param latency Time from sending request to receiving reply (ns)
+		 * @param rejected Whether the reply holds an error
+		 */
+		private synchronized void replied(long latency, boolean rejected) {
+			if (rejected) {
+				this.rejected++;
+			} else {
+				succeeded++;
+			}
+			if (replies == latencies.length) {
+				latencies = Arrays.copyOf(latencies, replies * 2);
+			}
+			latencies[replies++] = latency;
+		}
+
+		/**
+		 * Record a request that failed to send or received no reply.
+		 */
+		private synchronized void failed() {
+			failed++;
+		}
+
+		/**
+		 * @return Number of requests sent that have been replied to or failed
+		 */
+		public synchronized int getRequests() {
+			return succeeded + rejected + failed;
+		}
+
+		/**
+		 * @return Number of requests replied to without an error
+		 */
+		public synchronized int getSucceeded() {
+			return succeeded;
+		}
+
+		/**
+		 * @return Number of requests replied to with an error
+		 */
+		public synchronized int getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * @return Number of requests that failed to send or received no reply
+		 */
+		public synchronized int getFailed() {
+			return failed;
+		}
+
+		/**
+		 * Get a percentile of the latencies of requests replied to.
+		 *
+		 * @param fraction Fraction of latencies below percentile, 1 for the maximum
+		 * @return Latency at percentile (ns), 0 if no requests replied to
+		 */
+		public synchronized long getLatency(double fraction) {
+			if (replies == 0) {
+				return 0;
+			}
+			final long[] sorted = Arrays.copyOf(latencies, replies);
+			Arrays.sort(sorted);
+			final int index = (int) Math.ceil(fraction * replies) - 1;
+			return sorted[Math.max(0, Math.min(index, replies - 1))];
+		}
+
+	}
+
+}
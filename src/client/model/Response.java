@@ -0,0 +1,49 @@
+package client.model;
+
+import general.utility.ErrorBuilder;
+
+/**
+ * Result of a request made to the business, holding the object replied with alongside the
+ * comments sent with the reply.
+ *
+ * @author David Jones [dsj1n15]
+ *
+ * @param <T> Type of object replied with
+ */
+public class Response<T> {
+	private final T object;
+	private final ErrorBuilder eb;
+
+	/**
+	 * Instantiate a response.
+	 *
+	 * @param object Object replied with
+	 * @param eb Comments sent with reply, null will cause a new error builder to be created
+	 */
+	public Response(T object, ErrorBuilder eb) {
+		this.object = object;
+		this.eb = (eb == null) ? new ErrorBuilder() : eb;
+	}
+
+	/**
+	 * @return Object replied with
+	 */
+	public T getObject() {
+		return object;
+	}
+
+	/**
+	 * @return Comments sent with reply
+	 */
+	public ErrorBuilder getErrorBuilder() {
+		return eb;
+	}
+
+	/**
+	 * @return Whether the business indicated an error
+	 */
+	public boolean isError() {
+		return eb.isError();
+	}
+
+}
@@ -1,8 +1,14 @@
 package general.gui;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import javax.swing.JTable;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 
 /**
@@ -11,15 +17,24 @@ import javax.swing.table.AbstractTableModel;
  * be explicitly set to avoid requiring table structure remake if a new record is added to a blank
  * model.
  *
+ * Rows are found by equality of their objects using an index that is built when first needed, so
+ * finding a row takes constant time. A list can be replaced by a new list with only the rows that
+ * have been inserted, removed or display different values being updated, keeping the selection and
+ * avoiding the table rendering every row again.
+ *
  * @author David Jones [dsj1n15]
  *
  * @param <T> Type of list model is serving
  */
 public abstract class ListTableModel<T> extends AbstractTableModel {
 	private static final long serialVersionUID = -4547803764246108910L;
+	// Most separate groups of rows a list update tells the table of before reloading all rows
+	private static final int MAX_ROW_EVENTS = 32;
 	private String[] columnNames = null;
 	private Class<?>[] columnClasses = null;
 	private List<T> list = null;
+	// Rows of objects in list, built when first needed
+	private transient Map<Object, Integer> positions = null;
 
 	/**
 	 * Change the columns, automatically triggering table update.
@@ -39,7 +54,8 @@ public abstract class ListTableModel<T> extends AbstractTableModel {
 	}
 
 	/**
-	 * @return The list being displayed by the model
+	 * @return The list being displayed by the model, only to be changed through the model or
+	 *         followed by a table data change
 	 */
 	public List<T> getList() {
 		return list;
@@ -55,6 +71,152 @@ public abstract class ListTableModel<T> extends AbstractTableModel {
 		fireTableDataChanged();
 	}
 
+	/**
+	 * Change the list being displayed to the objects of a new list, matching objects to rows by
+	 * equality. Rows of objects no longer in the list are removed, objects not yet displayed are
+	 * added as new rows, and the table is only told of changes to the remaining rows if they
+	 * display different values. Rows keep their current order, so the table should be sorted if
+	 * order matters. If the list has changed in too many places, all rows are reloaded instead.
+	 *
+	 * @param list A list for model to display, not held by the model
+	 */
+	public void updateList(List<T> list) {
+		if (this.list == null) {
+			setList(new ArrayList<>(list));
+			return;
+		}
+		// Match new objects to rows by equality, those left unmatched are added
+		final Map<T, T> unmatched = new LinkedHashMap<>();
+		for (final T object : list) {
+			unmatched.put(object, object);
+		}
+		final List<Integer> removed = new ArrayList<>();
+		for (int row = 0; row < this.list.size(); row++) {
+			if (!unmatched.containsKey(this.list.get(row))) {
+				removed.add(row);
+			}
+		}
+		if (countRuns(removed) > MAX_ROW_EVENTS) {
+			setList(new ArrayList<>(list));
+			return;
+		}
+		if (!(this.list instanceof ArrayList)) {
+			this.list = new ArrayList<>(this.list);
+		}
+		// Remove groups of rows from last to first so earlier rows do not move
+		int end = removed.size() - 1;
+		while (end >= 0) {
+			int start = end;
+			while (start > 0 && removed.get(start - 1) == removed.get(start) - 1) {
+				start--;
+			}
+			final int first = removed.get(start);
+			final int last = removed.get(end);
+			this.list.subList(first, last + 1).clear();
+			positions = null;
+			fireTableRowsDeleted(first, last);
+			end = start - 1;
+		}
+		// Replace remaining rows, noting those that display different values
+		final List<Integer> updated = new ArrayList<>();
+		final Object[] previous = new Object[getColumnCount()];
+		for (int row = 0; row < this.list.size(); row++) {
+			for (int column = 0; column < previous.length; column++) {
+				previous[column] = getValueAt(row, column);
+			}
+			final T current = unmatched.remove(this.list.get(row));
+			if (current == null) {
+				// Repeated row, already matched
+				continue;
+			}
+			this.list.set(row, current);
+			for (int column = 0; column < previous.length; column++) {
+				if (!Objects.equals(previous[column], getValueAt(row, column))) {
+					updated.add(row);
+					break;
+				}
+			}
+		}
+		if (countRuns(updated) > MAX_ROW_EVENTS) {
+			fireTableRowsUpdated(updated.get(0), updated.get(updated.size() - 1));
+		} else {
+			for (int first = 0, last = 0; first < updated.size(); first = ++last) {
+				while (last + 1 < updated.size()
+						&& updated.get(last + 1) == updated.get(last) + 1) {
+					last++;
+				}
+				fireTableRowsUpdated(updated.get(first), updated.get(last));
+			}
+		}
+		// Add objects not yet displayed
+		if (!unmatched.isEmpty()) {
+			final int first = this.list.size();
+			for (final T object : unmatched.values()) {
+				if (positions != null) {
+					positions.put(object, this.list.size());
+				}
+				this.list.add(object);
+			}
+			fireTableRowsInserted(first, this.list.size() - 1);
+		}
+	}
+
+	/**
+	 * @param rows Ascending rows
+	 * @return Number of groups of consecutive rows
+	 */
+	private static int countRuns(List<Integer> rows) {
+		int runs = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			if (i == 0 || rows.get(i - 1) != rows.get(i) - 1) {
+				runs++;
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * Replace the row displaying an equal object, or add a row if there is none, updating only
+	 * the affected row. The list being displayed must be modifiable.
+	 *
+	 * @param object Object to display
+	 */
+	public void updateObject(T object) {
+		if (list == null) {
+			return;
+		}
+		final int pos = getObjectPos(object);
+		if (pos >= 0) {
+			list.set(pos, object);
+			fireTableRowsUpdated(pos, pos);
+		} else {
+			if (positions != null) {
+				positions.put(object, list.size());
+			}
+			list.add(object);
+			fireTableRowsInserted(list.size() - 1, list.size() - 1);
+		}
+	}
+
+	/**
+	 * Remove the row displaying an equal object, if any. The list being displayed must be
+	 * modifiable.
+	 *
+	 * @param object Object to stop displaying
+	 * @return Whether a row was removed
+	 */
+	public boolean removeObject(Object object) {
+		final int pos = getObjectPos(object);
+		if (pos >= 0) {
+			list.remove(pos);
+			// Later rows have moved
+			positions = null;
+			fireTableRowsDeleted(pos, pos);
+			return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Get the object being displayed at a specific row index.
 	 *
@@ -76,7 +238,18 @@ public abstract class ListTableModel<T> extends AbstractTableModel {
 	 * @return Index of object in model, -1 of object not found
 	 */
 	public int getObjectPos(Object object) {
-		return (list == null) ? -1 : list.indexOf(object);
+		if (list == null) {
+			return -1;
+		}
+		if (positions == null) {
+			positions = new HashMap<>();
+			// Index first row of equal objects, as found by a search of the list
+			for (int row = list.size() - 1; row >= 0; row--) {
+				positions.put(list.get(row), row);
+			}
+		}
+		final Integer row = positions.get(object);
+		return (row == null) ? -1 : row;
 	}
 
 	/**
@@ -111,6 +284,15 @@ public abstract class ListTableModel<T> extends AbstractTableModel {
 		return false;
 	}
 
+	@Override
+	public void fireTableChanged(TableModelEvent e) {
+		// List may have been changed outside of the model so rows must be indexed again
+		if (e.getType() == TableModelEvent.UPDATE && e.getLastRow() == Integer.MAX_VALUE) {
+			positions = null;
+		}
+		super.fireTableChanged(e);
+	}
+
 	@Override
 	public int getRowCount() {
 		return (list == null) ? 0 : list.size();
@@ -0,0 +1,288 @@
+package general.gui;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Abstract model class for displaying a list of objects held by a backing store, too many to hold
+ * at once. Objects are read a page at a time as their rows are displayed; pages are read in the
+ * background, most recently requested first, with rows of a page not yet read displaying no
+ * values until the table is told the page has been read. Only a limited number of pages are held,
+ * discarding those least recently displayed.
+ *
+ * The model must only be used on the EDT. Tables using the model should not sort rows, as sorting
+ * displays every row. The list of a paged model cannot be changed, only read again from the store.
+ *
+ * @author David Jones [dsj1n15]
+ *
+ * @param <T> Type of list model is serving
+ */
+public abstract class PagedListTableModel<T> extends ListTableModel<T> {
+	private static final long serialVersionUID = 2931180764615826518L;
+	// Default paging
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	public static final int DEFAULT_MAX_PAGES = 20;
+
+	private final int pageSize;
+	private final int maxPages;
+	private final transient PageSource<T> source;
+	private final transient ExecutorService reader;
+	// Number of rows, as last read from the store
+	private int size = 0;
+	// Pages held, least recently displayed first
+	private final transient Map<Integer, List<T>> pages;
+	// Pages requested or read but not yet held
+	private final transient Set<Integer> pending = new HashSet<>();
+	// Pages waiting to be read, most recently requested first, guarded by itself
+	private final transient Deque<Integer> requested = new ArrayDeque<>();
+	private transient boolean reading = false;
+	// Increased when pages are discarded, so pages read before are not held; guarded by requested
+	private int generation = 0;
+
+	/**
+	 * Instantiate a paged model with default paging.
+	 *
+	 * @param source Store to read objects from
+	 */
+	public PagedListTableModel(PageSource<T> source) {
+		this(source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+	}
+
+	/**
+	 * Instantiate a paged model.
+	 *
+	 * @param source Store to read objects from
+	 * @param pageSize Number of objects read at a time
+	 * @param maxPages Most pages held at once
+	 */
+	public PagedListTableModel(PageSource<T> source, int pageSize, final int maxPages) {
+		this.source = source;
+		this.pageSize = pageSize;
+		this.maxPages = maxPages;
+		this.pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = -1893350766284367702L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<Integer, List<T>> eldest) {
+				return size() > maxPages;
+			}
+		};
+		this.reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable, "PagedListTableModel");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Read the number of rows from the store again and discard all pages held, so rows are read
+	 * again as they are displayed.
+	 */
+	public void refresh() {
+		synchronized (requested) {
+			generation++;
+			requested.clear();
+		}
+		pages.clear();
+		pending.clear();
+		size = Math.max(source.getSize(), 0);
+		fireTableDataChanged();
+	}
+
+	/**
+	 * @return Number of objects read at a time
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	@Override
+	public T getObjectAt(int rowIndex) {
+		if (rowIndex < 0 || rowIndex >= size) {
+			return null;
+		}
+		final int page = rowIndex / pageSize;
+		final List<T> objects = pages.get(page);
+		if (objects == null) {
+			request(page);
+			return null;
+		}
+		final int offset = rowIndex % pageSize;
+		return (offset < objects.size()) ? objects.get(offset) : null;
+	}
+
+	/**
+	 * Find the position of an object in the pages held.
+	 *
+	 * @param object Object to find
+	 * @return Index of object in model, -1 if object not held
+	 */
+	@Override
+	public int getObjectPos(Object object) {
+		for (final Entry<Integer, List<T>> page : pages.entrySet()) {
+			final int offset = page.getValue().indexOf(object);
+			if (offset >= 0) {
+				return page.getKey() * pageSize + offset;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getRowCount() {
+		return size;
+	}
+
+	@Override
+	public List<T> getList() {
+		throw new IllegalStateException("Unsupported operation");
+	}
+
+	@Override
+	public void setList(List<T> list) {
+		throw new IllegalStateException("Unsupported operation");
+	}
+
+	@Override
+	public void updateList(List<T> list) {
+		throw new IllegalStateException("Unsupported operation");
+	}
+
+	@Override
+	public void updateObject(T object) {
+		throw new IllegalStateException("Unsupported operation");
+	}
+
+	@Override
+	public boolean removeObject(Object object) {
+		throw new IllegalStateException("Unsupported operation");
+	}
+
+	/**
+	 * Request a page to be read in the background, ahead of pages requested before. Pages
+	 * requested long ago are no longer read as they are unlikely to still be displayed.
+	 *
+	 * @param page Number of page
+	 */
+	private void request(int page) {
+		synchronized (requested) {
+			if (pending.contains(page) && !requested.remove(page)) {
+				// Page is being read
+				return;
+			}
+			pending.add(page);
+			requested.addFirst(page);
+			while (requested.size() > maxPages) {
+				pending.remove(requested.removeLast());
+			}
+			if (reading) {
+				return;
+			}
+			reading = true;
+		}
+		reader.execute(new Runnable() {
+			@Override
+			public void run() {
+				readRequested();
+			}
+		});
+	}
+
+	/**
+	 * Read requested pages until none are left, handing each to the EDT once read.
+	 */
+	private void readRequested() {
+		while (true) {
+			final int page;
+			final int generation;
+			synchronized (requested) {
+				if (requested.isEmpty()) {
+					reading = false;
+					return;
+				}
+				page = requested.removeFirst();
+				generation = this.generation;
+			}
+			List<T> objects;
+			try {
+				objects = source.getPage(page * pageSize, pageSize);
+			} catch(IOException e) {
+				System.err.println("[TABLE] : Unable to read page: " + e.getMessage());
+				objects = Collections.emptyList();
+			}
+			final List<T> read = objects;
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					pageRead(page, generation, read);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Hold a page that has been read and tell the table its rows have changed.
+	 *
+	 * @param page Number of page
+	 * @param generation Generation of pages when page was requested
+	 * @param objects Objects of page
+	 */
+	private void pageRead(int page, int generation, List<T> objects) {
+		synchronized (requested) {
+			if (generation != this.generation) {
+				// Pages have been discarded since page was requested
+				return;
+			}
+		}
+		pending.remove(page);
+		pages.put(page, objects);
+		final int first = page * pageSize;
+		final int last = Math.min(first + pageSize, size) - 1;
+		if (first <= last) {
+			fireTableRowsUpdated(first, last);
+		}
+	}
+
+	/**
+	 * Interface for stores that objects can be read from a page at a time.
+	 *
+	 * @author David Jones [dsj1n15]
+	 *
+	 * @param <T> Type of objects held
+	 */
+	public static interface PageSource<T> {
+
+		/**
+		 * @return Number of objects held
+		 */
+		public abstract int getSize();
+
+		/**
+		 * Called on a background thread to read a page of objects.
+		 *
+		 * @param offset Number of objects to skip
+		 * @param limit Maximum number of objects to read
+		 * @return Objects read, fewer than the limit if no more exist
+		 * @throws IOException Unable to read objects
+		 */
+		public abstract List<T> getPage(int offset, int limit) throws IOException;
+
+	}
+
+}
@@ -8,7 +8,10 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
@@ -19,6 +22,7 @@ import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
@@ -71,6 +75,8 @@ public abstract class RecordPanel<T> extends JPanel implements View, RecordEdito
 	protected T loadedRecord;
 	// Initialisation size of JScrollPane (scroll bar size)
 	private Dimension scrollBarSize;
+	// Records changed outside of the panel whose rows are waiting to be updated
+	private final Set<T> changedRecords = new LinkedHashSet<>();
 
 	/**
 	 * Instantiate the panel with default type.
@@ -391,12 +397,70 @@ public abstract class RecordPanel<T> extends JPanel implements View, RecordEdito
 	protected void refreshTable(List<T> list) {
 		// Keep track of currently selected object
 		final Object selected = model_tblRecords.getSelectedTableObject(tblRecords);
-		// Update model
-		model_tblRecords.setList(list);
+		// Update model, only changing rows that differ
+		model_tblRecords.updateList(list);
 		// If object still exists, select it
 		model_tblRecords.setSelectedTableObject(tblRecords, selected);
 	}
 
+	/**
+	 * Queue the row of a record that has changed outside of the panel to be updated, without
+	 * reloading other rows. Can be called from any thread; rows changed in quick succession are
+	 * updated together on the EDT.
+	 *
+	 * @param key Record that has changed, or any record equal to it
+	 */
+	protected void recordChanged(T key) {
+		synchronized (changedRecords) {
+			// Rows are already due to be updated if other records are waiting
+			if (!changedRecords.add(key) || changedRecords.size() > 1) {
+				return;
+			}
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				updateChangedRecords();
+			}
+		});
+	}
+
+	/**
+	 * Update the rows of all records waiting to be updated, reloading the displayed record if it
+	 * is one of them. Must be called on the EDT.
+	 */
+	private void updateChangedRecords() {
+		final List<T> keys;
+		synchronized (changedRecords) {
+			keys = new ArrayList<>(changedRecords);
+			changedRecords.clear();
+		}
+		boolean loadedChanged = false;
+		for (final T key : keys) {
+			final T record = getCurrentRecord(key);
+			if (record == null) {
+				model_tblRecords.removeObject(key);
+			} else {
+				model_tblRecords.updateObject(record);
+			}
+			loadedChanged |= key.equals(loadedRecord);
+		}
+		if (loadedChanged) {
+			loadSelectedRecord();
+		}
+	}
+
+	/**
+	 * Get a copy of a record as it is currently held, for updating the row of a record that has
+	 * changed. Panels that report changes using recordChanged must override this.
+	 *
+	 * @param key Record that has changed, or any record equal to it
+	 * @return Copy of record safe to display, null if the record is no longer held
+	 */
+	protected T getCurrentRecord(T key) {
+		throw new IllegalStateException("Unsupported operation");
+	}
+
 	/**
 	 * Validate and save a new record using structures relevant to record type.
 	 *
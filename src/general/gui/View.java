@@ -5,7 +5,8 @@ import javax.swing.JButton;
 /**
  * Interface for handling a View. A view is defined as something that should have an initialisation
  * and refresh behaviour. The implementation should dictate exact behaviour but it is assumed that
- * initialisation will occur when a view is being made visible and a refresh occurs frequently.
+ * initialisation will occur when a view is being made visible and a refresh occurs whenever what
+ * it displays may have changed, either periodically or when told of a change.
  *
  * @author David Jones [dsj1n15]
  */
@@ -1,12 +1,22 @@
 package general.model;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import general.utility.SerializationUtils;
@@ -25,14 +35,42 @@ import general.utility.SerializationUtils;
  * location for each message (clients). It should be noted that the comms class does not deal with
  * interpretation of messages; this should be handled by an appropriate message handler.
  *
+ * Comms can optionally be pooled. A pooled comms keeps a single long-lived connection per peer
+ * which carries length prefixed message frames in both directions. Accepted pooled connections
+ * are registered against the remote address of their socket, never an address reported by the
+ * peer, and messages received on a pooled connection have the address of the connection as their
+ * sender so that replies to that sender reuse it. The message server accepts both pooled
+ * connections and single message connections so pooled and non-pooled comms can communicate. The
+ * server can either be a blocking server, where each pooled connection is read by its own thread,
+ * or a selector server where a single thread reads partial frames from all connections. Frames
+ * start with the identifier of the codec used to encode the message; Java serialisation is used
+ * unless another codec is set, and frames from any registered codec can be received.
+ *
  * @author David Jones [dsj1n15]
  */
 public class Comms {
+	// Header written at the start of a pooled connection, cannot be confused with the
+	// stream header of a single serialised message (0xACED)
+	static final int CONNECTION_MAGIC = 0x53534D43;
+	// Largest frame accepted on a pooled connection
+	static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
 	// Locations
 	private final InetSocketAddress source;
 	private final InetSocketAddress defaultDestination;
+	// Whether long-lived connections should be used for sending
+	private final boolean pooled;
+	// Open connections keyed by the address of the peer's server, or the remote address of
+	// accepted connections
+	private final Map<InetSocketAddress, Connection> connections = new ConcurrentHashMap<>();
+	private final Object connectionLock = new Object();
+	// Codec used to encode sent frames and all codecs that received frames can use
+	private volatile MessageCodec codec;
+	private final Map<Byte, MessageCodec> codecs = new ConcurrentHashMap<>();
+	// Thread safe queue of messages received
+	private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
 	// Message receiver
-	private final MessageReceiver server;
+	private final Thread server;
 
 	/**
 	 * Instantiate comms with a source address and no default.
@@ -50,22 +88,97 @@ public class Comms {
 	 * @param defaultDestination The address to which undirected messages are sent
 	 */
 	public Comms(InetSocketAddress source, InetSocketAddress defaultDestination) {
+		this(source, defaultDestination, false);
+	}
+
+	/**
+	 * Instantiate comms with a source address, a default address and a choice of whether
+	 * connections should be pooled. The server uses a thread that blocks whilst accepting
+	 * connections.
+	 *
+	 * @param source The address on which the server is hosted and messages are tagged with
+	 * @param defaultDestination The address to which undirected messages are sent
+	 * @param pooled Whether a single long-lived connection should be kept per peer
+	 */
+	public Comms(InetSocketAddress source, InetSocketAddress defaultDestination, boolean pooled) {
+		this(source, defaultDestination, pooled, ServerType.BLOCKING);
+	}
+
+	/**
+	 * Instantiate comms with a source address, a default address, a choice of whether
+	 * connections should be pooled and the type of server that should receive messages.
+	 *
+	 * @param source The address on which the server is hosted and messages are tagged with
+	 * @param defaultDestination The address to which undirected messages are sent
+	 * @param pooled Whether a single long-lived connection should be kept per peer
+	 * @param serverType How the hosted server should handle connections
+	 */
+	public Comms(InetSocketAddress source, InetSocketAddress defaultDestination, boolean pooled,
+			ServerType serverType) {
 		// Validate arguments
 		if (source == null) {
 			throw new IllegalArgumentException("No Client Address - Server not being hosted");
 		}
+		// Java serialisation is always available
+		setCodec(new JavaMessageCodec());
 		// Start a socket server listening for messages
 		try {
 			// Start a listening server
-			server = new MessageReceiver(source.getPort());
+			final int port;
+			if (serverType == ServerType.SELECTOR) {
+				final SelectorReceiver receiver = new SelectorReceiver(this, source.getPort());
+				port = receiver.getPort();
+				server = receiver;
+			} else {
+				final MessageReceiver receiver = new MessageReceiver(source.getPort());
+				port = receiver.getPort();
+				server = receiver;
+			}
 			server.start();
 			// Update port number of source in case of dynamic assignment
-			this.source = new InetSocketAddress(source.getAddress(), server.getPort());
+			this.source = new InetSocketAddress(source.getAddress(), port);
 		} catch(BindException e) {
 			throw new IllegalArgumentException("Port number in use - Server not being hosted");
 		}
 		// Remember default location
 		this.defaultDestination = defaultDestination;
+		this.pooled = pooled;
+	}
+
+	/**
+	 * @return The address on which the server is hosted and messages are tagged with
+	 */
+	public InetSocketAddress getSource() {
+		return source;
+	}
+
+	/**
+	 * @return Whether a single long-lived connection is kept per peer
+	 */
+	public boolean isPooled() {
+		return pooled;
+	}
+
+	/**
+	 * Set the codec used to encode frames sent on pooled connections. The codec is also registered
+	 * so that frames encoded by it can be received. Previously set codecs remain registered for
+	 * receiving. Single message connections always use Java serialisation.
+	 *
+	 * @param codec Codec to use
+	 */
+	public void setCodec(MessageCodec codec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("Codec cannot be null");
+		}
+		codecs.put(codec.getId(), codec);
+		this.codec = codec;
+	}
+
+	/**
+	 * @return Codec used to encode frames sent on pooled connections
+	 */
+	public MessageCodec getCodec() {
+		return codec;
 	}
 
 	/**
@@ -79,9 +192,11 @@ public class Comms {
 	}
 
 	/**
-	 * Send a message object to a target destination using an object output stream. Data is
-	 * transferred using a socket connection. The message sender will be updated with the message
-	 * receiver address. The address of the message receiver is defined as the source address.
+	 * Send a message object to a target destination. If a connection to the destination is
+	 * already open (either because comms is pooled or because the destination connected using a
+	 * pooled comms) the message is written to it as a frame, otherwise a new socket connection is
+	 * used for the single message. The message sender will be updated with the message receiver
+	 * address. The address of the message receiver is defined as the source address.
 	 *
 	 * @param message Message object initialised with content
 	 * @param destination Address of destination socket
@@ -89,12 +204,52 @@ public class Comms {
 	 */
 	public boolean sendMessage(Message message, InetSocketAddress destination) {
 		System.out.println(String.format("[COMMS] Sending %s -> %s", message, destination));
+		// Attach message sender to message
+		message.setSender(source);
+		// Prefer an existing connection to the destination
+		Connection connection = connections.get(destination);
+		if (connection != null || pooled) {
+			try {
+				if (connection == null) {
+					connection = getConnection(destination);
+				}
+				connection.send(message);
+				return true;
+			} catch(IOException e) {
+				// Connection has failed, forget it so the next send reconnects
+				removeConnection(connection);
+				if (!pooled) {
+					// Destination is hosting a server so fall through to a single connection
+					return sendSingleMessage(message, destination);
+				}
+				// Peer may have restarted, attempt a single reconnect
+				try {
+					getConnection(destination).send(message);
+					return true;
+				} catch(IOException ex) {
+					System.err.println(String
+							.format("[COMMS] Failed sending %s : Could not connect to server",
+									message));
+					return false;
+				}
+			}
+		}
+		return sendSingleMessage(message, destination);
+	}
+
+	/**
+	 * Send a message object to a target destination using an object output stream over a new
+	 * socket connection that is closed after the single message.
+	 *
+	 * @param message Message object initialised with content
+	 * @param destination Address of destination socket
+	 * @return True if send successful, else false
+	 */
+	private boolean sendSingleMessage(Message message, InetSocketAddress destination) {
 		Socket client = null;
 		try {
 			// Connect to server
 			client = new Socket(destination.getAddress(), destination.getPort());
-			// Attach message sender to message
-			message.setSender(source);
 			// Write message to object output stream
 			SerializationUtils.serialize(message, client.getOutputStream());
 			return true;
@@ -124,12 +279,242 @@ public class Comms {
 		if (server == null) {
 			return null;
 		}
-		return server.getMessage();
+		return messages.take();
+	}
+
+	/**
+	 * Get the open connection to a destination, opening a new pooled connection if one does not
+	 * exist.
+	 *
+	 * @param destination Address of destination server
+	 * @return Open connection to destination
+	 * @throws IOException Unable to connect to destination
+	 */
+	private Connection getConnection(InetSocketAddress destination) throws IOException {
+		synchronized (connectionLock) {
+			Connection connection = connections.get(destination);
+			if (connection == null) {
+				final Socket socket = new Socket(destination.getAddress(), destination.getPort());
+				final SocketConnection socketConnection =
+						new SocketConnection(socket, destination);
+				socketConnection.writeHeader();
+				connections.put(destination, socketConnection);
+				socketConnection.start();
+				connection = socketConnection;
+			}
+			return connection;
+		}
+	}
+
+	/**
+	 * Register an accepted pooled connection so messages sent to its address reuse it.
+	 *
+	 * @param connection Connection accepted
+	 */
+	void addConnection(Connection connection) {
+		connections.put(connection.getAddress(), connection);
+	}
+
+	/**
+	 * Remove all references to a connection and close it.
+	 *
+	 * @param connection Connection to remove, ignored if null
+	 */
+	void removeConnection(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		final Iterator<Connection> itr = connections.values().iterator();
+		while (itr.hasNext()) {
+			if (itr.next() == connection) {
+				itr.remove();
+			}
+		}
+		connection.close();
+	}
+
+	/**
+	 * Encode a message as the payload of a single frame using the current codec.
+	 *
+	 * @param message Message to encode
+	 * @return Encoded message, prefixed with the codec identifier
+	 * @throws IOException Unable to encode message
+	 */
+	byte[] encodeFrame(Message message) throws IOException {
+		final MessageCodec codec = this.codec;
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(codec.getId());
+		codec.encode(message, baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Decode the payload of a single frame using the codec identified at its start.
+	 *
+	 * @param frame Frame payload
+	 * @return Decoded message, null on error
+	 */
+	Message decodeFrame(byte[] frame) {
+		if (frame.length == 0) {
+			System.err.println("[Server] : Empty frame");
+			return null;
+		}
+		final MessageCodec codec = codecs.get(frame[0]);
+		if (codec == null) {
+			System.err.println(String.format("[Server] : Unknown codec %d", frame[0]));
+			return null;
+		}
+		try {
+			return codec.decode(new ByteArrayInputStream(frame, 1, frame.length - 1));
+		} catch(IOException e) {
+			System.err.println(String.format("[Server] : Decoding failed - %s", e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Store a message received on a pooled connection. The sender of the message is replaced by
+	 * the address of the connection so replies reuse it; the address claimed by the peer is not
+	 * trusted.
+	 *
+	 * @param object Decoded frame
+	 * @param connection Connection the frame was received on
+	 */
+	void receiveFrame(Object object, Connection connection) {
+		if (object instanceof Message) {
+			final Message message = (Message) object;
+			message.setSender(connection.getAddress());
+			addMessage(message);
+		} else {
+			System.err.println(String.format("[Server] : Expected: %s Got: %s", Message.class,
+					object == null ? null : object.getClass()));
+		}
+	}
+
+	/**
+	 * Add a message to the queue of received messages.
+	 *
+	 * @param message Message received
+	 */
+	void addMessage(Message message) {
+		messages.add(message);
+	}
+
+	/**
+	 * A long-lived socket connection carrying length prefixed message frames. Writes are
+	 * synchronised so multiple threads can send on the same connection; reads happen on a
+	 * dedicated thread that places received messages in the message queue.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	class SocketConnection extends Thread implements Connection {
+		private final Socket socket;
+		private final InetSocketAddress address;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		/**
+		 * Wrap a socket connected to a server.
+		 *
+		 * @param socket Connected socket
+		 * @param address Address of server connected to
+		 * @throws IOException Unable to open socket streams
+		 */
+		public SocketConnection(Socket socket, InetSocketAddress address) throws IOException {
+			this(socket, address, new BufferedInputStream(socket.getInputStream()));
+		}
+
+		/**
+		 * Wrap an accepted socket whose input has already been partially read.
+		 *
+		 * @param socket Accepted socket
+		 * @param in Input stream of socket positioned after the connection header
+		 * @throws IOException Unable to open socket streams
+		 */
+		public SocketConnection(Socket socket, BufferedInputStream in) throws IOException {
+			this(socket, (InetSocketAddress) socket.getRemoteSocketAddress(), in);
+		}
+
+		/**
+		 * Wrap a connected socket.
+		 *
+		 * @param socket Connected socket
+		 * @param address Address connection is known by
+		 * @param in Input stream of socket
+		 * @throws IOException Unable to open socket streams
+		 */
+		private SocketConnection(Socket socket, InetSocketAddress address, BufferedInputStream in)
+				throws IOException {
+			this.socket = socket;
+			this.address = address;
+			this.in = new DataInputStream(in);
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			socket.setTcpNoDelay(true);
+			setDaemon(true);
+		}
+
+		/**
+		 * Write the header identifying the connection as pooled.
+		 *
+		 * @throws IOException Unable to write to socket
+		 */
+		public synchronized void writeHeader() throws IOException {
+			out.writeInt(CONNECTION_MAGIC);
+			out.flush();
+		}
+
+		@Override
+		public void send(Message message) throws IOException {
+			final byte[] frame = encodeFrame(message);
+			synchronized (this) {
+				out.writeInt(frame.length);
+				out.write(frame);
+				out.flush();
+			}
+		}
+
+		@Override
+		public InetSocketAddress getAddress() {
+			return address;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					// Read length prefix followed by frame
+					final int length = in.readInt();
+					if (length < 0 || length > MAX_FRAME_LENGTH) {
+						System.err.println("[Server] : Invalid frame length, closing connection");
+						break;
+					}
+					final byte[] frame = new byte[length];
+					in.readFully(frame);
+					receiveFrame(decodeFrame(frame), this);
+				}
+			} catch(EOFException e) {
+				// Peer closed connection
+			} catch(IOException e) {
+				// Connection lost or closed locally
+			}
+			removeConnection(this);
+		}
+
+		@Override
+		public void close() {
+			try {
+				socket.close();
+			} catch(IOException e) {
+				// close failed, ignore
+			}
+		}
+
 	}
 
 	/**
 	 * A class which hosts a socket server, waiting for Message objects. When a Message is received
-	 * it is placed in a thread safe queue ready for handling.
+	 * it is placed in a thread safe queue ready for handling. Connections starting with the pooled
+	 * connection header are kept open and read on their own thread.
 	 *
 	 * @author David Jones [dsj1n15]
 	 *
@@ -137,8 +522,6 @@ public class Comms {
 	class MessageReceiver extends Thread {
 		// Socket to receive connections
 		private ServerSocket serverSocket;
-		// Thread safe queue of messages recieved
-		private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
 
 		/**
 		 * Start a server that expects Message objects
@@ -160,17 +543,31 @@ public class Comms {
 		public void run() {
 			while (true) {
 				Socket server = null;
+				boolean keepOpen = false;
 				try {
 					// Wait for connection
 					server = serverSocket.accept();
+					// Peek at header to determine connection type
+					final BufferedInputStream is = new BufferedInputStream(server.getInputStream());
+					is.mark(4);
+					final int header = new DataInputStream(is).readInt();
+					if (header == CONNECTION_MAGIC) {
+						// Pooled connection, read frames on its own thread
+						final SocketConnection connection = new SocketConnection(server, is);
+						addConnection(connection);
+						connection.start();
+						keepOpen = true;
+						continue;
+					}
+					is.reset();
 					// Receive message object
-					final Object object = SerializationUtils.deserialize(server.getInputStream());
+					final Object object = SerializationUtils.deserialize(is);
 					if (object != null) {
 						// Verify message object - ignore if not message
 						if (object instanceof Message) {
 							final Message message = (Message) object;
 							// Add message to queue (thread-safe)
-							messages.add(message);
+							addMessage(message);
 						} else {
 							System.err.println(String.format("[Server] : Expected: %s Got: %s",
 									Message.class, object.getClass()));
@@ -181,12 +578,16 @@ public class Comms {
 				} catch(SocketTimeoutException s) {
 					System.err.println("[Server] : Socket timed out!");
 					break;
+				} catch(EOFException e) {
+					System.err.println("[Server] : Connection closed before message received");
 				} catch(IOException e) {
 					System.err.println("[Server] : Error getting connection");
 					break;
 				} finally {
 					try {
-						server.close();
+						if (server != null && !keepOpen) {
+							server.close();
+						}
 					} catch(IOException e) {
 						// close failed, ignore
 					}
@@ -201,17 +602,17 @@ public class Comms {
 			return serverSocket.getLocalPort();
 		}
 
-		/**
-		 * Get the last message stored in the message receiver, removing from the queue. If no
-		 * message is in the queue the thread will block until a message is received or the thread
-		 * is interrupted.
-		 *
-		 * @return The last message received
-		 * @throws InterruptedException A thread interrupt was detected, stop waiting for message
-		 */
-		public Message getMessage() throws InterruptedException {
-			return messages.take();
-		}
+	}
 
+	/**
+	 * Enumeration of the server implementations that can host comms.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static enum ServerType {
+		// A single thread accepting connections, pooled connections read on their own thread
+		BLOCKING,
+		// A single thread multiplexing all connections using a selector
+		SELECTOR;
 	}
 }
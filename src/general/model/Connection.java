@@ -0,0 +1,33 @@
+package general.model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Interface for a long-lived connection to a peer that carries message frames. Implementations
+ * should allow sending from multiple threads.
+ *
+ * @author David Jones [dsj1n15]
+ */
+interface Connection {
+
+	/**
+	 * Write a message to the connection as a single frame.
+	 *
+	 * @param message Message to send
+	 * @throws IOException Unable to write to connection
+	 */
+	public abstract void send(Message message) throws IOException;
+
+	/**
+	 * @return Address the connection is known by: the server connected to for connections that
+	 *         were opened locally, or the remote address of the socket for accepted connections
+	 */
+	public abstract InetSocketAddress getAddress();
+
+	/**
+	 * Close the connection, no further messages will be sent or received.
+	 */
+	public abstract void close();
+
+}
@@ -0,0 +1,45 @@
+package general.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Message codec that uses standard Java serialisation. This is always available to comms and is
+ * used when no other codec has been set.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class JavaMessageCodec implements MessageCodec {
+	public static final byte ID = 0;
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public void encode(Message message, OutputStream os) throws IOException {
+		final ObjectOutputStream oos = new ObjectOutputStream(os);
+		oos.writeObject(message);
+		oos.flush();
+	}
+
+	@Override
+	public Message decode(InputStream is) throws IOException {
+		final ObjectInputStream ois = new ObjectInputStream(is);
+		try {
+			final Object object = ois.readObject();
+			if (object instanceof Message) {
+				return (Message) object;
+			}
+			throw new IOException(String.format("Expected: %s Got: %s", Message.class,
+					object == null ? null : object.getClass()));
+		} catch(ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+}
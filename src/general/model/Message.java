@@ -18,6 +18,8 @@ public class Message implements Serializable {
 	protected final ErrorBuilder eb;
 	// The sender of the message, this should be the server for replies
 	private InetSocketAddress sender;
+	// Identifier shared by a request and its reply, 0 if not a tracked request
+	private long correlationId;
 
 	/**
 	 * Initialise a message with only a command.
@@ -67,6 +69,20 @@ public class Message implements Serializable {
 		this.sender = sender;
 	}
 
+	/**
+	 * @return Identifier shared by a request and its reply, 0 if not a tracked request
+	 */
+	public long getCorrelationId() {
+		return correlationId;
+	}
+
+	/**
+	 * @param correlationId Identifier shared by a request and its reply
+	 */
+	public void setCorrelationId(long correlationId) {
+		this.correlationId = correlationId;
+	}
+
 	@Override
 	public String toString() {
 		return String.format("[Message %s@%s]", command, hashCode());
@@ -81,7 +97,12 @@ public class Message implements Serializable {
 		// Client
 		SUBMIT_LOGIN, REGISTER_NEW_CUSTOMER, GET_POSTCODES, GET_EXISTING_ORDERS, GET_DISH_STOCK, SUBMIT_ORDER,
 		// Business
-		LOGIN_RESPONSE, REGISTER_RESPONSE, UPDATE_POSTCODES, UPDATE_EXISTING_ORDERS, UPDATE_DISH_STOCK, ORDER_RESPONSE, MODIFY_CUSTOMER;
+		LOGIN_RESPONSE, REGISTER_RESPONSE, UPDATE_POSTCODES, UPDATE_EXISTING_ORDERS, UPDATE_DISH_STOCK, ORDER_RESPONSE, MODIFY_CUSTOMER,
+		// Subscriptions (client subscribes, business pushes)
+		SUBSCRIBE_DISH_STOCK, UNSUBSCRIBE_DISH_STOCK, DISH_STOCK_CHANGES,
+		SUBSCRIBE_ORDER_STATUS, UNSUBSCRIBE_ORDER_STATUS, ORDER_STATUS_CHANGES,
+		// Order history (client requests, business responds)
+		GET_ARCHIVED_ORDERS, UPDATE_ARCHIVED_ORDERS;
 	}
 
 }
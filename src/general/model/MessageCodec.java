@@ -0,0 +1,42 @@
+package general.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Interface for an encoding of messages sent as frames on pooled connections. Each codec has an
+ * identifier that is written at the start of every frame it encodes so that a receiving comms can
+ * select the matching codec. Implementations must be safe to use from multiple threads and must
+ * not close the given streams.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public interface MessageCodec {
+
+	/**
+	 * @return Identifier written at the start of frames encoded by this codec, must be unique
+	 *         between codecs registered with the same comms
+	 */
+	public abstract byte getId();
+
+	/**
+	 * Write a message to an output stream.
+	 *
+	 * @param message Message to encode
+	 * @param os Output stream to target
+	 * @throws IOException Unable to encode message
+	 */
+	public abstract void encode(Message message, OutputStream os) throws IOException;
+
+	/**
+	 * Read a message from an input stream. The stream holds a single whole frame, so the number of
+	 * bytes available is the number of bytes left in the frame.
+	 *
+	 * @param is Input stream to get message from
+	 * @return Decoded message
+	 * @throws IOException Data is not a valid encoding of a message
+	 */
+	public abstract Message decode(InputStream is) throws IOException;
+
+}
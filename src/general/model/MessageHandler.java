@@ -1,31 +1,90 @@
 package general.model;
 
-import java.util.Collection;
-import java.util.HashSet;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract class to handle the control flow of message handling for messages received by a single
  * instance of Comms. Implementations of MessageHandler should dictates how a received message is
  * handled.
  *
+ * Messages can be dispatched on a new thread per message or using an executor. Executor dispatch
+ * bounds the number of messages that are being handled or waiting to be handled; when the bound is
+ * reached no further messages are taken from comms until a message has been handled (messages wait
+ * in the comms queue). On stop, messages already dispatched to an executor are allowed to finish
+ * before the handler thread completes.
+ *
  * @author David Jones [dsj1n15]
  */
 public abstract class MessageHandler implements Runnable {
+	// Time to wait for dispatched messages to be handled when stopping
+	private static final int DRAIN_TIMEOUT = 5000; // ms
+
 	// Comms being handled
 	protected final Comms comms;
-	private final Collection<Thread> threads = new HashSet<>();
+	// Dispatch configuration
+	private final DispatchMode dispatchMode;
+	private final int workers;
+	private final int queueCapacity;
+	// Threads in use when dispatching a thread per message
+	private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
 
 	/**
-	 * Instantiate general message handler.
+	 * Instantiate general message handler that handles each message on a new thread.
 	 *
 	 * @param comms Comms instance to handle
 	 */
 	public MessageHandler(Comms comms) {
+		this(comms, DispatchMode.THREAD_PER_MESSAGE, 0, 0);
+	}
+
+	/**
+	 * Instantiate general message handler with a given dispatch configuration.
+	 *
+	 * @param comms Comms instance to handle
+	 * @param dispatchMode How received messages should be dispatched for handling
+	 * @param workers Number of worker threads (bounded pool only)
+	 * @param queueCapacity Number of messages that can wait for a worker (bounded pool), or the
+	 *        number of messages that can be handled at once (virtual threads)
+	 */
+	public MessageHandler(Comms comms, DispatchMode dispatchMode, int workers,
+			int queueCapacity) {
+		if (dispatchMode == DispatchMode.BOUNDED_POOL && workers <= 0) {
+			throw new IllegalArgumentException("Bounded pool requires at least one worker");
+		}
+		if (dispatchMode != DispatchMode.THREAD_PER_MESSAGE && queueCapacity <= 0) {
+			throw new IllegalArgumentException("Queue capacity must be positive");
+		}
 		this.comms = comms;
+		this.dispatchMode = dispatchMode;
+		this.workers = workers;
+		this.queueCapacity = queueCapacity;
 	}
 
 	@Override
 	public void run() {
+		if (dispatchMode == DispatchMode.THREAD_PER_MESSAGE) {
+			runThreadPerMessage();
+		} else {
+			runExecutor();
+		}
+	}
+
+	/**
+	 * Handle all messages in the message queue, starting a new thread for each message.
+	 */
+	private void runThreadPerMessage() {
 		// Handle all messages in message queue
 		while (comms != null) {
 			Message rx;
@@ -41,14 +100,9 @@ public abstract class MessageHandler implements Runnable {
 			final Thread thread = new Thread(new Runnable() {
 				@Override
 				public void run() {
-					try {
-						handleMessage(rx);
-					} catch (Exception e) {
-						System.err.println(String.format("[MSG HANDLER] : Handling failed - %s",
-								e.getMessage()));
-					}
+					dispatch(rx);
 					// Remove thread from ongoing threads once handled
-					threads.remove(this);
+					threads.remove(Thread.currentThread());
 				}
 			});
 			// Keep track of thread
@@ -70,6 +124,95 @@ public abstract class MessageHandler implements Runnable {
 		}
 	}
 
+	/**
+	 * Handle all messages in the message queue using an executor. A permit is required for each
+	 * dispatched message so the number of outstanding messages is bounded; waiting for a permit
+	 * applies backpressure to the comms queue. The permit is taken before a message is received so
+	 * a received message is always dispatched.
+	 */
+	private void runExecutor() {
+		final ExecutorService executor = createExecutor();
+		final int maxOutstanding = (dispatchMode == DispatchMode.BOUNDED_POOL)
+				? workers + queueCapacity : queueCapacity;
+		final Semaphore permits = new Semaphore(maxOutstanding);
+		while (comms != null) {
+			Message rx;
+			try {
+				// Wait for capacity before taking a message
+				permits.acquire();
+			} catch(InterruptedException e) {
+				// Exit loop, stopping message handler
+				break;
+			}
+			try {
+				rx = comms.receiveMessage();
+			} catch(InterruptedException e) {
+				// Exit loop, stopping message handler
+				permits.release();
+				break;
+			}
+			// Print acknowledgement
+			System.out.println(String.format("[MSG HANDLER] : Received %s", rx));
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						dispatch(rx);
+					} finally {
+						permits.release();
+					}
+				}
+			});
+		}
+		// Let dispatched messages drain before stopping
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				// Interrupt message handling in case of long behaviour
+				executor.shutdownNow();
+				executor.awaitTermination(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		} catch(InterruptedException e) {
+			System.err.println("[MSG HANDLER] : Unable to wait for message handling threads");
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Create the executor used for dispatch. Virtual threads are used if the runtime supports
+	 * them, otherwise a cached thread pool is used with the same bound on outstanding messages.
+	 *
+	 * @return A new executor
+	 */
+	private ExecutorService createExecutor() {
+		if (dispatchMode == DispatchMode.VIRTUAL_THREADS) {
+			try {
+				final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) method.invoke(null);
+			} catch(ReflectiveOperationException e) {
+				System.err.println("[MSG HANDLER] : Virtual threads unsupported, using thread pool");
+				return Executors.newCachedThreadPool(new HandlerThreadFactory());
+			}
+		}
+		return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new HandlerThreadFactory(),
+				new BlockingPolicy());
+	}
+
+	/**
+	 * Handle a single message, reporting any failure.
+	 *
+	 * @param rx Message to handle
+	 */
+	private void dispatch(Message rx) {
+		try {
+			handleMessage(rx);
+		} catch(Exception e) {
+			System.err.println(String.format("[MSG HANDLER] : Handling failed - %s",
+					e.getMessage()));
+		}
+	}
+
 	/**
 	 * Cast given message to an object message using a checked cast. If message is not of object
 	 * message an exception is thrown.
@@ -87,12 +230,14 @@ public abstract class MessageHandler implements Runnable {
 	}
 
 	/**
-	 * Send a new message to the return address of another message.
+	 * Send a new message to the return address of another message. The reply carries the
+	 * correlation identifier of the message being replied to.
 	 *
 	 * @param rx Message that is being replied to
 	 * @param tx New message to transmit
 	 */
 	protected void reply(Message rx, Message tx) {
+		tx.setCorrelationId(rx.getCorrelationId());
 		comms.sendMessage(tx, rx.getSender());
 	}
 
@@ -106,4 +251,58 @@ public abstract class MessageHandler implements Runnable {
 	 */
 	protected abstract void handleMessage(Message message);
 
+	/**
+	 * Thread factory naming message handling threads.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class HandlerThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable, "MessageHandler-" + count.incrementAndGet());
+		}
+
+	}
+
+	/**
+	 * Policy waiting for space in the queue of a bounded pool rather than rejecting a message. A
+	 * permit is released as a message finishes, before its worker takes the next message from the
+	 * queue, so the queue can briefly be full whilst a permit is available.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class BlockingPolicy implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Message handler stopped");
+			}
+			try {
+				executor.getQueue().put(task);
+			} catch(InterruptedException e) {
+				// Handle message on this thread rather than dropping it, then stop
+				task.run();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * Enumeration of the ways received messages can be dispatched for handling.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	public static enum DispatchMode {
+		// A new thread is started for every message
+		THREAD_PER_MESSAGE,
+		// A fixed number of threads with a bounded queue of waiting messages
+		BOUNDED_POOL,
+		// A virtual thread per message with a bounded number of messages at once
+		VIRTUAL_THREADS;
+	}
+
 }
@@ -1,5 +1,6 @@
 package general.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -96,6 +97,13 @@ public class ObjectMessage extends Message {
 		}
 	}
 
+	/**
+	 * @return View of all attached objects keyed by identifier
+	 */
+	public Map<String, Object> getObjects() {
+		return Collections.unmodifiableMap(objects);
+	}
+
 	/**
 	 * Add an object to the messages stored map.
 	 *
@@ -1,15 +1,46 @@
 package general.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
- * Class QuantityMap that extends HashMap to allow key mappings with specific functionality. Keys
- * are generic, whereas quantities are defined and hard-coded as Doubles. Extended functionality
- * allows relative quantity changes and forces quantities to be positive.
+ * Class QuantityMap that maps generic keys to quantities. Quantities are held as primitive doubles
+ * in an open addressing table so that reading, changing and iterating quantities does not box;
+ * the Map interface is still provided with quantities as Doubles for existing users. Extended
+ * functionality allows relative quantity changes and forces quantities to be positive. A null
+ * quantity is held as NaN, so a NaN quantity is returned by the Map interface as null.
+ *
+ * Quantities can be iterated without allocation by index:
+ *
+ * <pre>
+ * for (int i = map.nextIndex(-1); i >= 0; i = map.nextIndex(i)) {
+ * 	total += map.quantityAt(i);
+ * }
+ * </pre>
+ *
+ * Indexes are invalidated if a key is added to the map whilst iterating.
+ *
+ * The class extends HashMap only so that maps persisted before quantities were held as primitives
+ * can still be read; such maps are read into the inherited table which is then moved into this
+ * map's own table and emptied. The inherited table is never used otherwise.
  *
  * @param <K> The type of keys maintained by this map
  *
@@ -17,13 +48,74 @@ import java.util.Map;
  */
 public class QuantityMap<K> extends HashMap<K, Double> implements Serializable {
 	private static final long serialVersionUID = 1561977150839009960L;
+	// Serialised form, the number of entries followed by each key and quantity
+	private static final ObjectStreamField[] serialPersistentFields =
+			{new ObjectStreamField("entries", int.class)};
+	// Table markers, an empty slot is null
+	private static final Object NULL_KEY = new Object();
+	private static final Object REMOVED = new Object();
+	private static final int INITIAL_CAPACITY = 8;
+	// Table, a quantity is held at the same index as its key
+	private transient Object[] keys;
+	private transient double[] quantities;
+	private transient int size;
+	private transient int used; // Slots holding a key or removed marker
+
+	/**
+	 * Instantiate an empty quantity map.
+	 */
+	public QuantityMap() {
+		initialise(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create an empty table.
+	 *
+	 * @param capacity Table capacity, a power of two
+	 */
+	private void initialise(int capacity) {
+		keys = new Object[capacity];
+		quantities = new double[capacity];
+		size = 0;
+		used = 0;
+	}
+
+	/**
+	 * Get the quantity for a key without boxing.
+	 *
+	 * @param key Key to get quantity for
+	 * @return Quantity for key, zero if the key has no quantity
+	 */
+	public double getQuantity(Object key) {
+		final int index = indexOf(key);
+		if (index < 0 || Double.isNaN(quantities[index])) {
+			return 0;
+		}
+		return quantities[index];
+	}
+
+	/**
+	 * Set the quantity for a key without boxing.
+	 *
+	 * @param key Key to set quantity for
+	 * @param quantity Quantity to set, zero or positive
+	 */
+	public void setQuantity(K key, double quantity) {
+		if (quantity < 0) {
+			throw new IllegalArgumentException("Quantity must be zero or positive");
+		}
+		store(key, quantity);
+	}
 
 	@Override
 	public Double put(K key, Double quantity) {
 		if (quantity != null && quantity < 0) {
 			throw new IllegalArgumentException("Quantity must be zero or positive");
 		}
-		return super.put(key, quantity);
+		final int index = insert(key);
+		final Double previous = box(quantities[index]);
+		quantities[index] = (quantity == null ? Double.NaN : quantity);
+		return previous;
 	}
 
 	/**
@@ -42,7 +134,7 @@ public class QuantityMap<K> extends HashMap<K, Double> implements Serializable {
 	 * @param key Key to increment quantity for
 	 * @return Quantity value after change
 	 */
-	public Double increment(K key) {
+	public double increment(K key) {
 		return relativeChange(key, 1.0);
 	}
 
@@ -52,8 +144,8 @@ public class QuantityMap<K> extends HashMap<K, Double> implements Serializable {
 	 * @param key Key to decrement quantity for
 	 * @return Quantity value after change
 	 */
-	public Double decrement(K key) {
-		return relativeChange(key, 1.0);
+	public double decrement(K key) {
+		return relativeChange(key, -1.0);
 	}
 
 	/**
@@ -64,25 +156,626 @@ public class QuantityMap<K> extends HashMap<K, Double> implements Serializable {
 	 * @param amount Amount to change quantity by
 	 * @return Quantity value after change
 	 */
-	public Double relativeChange(K key, Double amount) {
-		Double quantity = get(key);
-		if (quantity == null) {
-			quantity = 0.0;
+	public double relativeChange(K key, double amount) {
+		final int index = insert(key);
+		final double quantity = (Double.isNaN(quantities[index]) ? 0 : quantities[index]) + amount;
+		if (quantity < 0) {
+			throw new IllegalArgumentException("Quantity must be zero or positive");
 		}
-		return put(key, quantity + amount);
+		quantities[index] = quantity;
+		return quantity;
 	}
 
 	/**
 	 * @return A list of entries converted to single quantities
 	 */
 	public List<Quantity<K>> getList() {
-		final List<Quantity<K>> list = new ArrayList<>(size());
-		for (final Map.Entry<K, Double> entry : entrySet()) {
-			list.add(new Quantity<>(entry.getKey(), entry.getValue()));
+		final List<Quantity<K>> list = new ArrayList<>(size);
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			list.add(new Quantity<>(keyAt(i), quantityAt(i)));
 		}
 		return list;
 	}
 
+	/**
+	 * Get the index of the next key in the table.
+	 *
+	 * @param index Index to search after, -1 to start from the first key
+	 * @return Index of the next key, -1 if there are no more keys
+	 */
+	public int nextIndex(int index) {
+		for (int i = index + 1; i < keys.length; i++) {
+			if (keys[i] != null && keys[i] != REMOVED) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index Index of a key, as returned by {@link #nextIndex(int)}
+	 * @return Key at index
+	 */
+	@SuppressWarnings("unchecked")
+	public K keyAt(int index) {
+		return (K) unmask(keys[index]);
+	}
+
+	/**
+	 * @param index Index of a key, as returned by {@link #nextIndex(int)}
+	 * @return Quantity of key at index, NaN if the key has no quantity
+	 */
+	public double quantityAt(int index) {
+		return quantities[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public Double get(Object key) {
+		final int index = indexOf(key);
+		return index < 0 ? null : box(quantities[index]);
+	}
+
+	@Override
+	public Double getOrDefault(Object key, Double defaultValue) {
+		final int index = indexOf(key);
+		return index < 0 ? defaultValue : box(quantities[index]);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (value != null && !(value instanceof Double)) {
+			return false;
+		}
+		final double quantity = (value == null ? Double.NaN : (Double) value);
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			if (Double.compare(quantities[i], quantity) == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends Double> map) {
+		if (map instanceof QuantityMap) {
+			@SuppressWarnings("unchecked")
+			final QuantityMap<? extends K> other = (QuantityMap<? extends K>) map;
+			for (int i = other.nextIndex(-1); i >= 0; i = other.nextIndex(i)) {
+				store(other.keyAt(i), other.quantities[i]);
+			}
+		} else {
+			for (final Map.Entry<? extends K, ? extends Double> entry : map.entrySet()) {
+				put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public Double putIfAbsent(K key, Double value) {
+		final int index = indexOf(key);
+		if (index >= 0 && !Double.isNaN(quantities[index])) {
+			return quantities[index];
+		}
+		put(key, value);
+		return null;
+	}
+
+	@Override
+	public Double remove(Object key) {
+		final int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		final Double previous = box(quantities[index]);
+		removeAt(index);
+		return previous;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		final int index = indexOf(key);
+		if (index < 0 || !Objects.equals(box(quantities[index]), value)) {
+			return false;
+		}
+		removeAt(index);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, Double oldValue, Double newValue) {
+		final int index = indexOf(key);
+		if (index < 0 || !Objects.equals(box(quantities[index]), oldValue)) {
+			return false;
+		}
+		put(key, newValue);
+		return true;
+	}
+
+	@Override
+	public Double replace(K key, Double value) {
+		return containsKey(key) ? put(key, value) : null;
+	}
+
+	@Override
+	public Double computeIfAbsent(K key, Function<? super K, ? extends Double> function) {
+		final Double existing = get(key);
+		if (existing != null) {
+			return existing;
+		}
+		final Double value = function.apply(key);
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public Double computeIfPresent(K key,
+			BiFunction<? super K, ? super Double, ? extends Double> function) {
+		final Double existing = get(key);
+		if (existing == null) {
+			return null;
+		}
+		final Double value = function.apply(key, existing);
+		if (value == null) {
+			remove(key);
+		} else {
+			put(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public Double compute(K key,
+			BiFunction<? super K, ? super Double, ? extends Double> function) {
+		final Double value = function.apply(key, get(key));
+		if (value == null) {
+			remove(key);
+		} else {
+			put(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public Double merge(K key, Double value,
+			BiFunction<? super Double, ? super Double, ? extends Double> function) {
+		final Double existing = get(key);
+		final Double merged = (existing == null ? value : function.apply(existing, value));
+		if (merged == null) {
+			remove(key);
+		} else {
+			put(key, merged);
+		}
+		return merged;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super Double> action) {
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			action.accept(keyAt(i), box(quantities[i]));
+		}
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super Double, ? extends Double> function) {
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			final Double value = function.apply(keyAt(i), box(quantities[i]));
+			if (value != null && value < 0) {
+				throw new IllegalArgumentException("Quantity must be zero or positive");
+			}
+			quantities[i] = (value == null ? Double.NaN : value);
+		}
+	}
+
+	@Override
+	public void clear() {
+		initialise(INITIAL_CAPACITY);
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return new AbstractSet<K>() {
+			@Override
+			public Iterator<K> iterator() {
+				return new TableIterator<K>() {
+					@Override
+					protected K get(int index) {
+						return keyAt(index);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				final int index = indexOf(o);
+				if (index < 0) {
+					return false;
+				}
+				removeAt(index);
+				return true;
+			}
+
+			@Override
+			public void clear() {
+				QuantityMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Collection<Double> values() {
+		return new AbstractCollection<Double>() {
+			@Override
+			public Iterator<Double> iterator() {
+				return new TableIterator<Double>() {
+					@Override
+					protected Double get(int index) {
+						return box(quantities[index]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+
+			@Override
+			public void clear() {
+				QuantityMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<K, Double>> entrySet() {
+		return new AbstractSet<Map.Entry<K, Double>>() {
+			@Override
+			public Iterator<Map.Entry<K, Double>> iterator() {
+				return new TableIterator<Map.Entry<K, Double>>() {
+					@Override
+					protected Map.Entry<K, Double> get(int index) {
+						// Entry writes changes through to the map
+						return new AbstractMap.SimpleEntry<K, Double>(keyAt(index),
+								box(quantities[index])) {
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public Double setValue(Double value) {
+								put(getKey(), value);
+								return super.setValue(value);
+							}
+						};
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Map.Entry)) {
+					return false;
+				}
+				final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+				final int index = indexOf(entry.getKey());
+				return index >= 0 && Objects.equals(box(quantities[index]), entry.getValue());
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				if (!(o instanceof Map.Entry)) {
+					return false;
+				}
+				final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+				return QuantityMap.this.remove(entry.getKey(), entry.getValue());
+			}
+
+			@Override
+			public void clear() {
+				QuantityMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof QuantityMap)) {
+			return super.equals(o);
+		}
+		final QuantityMap<?> other = (QuantityMap<?>) o;
+		if (other.size != size) {
+			return false;
+		}
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			final int index = other.indexOf(unmask(keys[i]));
+			if (index < 0 || Double.compare(quantities[i], other.quantities[index]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		// Sum of entry hash codes as required by Map
+		int hash = 0;
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			hash += Objects.hashCode(unmask(keys[i]))
+					^ (Double.isNaN(quantities[i]) ? 0 : Double.hashCode(quantities[i]));
+		}
+		return hash;
+	}
+
+	@Override
+	public QuantityMap<K> clone() {
+		@SuppressWarnings("unchecked")
+		final QuantityMap<K> clone = (QuantityMap<K>) super.clone();
+		// HashMap copies entries into the inherited table of the clone, discard them
+		clone.clearInherited();
+		clone.keys = keys.clone();
+		clone.quantities = quantities.clone();
+		return clone;
+	}
+
+	/**
+	 * Empty the inherited table.
+	 */
+	private void clearInherited() {
+		super.clear();
+	}
+
+	/**
+	 * Find the index of a key in the table.
+	 *
+	 * @param key Key to find
+	 * @return Index of key, -1 if key is not in table
+	 */
+	private int indexOf(Object key) {
+		final Object masked = mask(key);
+		final int mask = keys.length - 1;
+		int index = hash(masked) & mask;
+		Object existing;
+		while ((existing = keys[index]) != null) {
+			if (existing == masked || (existing != REMOVED && masked.equals(existing))) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the index of a key in the table, adding the key if it is not in the table. An added key
+	 * has no quantity.
+	 *
+	 * @param key Key to find or add
+	 * @return Index of key
+	 */
+	private int insert(K key) {
+		final int existing = indexOf(key);
+		if (existing >= 0) {
+			return existing;
+		}
+		// Grow or purge removed markers so at least half the table is empty
+		if ((used + 1) * 2 > keys.length) {
+			rehash();
+		}
+		final Object masked = mask(key);
+		final int mask = keys.length - 1;
+		int index = hash(masked) & mask;
+		while (keys[index] != null && keys[index] != REMOVED) {
+			index = (index + 1) & mask;
+		}
+		if (keys[index] == null) {
+			used++;
+		}
+		keys[index] = masked;
+		quantities[index] = Double.NaN;
+		size++;
+		return index;
+	}
+
+	/**
+	 * Store a quantity for a key without checking it. The table may be recreated so the index of
+	 * the key must be found before the table is written to.
+	 *
+	 * @param key Key to store quantity for
+	 * @param quantity Quantity to store
+	 */
+	private void store(K key, double quantity) {
+		final int index = insert(key);
+		quantities[index] = quantity;
+	}
+
+	/**
+	 * Remove the key at an index, leaving a marker so that other keys can still be found.
+	 *
+	 * @param index Index of key
+	 */
+	private void removeAt(int index) {
+		keys[index] = REMOVED;
+		size--;
+	}
+
+	/**
+	 * Recreate the table with capacity for at least one more key, dropping removed markers.
+	 */
+	private void rehash() {
+		final Object[] oldKeys = keys;
+		final double[] oldQuantities = quantities;
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < (size + 1) * 4) {
+			capacity <<= 1;
+		}
+		initialise(capacity);
+		final int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null && oldKeys[i] != REMOVED) {
+				int index = hash(oldKeys[i]) & mask;
+				while (keys[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				quantities[index] = oldQuantities[i];
+				size++;
+				used++;
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the keys of the table.
+	 *
+	 * @param <T> The type returned for each key
+	 */
+	private abstract class TableIterator<T> implements Iterator<T> {
+		private int next = nextIndex(-1);
+		private int last = -1;
+
+		@Override
+		public boolean hasNext() {
+			return next >= 0;
+		}
+
+		@Override
+		public T next() {
+			if (next < 0) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = nextIndex(next);
+			return get(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			removeAt(last);
+			last = -1;
+		}
+
+		/**
+		 * @param index Index of key
+		 * @return Object to return for key
+		 */
+		protected abstract T get(int index);
+	}
+
+	/**
+	 * @param key Key to hash
+	 * @return Spread hash code of key
+	 */
+	private static int hash(Object key) {
+		final int hash = key.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @param key Key to store in table
+	 * @return Key, or marker if key is null
+	 */
+	private static Object mask(Object key) {
+		return key == null ? NULL_KEY : key;
+	}
+
+	/**
+	 * @param key Key stored in table
+	 * @return Key, or null if key is null marker
+	 */
+	private static Object unmask(Object key) {
+		return key == NULL_KEY ? null : key;
+	}
+
+	/**
+	 * @param quantity Quantity stored in table
+	 * @return Boxed quantity, or null if quantity is NaN
+	 */
+	private static Double box(double quantity) {
+		return Double.isNaN(quantity) ? null : quantity;
+	}
+
+	/**
+	 * Write the number of entries followed by each key and primitive quantity.
+	 *
+	 * @param out Stream to write to
+	 * @throws IOException Unable to write map
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		final ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("entries", size);
+		out.writeFields();
+		for (int i = nextIndex(-1); i >= 0; i = nextIndex(i)) {
+			out.writeObject(keyAt(i));
+			out.writeDouble(quantities[i]);
+		}
+	}
+
+	/**
+	 * Read entries written by {@link #writeObject(ObjectOutputStream)}, or move entries read into
+	 * the inherited table if the map was persisted before quantities were held as primitives.
+	 *
+	 * @param in Stream to read from
+	 * @throws IOException Unable to read map
+	 * @throws ClassNotFoundException Class of a key could not be found
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final ObjectInputStream.GetField fields = in.readFields();
+		initialise(INITIAL_CAPACITY);
+		if (fields.defaulted("entries")) {
+			for (final Map.Entry<K, Double> entry : super.entrySet()) {
+				put(entry.getKey(), entry.getValue());
+			}
+			super.clear();
+		} else {
+			final int entries = fields.get("entries", 0);
+			for (int i = 0; i < entries; i++) {
+				final K key = (K) in.readObject();
+				store(key, in.readDouble());
+			}
+		}
+	}
+
 	/**
 	 * Safely recreate a quantity map getting keys of a given type from an Object.
 	 *
@@ -95,12 +788,12 @@ public class QuantityMap<K> extends HashMap<K, Double> implements Serializable {
 		if (mapObj instanceof QuantityMap) {
 			final QuantityMap<?> mapCast = (QuantityMap<?>) mapObj;
 			final QuantityMap<T> mapType = new QuantityMap<>();
-			// Loop through given objects keyset
-			for (final Object object : mapCast.keySet()) {
+			// Loop through given objects keys
+			for (int i = mapCast.nextIndex(-1); i >= 0; i = mapCast.nextIndex(i)) {
 				// Store if key is of given type
-				final T type = clazz.cast(object);
+				final T type = clazz.cast(mapCast.keyAt(i));
 				if (type != null) {
-					mapType.put(type, mapCast.get(type));
+					mapType.store(type, mapCast.quantities[i]);
 				}
 			}
 			return mapType;
@@ -0,0 +1,148 @@
+package general.model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks requests sent through a comms instance that expect a reply. Each request is given a
+ * unique correlation identifier and a future that is completed by the reply carrying the same
+ * identifier. Any number of requests, including requests with the same command, can be
+ * outstanding at once. Requests without a reply within their timeout are completed exceptionally
+ * with a TimeoutException so replies that arrive late cannot satisfy a different request.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class RequestTracker {
+	// Comms used to send requests
+	private final Comms comms;
+	// Source of correlation identifiers, 0 is reserved for untracked messages
+	private final AtomicLong nextId = new AtomicLong(1);
+	// Requests waiting for a reply
+	private final Map<Long, PendingRequest> pending = new ConcurrentHashMap<>();
+	// Shared timer that expires requests
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * Instantiate a tracker for requests sent using a comms instance.
+	 *
+	 * @param comms Comms to send requests with
+	 */
+	public RequestTracker(Comms comms) {
+		this.comms = comms;
+		this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable, "RequestTracker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// Completed requests should not keep their expiry task queued
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Send a request to the default destination of comms.
+	 *
+	 * @param request Request to send
+	 * @param timeout Time to wait for a reply in milliseconds
+	 * @return Future completed with the reply
+	 */
+	public CompletableFuture<Message> send(Message request, long timeout) {
+		return send(request, null, timeout);
+	}
+
+	/**
+	 * Send a request to a destination. The request is given a new correlation identifier. If the
+	 * request cannot be sent the future is completed exceptionally with an IOException.
+	 *
+	 * @param request Request to send
+	 * @param destination Address of destination, null for the default destination
+	 * @param timeout Time to wait for a reply in milliseconds
+	 * @return Future completed with the reply
+	 */
+	public CompletableFuture<Message> send(Message request, InetSocketAddress destination,
+			long timeout) {
+		final long id = nextId.getAndIncrement();
+		request.setCorrelationId(id);
+		final PendingRequest pendingRequest = new PendingRequest();
+		// Register before sending so a fast reply cannot be missed
+		pending.put(id, pendingRequest);
+		pendingRequest.expiry = timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (pending.remove(id) != null) {
+					pendingRequest.future.completeExceptionally(new TimeoutException(
+							String.format("No reply to %s", request)));
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		final boolean sent = (destination == null) ? comms.sendMessage(request)
+				: comms.sendMessage(request, destination);
+		if (!sent && pending.remove(id) != null) {
+			pendingRequest.expiry.cancel(false);
+			pendingRequest.future.completeExceptionally(
+					new IOException(String.format("Failed sending %s", request)));
+		}
+		return pendingRequest.future;
+	}
+
+	/**
+	 * Complete the request that a received message is a reply to.
+	 *
+	 * @param reply Received message
+	 * @return Whether the message was a reply to an outstanding request
+	 */
+	public boolean complete(Message reply) {
+		if (reply.getCorrelationId() == 0) {
+			return false;
+		}
+		final PendingRequest pendingRequest = pending.remove(reply.getCorrelationId());
+		if (pendingRequest == null) {
+			return false;
+		}
+		pendingRequest.expiry.cancel(false);
+		pendingRequest.future.complete(reply);
+		return true;
+	}
+
+	/**
+	 * @return Number of requests waiting for a reply
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Cancel all outstanding requests.
+	 */
+	public void cancelAll() {
+		for (final Long id : pending.keySet()) {
+			final PendingRequest pendingRequest = pending.remove(id);
+			if (pendingRequest != null) {
+				pendingRequest.expiry.cancel(false);
+				pendingRequest.future.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * A request waiting for a reply.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class PendingRequest {
+		private final CompletableFuture<Message> future = new CompletableFuture<>();
+		private volatile ScheduledFuture<?> expiry;
+	}
+
+}
@@ -0,0 +1,503 @@
+package general.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import general.utility.SerializationUtils;
+
+/**
+ * A message server that multiplexes every connection on a single thread using a non-blocking
+ * selector. Partial frames are buffered per connection so that a slow or stalled peer cannot hold
+ * up any other peer; only complete messages are handed to the comms message queue. Both pooled
+ * connections and single message connections are accepted. Replies written to pooled connections
+ * are queued and flushed by the selector thread whenever the peer can accept more data.
+ *
+ * Read buffers only grow as data arrives, and a single message may be no larger than a frame, so
+ * a peer cannot claim memory it has not sent. Complete frames are decoded on a pool of threads
+ * rather than the selector thread, in the order they arrived on each connection; reading from a
+ * connection is paused whilst too much of its data is waiting to be decoded.
+ *
+ * @author David Jones [dsj1n15]
+ */
+class SelectorReceiver extends Thread {
+	// Initial size of per-connection read buffers
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+	// Amount of unsent data a connection may hold before the peer is considered stalled
+	private static final int MAX_PENDING_BYTES = 4 * Comms.MAX_FRAME_LENGTH;
+	// Amount of received data a connection may have waiting to be decoded before reading pauses
+	private static final int MAX_UNDECODED_BYTES = Comms.MAX_FRAME_LENGTH;
+
+	// Comms that received messages are passed to
+	private final Comms comms;
+	// Server channel and selector multiplexing all connections
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	// Threads decoding received data
+	private final ExecutorService decoders = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), new DecoderThreadFactory());
+
+	/**
+	 * Start a server that expects Message objects.
+	 *
+	 * @param comms Comms to pass received messages to
+	 * @param port Port number to host server on (0 = dynamic)
+	 * @throws BindException Port number already in use, server not instantiated
+	 */
+	public SelectorReceiver(Comms comms, int port) throws BindException {
+		this.comms = comms;
+		ServerSocketChannel serverChannel = null;
+		Selector selector = null;
+		try {
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch(BindException e) {
+			throw e;
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+		this.serverChannel = serverChannel;
+		this.selector = selector;
+	}
+
+	/**
+	 * @return The actual port number on which this message receiver is listening
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				selector.select();
+				final Iterator<SelectionKey> itr = selector.selectedKeys().iterator();
+				while (itr.hasNext()) {
+					final SelectionKey key = itr.next();
+					itr.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					final ChannelConnection connection = (ChannelConnection) key.attachment();
+					if (key.isReadable()) {
+						connection.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.flush();
+					}
+				}
+			} catch(ClosedSelectorException e) {
+				break;
+			} catch(IOException e) {
+				System.err.println("[Server] : Error selecting connections");
+				break;
+			}
+		}
+		decoders.shutdown();
+	}
+
+	/**
+	 * Accept a waiting connection and register it for reading.
+	 */
+	private void accept() {
+		try {
+			final SocketChannel channel = serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new ChannelConnection(channel, key,
+					(InetSocketAddress) channel.getRemoteAddress()));
+		} catch(IOException e) {
+			System.err.println("[Server] : Error getting connection");
+		}
+	}
+
+	/**
+	 * A connection owned by the selector. Incoming data is accumulated until complete frames (or a
+	 * complete single message) are available. Outgoing frames are queued and written when the
+	 * channel is writable.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	class ChannelConnection implements Connection {
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final InetSocketAddress address;
+		// Incoming data
+		private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private ReadMode mode = ReadMode.UNKNOWN;
+		private ByteArrayOutputStream single;
+		// Received data waiting to be decoded in order, guarded by undecoded
+		private final Queue<byte[]> undecoded = new ArrayDeque<>();
+		private int undecodedBytes = 0;
+		private boolean decoding = false;
+		// Outgoing data and interest in the channel, guarded by writes
+		private final Queue<ByteBuffer> writes = new ArrayDeque<>();
+		private int pendingBytes = 0;
+		private boolean readPaused = false;
+		private boolean closed = false;
+
+		/**
+		 * Wrap an accepted channel.
+		 *
+		 * @param channel Non-blocking accepted channel
+		 * @param key Key of channel in selector
+		 * @param address Remote address of channel
+		 */
+		public ChannelConnection(SocketChannel channel, SelectionKey key,
+				InetSocketAddress address) {
+			this.channel = channel;
+			this.key = key;
+			this.address = address;
+		}
+
+		/**
+		 * Read all data currently available from the channel, passing on any complete messages.
+		 * Only called by the selector thread.
+		 */
+		public void read() {
+			try {
+				int read = 0;
+				while (!isReadPaused()) {
+					if (!readBuffer.hasRemaining()) {
+						grow();
+					}
+					read = channel.read(readBuffer);
+					if (read <= 0) {
+						break;
+					}
+					readBuffer.flip();
+					process();
+					readBuffer.compact();
+				}
+				if (read < 0) {
+					// Peer closed connection, a single message is complete at this point
+					if (mode == ReadMode.SINGLE) {
+						readBuffer.flip();
+						accumulate();
+						decode(single.toByteArray());
+						single = null;
+					}
+					close();
+				}
+			} catch(IOException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Make room for more of a frame in a full read buffer (in write mode), at most doubling
+		 * its size and never exceeding the size of the frame.
+		 *
+		 * @throws IOException Buffer holds no frame length
+		 */
+		private void grow() throws IOException {
+			if (readBuffer.position() < 4) {
+				throw new IOException("Read buffer full without frame");
+			}
+			final int required = 4 + readBuffer.getInt(0);
+			final int capacity =
+					(int) Math.min((long) readBuffer.capacity() * 2, required);
+			final ByteBuffer larger = ByteBuffer.allocate(capacity);
+			readBuffer.flip();
+			larger.put(readBuffer);
+			readBuffer = larger;
+		}
+
+		/**
+		 * Process the data held by the read buffer (in read mode), consuming all complete frames.
+		 *
+		 * @throws IOException Data on connection is invalid
+		 */
+		private void process() throws IOException {
+			if (mode == ReadMode.UNKNOWN) {
+				if (readBuffer.remaining() < 4) {
+					return;
+				}
+				// Determine connection type from header
+				if (readBuffer.getInt(readBuffer.position()) == Comms.CONNECTION_MAGIC) {
+					readBuffer.getInt();
+					mode = ReadMode.FRAMED;
+					comms.addConnection(this);
+				} else {
+					mode = ReadMode.SINGLE;
+					single = new ByteArrayOutputStream();
+				}
+			}
+			if (mode == ReadMode.SINGLE) {
+				// Accumulate until peer closes connection
+				accumulate();
+				return;
+			}
+			// Consume complete frames
+			while (readBuffer.remaining() >= 4) {
+				final int length = readBuffer.getInt(readBuffer.position());
+				if (length < 0 || length > Comms.MAX_FRAME_LENGTH) {
+					throw new IOException("Invalid frame length");
+				}
+				if (readBuffer.remaining() < 4 + length) {
+					break;
+				}
+				readBuffer.getInt();
+				final byte[] frame = new byte[length];
+				readBuffer.get(frame);
+				decode(frame);
+			}
+			// Release a buffer grown for a large frame once it has been consumed
+			if (readBuffer.capacity() > READ_BUFFER_SIZE
+					&& readBuffer.remaining() <= READ_BUFFER_SIZE / 2) {
+				final ByteBuffer smaller = ByteBuffer.allocate(READ_BUFFER_SIZE);
+				smaller.put(readBuffer);
+				smaller.flip();
+				readBuffer = smaller;
+			}
+		}
+
+		/**
+		 * Move the data held by the read buffer (in read mode) to the single message being
+		 * received.
+		 *
+		 * @throws IOException Single message is larger than a frame may be
+		 */
+		private void accumulate() throws IOException {
+			if (single.size() + readBuffer.remaining() > Comms.MAX_FRAME_LENGTH) {
+				throw new IOException("Single message too large");
+			}
+			single.write(readBuffer.array(), readBuffer.position(), readBuffer.remaining());
+			readBuffer.position(readBuffer.limit());
+		}
+
+		/**
+		 * Queue received data to be decoded after any data received before it, pausing reading
+		 * if too much data is waiting.
+		 *
+		 * @param data A frame, or a whole single message
+		 */
+		private void decode(byte[] data) {
+			final boolean start;
+			final boolean pause;
+			synchronized (undecoded) {
+				undecoded.add(data);
+				undecodedBytes += data.length;
+				start = !decoding;
+				decoding = true;
+				pause = undecodedBytes > MAX_UNDECODED_BYTES;
+			}
+			if (pause) {
+				setReadPaused(true);
+			}
+			if (start) {
+				decoders.execute(new Runnable() {
+					@Override
+					public void run() {
+						decodeAll();
+					}
+				});
+			}
+		}
+
+		/**
+		 * Decode queued data in order until none remains, resuming reading once enough has been
+		 * decoded. Only called by a decoding thread.
+		 */
+		private void decodeAll() {
+			while (true) {
+				final byte[] data;
+				final boolean resume;
+				synchronized (undecoded) {
+					data = undecoded.poll();
+					if (data == null) {
+						decoding = false;
+						return;
+					}
+					undecodedBytes -= data.length;
+					resume = undecodedBytes <= MAX_UNDECODED_BYTES / 2;
+				}
+				if (mode == ReadMode.SINGLE) {
+					receiveSingle(data);
+				} else {
+					comms.receiveFrame(comms.decodeFrame(data), this);
+				}
+				if (resume) {
+					setReadPaused(false);
+				}
+			}
+		}
+
+		/**
+		 * Deserialise a complete single message and pass it on.
+		 *
+		 * @param data Bytes of message
+		 */
+		private void receiveSingle(byte[] data) {
+			final Object object = SerializationUtils.deserialize(new ByteArrayInputStream(data));
+			if (object instanceof Message) {
+				comms.addMessage((Message) object);
+			} else {
+				System.err.println("[Server] : Error receiving ");
+			}
+		}
+
+		/**
+		 * @return Whether reading is paused until queued data has been decoded
+		 */
+		private boolean isReadPaused() {
+			synchronized (writes) {
+				return readPaused;
+			}
+		}
+
+		/**
+		 * Pause or resume reading from the channel.
+		 *
+		 * @param paused Whether reading should be paused
+		 */
+		private void setReadPaused(boolean paused) {
+			synchronized (writes) {
+				if (readPaused != paused) {
+					readPaused = paused;
+					updateInterest();
+				}
+			}
+		}
+
+		/**
+		 * Register interest in reading unless paused, and in writing whilst data remains queued.
+		 * Must be called whilst writes is locked.
+		 */
+		private void updateInterest() {
+			if (!key.isValid()) {
+				return;
+			}
+			final int ops = (readPaused ? 0 : SelectionKey.OP_READ)
+					| (writes.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+			if (key.interestOps() != ops) {
+				key.interestOps(ops);
+				selector.wakeup();
+			}
+		}
+
+		@Override
+		public InetSocketAddress getAddress() {
+			return address;
+		}
+
+		@Override
+		public void send(Message message) throws IOException {
+			final byte[] frame = comms.encodeFrame(message);
+			final ByteBuffer buffer = ByteBuffer.allocate(4 + frame.length);
+			buffer.putInt(frame.length).put(frame).flip();
+			synchronized (writes) {
+				if (closed) {
+					throw new IOException("Connection closed");
+				}
+				if (pendingBytes + buffer.remaining() > MAX_PENDING_BYTES) {
+					// Peer is not reading, drop it rather than buffer indefinitely
+					close();
+					throw new IOException("Connection stalled");
+				}
+				writes.add(buffer);
+				pendingBytes += buffer.remaining();
+				// Attempt an immediate write if nothing else is waiting
+				if (writes.size() == 1) {
+					flush();
+				}
+			}
+		}
+
+		/**
+		 * Write as much queued data as the channel will accept. Interest in writability is only
+		 * registered whilst data remains queued.
+		 */
+		public void flush() {
+			synchronized (writes) {
+				try {
+					while (!writes.isEmpty()) {
+						final ByteBuffer buffer = writes.peek();
+						final int written = channel.write(buffer);
+						pendingBytes -= written;
+						if (buffer.hasRemaining()) {
+							break;
+						}
+						writes.poll();
+					}
+					updateInterest();
+				} catch(IOException e) {
+					close();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (writes) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				writes.clear();
+			}
+			key.cancel();
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// close failed, ignore
+			}
+			comms.removeConnection(this);
+		}
+
+	}
+
+	/**
+	 * Thread factory naming decoding threads, which do not prevent shutdown.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class DecoderThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "FrameDecoder-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+	/**
+	 * Enumeration of the ways a connection's data can be interpreted.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static enum ReadMode {
+		UNKNOWN, FRAMED, SINGLE;
+	}
+
+}
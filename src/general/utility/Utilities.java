@@ -37,6 +37,8 @@ public class Utilities {
 	public static final String PRICE_FORMAT = "%.2f";
 	public static final DateTimeFormatter DATE_TIME_FORMAT =
 			DateTimeFormatter.ofPattern("yyyy/MM/dd - HH:mm");
+	// Most rows rendered when scaling columns
+	private static final int SCALE_SAMPLE_ROWS = 200;
 
 	/**
 	 * Do not allow this class to be instantiated.
@@ -205,13 +207,30 @@ public class Utilities {
 	 * Automatic scaler for columns in a JTable. Code sourced from:
 	 * http://stackoverflow.com/questions/17627431/auto-resizing-the-jtable-column-widths
 	 * 
+	 * Columns are sized using a sample of rows spread evenly through the table, so large tables
+	 * are scaled without rendering every cell.
+	 * 
 	 * @param table Table to scale
 	 */
 	public static void scaleColumns(JTable table) {
+		scaleColumns(table, 0, table.getRowCount());
+	}
+
+	/**
+	 * Scale columns in a JTable using a sample of rows spread evenly through a range of rows.
+	 * 
+	 * @param table Table to scale
+	 * @param fromRow First row of range (in view)
+	 * @param toRow Row after last row of range (in view)
+	 */
+	public static void scaleColumns(JTable table, int fromRow, int toRow) {
 		final TableColumnModel columnModel = table.getColumnModel();
+		final int rows = Math.max(toRow - fromRow, 0);
+		final int samples = Math.min(rows, SCALE_SAMPLE_ROWS);
 		for (int column = 0; column < table.getColumnCount(); column++) {
 			int width = 15; // Min width
-			for (int row = 0; row < table.getRowCount(); row++) {
+			for (int sample = 0; sample < samples; sample++) {
+				final int row = fromRow + (int) ((long) sample * rows / samples);
 				final TableCellRenderer renderer = table.getCellRenderer(row, column);
 				final Component comp = table.prepareRenderer(renderer, row, column);
 				width = Math.max(comp.getPreferredSize().width + 1, width);
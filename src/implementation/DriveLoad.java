@@ -0,0 +1,132 @@
+package implementation;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import business.model.BusinessLocation;
+import client.model.LoadDriver;
+import general.model.Message;
+
+/**
+ * Drive load against a running business, simulating many customers at once, to size a business
+ * before peak periods. Customers use the same messages as the client application; see
+ * LoadDriver for their behaviour.
+ *
+ * Arguments (all optional): location identifier, customers, connections, mean think time (ms),
+ * ramp up (s), duration (s), seed. Throughput, error rates and latency percentiles of each command
+ * are printed once load has been driven.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class DriveLoad {
+	// Default arguments
+	private static final String DEFAULT_LOCATION = "Southampton_1";
+	private static final int DEFAULT_CUSTOMERS = 1000;
+	private static final int DEFAULT_CONNECTIONS = 16;
+	private static final int DEFAULT_THINK_TIME = 1000; // ms
+	private static final int DEFAULT_RAMP_UP = 10; // s
+	private static final int DEFAULT_DURATION = 60; // s
+	private static final long DEFAULT_SEED = 1;
+	// Conversion
+	private static final double NS_PER_MS = 1e6;
+
+	/**
+	 * Do not allow this class to be instantiated.
+	 */
+	private DriveLoad() {}
+
+	/**
+	 * Drive load and print results.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final String identifier = (args.length > 0) ? args[0] : DEFAULT_LOCATION;
+		final int customers = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_CUSTOMERS;
+		final int connections =
+				(args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_CONNECTIONS;
+		final int thinkTime = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_THINK_TIME;
+		final int rampUp = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_RAMP_UP;
+		final int duration = (args.length > 5) ? Integer.parseInt(args[5]) : DEFAULT_DURATION;
+		final long seed = (args.length > 6) ? Long.parseLong(args[6]) : DEFAULT_SEED;
+
+		final BusinessLocation location = BusinessLocations.LOCATIONS.get(identifier);
+		if (location == null) {
+			System.err.println("Location identifier not found");
+			System.exit(1);
+		}
+		System.out.println(String.format(
+				"Driving %d customers over %d connections against %s for %d s...", customers,
+				connections, location.getAddress(), duration));
+		final LoadDriver driver = new LoadDriver(location, customers, connections, thinkTime,
+				seed);
+
+		// Messages are not printed whilst driving load
+		final PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+		}));
+		final boolean driven;
+		try {
+			driven = driver.run(rampUp * 1000, duration * 1000);
+		} finally {
+			System.setOut(out);
+		}
+		if (!driven) {
+			System.err.println("Business did not reply with any postcodes served");
+			System.exit(1);
+		}
+
+		printResults(driver);
+		// Comms servers of the driver do not stop by themselves
+		System.exit(0);
+	}
+
+	/**
+	 * Print the outcomes and latencies of each command sent by a driver.
+	 *
+	 * @param driver Driver that has driven load
+	 */
+	private static void printResults(LoadDriver driver) {
+		final double seconds = driver.getElapsed() / 1000.0;
+		System.out.println(String.format("Drove load for %.1f s", seconds));
+		System.out.println(String.format("%-22s %9s %10s %9s %9s %9s %9s %9s %9s", "Command",
+				"Requests", "Req/s", "Rejected", "Failed", "p50 (ms)", "p90 (ms)", "p99 (ms)",
+				"Max (ms)"));
+		int total = 0;
+		int errors = 0;
+		for (final Map.Entry<Message.Command, LoadDriver.CommandStatistics> entry : driver
+				.getStatistics().entrySet()) {
+			final LoadDriver.CommandStatistics statistics = entry.getValue();
+			final int requests = statistics.getRequests();
+			total += requests;
+			errors += statistics.getRejected() + statistics.getFailed();
+			System.out.println(String.format(
+					"%-22s %9d %10.1f %8.2f%% %8.2f%% %9.1f %9.1f %9.1f %9.1f", entry.getKey(),
+					requests, requests / seconds, percentage(statistics.getRejected(), requests),
+					percentage(statistics.getFailed(), requests),
+					toMillis(statistics.getLatency(0.50)), toMillis(statistics.getLatency(0.90)),
+					toMillis(statistics.getLatency(0.99)), toMillis(statistics.getLatency(1))));
+		}
+		System.out.println(String.format("Total: %d requests, %.1f req/s, %.2f%% errors", total,
+				total / seconds, percentage(errors, total)));
+	}
+
+	/**
+	 * @param latency Latency (ns)
+	 * @return Latency (ms)
+	 */
+	private static double toMillis(long latency) {
+		return latency / NS_PER_MS;
+	}
+
+	/**
+	 * @param count Count of some requests
+	 * @param requests Count of all requests
+	 * @return Count as a percentage of all requests, 0 if there are no requests
+	 */
+	private static double percentage(int count, int requests) {
+		return (requests == 0) ? 0 : 100.0 * count / requests;
+	}
+
+}
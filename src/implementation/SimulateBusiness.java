@@ -0,0 +1,317 @@
+package implementation;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import business.model.BusinessModel;
+import business.model.Clock;
+import business.model.Customer;
+import business.model.CustomerLogin;
+import business.model.Dish;
+import business.model.Drone;
+import business.model.Ingredient;
+import business.model.KitchenStaffMember;
+import business.model.Order;
+import business.model.Postcode;
+import business.model.StockLevels;
+import business.model.Supplier;
+import business.model.VirtualClock;
+import general.model.QuantityMap;
+
+/**
+ * Simulation of a business trading for a period against a virtual clock, used to evaluate
+ * staffing and drone fleet sizes offline. Kitchen staff and drones do their normal work but time
+ * passes as fast as they can do it, so a day of trading runs in seconds. Orders arrive at random
+ * from customers of a generated business; runs with the same arguments are repeatable.
+ *
+ * Arguments (all optional): kitchen staff, drones, orders per day, hours, seed. Order outcomes and
+ * delivery times are printed once trading ends.
+ *
+ * @author David Jones [dsj1n15]
+ */
+public class SimulateBusiness {
+	// Default arguments
+	private static final int DEFAULT_STAFF = 4;
+	private static final int DEFAULT_DRONES = 4;
+	private static final int DEFAULT_ORDERS_PER_DAY = 2000;
+	private static final int DEFAULT_HOURS = 24;
+	private static final long DEFAULT_SEED = 1;
+	// Business sizes
+	private static final int SUPPLIERS = 4;
+	private static final int INGREDIENTS_PER_SUPPLIER = 4;
+	private static final int DISHES = 10;
+	private static final int INGREDIENTS_PER_DISH = 3;
+	private static final int DISTRICTS = 4;
+	private static final int POSTCODES_PER_DISTRICT = 5;
+	private static final int CUSTOMERS = 300;
+	private static final int INGREDIENT_RESTOCK_LEVEL = 200;
+	private static final int DISH_RESTOCK_LEVEL = 20;
+	private static final int MAX_DISHES_PER_ORDER = 3;
+	private static final double DRONE_SPEED = 40; // km/h
+	// Time
+	private static final long START = 1500000000000L; // ms since epoch
+	private static final long HOUR_MS = 3600000;
+	private static final long DAY_MS = 24 * HOUR_MS;
+
+	/**
+	 * Do not allow this class to be instantiated.
+	 */
+	private SimulateBusiness() {}
+
+	/**
+	 * Run simulation and print results.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final int staff = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_STAFF;
+		final int drones = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_DRONES;
+		final int ordersPerDay =
+				(args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_ORDERS_PER_DAY;
+		final int hours = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_HOURS;
+		final long seed = (args.length > 4) ? Long.parseLong(args[4]) : DEFAULT_SEED;
+
+		final VirtualClock clock = new VirtualClock(START, seed);
+		Clock.set(clock);
+		final BusinessModel model = new BusinessModel();
+		final List<Customer> customers = createBusiness(model, staff, drones, new Random(seed));
+		final Simulation simulation = new Simulation(model, clock, customers,
+				(double) DAY_MS / ordersPerDay, START + hours * HOUR_MS);
+		model.orders.addStatusListener(simulation);
+
+		// Worker actions are not printed whilst trading
+		final PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+		}));
+		final long started = System.currentTimeMillis();
+		final Thread thread = clock.newThread(simulation);
+		thread.start();
+		thread.join();
+		// Workers finish their current task once the clock stops
+		for (final KitchenStaffMember member : model.kitchenStaff) {
+			join(member.getThread());
+		}
+		for (final Drone drone : model.drones) {
+			join(drone.getThread());
+		}
+		final long elapsed = System.currentTimeMillis() - started;
+		System.setOut(out);
+
+		System.out.println(String.format("Kitchen staff: %d, drones: %d, seed: %d", staff, drones,
+				seed));
+		System.out.println(String.format("Simulated %d hours in %d ms", hours, elapsed));
+		simulation.printResults();
+	}
+
+	/**
+	 * @param thread Thread to wait for, null if none
+	 * @throws InterruptedException Interrupted whilst waiting
+	 */
+	private static void join(Thread thread) throws InterruptedException {
+		if (thread != null) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Populate a model with generated suppliers, stock, postcodes, customers and workers.
+	 *
+	 * @param model Model to populate
+	 * @param staff Number of kitchen staff
+	 * @param drones Number of drones
+	 * @param r Source of randomness
+	 * @return Customers of business
+	 */
+	private static List<Customer> createBusiness(BusinessModel model, int staff, int drones,
+			Random r) {
+		final List<Ingredient> ingredients = new ArrayList<>();
+		for (int i = 0; i < SUPPLIERS; i++) {
+			final Supplier supplier = new Supplier("Supplier " + i, 2 + r.nextInt(20));
+			model.suppliers.add(supplier);
+			for (int j = 0; j < INGREDIENTS_PER_SUPPLIER; j++) {
+				final Ingredient ingredient = new Ingredient("Ingredient " + i + "-" + j,
+						Ingredient.Unit.items, supplier);
+				model.stock.ingredients.add(ingredient,
+						new StockLevels(INGREDIENT_RESTOCK_LEVEL, INGREDIENT_RESTOCK_LEVEL));
+				ingredients.add(ingredient);
+			}
+		}
+		for (int i = 0; i < DISHES; i++) {
+			final QuantityMap<Ingredient> recipe = new QuantityMap<>();
+			for (int j = 0; j < INGREDIENTS_PER_DISH; j++) {
+				recipe.setQuantity(ingredients.get(r.nextInt(ingredients.size())),
+						1 + r.nextInt(3));
+			}
+			final Dish dish = new Dish("Dish " + i, "", 5.0 + r.nextInt(10), recipe);
+			model.stock.dishes.add(dish, new StockLevels(DISH_RESTOCK_LEVEL, DISH_RESTOCK_LEVEL));
+		}
+		final List<Postcode> postcodes = new ArrayList<>();
+		for (int i = 0; i < DISTRICTS; i++) {
+			for (int j = 0; j < POSTCODES_PER_DISTRICT; j++) {
+				final Postcode postcode = new Postcode(String.format("SO%d %dAA", 14 + i, j),
+						1 + r.nextInt(8));
+				model.postcodes.add(postcode);
+				postcodes.add(postcode);
+			}
+		}
+		final List<Customer> customers = new ArrayList<>();
+		for (int i = 0; i < CUSTOMERS; i++) {
+			final CustomerLogin login = new CustomerLogin("customer" + i, "Password1");
+			final Customer customer = new Customer("Customer " + i, "Address " + i,
+					postcodes.get(r.nextInt(postcodes.size())), login);
+			model.customers.put(login, customer);
+			customers.add(customer);
+		}
+		for (int i = 0; i < staff; i++) {
+			model.kitchenStaff.add(new KitchenStaffMember("Staff " + i, model.stock));
+		}
+		for (int i = 0; i < drones; i++) {
+			final Drone drone = new Drone("Drone " + i, DRONE_SPEED, model);
+			model.drones.add(drone);
+		}
+		return customers;
+	}
+
+	/**
+	 * Trading run against the clock; starts workers, places orders until trading ends then stops
+	 * the clock. Records when each order was placed and delivered.
+	 *
+	 * @author David Jones [dsj1n15]
+	 */
+	private static class Simulation implements Runnable, Order.StatusListener {
+		private final BusinessModel model;
+		private final VirtualClock clock;
+		private final List<Customer> customers;
+		private final double meanInterval;
+		private final long end;
+		// Outcomes of orders
+		private final Map<Order, Long> placed = new HashMap<>();
+		private final List<Long> deliveryTimes = new ArrayList<>();
+		private int rejected = 0;
+		private int outstanding = 0;
+
+		/**
+		 * @param model Model to trade with
+		 * @param clock Clock to trade against
+		 * @param customers Customers placing orders
+		 * @param meanInterval Mean time between orders (ms)
+		 * @param end Time trading ends (ms since epoch)
+		 */
+		public Simulation(BusinessModel model, VirtualClock clock, List<Customer> customers,
+				double meanInterval, long end) {
+			this.model = model;
+			this.clock = clock;
+			this.customers = customers;
+			this.meanInterval = meanInterval;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			for (final KitchenStaffMember member : model.kitchenStaff) {
+				member.startWorking();
+			}
+			for (final Drone drone : model.drones) {
+				drone.startWorking();
+			}
+			final Random r = clock.getRandom();
+			// Dishes in a repeatable order
+			final List<Dish> dishes = new ArrayList<>(model.stock.dishes.keySet());
+			Collections.sort(dishes);
+			try {
+				while (true) {
+					// Orders arrive at random, at least a millisecond apart so none are equal
+					final long interval =
+							Math.max(1, Math.round(-meanInterval * Math.log(1 - r.nextDouble())));
+					if (clock.currentTimeMillis() + interval >= end) {
+						break;
+					}
+					clock.sleep(interval);
+					placeOrder(r, dishes);
+				}
+				clock.sleep(end - clock.currentTimeMillis());
+			} catch(InterruptedException e) {
+				// Clock stopped early
+			}
+			synchronized (model.orders) {
+				outstanding = placed.size();
+			}
+			clock.stop();
+		}
+
+		/**
+		 * Place an order from a random customer, accepting it if there is enough stock.
+		 *
+		 * @param r Source of randomness
+		 * @param dishes Dishes that may be ordered
+		 */
+		private void placeOrder(Random r, List<Dish> dishes) {
+			final QuantityMap<Dish> ordered = new QuantityMap<>();
+			for (int i = 1 + r.nextInt(MAX_DISHES_PER_ORDER); i > 0; i--) {
+				ordered.increment(dishes.get(r.nextInt(dishes.size())));
+			}
+			final Order order = new Order(customers.get(r.nextInt(customers.size())), ordered);
+			order.setStatus(Order.Status.RECEIVED);
+			model.stock.getScheduler().recordDemand(ordered);
+			if (model.stock.dishes.reserveStock(ordered)) {
+				order.setStatus(Order.Status.READY_FOR_DISPATCH);
+				synchronized (model.orders) {
+					placed.put(order, clock.currentTimeMillis());
+					model.orders.add(order);
+				}
+			} else {
+				rejected++;
+			}
+		}
+
+		@Override
+		public void statusChanged(Order order, Order.Status status) {
+			// Called with orders locked
+			if (status == Order.Status.DELIVERED && !clock.isStopped()) {
+				final Long time = placed.remove(order);
+				if (time != null) {
+					deliveryTimes.add(clock.currentTimeMillis() - time);
+				}
+			}
+		}
+
+		/**
+		 * Print order outcomes and delivery times.
+		 */
+		public void printResults() {
+			final int delivered = deliveryTimes.size();
+			System.out.println(String.format("Orders placed: %d, rejected for lack of stock: %d",
+					delivered + outstanding + rejected, rejected));
+			System.out.println(String.format("Orders delivered: %d, outstanding: %d", delivered,
+					outstanding));
+			if (delivered > 0) {
+				Collections.sort(deliveryTimes);
+				double total = 0;
+				for (final long time : deliveryTimes) {
+					total += time;
+				}
+				System.out.println(String.format(
+						"Delivery time (min): mean %.1f, p50 %.1f, p95 %.1f, max %.1f",
+						total / delivered / 60000, percentile(0.50) / 60000.0,
+						percentile(0.95) / 60000.0, deliveryTimes.get(delivered - 1) / 60000.0));
+			}
+		}
+
+		/**
+		 * @param fraction Fraction of sorted delivery times below percentile
+		 * @return Delivery time at percentile (ms)
+		 */
+		private long percentile(double fraction) {
+			final int index = (int) Math.ceil(fraction * deliveryTimes.size()) - 1;
+			return deliveryTimes.get(Math.max(index, 0));
+		}
+
+	}
+
+}